@@ -25,13 +25,19 @@ import com.qaprosoft.apitools.util.GenerationUtil;
 
 public class GenerateProcessor implements PropertiesProcessor {
 
+    private static final Pattern WORD_PATTERN = Pattern.compile(PropertiesKeywords.GENERATE_WORD_REGEX.getKey());
+
+    private static final Pattern NUMBER_PATTERN = Pattern.compile(PropertiesKeywords.GENERATE_NUMBER_REGEX.getKey());
+
+    private static final Pattern DATE_PATTERN = Pattern.compile(PropertiesKeywords.GENERATE_DATE_REGEX.getKey());
+
     @Override
     public Properties process(Properties in) {
         Properties out = new Properties();
         for (Entry<Object, Object> entry : in.entrySet()) {
-            Matcher wordMatcher = Pattern.compile(PropertiesKeywords.GENERATE_WORD_REGEX.getKey()).matcher(entry.getValue().toString());
-            Matcher numberMatcher = Pattern.compile(PropertiesKeywords.GENERATE_NUMBER_REGEX.getKey()).matcher(entry.getValue().toString());
-            Matcher dateMatcher = Pattern.compile(PropertiesKeywords.GENERATE_DATE_REGEX.getKey()).matcher(entry.getValue().toString());
+            Matcher wordMatcher = WORD_PATTERN.matcher(entry.getValue().toString());
+            Matcher numberMatcher = NUMBER_PATTERN.matcher(entry.getValue().toString());
+            Matcher dateMatcher = DATE_PATTERN.matcher(entry.getValue().toString());
             {
                 if (wordMatcher.find()) {
                     String toReplace = wordMatcher.group();
@@ -62,4 +62,33 @@ public class MessageBuilder {
         }
         return sw.getBuffer().toString();
     }
+
+    /**
+     * Loads and compiles template. Compiled template is thread safe and can be reused for any number of messages.
+     * 
+     * @param templatePath classpath template location
+     * @return Template
+     */
+    public static Template getTemplate(String templatePath) {
+        try {
+            return freemarkerConfiguration.getTemplate(templatePath);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static String buildStringMessage(Template template, Properties... propertiesArr) {
+        Properties resultProperties = new Properties();
+        for (Properties properties : propertiesArr) {
+            resultProperties.putAll(properties);
+        }
+
+        StringWriter sw = new StringWriter();
+        try {
+            template.process(resultProperties, sw);
+        } catch (TemplateException | IOException e) {
+            throw new RuntimeException(e);
+        }
+        return sw.toString();
+    }
 }
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.api;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import org.apache.log4j.Logger;
+
+import com.jayway.restassured.response.Response;
+import com.qaprosoft.carina.core.foundation.api.http.LatencyHistogram;
+
+/**
+ * APIMethodBatch - sends a set of API methods in parallel using limited number of threads.
+ * Every call is timed into the batch latency histogram and may be validated right in the worker thread, i.e.
+ * 
+ * <pre>
+ * APIMethodBatch&lt;GetUserMethod&gt; batch = new APIMethodBatch&lt;&gt;(10);
+ * batch.addAll(methods);
+ * batch.call(method -&gt; method.validateResponse());
+ * LOGGER.info(batch.getLatency());
+ * </pre>
+ * 
+ * @param <T> type of API methods in batch
+ */
+public class APIMethodBatch<T extends AbstractApiMethod> {
+    private static final Logger LOGGER = Logger.getLogger(APIMethodBatch.class);
+
+    private final int concurrency;
+
+    private final List<T> methods = new ArrayList<>();
+
+    private final List<Throwable> failures = new CopyOnWriteArrayList<>();
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    public APIMethodBatch(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency should be positive: " + concurrency);
+        }
+        this.concurrency = concurrency;
+    }
+
+    public APIMethodBatch<T> add(T method) {
+        methods.add(method);
+        return this;
+    }
+
+    public APIMethodBatch<T> addAll(Collection<? extends T> methods) {
+        this.methods.addAll(methods);
+        return this;
+    }
+
+    /**
+     * Calls all methods of the batch.
+     * 
+     * @return responses in the order methods were added
+     */
+    public List<Response> call() {
+        return call(null);
+    }
+
+    /**
+     * Calls all methods of the batch and validates each of them as soon as response is received.
+     * 
+     * @param validator
+     *            validation applied to the method after successful call, i.e. AbstractApiMethodV2::validateResponse
+     * @return responses in the order methods were added
+     * @throws RuntimeException
+     *             if any call or validation failed. All failures are available via {@link #getFailures()}
+     */
+    public List<Response> call(Consumer<T> validator) {
+        failures.clear();
+        if (methods.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, methods.size()));
+        List<Response> responses = new ArrayList<>();
+        try {
+            List<CompletableFuture<Response>> futures = new ArrayList<>();
+            for (T method : methods) {
+                method.setLatencyHistogram(latency);
+                futures.add(method.callAPIAsync(executor).thenApply(rs -> {
+                    if (validator != null) {
+                        validator.accept(method);
+                    }
+                    return rs;
+                }));
+            }
+
+            for (CompletableFuture<Response> future : futures) {
+                try {
+                    responses.add(future.join());
+                } catch (CompletionException e) {
+                    failures.add(e.getCause() != null ? e.getCause() : e);
+                    responses.add(null);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        LOGGER.info(String.format("API batch of %d calls with concurrency %d finished: %s", methods.size(), concurrency, latency));
+        if (!failures.isEmpty()) {
+            RuntimeException e = new RuntimeException(String.format("%d of %d API calls failed", failures.size(), methods.size()),
+                    failures.get(0));
+            failures.stream().skip(1).forEach(e::addSuppressed);
+            throw e;
+        }
+        return responses;
+    }
+
+    public List<T> getMethods() {
+        return methods;
+    }
+
+    public List<Throwable> getFailures() {
+        return failures;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+}
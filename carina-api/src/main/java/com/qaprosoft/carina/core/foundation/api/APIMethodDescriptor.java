@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+
+import com.qaprosoft.apitools.builder.MessageBuilder;
+
+import freemarker.template.Template;
+
+/**
+ * APIMethodDescriptor - metadata shared by all instances of API method with the same request template, response
+ * template and properties: base properties loaded from classpath and compiled templates. Templates are compiled on
+ * first usage. Instances process their own copy of properties so generated values are still unique.
+ */
+public class APIMethodDescriptor {
+    private static final Logger LOGGER = Logger.getLogger(APIMethodDescriptor.class);
+
+    private static final Map<List<String>, APIMethodDescriptor> CACHE = new ConcurrentHashMap<>();
+
+    private final Properties properties;
+
+    private final String rqPath;
+
+    private final String rsPath;
+
+    private volatile Template rqTemplate;
+
+    private volatile Template rsTemplate;
+
+    private APIMethodDescriptor(String rqPath, String rsPath, String propertiesPath) {
+        this.properties = propertiesPath != null ? loadProperties(propertiesPath) : null;
+        this.rqPath = rqPath;
+        this.rsPath = rsPath;
+    }
+
+    /**
+     * Returns cached descriptor or loads it on first request.
+     * 
+     * @param rqPath request template path, may be null
+     * @param rsPath response template path, may be null
+     * @param propertiesPath properties path, may be null
+     * @return APIMethodDescriptor
+     */
+    public static APIMethodDescriptor get(String rqPath, String rsPath, String propertiesPath) {
+        return CACHE.computeIfAbsent(Arrays.asList(rqPath, rsPath, propertiesPath),
+                key -> new APIMethodDescriptor(rqPath, rsPath, propertiesPath));
+    }
+
+    public static void clear() {
+        CACHE.clear();
+    }
+
+    private static Properties loadProperties(String propertiesPath) {
+        URL baseResource = ClassLoader.getSystemResource(propertiesPath);
+        if (baseResource == null) {
+            throw new RuntimeException("Properties can't be found by path: " + propertiesPath);
+        }
+        Properties properties = new Properties();
+        try (InputStream is = baseResource.openStream()) {
+            properties.load(is);
+        } catch (IOException e) {
+            throw new RuntimeException("Properties can't be loaded by path: " + propertiesPath, e);
+        }
+        LOGGER.info("Base properties loaded: " + propertiesPath);
+        return properties;
+    }
+
+    /**
+     * Returns base properties shared between all instances so they must not be modified. Use
+     * PropertiesProcessorMain.processProperties to get own processed copy.
+     * 
+     * @return base properties or null if properties path wasn't specified
+     */
+    public Properties getProperties() {
+        return properties;
+    }
+
+    public Template getRqTemplate() {
+        if (rqTemplate == null && rqPath != null) {
+            rqTemplate = MessageBuilder.getTemplate(rqPath);
+        }
+        return rqTemplate;
+    }
+
+    public Template getRsTemplate() {
+        if (rsTemplate == null && rsPath != null) {
+            rsTemplate = MessageBuilder.getTemplate(rsPath);
+        }
+        return rsTemplate;
+    }
+}
@@ -21,6 +21,8 @@ import java.io.PrintStream;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
@@ -44,7 +46,9 @@ import com.jayway.restassured.specification.RequestSpecification;
 import com.qaprosoft.carina.core.foundation.api.http.HttpClient;
 import com.qaprosoft.carina.core.foundation.api.http.HttpMethodType;
 import com.qaprosoft.carina.core.foundation.api.http.HttpResponseStatusType;
+import com.qaprosoft.carina.core.foundation.api.http.LatencyHistogram;
 import com.qaprosoft.carina.core.foundation.api.log.LoggingOutputStream;
+import com.qaprosoft.carina.core.foundation.api.log.StreamingLoggingFilter;
 import com.qaprosoft.carina.core.foundation.api.ssl.NullHostnameVerifier;
 import com.qaprosoft.carina.core.foundation.api.ssl.NullX509TrustManager;
 import com.qaprosoft.carina.core.foundation.api.ssl.SSLContextBuilder;
@@ -63,6 +67,8 @@ public abstract class AbstractApiMethod extends HttpClient {
     private boolean logRequest = Configuration.getBoolean(Parameter.LOG_ALL_JSON);
     private boolean logResponse = Configuration.getBoolean(Parameter.LOG_ALL_JSON);
     private boolean ignoreSSL = Configuration.getBoolean(Parameter.IGNORE_SSL);
+    private LatencyHistogram latencyHistogram;
+    private boolean logPrettyPrint = false;
 
     public AbstractApiMethod() {
         init(getClass());
@@ -188,24 +194,54 @@ public abstract class AbstractApiMethod extends HttpClient {
         Response rs = null;
 
         PrintStream ps = null;
-        if (logRequest || logResponse) {
-            ps = new PrintStream(new LoggingOutputStream(LOGGER, Level.INFO));
-        }
+        if (StreamingLoggingFilter.isEnabled()) {
+            if (logRequest || logResponse) {
+                StreamingLoggingFilter filter = new StreamingLoggingFilter(LOGGER, logRequest, logResponse);
+                filter.setPrettyPrint(logPrettyPrint);
+                request.filter(filter);
+            }
+        } else {
+            if (logRequest || logResponse) {
+                ps = new PrintStream(new LoggingOutputStream(LOGGER, Level.INFO));
+            }
 
-        if (logRequest)
-            request.filter(new RequestLoggingFilter(ps));
+            if (logRequest)
+                request.filter(new RequestLoggingFilter(ps));
 
-        if (logResponse)
-            request.filter(new ResponseLoggingFilter(ps));
+            if (logResponse)
+                request.filter(new ResponseLoggingFilter(ps));
+        }
+        long start = System.nanoTime();
         try {
             rs = HttpClient.send(request, methodPath, methodType);
         } finally {
+            if (latencyHistogram != null)
+                latencyHistogram.record(System.nanoTime() - start);
             if (ps != null)
                 ps.close();
         }
         return rs;
     }
 
+    /**
+     * Calls API method asynchronously using default API executor.
+     * 
+     * @return CompletableFuture completed with response or exceptionally on failure
+     */
+    public CompletableFuture<Response> callAPIAsync() {
+        return callAPIAsync(HttpClient.getAsyncExecutor());
+    }
+
+    /**
+     * Calls API method asynchronously using provided executor.
+     * 
+     * @param executor Executor to run blocking call in
+     * @return CompletableFuture completed with response or exceptionally on failure
+     */
+    public CompletableFuture<Response> callAPIAsync(Executor executor) {
+        return CompletableFuture.supplyAsync(this::callAPI, executor);
+    }
+
     /**
      * @deprecated use {@link #callAPI()} instead.
      * 
@@ -254,6 +290,28 @@ public abstract class AbstractApiMethod extends HttpClient {
         this.logResponse = logResponse;
     }
 
+    /**
+     * Enables pretty printing of inline JSON bodies in stream logging mode (api_log_mode=stream).
+     * 
+     * @param logPrettyPrint boolean
+     */
+    public void setLogPrettyPrint(boolean logPrettyPrint) {
+        this.logPrettyPrint = logPrettyPrint;
+    }
+
+    public LatencyHistogram getLatencyHistogram() {
+        return latencyHistogram;
+    }
+
+    /**
+     * Registers histogram to track HTTP call duration of this method.
+     * 
+     * @param latencyHistogram LatencyHistogram
+     */
+    public void setLatencyHistogram(LatencyHistogram latencyHistogram) {
+        this.latencyHistogram = latencyHistogram;
+    }
+
     public void ignoreSSLCerts() {
         SSLContext sslContext = null;
         try {
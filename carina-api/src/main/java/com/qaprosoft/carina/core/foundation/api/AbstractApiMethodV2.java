@@ -15,8 +15,6 @@
  *******************************************************************************/
 package com.qaprosoft.carina.core.foundation.api;
 
-import java.io.IOException;
-import java.net.URL;
 import java.util.Properties;
 
 import org.apache.log4j.Logger;
@@ -25,11 +23,14 @@ import org.skyscreamer.jsonassert.JSONAssert;
 import org.skyscreamer.jsonassert.JSONCompareMode;
 
 import com.jayway.restassured.response.Response;
+import com.qaprosoft.apitools.builder.MessageBuilder;
 import com.qaprosoft.apitools.builder.PropertiesProcessorMain;
 import com.qaprosoft.apitools.message.TemplateMessage;
 import com.qaprosoft.apitools.validation.JsonKeywordsComparator;
 import com.qaprosoft.apitools.validation.JsonValidator;
 
+import freemarker.template.Template;
+
 public abstract class AbstractApiMethodV2 extends AbstractApiMethod {
     protected static final Logger LOGGER = Logger.getLogger(AbstractApiMethodV2.class);
     
@@ -37,24 +38,13 @@ public abstract class AbstractApiMethodV2 extends AbstractApiMethod {
     private String rqPath;
     private String rsPath;
     private String actualRsBody;
+    private APIMethodDescriptor descriptor;
 
     public AbstractApiMethodV2(String rqPath, String rsPath, String propertiesPath) {
         super("application/json");
         setHeaders("Accept=*/*");
-
-        URL baseResource = ClassLoader.getSystemResource(propertiesPath);
-        if (baseResource != null) {
-            properties = new Properties();
-            try {
-                properties.load(baseResource.openStream());
-            } catch (IOException e) {
-                throw new RuntimeException("Properties can't be loaded by path: " + propertiesPath, e);
-            }
-            LOGGER.info("Base properties loaded: " + propertiesPath);
-        } else {
-            throw new RuntimeException("Properties can't be found by path: " + propertiesPath);
-        }
-        properties = PropertiesProcessorMain.processProperties(properties);
+        this.descriptor = APIMethodDescriptor.get(rqPath, rsPath, propertiesPath);
+        this.properties = PropertiesProcessorMain.processProperties(descriptor.getProperties());
         this.rqPath = rqPath;
         this.rsPath = rsPath;
     }
@@ -62,6 +52,7 @@ public abstract class AbstractApiMethodV2 extends AbstractApiMethod {
     public AbstractApiMethodV2(String rqPath, String rsPath, Properties properties) {
         super("application/json");
         setHeaders("Accept=*/*");
+        this.descriptor = APIMethodDescriptor.get(rqPath, rsPath, null);
         if (properties != null) {
             this.properties = PropertiesProcessorMain.processProperties(properties);
         }
@@ -77,10 +68,7 @@ public abstract class AbstractApiMethodV2 extends AbstractApiMethod {
     @Deprecated
     public String call() {
         if (rqPath != null) {
-            TemplateMessage tm = new TemplateMessage();
-            tm.setTemplatePath(rqPath);
-            tm.setPropertiesStorage(properties);
-            setBodyContent(tm.getMessageText());
+            setBodyContent(buildMessage(descriptor.getRqTemplate()));
         }
         String rs = super.call();
         actualRsBody = rs;
@@ -90,16 +78,18 @@ public abstract class AbstractApiMethodV2 extends AbstractApiMethod {
     @Override
     public Response callAPI() {
         if (rqPath != null) {
-            TemplateMessage tm = new TemplateMessage();
-            tm.setTemplatePath(rqPath);
-            tm.setPropertiesStorage(properties);
-            setBodyContent(tm.getMessageText());
+            setBodyContent(buildMessage(descriptor.getRqTemplate()));
         }
         Response rs = super.callAPI();
         actualRsBody = rs.asString();
         return rs;
     }
 
+    private String buildMessage(Template template) {
+        Properties processed = PropertiesProcessorMain.processProperties(properties != null ? properties : new Properties());
+        return MessageBuilder.buildStringMessage(template, processed);
+    }
+
     public void addProperty(String key, Object value) {
         if (properties == null) {
             throw new RuntimeException("API method properties are not initialized!");
@@ -138,10 +128,7 @@ public abstract class AbstractApiMethodV2 extends AbstractApiMethod {
         if (actualRsBody == null) {
             throw new RuntimeException("Actual response body is null. Please make API call before validation response");
         }
-        TemplateMessage tm = new TemplateMessage();
-        tm.setTemplatePath(rsPath);
-        tm.setPropertiesStorage(properties);
-        String expectedRs = tm.getMessageText();
+        String expectedRs = buildMessage(descriptor.getRsTemplate());
         try {
             JSONAssert.assertEquals(expectedRs, actualRsBody, new JsonKeywordsComparator(mode, validationFlags));
         } catch (JSONException e) {
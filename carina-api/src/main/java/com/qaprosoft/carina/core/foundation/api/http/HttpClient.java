@@ -15,6 +15,12 @@
  *******************************************************************************/
 package com.qaprosoft.carina.core.foundation.api.http;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import com.jayway.restassured.response.Response;
 import com.jayway.restassured.specification.RequestSpecification;
 import com.qaprosoft.carina.proxy.SystemProxy;
@@ -25,6 +31,16 @@ import com.qaprosoft.carina.proxy.SystemProxy;
  * @author Alex Khursevich
  */
 public class HttpClient {
+
+    private static final AtomicInteger ASYNC_THREAD_COUNTER = new AtomicInteger();
+
+    // blocking calls are not welcome in common ForkJoinPool so use dedicated daemon threads for async calls by default
+    private static final ExecutorService ASYNC_EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "carina-api-async-" + ASYNC_THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
     public static Response send(RequestSpecification request, String methodPath, HttpMethodType methodType) {
         Response response = null;
         SystemProxy.setupProxy();
@@ -57,4 +73,39 @@ public class HttpClient {
         return response;
     }
 
+    /**
+     * Sends HTTP request asynchronously using provided executor.
+     * 
+     * @param request RequestSpecification
+     * @param methodPath String
+     * @param methodType HttpMethodType
+     * @param executor Executor to run blocking call in
+     * @return CompletableFuture completed with response or exceptionally on failure
+     */
+    public static CompletableFuture<Response> sendAsync(RequestSpecification request, String methodPath, HttpMethodType methodType,
+            Executor executor) {
+        return CompletableFuture.supplyAsync(() -> send(request, methodPath, methodType), executor);
+    }
+
+    /**
+     * Sends HTTP request asynchronously using default executor.
+     * 
+     * @param request RequestSpecification
+     * @param methodPath String
+     * @param methodType HttpMethodType
+     * @return CompletableFuture completed with response or exceptionally on failure
+     */
+    public static CompletableFuture<Response> sendAsync(RequestSpecification request, String methodPath, HttpMethodType methodType) {
+        return sendAsync(request, methodPath, methodType, ASYNC_EXECUTOR);
+    }
+
+    /**
+     * Returns default executor used for asynchronous API calls.
+     * 
+     * @return Executor
+     */
+    public static Executor getAsyncExecutor() {
+        return ASYNC_EXECUTOR;
+    }
+
 }
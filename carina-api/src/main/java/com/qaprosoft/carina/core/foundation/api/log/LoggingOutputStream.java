@@ -97,8 +97,8 @@ public class LoggingOutputStream extends OutputStream {
         }
         // would this be writing past the buffer?
         if (count == curBufLength) {
-            // grow the buffer
-            final int newBufLength = curBufLength + DEFAULT_BUFFER_LENGTH;
+            // grow the buffer exponentially otherwise copying of multi-MB bodies becomes quadratic
+            final int newBufLength = curBufLength * 2;
             final byte[] newBuf = new byte[newBufLength];
             System.arraycopy(buf, 0, newBuf, 0, curBufLength);
             buf = newBuf;
@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.api.log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.log4j.Logger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.jayway.restassured.filter.Filter;
+import com.jayway.restassured.filter.FilterContext;
+import com.jayway.restassured.response.Response;
+import com.jayway.restassured.specification.FilterableRequestSpecification;
+import com.jayway.restassured.specification.FilterableResponseSpecification;
+import com.qaprosoft.carina.core.foundation.report.ReportContext;
+import com.qaprosoft.carina.core.foundation.utils.Configuration;
+import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
+import com.qaprosoft.carina.core.foundation.utils.JsonUtils;
+
+/**
+ * StreamingLoggingFilter - logs API calls without materializing big bodies in the log. Bodies not exceeding 2 *
+ * inline limit are logged as is, bigger ones are written into per-test artifact file (up to body limit) and only
+ * head and tail are logged inline. Pretty printing is done on demand for inline JSON bodies only.
+ * 
+ * Bodies are not streamed: RestAssured buffers response body for the test anyway, so the filter reads the same
+ * buffer and limits only the size of log messages, memory used by the call is the same as in full mode.
+ */
+public class StreamingLoggingFilter implements Filter {
+
+    public static final String BODIES_FILE = "api-bodies.log";
+
+    private static final long DEFAULT_BODY_LIMIT = 10 * 1024 * 1024;
+
+    private static final int DEFAULT_INLINE_LIMIT = 1024;
+
+    private static final Object ARTIFACT_LOCK = new Object();
+
+    private final Logger log;
+
+    private final boolean logRequest;
+
+    private final boolean logResponse;
+
+    private boolean prettyPrint;
+
+    private long bodyLimit = getLong(Parameter.API_LOG_BODY_LIMIT, DEFAULT_BODY_LIMIT);
+
+    private int inlineLimit = (int) getLong(Parameter.API_LOG_INLINE_LIMIT, DEFAULT_INLINE_LIMIT);
+
+    private boolean logSuccessfulBodies = Configuration.isNull(Parameter.API_LOG_SUCCESSFUL_BODIES)
+            || Configuration.getBoolean(Parameter.API_LOG_SUCCESSFUL_BODIES);
+
+    private File artifact;
+
+    public StreamingLoggingFilter(Logger log, boolean logRequest, boolean logResponse) {
+        this.log = log;
+        this.logRequest = logRequest;
+        this.logResponse = logResponse;
+    }
+
+    /**
+     * @return true if stream mode is selected by api_log_mode parameter
+     */
+    public static boolean isEnabled() {
+        return "stream".equalsIgnoreCase(Configuration.get(Parameter.API_LOG_MODE));
+    }
+
+    @Override
+    public Response filter(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec, FilterContext ctx) {
+        Response response = ctx.next(requestSpec, responseSpec);
+
+        boolean logBodies = logSuccessfulBodies || response.getStatusCode() >= 400;
+        StringBuilder sb = new StringBuilder();
+        if (logRequest) {
+            sb.append("Request: ").append(requestSpec.getMethod()).append(" ").append(requestSpec.getURI());
+            if (logBodies) {
+                appendBody(sb, "request", toBytes(requestSpec.getBody()), requestSpec.getRequestContentType(), requestSpec.getURI());
+            }
+        }
+        if (logResponse) {
+            if (sb.length() > 0) {
+                sb.append("\n");
+            }
+            sb.append("Response: ").append(response.getStatusLine()).append(" (").append(response.getTime()).append(" ms)");
+            if (logBodies) {
+                appendBody(sb, "response", response.asByteArray(), response.getContentType(), requestSpec.getURI());
+            }
+        }
+        log.info(sb.toString());
+        return response;
+    }
+
+    private void appendBody(StringBuilder sb, String type, byte[] body, String contentType, String uri) {
+        if (body == null || body.length == 0) {
+            return;
+        }
+        sb.append("\n");
+        if (body.length <= 2L * inlineLimit) {
+            String text = new String(body, StandardCharsets.UTF_8);
+            sb.append(prettyPrint && isJson(contentType) ? prettify(text) : text);
+            return;
+        }
+
+        File file = writeToArtifact(type, body, uri);
+        // head and tail are cut on character boundaries
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer head = ByteBuffer.wrap(body, 0, inlineLimit);
+        CharBuffer chars = CharBuffer.allocate(inlineLimit);
+        decoder.decode(head, chars, false);
+        int tailStart = body.length - inlineLimit;
+        while (tailStart < body.length && (body[tailStart] & 0xC0) == 0x80) {
+            tailStart++;
+        }
+        chars.flip();
+        sb.append(chars);
+        sb.append(String.format("%n... %d bytes skipped, full %s body: %s ...%n", tailStart - head.position(), type,
+                file != null ? file.getAbsolutePath() : "not saved"));
+        sb.append(new String(body, tailStart, body.length - tailStart, StandardCharsets.UTF_8));
+    }
+
+    private File writeToArtifact(String type, byte[] body, String uri) {
+        File file = getArtifact();
+        synchronized (ARTIFACT_LOCK) {
+            try (OutputStream os = new FileOutputStream(file, true)) {
+                int length = (int) Math.min(body.length, bodyLimit);
+                os.write(String.format("==== %s %s, %d bytes ====%n", type, uri, body.length).getBytes(StandardCharsets.UTF_8));
+                os.write(body, 0, length);
+                if (length < body.length) {
+                    os.write(String.format("%n==== truncated %d bytes ====", body.length - length).getBytes(StandardCharsets.UTF_8));
+                }
+                os.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                log.error("Unable to write API body into " + file.getAbsolutePath(), e);
+                return null;
+            }
+        }
+        return file;
+    }
+
+    private static byte[] toBytes(Object body) {
+        if (body == null) {
+            return null;
+        }
+        if (body instanceof byte[]) {
+            return (byte[]) body;
+        }
+        return body.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static boolean isJson(String contentType) {
+        return contentType != null && contentType.toLowerCase().contains("json");
+    }
+
+    private static String prettify(String text) {
+        try {
+            return JsonUtils.toJson(JsonUtils.fromJson(text, JsonNode.class));
+        } catch (RuntimeException e) {
+            // not a valid json, log as is
+            return text;
+        }
+    }
+
+    private static long getLong(Parameter param, long defaultValue) {
+        return Configuration.isNull(param) ? defaultValue : Configuration.getLong(param);
+    }
+
+    private File getArtifact() {
+        if (artifact == null) {
+            artifact = new File(ReportContext.getTestDir(), BODIES_FILE);
+        }
+        return artifact;
+    }
+
+    /**
+     * Overrides artifact file which is api-bodies.log in current test directory by default.
+     * 
+     * @param artifact File
+     */
+    public void setArtifact(File artifact) {
+        this.artifact = artifact;
+    }
+
+    public void setPrettyPrint(boolean prettyPrint) {
+        this.prettyPrint = prettyPrint;
+    }
+
+    public void setBodyLimit(long bodyLimit) {
+        this.bodyLimit = bodyLimit;
+    }
+
+    public void setInlineLimit(int inlineLimit) {
+        this.inlineLimit = inlineLimit;
+    }
+
+    public void setLogSuccessfulBodies(boolean logSuccessfulBodies) {
+        this.logSuccessfulBodies = logSuccessfulBodies;
+    }
+}
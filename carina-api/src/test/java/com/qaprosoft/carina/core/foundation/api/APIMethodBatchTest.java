@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.jayway.restassured.response.Response;
+import com.qaprosoft.carina.core.foundation.api.http.HttpResponseStatusType;
+import com.qaprosoft.carina.core.foundation.api.http.LatencyHistogram;
+import com.qaprosoft.carina.core.foundation.api.stub.CreateUserMethod;
+import com.qaprosoft.carina.core.foundation.api.stub.UserApiStub;
+
+public class APIMethodBatchTest {
+
+    private UserApiStub stub;
+
+    @BeforeClass
+    public void startStub() {
+        stub = new UserApiStub();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopStub() {
+        stub.stop();
+    }
+
+    @Test
+    public void testCallAPIAsync() throws Exception {
+        CreateUserMethod method = new CreateUserMethod(stub.getPort());
+        method.expectResponseStatus(HttpResponseStatusType.CREATED_201);
+        LatencyHistogram latency = new LatencyHistogram();
+        method.setLatencyHistogram(latency);
+
+        Response rs = method.callAPIAsync().get(30, TimeUnit.SECONDS);
+
+        Assert.assertEquals(rs.getStatusCode(), 201, "Unexpected status code!");
+        method.validateResponse();
+        Assert.assertEquals(latency.getCount(), 1, "API call wasn't timed!");
+    }
+
+    @Test
+    public void testBatchRespectsConcurrencyLimit() {
+        stub.setDelay(50);
+        try {
+            APIMethodBatch<CreateUserMethod> batch = new APIMethodBatch<>(3);
+            for (int i = 0; i < 12; i++) {
+                batch.add(new CreateUserMethod(stub.getPort()));
+            }
+
+            List<Response> responses = batch.call(method -> method.validateResponse());
+
+            Assert.assertEquals(responses.size(), 12, "Unexpected number of responses!");
+            Assert.assertTrue(stub.getMaxInFlight() <= 3, "Concurrency limit exceeded: " + stub.getMaxInFlight());
+            Assert.assertEquals(batch.getLatency().getCount(), 12, "Not all calls were timed!");
+            Assert.assertTrue(batch.getLatency().getMin() >= TimeUnit.MILLISECONDS.toMicros(50), "Latency wasn't recorded correctly!");
+        } finally {
+            stub.setDelay(0);
+        }
+    }
+
+    @Test
+    public void testBatchReportsValidationFailures() {
+        List<CreateUserMethod> methods = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            methods.add(new CreateUserMethod(stub.getPort()));
+        }
+        CreateUserMethod invalid = methods.get(3);
+
+        APIMethodBatch<CreateUserMethod> batch = new APIMethodBatch<CreateUserMethod>(2).addAll(methods);
+        try {
+            batch.call(method -> {
+                if (method == invalid) {
+                    // break expectation for a single method only
+                    method.addProperty("job", "developer");
+                }
+                method.validateResponse();
+            });
+            Assert.fail("Validation failure wasn't reported!");
+        } catch (RuntimeException e) {
+            Assert.assertEquals(batch.getFailures().size(), 1, "Unexpected number of failures!");
+        }
+    }
+
+    @Test
+    public void testLatencyHistogramPercentiles() {
+        LatencyHistogram latency = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            latency.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        Assert.assertEquals(latency.getCount(), 1000);
+        Assert.assertEquals(latency.getMin(), 1000);
+        Assert.assertEquals(latency.getMax(), 1000000);
+        long p50 = latency.getValueAtPercentile(50);
+        Assert.assertTrue(p50 >= 500000 && p50 <= 500000 * 1.125, "Unexpected p50: " + p50);
+        long p99 = latency.getValueAtPercentile(99);
+        Assert.assertTrue(p99 >= 990000 && p99 <= 1000000, "Unexpected p99: " + p99);
+    }
+}
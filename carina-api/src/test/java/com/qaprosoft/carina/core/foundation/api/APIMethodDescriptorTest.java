@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.api;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.qaprosoft.carina.core.foundation.api.stub.CreateUserMethod;
+
+public class APIMethodDescriptorTest {
+
+    @Test
+    public void testDescriptorIsCached() {
+        APIMethodDescriptor descriptor = APIMethodDescriptor.get("api/users/_post/rq.json", "api/users/_post/rs.json",
+                "api/users/user.properties");
+        Assert.assertSame(APIMethodDescriptor.get("api/users/_post/rq.json", "api/users/_post/rs.json", "api/users/user.properties"),
+                descriptor, "Descriptor wasn't cached!");
+        Assert.assertNotSame(APIMethodDescriptor.get("api/users/_post/rq.json", null, "api/users/user.properties"), descriptor,
+                "Descriptors with different paths should differ!");
+        Assert.assertSame(descriptor.getRqTemplate(), descriptor.getRqTemplate(), "Request template wasn't cached!");
+        Assert.assertNull(APIMethodDescriptor.get(null, null, null).getRqTemplate(), "Request template should be null!");
+    }
+
+    @Test
+    public void testInstancesHaveOwnProperties() {
+        CreateUserMethod first = new CreateUserMethod(0);
+        CreateUserMethod second = new CreateUserMethod(0);
+
+        Assert.assertNotEquals(first.getProperties().getProperty("name"), second.getProperties().getProperty("name"),
+                "Generated values should be unique per instance!");
+
+        first.addProperty("job", "developer");
+        Assert.assertEquals(second.getProperties().getProperty("job"), "tester", "Properties are shared between instances!");
+        Assert.assertEquals(APIMethodDescriptor.get("api/users/_post/rq.json", "api/users/_post/rs.json", "api/users/user.properties")
+                .getProperties().getProperty("job"), "tester", "Base properties were modified!");
+    }
+}
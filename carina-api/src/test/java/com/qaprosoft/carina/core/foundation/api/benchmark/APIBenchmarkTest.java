@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.api.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.qaprosoft.carina.core.foundation.api.http.HttpResponseStatusType;
+import com.qaprosoft.carina.core.foundation.api.http.LatencyHistogram;
+import com.qaprosoft.carina.core.foundation.api.stub.CreateUserMethod;
+import com.qaprosoft.carina.core.foundation.api.stub.UserApiStub;
+
+/**
+ * Measures carina-api framework overhead (template rendering, properties processing, logging, RestAssured spec building
+ * and response comparison) against raw HTTP calls to the same in-process stub.
+ * 
+ * Excluded from regular build, run it using:
+ * 
+ * <pre>
+ * mvn test -pl carina-api -am -Dgroups=benchmark -DexcludedGroups=none
+ * </pre>
+ * 
+ * Results are written to target/benchmark/carina-api.json. If baseline file exists (benchmark.baseline property,
+ * benchmark/carina-api-baseline.json by default) results are compared with it and regression above benchmark.tolerance
+ * (0.2 by default) fails the run, otherwise current results are saved as new baseline.
+ */
+public class APIBenchmarkTest {
+    private static final Logger LOGGER = Logger.getLogger(APIBenchmarkTest.class);
+
+    private static final int WARMUP = Integer.getInteger("benchmark.warmup", 300);
+
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 1000);
+
+    private static final String THREADS = System.getProperty("benchmark.threads", "1,2,4,8");
+
+    private static final String BASELINE = System.getProperty("benchmark.baseline", "benchmark/carina-api-baseline.json");
+
+    private static final double TOLERANCE = Double.parseDouble(System.getProperty("benchmark.tolerance", "0.2"));
+
+    private static final String RQ_BODY = "{\"name\": \"benchmark\", \"job\": \"tester\"}";
+
+    private UserApiStub stub;
+
+    private final JSONObject results = new JSONObject();
+
+    @BeforeClass(alwaysRun = true)
+    public void startStub() {
+        stub = new UserApiStub();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopStub() {
+        stub.stop();
+    }
+
+    @Test(groups = "benchmark")
+    public void testFrameworkOverhead() throws Exception {
+        JSONObject wire = measure(this::rawCall);
+        JSONObject plain = measure(() -> carinaCall(false));
+        JSONObject logged = measure(() -> carinaCall(true));
+
+        plain.put("overheadMicros", plain.getDouble("meanMicros") - wire.getDouble("meanMicros"));
+        logged.put("overheadMicros", logged.getDouble("meanMicros") - wire.getDouble("meanMicros"));
+
+        results.put("wire", wire);
+        results.put("carina", plain);
+        results.put("carinaLogged", logged);
+    }
+
+    @Test(groups = "benchmark", dependsOnMethods = "testFrameworkOverhead")
+    public void testThroughput() throws Exception {
+        JSONObject throughput = new JSONObject();
+        for (String value : THREADS.split(",")) {
+            int threads = Integer.parseInt(value.trim());
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                int perThread = Math.max(1, ITERATIONS / threads);
+                long start = System.nanoTime();
+                for (int i = 0; i < threads; i++) {
+                    futures.add(executor.submit(() -> {
+                        for (int j = 0; j < perThread; j++) {
+                            carinaCall(false);
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                throughput.put(String.valueOf(threads), perThread * threads / seconds);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        results.put("throughput", throughput);
+    }
+
+    @Test(groups = "benchmark", dependsOnMethods = "testThroughput")
+    public void testCompareWithBaseline() throws Exception {
+        File output = new File("target/benchmark/carina-api.json");
+        FileUtils.writeStringToFile(output, results.toString(4), StandardCharsets.UTF_8);
+        LOGGER.info("Benchmark results saved to " + output.getAbsolutePath() + ":\n" + results.toString(4));
+
+        File baselineFile = new File(BASELINE);
+        if (!baselineFile.exists()) {
+            FileUtils.writeStringToFile(baselineFile, results.toString(4), StandardCharsets.UTF_8);
+            LOGGER.info("Baseline not found, current results saved as baseline: " + baselineFile.getAbsolutePath());
+            return;
+        }
+
+        JSONObject baseline = new JSONObject(FileUtils.readFileToString(baselineFile, StandardCharsets.UTF_8));
+        List<String> regressions = new ArrayList<>();
+        for (String scenario : new String[] { "carina", "carinaLogged" }) {
+            // overhead and allocations are "lower is better" metrics
+            compare(regressions, scenario + ".overheadMicros", baseline.getJSONObject(scenario).getDouble("overheadMicros"),
+                    results.getJSONObject(scenario).getDouble("overheadMicros"), false);
+            compare(regressions, scenario + ".allocatedBytesPerCall", baseline.getJSONObject(scenario).getDouble("allocatedBytesPerCall"),
+                    results.getJSONObject(scenario).getDouble("allocatedBytesPerCall"), false);
+        }
+        JSONObject baseThroughput = baseline.getJSONObject("throughput");
+        JSONObject throughput = results.getJSONObject("throughput");
+        Iterator<?> keys = throughput.keys();
+        while (keys.hasNext()) {
+            String threads = (String) keys.next();
+            if (baseThroughput.has(threads)) {
+                compare(regressions, "throughput." + threads, baseThroughput.getDouble(threads), throughput.getDouble(threads), true);
+            }
+        }
+        Assert.assertTrue(regressions.isEmpty(), "Performance regression detected against " + baselineFile + ":\n" + String.join("\n", regressions));
+    }
+
+    private static void compare(List<String> regressions, String metric, double expected, double actual, boolean higherIsBetter) {
+        boolean regressed = higherIsBetter ? actual < expected * (1 - TOLERANCE) : actual > expected * (1 + TOLERANCE);
+        if (regressed) {
+            regressions.add(String.format("%s: baseline=%.2f, actual=%.2f", metric, expected, actual));
+        }
+    }
+
+    private JSONObject measure(Runnable call) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            call.run();
+        }
+        LatencyHistogram latency = new LatencyHistogram();
+        long allocated = allocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            call.run();
+            latency.record(System.nanoTime() - start);
+        }
+        allocated = allocatedBytes() - allocated;
+
+        JSONObject result = new JSONObject();
+        result.put("calls", latency.getCount());
+        result.put("meanMicros", latency.getMean());
+        result.put("p50Micros", latency.getValueAtPercentile(50));
+        result.put("p99Micros", latency.getValueAtPercentile(99));
+        result.put("allocatedBytesPerCall", (double) allocated / ITERATIONS);
+        return result;
+    }
+
+    private void carinaCall(boolean log) {
+        CreateUserMethod method = new CreateUserMethod(stub.getPort());
+        method.setLogRequest(log);
+        method.setLogResponse(log);
+        method.expectResponseStatus(HttpResponseStatusType.CREATED_201);
+        method.callAPI();
+        method.validateResponse();
+    }
+
+    private void rawCall() {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + stub.getPort() + "/users").openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream os = connection.getOutputStream()) {
+                os.write(RQ_BODY.getBytes(StandardCharsets.UTF_8));
+            }
+            try (InputStream is = connection.getInputStream()) {
+                IOUtils.toString(is, StandardCharsets.UTF_8);
+            }
+            Assert.assertEquals(connection.getResponseCode(), 201);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @SuppressWarnings("restriction")
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.api.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.WriterAppender;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.qaprosoft.carina.core.foundation.api.stub.CreateUserMethod;
+import com.qaprosoft.carina.core.foundation.api.stub.UserApiStub;
+
+public class StreamingLoggingFilterTest {
+    private static final Logger LOGGER = Logger.getLogger(StreamingLoggingFilterTest.class);
+
+    private UserApiStub stub;
+
+    private StringWriter log;
+
+    private WriterAppender appender;
+
+    private File artifact;
+
+    @BeforeClass
+    public void startStub() {
+        stub = new UserApiStub();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopStub() {
+        stub.stop();
+    }
+
+    @BeforeMethod
+    public void captureLog() throws IOException {
+        log = new StringWriter();
+        appender = new WriterAppender(new PatternLayout("%m%n"), log);
+        LOGGER.addAppender(appender);
+        LOGGER.setLevel(Level.INFO);
+        artifact = File.createTempFile("api-bodies", ".log");
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void releaseLog() {
+        LOGGER.removeAppender(appender);
+        artifact.delete();
+    }
+
+    @Test
+    public void testBigBodyIsTruncatedInline() throws IOException {
+        String name = StringUtils.repeat("a", 5000) + StringUtils.repeat("z", 5000);
+        call(name, true, 100000);
+
+        String inline = log.toString();
+        Assert.assertTrue(inline.contains("Response: HTTP/1.1 201"), "Status line wasn't logged: " + inline);
+        Assert.assertTrue(inline.contains("bytes skipped"), "Body wasn't truncated: " + inline);
+        Assert.assertFalse(inline.contains(name), "Whole body was logged inline!");
+        Assert.assertTrue(inline.contains(StringUtils.repeat("z", 100)), "Body tail wasn't logged!");
+
+        String bodies = FileUtils.readFileToString(artifact, StandardCharsets.UTF_8);
+        Assert.assertTrue(bodies.contains("==== request"), "Request body wasn't saved!");
+        Assert.assertTrue(bodies.contains(name), "Response body wasn't saved completely!");
+    }
+
+    @Test
+    public void testMultibyteBodyIsCutOnCharacterBoundary() {
+        call(StringUtils.repeat("\u0436", 5000), true, 100000);
+        String inline = log.toString();
+        Assert.assertTrue(inline.contains("bytes skipped"), "Body wasn't truncated: " + inline);
+        Assert.assertFalse(inline.contains("\uFFFD"), "Character was split: " + inline);
+    }
+
+    @Test
+    public void testBodyLimit() throws IOException {
+        call(StringUtils.repeat("b", 10000), true, 1000);
+        String bodies = FileUtils.readFileToString(artifact, StandardCharsets.UTF_8);
+        Assert.assertTrue(bodies.contains("truncated"), "Body limit wasn't applied!");
+        Assert.assertFalse(bodies.contains(StringUtils.repeat("b", 1001)), "Body limit wasn't applied!");
+    }
+
+    @Test
+    public void testSuccessfulBodiesAreSkipped() {
+        call(StringUtils.repeat("c", 10000), false, 10000);
+        String inline = log.toString();
+        Assert.assertTrue(inline.contains("Response: HTTP/1.1 201"), "Status line wasn't logged: " + inline);
+        Assert.assertFalse(inline.contains("ccc"), "Body of successful call was logged!");
+        Assert.assertEquals(artifact.length(), 0, "Body of successful call was saved!");
+    }
+
+    private void call(String name, boolean logSuccessfulBodies, long bodyLimit) {
+        CreateUserMethod method = new CreateUserMethod(stub.getPort());
+        method.addProperty("name", name);
+        StreamingLoggingFilter filter = new StreamingLoggingFilter(LOGGER, true, true);
+        filter.setArtifact(artifact);
+        filter.setInlineLimit(512);
+        filter.setBodyLimit(bodyLimit);
+        filter.setLogSuccessfulBodies(logSuccessfulBodies);
+        method.getRequest().filter(filter);
+        method.callAPI();
+        method.validateResponse();
+    }
+}
@@ -16,13 +16,14 @@
 package com.qaprosoft.appcenter;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
 import java.net.URL;
-import java.nio.channels.Channels;
-import java.nio.channels.ClosedByInterruptException;
-import java.nio.channels.ReadableByteChannel;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -34,12 +35,13 @@ import org.springframework.http.RequestEntity;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestTemplate;
-import org.springframework.web.util.UriComponents;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.qaprosoft.carina.core.foundation.utils.Configuration;
 import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
+import com.qaprosoft.carina.core.foundation.utils.cache.ArtifactCache;
+import com.qaprosoft.carina.core.foundation.utils.cache.RangedDownloader;
 import com.qaprosoft.appcenter.http.resttemplate.RestTemplateBuilder;
 
 /**
@@ -54,13 +56,37 @@ public class AppCenterManager {
     private String ownerName;
     private String versionLong;
     private String versionShort;
+    private String buildId;
 
-    private static final String HOST_URL = "api.appcenter.ms";
+    private static final String HOST_URL = "https://api.appcenter.ms";
     private static final String API_APPS = "/v0.1/apps";
 
+    // max number of parallel API requests
+    private static final int MAX_THREADS = 10;
+    // max number of releases analyzed per app
+    private static final int RELEASES_LIMIT = 49;
+
     private static volatile AppCenterManager instance = null;
 
+    private final String hostUrl;
+
+    private final ThreadPoolExecutor executor;
+
+    // apps and releases listings don't change during the run, so every API response is requested only once
+    private final Map<String, CompletableFuture<JsonNode>> responses = new ConcurrentHashMap<>();
+
     private AppCenterManager() {
+        this(HOST_URL);
+    }
+
+    AppCenterManager(String hostUrl) {
+        this.hostUrl = hostUrl;
+        this.executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "appcenter-api");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
     }
 
     public static AppCenterManager getInstance() {
@@ -89,82 +115,26 @@ public class AppCenterManager {
      * @return file to the downloaded build artifact
      */
     public File getBuild(String folder, String appName, String platformName, String buildType, String version) {
-        disableRestTemplateSsl();
-
-        String buildToDownload = scanAppForBuild(getAppId(appName, platformName), buildType, version);
-
-        String fileName = folder + "/" + createFileName(appName, buildType, platformName);
-        File fileToLocate = null;
-
-        try {
-            File file = new File(folder);
-            File[] listOfFiles = file.listFiles();
-
-            if (file.list() != null) {
-                for (int i = 0; i < listOfFiles.length; ++i) {
-                    if (listOfFiles[i].isFile() && fileName.contains(listOfFiles[i].getName())) {
-                        LOGGER.info("File has been Located Locally.  File path is: " + listOfFiles[i].getAbsolutePath());
-                        fileToLocate = listOfFiles[i];
-                    }
-                }
-            }
-        } catch (Exception ex) {
-            LOGGER.error(String.format("Error Attempting to Look for Existing File: %s", ex.getMessage()), ex);
+        if (restTemplate == null) {
+            disableRestTemplateSsl();
         }
 
-        if (fileToLocate == null) {
-            try {
-                LOGGER.debug("Beginning Transfer of AppCenter Build");
-                URL downloadLink = new URL(buildToDownload);
-                int retryCount = 0;
-                boolean retry = true;
-                while (retry && retryCount <= 5) {
-                    retry = downloadBuild(fileName, downloadLink);
-                    retryCount = retryCount + 1;
-                }
-                LOGGER.debug(String.format("AppCenter Build (%s) was retrieved", fileName));
-            } catch (Exception ex) {
-                LOGGER.error(String.format("Error Thrown When Attempting to Transfer AppCenter Build (%s)", ex.getMessage()), ex);
-            }
-        } else {
-            LOGGER.info("Preparing to use local version of AppCenter Build...");
-        }
-
-        return new File(fileName);
-    }
+        String buildToDownload = scanAppForBuild(getAppId(appName, platformName), buildType, version);
+        String fileName = createFileName(appName, buildType, platformName);
 
-    /**
-     *
-     * @param fileName will be the name of the downloaded file.
-     * @param downloadLink will be the URL to retrieve the build from.
-     * @return brings back a true/false on whether or not the build was successfully downloaded.
-     * @throws IOException throws a non Interruption Exception up.
-     */
-    private boolean downloadBuild(String fileName, URL downloadLink) throws IOException {
-        ReadableByteChannel readableByteChannel = null;
-        FileOutputStream fos = null;
-        try {
+        // builds are immutable so release id is enough to reuse artifact downloaded by any previous run on this host
+        File build = ArtifactCache.getInstance().get(String.format("appcenter://%s/%s", ownerName, buildId), fileName, target -> {
             if (Thread.currentThread().isInterrupted()) {
                 LOGGER.debug(String.format("Current Thread (%s) is interrupted, clearing interruption.", Thread.currentThread().getId()));
                 Thread.interrupted();
             }
-            readableByteChannel = Channels.newChannel(downloadLink.openStream());
-            fos = new FileOutputStream(fileName);
-            fos.getChannel().transferFrom(readableByteChannel, 0, Long.MAX_VALUE);
-            LOGGER.info("Successfully Transferred...");
-            return false;
-        } catch (ClosedByInterruptException ie1) {
-            LOGGER.info("Retrying....");
-            LOGGER.error("Getting Error: " + ie1.getMessage(), ie1);
-            return true;
-        } finally {
-            if (fos != null) {
-                fos.close();
-            }
-            if (readableByteChannel != null) {
-                readableByteChannel.close();
-            }
-        }
+            LOGGER.debug("Beginning Transfer of AppCenter Build");
+            RangedDownloader.download(new URL(buildToDownload), target, Configuration.getInt(Parameter.ARTIFACT_DOWNLOAD_THREADS),
+                    RangedDownloader.DEFAULT_CHUNK_SIZE);
+            LOGGER.debug(String.format("AppCenter Build (%s) was retrieved", fileName));
+        });
+
+        return ArtifactCache.materialize(build, new File(folder, fileName));
     }
 
     /**
@@ -175,13 +145,9 @@ public class AppCenterManager {
      */
     private Map<String, String> getAppId(String appName, String platformName) {
 
-        Map<String, String> appMap = new HashMap<>();
+        Map<String, CompletableFuture<String>> buildDates = new LinkedHashMap<>();
 
-        RequestEntity<String> retrieveApps = buildRequestEntity(
-                HOST_URL,
-                API_APPS,
-                HttpMethod.GET);
-        JsonNode appResults = restTemplate.exchange(retrieveApps, JsonNode.class).getBody();
+        JsonNode appResults = await(fetch(API_APPS, null));
         LOGGER.info("AppCenter Searching For App: " + appName);
         LOGGER.debug("AppCenter JSON Response: " + appResults);
 
@@ -190,10 +156,14 @@ public class AppCenterManager {
                 ownerName = node.get("owner").get("name").asText();
                 String app = node.get("name").asText();
                 LOGGER.info(String.format("Found Owner: %s App: %s", ownerName, app));
-                appMap.put(app, getLatestBuildDate(app, node.get("updated_at").asText()));
+                // releases of all found apps are requested in parallel
+                buildDates.put(app, getLatestBuildDate(app, node.get("updated_at").asText()));
             }
         }
 
+        Map<String, String> appMap = new HashMap<>();
+        buildDates.forEach((app, date) -> appMap.put(app, await(date)));
+
         if (!appMap.isEmpty()) {
             return appMap.entrySet()
                     .stream()
@@ -217,36 +187,34 @@ public class AppCenterManager {
 
         for (String currentApp : apps.keySet()) {
             LOGGER.info("Scanning App " + currentApp);
-            MultiValueMap<String, String> queryParams = new LinkedMultiValueMap<>();
-            queryParams.add("published_only", "true");
-
-            RequestEntity<String> retrieveList = buildRequestEntity(
-                    HOST_URL,
-                    String.format("%s/%s/%s/releases", API_APPS, ownerName, currentApp),
-                    queryParams,
-                    HttpMethod.GET);
-            JsonNode buildList = restTemplate.exchange(retrieveList, JsonNode.class).getBody();
+            JsonNode buildList = await(fetchReleases(currentApp));
             LOGGER.debug("Available Builds JSON: " + buildList);
 
-            if (buildList.size() > 0) {
-                int buildLimiter = 0;
-                for (JsonNode build : buildList) {
-
-                    buildLimiter += 1;
-                    if (buildLimiter >=50) {
-                        break;
-                    }
+            List<JsonNode> builds = new ArrayList<>();
+            for (JsonNode build : buildList) {
+                if (builds.size() >= RELEASES_LIMIT) {
+                    break;
+                }
+                builds.add(build);
+            }
 
-                    String latestBuildNumber = build.get("id").asText();
-                    versionShort = build.get("short_version").asText();
-                    versionLong = build.get("version").asText();
+            // release details are requested in parallel by batches, the first matching release in listing order wins
+            for (int from = 0; from < builds.size(); from += MAX_THREADS) {
+                int to = Math.min(builds.size(), from + MAX_THREADS);
+                List<CompletableFuture<JsonNode>> details = new ArrayList<>();
+                for (int i = from; i < to; i++) {
+                    details.add(fetch(String.format("%s/%s/%s/releases/%s", API_APPS, ownerName, currentApp, builds.get(i).get("id").asText()), null));
+                }
 
-                    RequestEntity<String> retrieveBuildUrl = buildRequestEntity(
-                            HOST_URL,
-                            String.format("%s/%s/%s/releases/%s", API_APPS, ownerName, currentApp, latestBuildNumber),
-                            HttpMethod.GET);
-                    JsonNode appBuild = restTemplate.exchange(retrieveBuildUrl, JsonNode.class).getBody();
+                for (int i = from; i < to; i++) {
+                    JsonNode build = builds.get(i);
+                    JsonNode appBuild = await(details.get(i - from));
                     if (checkBuild(version, appBuild) && (checkTitleForCorrectPattern(buildType.toLowerCase(), appBuild) || checkNotesForCorrectBuild(buildType.toLowerCase(), appBuild))) {
+                        String latestBuildNumber = build.get("id").asText();
+                        versionShort = build.get("short_version").asText();
+                        versionLong = build.get("version").asText();
+                        buildId = currentApp + "/" + latestBuildNumber;
+
                         LOGGER.debug("Print Build Info: " + appBuild);
                         LOGGER.info(
                                 String.format(
@@ -269,20 +237,43 @@ public class AppCenterManager {
      * @param appUpdatedAt passing in of a backup date value if the app we look at doesn't have a build associated to it.
      * @return the date value to be used in sorting.
      */
-    private String getLatestBuildDate(String app, String appUpdatedAt) {
+    private CompletableFuture<String> getLatestBuildDate(String app, String appUpdatedAt) {
+        return fetchReleases(app).thenApply(buildList -> buildList.size() > 0 ? buildList.get(0).get("uploaded_at").asText() : appUpdatedAt);
+    }
+
+    private CompletableFuture<JsonNode> fetchReleases(String app) {
         MultiValueMap<String, String> queryParams = new LinkedMultiValueMap<>();
         queryParams.add("published_only", "true");
+        return fetch(String.format("%s/%s/%s/releases", API_APPS, ownerName, app), queryParams);
+    }
 
-        RequestEntity<String> retrieveList = buildRequestEntity(
-                HOST_URL,
-                String.format("%s/%s/%s/releases", API_APPS, ownerName, app),
-                queryParams,
-                HttpMethod.GET);
-        JsonNode buildList = restTemplate.exchange(retrieveList, JsonNode.class).getBody();
-        if (buildList.size() > 0) {
-            return buildList.get(0).get("uploaded_at").asText();
+    /**
+     * Asynchronous cached GET request to AppCenter API.
+     * @param path API path.
+     * @param queryParams optional query params.
+     * @return response body.
+     */
+    private CompletableFuture<JsonNode> fetch(String path, MultiValueMap<String, String> queryParams) {
+        RequestEntity<String> request = buildRequestEntity(path, queryParams, HttpMethod.GET);
+        String uri = request.getUrl().toString();
+        CompletableFuture<JsonNode> response = responses.computeIfAbsent(uri,
+                key -> CompletableFuture.supplyAsync(() -> restTemplate.exchange(request, JsonNode.class).getBody(), executor));
+        // failed requests are not cached
+        response.whenComplete((body, e) -> {
+            if (e != null) {
+                responses.remove(uri, response);
+            }
+        });
+        return response;
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
         }
-        return appUpdatedAt;
     }
 
     private boolean checkBuild(String version, JsonNode node) {
@@ -297,30 +288,15 @@ public class AppCenterManager {
     }
 
     @SuppressWarnings({ "rawtypes", "unchecked" })
-    private RequestEntity<String> buildRequestEntity(String hostUrl, String path,
-                                                     HttpMethod httpMethod) {
-
-        UriComponents uriComponents = UriComponentsBuilder.newInstance()
-                .scheme("https")
-                .host(hostUrl)
-                .path(path)
-                .build();
-
-        return new RequestEntity(setHeaders(), httpMethod, uriComponents.toUri());
-    }
-
-    @SuppressWarnings({ "rawtypes", "unchecked" })
-    private RequestEntity<String> buildRequestEntity(String hostUrl, String path,
+    private RequestEntity<String> buildRequestEntity(String path,
                                                      MultiValueMap<String, String> listQueryParams, HttpMethod httpMethod) {
 
-        UriComponents uriComponents = UriComponentsBuilder.newInstance()
-                .scheme("https")
-                .host(hostUrl)
-                .path(path)
-                .queryParams(listQueryParams)
-                .build();
+        UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(hostUrl).path(path);
+        if (listQueryParams != null) {
+            builder.queryParams(listQueryParams);
+        }
 
-        return new RequestEntity(setHeaders(), httpMethod, uriComponents.toUri());
+        return new RequestEntity(setHeaders(), httpMethod, builder.build().toUri());
     }
 
     private HttpHeaders setHeaders() {
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.appcenter;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class AppCenterManagerTest {
+
+    private static final String FOLDER = "target/appcenter";
+
+    private AppCenterStubServer server;
+
+    @BeforeMethod
+    public void start() throws IOException {
+        server = new AppCenterStubServer();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void stop() {
+        server.close();
+    }
+
+    @Test
+    public void testLatestBuildIsDownloaded() throws IOException {
+        File build = new AppCenterManager(server.getUrl()).getBuild(FOLDER, "carina-demo", "android", "qa.debug", "latest");
+
+        // releases are listed from the newest one, #12 is prod build
+        Assert.assertEquals(build.getName(), "carina-demo.qa.debug.1.0.11.11.apk");
+        Assert.assertEquals(build.getParentFile().getAbsoluteFile(), new File(FOLDER).getAbsoluteFile());
+        Assert.assertEquals(FileUtils.readFileToByteArray(build), AppCenterStubServer.getBuild("/download/Carina-Demo-Android/11.apk"));
+    }
+
+    @Test
+    public void testApiResponsesAreCached() {
+        AppCenterManager manager = new AppCenterManager(server.getUrl());
+        manager.getBuild(FOLDER, "carina-demo", "android", "prod.release", "latest");
+        int requests = server.getApiRequests();
+        manager.getBuild(FOLDER, "carina-demo", "android", "qa.debug", "1.0.9");
+
+        Assert.assertEquals(server.getApiRequests(), requests, "API responses are requested again!");
+        Assert.assertEquals(server.getRequests("/v0.1/apps"), 1);
+        // listing is used both for apps ordering and for build scanning
+        Assert.assertEquals(server.getRequests("/v0.1/apps/qaprosoft/Carina-Demo-Android/releases"), 1);
+        Assert.assertEquals(server.getRequests("/v0.1/apps/qaprosoft/Carina-Demo-Android-Legacy/releases"), 1);
+        Assert.assertEquals(server.getRequests("/v0.1/apps/qaprosoft/Carina-Demo-Android/releases/12"), 1);
+    }
+
+    @Test
+    public void testReleasesAreScannedInParallel() throws IOException {
+        server.setDelay(200);
+        long start = System.currentTimeMillis();
+        File build = new AppCenterManager(server.getUrl()).getBuild(FOLDER, "carina-demo", "android", "qa.debug", "1.0.1");
+        long duration = System.currentTimeMillis() - start;
+
+        Assert.assertEquals(build.getName(), "carina-demo.qa.debug.1.0.1.1.apk");
+        Assert.assertEquals(FileUtils.readFileToByteArray(build), AppCenterStubServer.getBuild("/download/Carina-Demo-Android/1.apk"));
+        // the oldest release is the last one: 1 apps + 2 releases + 12 details requests are 3 seconds if executed one by one
+        Assert.assertEquals(server.getApiRequests(), 15);
+        Assert.assertTrue(server.getMaxActive() > 1, "API requests are not executed in parallel!");
+        Assert.assertTrue(duration < 2000, "Build resolution took too long: " + duration);
+    }
+
+    @Test
+    public void testUnknownVersionIsReported() {
+        try {
+            new AppCenterManager(server.getUrl()).getBuild(FOLDER, "carina-demo", "android", "qa.debug", "2.0.0");
+            Assert.fail("Unknown version is not reported!");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("Unable to find build to download, version provided (2.0.0)"), e.getMessage());
+        }
+        // every release of both android apps is analyzed
+        Assert.assertEquals(server.getApiRequests(), 1 + 2 + 12 + 3);
+    }
+}
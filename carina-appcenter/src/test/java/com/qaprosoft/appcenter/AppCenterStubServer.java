@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.appcenter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local AppCenter API stub which serves recorded responses from appcenter test resources folder.
+ */
+public class AppCenterStubServer implements Closeable {
+
+    private static final String API_APPS = "/v0.1/apps";
+
+    private final HttpServer server;
+
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+
+    private final AtomicInteger active = new AtomicInteger();
+
+    private final AtomicInteger maxActive = new AtomicInteger();
+
+    private volatile long delay;
+
+    public AppCenterStubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Delay of every API response in ms.
+     * 
+     * @param delay long
+     */
+    public void setDelay(long delay) {
+        this.delay = delay;
+    }
+
+    public int getRequests(String path) {
+        AtomicInteger count = requests.get(path);
+        return count == null ? 0 : count.get();
+    }
+
+    public int getApiRequests() {
+        return requests.entrySet().stream().filter(e -> e.getKey().startsWith(API_APPS)).mapToInt(e -> e.getValue().get()).sum();
+    }
+
+    public int getMaxActive() {
+        return maxActive.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        requests.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+        maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+        try {
+            if (path.startsWith("/download/")) {
+                send(exchange, "application/vnd.android.package-archive", getBuild(path));
+                return;
+            }
+            if (!exchange.getRequestHeaders().containsKey("x-api-token")) {
+                send(exchange, 401, "application/json", "{\"code\":\"Unauthorized\"}".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            pause(delay);
+
+            // /v0.1/apps, /v0.1/apps/{owner}/{app}/releases, /v0.1/apps/{owner}/{app}/releases/{id}
+            String[] segments = path.substring(API_APPS.length()).split("/");
+            String resource;
+            if (segments.length <= 1) {
+                resource = "apps.json";
+            } else if (segments.length == 4) {
+                resource = segments[2] + "/releases.json";
+            } else {
+                resource = segments[2] + "/release_" + segments[4] + ".json";
+            }
+            InputStream is = getClass().getResourceAsStream("/appcenter/" + resource);
+            if (is == null) {
+                send(exchange, 404, "application/json", "{\"code\":\"NotFound\"}".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            String body;
+            try {
+                body = IOUtils.toString(is, StandardCharsets.UTF_8).replace("${host}", getUrl());
+            } finally {
+                is.close();
+            }
+            send(exchange, "application/json", body.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    /**
+     * Content of the build served by download url.
+     * 
+     * @param path download path
+     * @return byte[]
+     */
+    public static byte[] getBuild(String path) {
+        return ("binary of " + path).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void send(HttpExchange exchange, String contentType, byte[] body) throws IOException {
+        send(exchange, 200, contentType, body);
+    }
+
+    private static void send(HttpExchange exchange, int code, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().add("Content-Length", String.valueOf(body.length));
+            exchange.sendResponseHeaders(code, -1);
+        } else {
+            exchange.sendResponseHeaders(code, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        }
+        exchange.close();
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -16,8 +16,8 @@
 package com.qaprosoft.amazon;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.log4j.Logger;
@@ -25,30 +25,28 @@ import org.apache.log4j.Logger;
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.HttpMethod;
-import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
 import com.amazonaws.auth.SystemPropertiesCredentialsProvider;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3Client;
 import com.amazonaws.services.s3.model.DeleteObjectRequest;
 import com.amazonaws.services.s3.model.GeneratePresignedUrlRequest;
 import com.amazonaws.services.s3.model.GetObjectRequest;
-import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
-import com.amazonaws.services.s3.transfer.Download;
-import com.amazonaws.services.s3.transfer.TransferManager;
 import com.qaprosoft.carina.core.foundation.commons.SpecialKeywords;
 import com.qaprosoft.carina.core.foundation.crypto.CryptoTool;
 import com.qaprosoft.carina.core.foundation.utils.Configuration;
 import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
-import com.qaprosoft.carina.core.foundation.utils.common.CommonUtils;
+import com.qaprosoft.carina.core.foundation.utils.cache.ArtifactCache;
+import com.qaprosoft.carina.core.foundation.utils.cache.RangedDownloader;
 
 public class AmazonS3Manager {
     private static final Logger LOGGER = Logger.getLogger(AmazonS3Manager.class);
     private static volatile AmazonS3Manager instance = null;
     private static AmazonS3 s3client = null;
+    private volatile S3ListingIndex listingIndex;
 
     private AmazonS3Manager() {
     }
@@ -291,31 +289,8 @@ public class AmazonS3Manager {
             throw new RuntimeException("pattern is null!");
         }
 
-        S3ObjectSummary latestBuild = null;
-
-        ObjectListing objBuilds = s3client.listObjects(bucket, key);
-
-        int i = 0;
-        int limit = 100;
-        // by default S3 return only 1000 objects summary so need while cycle here
-        do {
-            LOGGER.info("looking for s3 artifact using iteration #" + i);
-
-            for (S3ObjectSummary obj : objBuilds.getObjectSummaries()) {
-                LOGGER.debug("Existing S3 artifact: " + obj.getKey());
-                Matcher matcher = pattern.matcher(obj.getKey());
-                if (matcher.find()) {
-                    if (latestBuild == null) {
-                        latestBuild = obj;
-                    }
-
-                    if (obj.getLastModified().after(latestBuild.getLastModified())) {
-                        latestBuild = obj;
-                    }
-                }
-            }
-            objBuilds = s3client.listNextBatchOfObjects(objBuilds);
-        } while (objBuilds.isTruncated() && ++i < limit);
+        LOGGER.info(String.format("looking for s3 artifact in %s/%s by pattern: %s", bucket, key, pattern));
+        S3ObjectSummary latestBuild = getListingIndex().getLatest(bucket, key, pattern);
 
         if (latestBuild == null) {
             LOGGER.error("Unable to find S3 build artifact by pattern: " + pattern);
@@ -325,6 +300,23 @@ public class AmazonS3Manager {
         return latestBuild;
     }
 
+    /**
+     * Index of bucket listings reused by artifact lookups during s3_index_ttl_sec.
+     * 
+     * @return S3ListingIndex
+     */
+    public S3ListingIndex getListingIndex() {
+        if (listingIndex == null) {
+            synchronized (this) {
+                if (listingIndex == null) {
+                    listingIndex = new S3ListingIndex(s3client, S3ListingIndex.DEFAULT_THREADS, ArtifactCache.getInstance().getDir(),
+                            Configuration.getLong(Parameter.S3_INDEX_TTL_SEC) * 1000);
+                }
+            }
+        }
+        return listingIndex;
+    }
+
     /**
      * Method to download file from s3 to local file system
      * 
@@ -333,7 +325,13 @@ public class AmazonS3Manager {
      * @param file (local file name)
      */
     public void download(final String bucketName, final String key, final File file) {
-        download(bucketName, key, file, 10);
+        LOGGER.info("App will be downloaded from s3.");
+        LOGGER.info(String.format("[Bucket name: %s] [Key: %s] [File: %s]", bucketName, key, file.getAbsolutePath()));
+        try {
+            download(bucketName, key, s3client.getObjectMetadata(bucketName, key).getContentLength(), file);
+        } catch (AmazonClientException | IOException e) {
+            throw new RuntimeException("File wasn't downloaded from s3. See log: ".concat(e.getMessage()), e);
+        }
     }
 
     /**
@@ -343,29 +341,43 @@ public class AmazonS3Manager {
      * @param key (example: android/apkFolder/ApkName.apk)
      * @param file (local file name)
      * @param pollingInterval (polling interval in sec for S3 download status determination)
+     * @deprecated download is not polled anymore, use {@link #download(String, String, File)}
      */
+    @Deprecated
     public void download(final String bucketName, final String key, final File file, long pollingInterval) {
-        LOGGER.info("App will be downloaded from s3.");
-        LOGGER.info(String.format("[Bucket name: %s] [Key: %s] [File: %s]", bucketName, key, file.getAbsolutePath()));
-        DefaultAWSCredentialsProviderChain credentialProviderChain = new DefaultAWSCredentialsProviderChain();
-        TransferManager tx = new TransferManager(
-                credentialProviderChain.getCredentials());
-        Download appDownload = tx.download(bucketName, key, file);
-        try {
-            LOGGER.info("Transfer: " + appDownload.getDescription());
-            LOGGER.info("	State: " + appDownload.getState());
-            LOGGER.info("	Progress: ");
-            // You can poll your transfer's status to check its progress
-            while (!appDownload.isDone()) {
-                LOGGER.info("		transferred: " + (int) (appDownload.getProgress().getPercentTransferred() + 0.5) + "%");
-                CommonUtils.pause(pollingInterval);
+        download(bucketName, key, file);
+    }
+
+    /**
+     * Method to download file from s3 into the host-wide artifact cache. Artifact is identified by bucket, key and
+     * ETag so the same build is downloaded only once per host even by parallel processes.
+     * 
+     * @param bucketName AWS S3 bucket name
+     * @param key (example: android/apkFolder/ApkName.apk)
+     * @return cached File
+     */
+    public File downloadToCache(final String bucketName, final String key) {
+        ObjectMetadata metadata = s3client.getObjectMetadata(bucketName, key);
+        String cacheKey = String.format("s3://%s/%s#%s", bucketName, key, metadata.getETag());
+        String fileName = key.substring(key.lastIndexOf('/') + 1);
+        return ArtifactCache.getInstance().get(cacheKey, fileName, target -> {
+            LOGGER.info(String.format("[Bucket name: %s] [Key: %s] [Size: %d] will be downloaded from s3", bucketName, key,
+                    metadata.getContentLength()));
+            download(bucketName, key, metadata.getContentLength(), target);
+        });
+    }
+
+    private void download(final String bucketName, final String key, long length, final File file) throws IOException {
+        long start = System.currentTimeMillis();
+        RangedDownloader.download((from, to) -> {
+            try {
+                return s3client.getObject(new GetObjectRequest(bucketName, key).withRange(from, to)).getObjectContent();
+            } catch (AmazonClientException e) {
+                throw new IOException(e.getMessage(), e);
             }
-            LOGGER.info("	State: " + appDownload.getState());
-            // appDownload.waitForCompletion();
-        } catch (AmazonClientException e) {
-            throw new RuntimeException("File wasn't downloaded from s3. See log: ".concat(e.getMessage()));
-        }
-        // tx.shutdownNow();
+        }, length, file, Configuration.getInt(Parameter.ARTIFACT_DOWNLOAD_THREADS), RangedDownloader.DEFAULT_CHUNK_SIZE);
+        LOGGER.info(String.format("Downloaded %d bytes from s3 in %d ms: %s", length, System.currentTimeMillis() - start,
+                file.getAbsolutePath()));
     }
 
     /**
@@ -0,0 +1,353 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.amazon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.Logger;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+/**
+ * S3ListingIndex - time-bounded index of S3 listings per bucket and prefix used to find build artifacts.
+ * Listing is narrowed by the literal prefix of the artifact pattern, folders of the first level are used as boundaries
+ * of key ranges which are paged in parallel. Listings are kept in memory and optionally on disk, so parallel suites on
+ * the same host reuse them until expiration.
+ */
+public class S3ListingIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(S3ListingIndex.class);
+
+    public static final int DEFAULT_THREADS = 8;
+
+    private static final String DELIMITER = "/";
+
+    private static final String REGEX_META = "[](){}.*+?^$|\\";
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final AmazonS3 s3;
+
+    private final int threads;
+
+    private final File dir;
+
+    private final long ttl;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Map<String, Listing> listings = new ConcurrentHashMap<>();
+
+    /**
+     * @param s3 AmazonS3 client
+     * @param threads - max number of parallel list requests
+     * @param dir - folder to persist listings, null to keep them in memory only
+     * @param ttl - listing expiration time in ms, listings are not reused if it is not positive
+     */
+    public S3ListingIndex(AmazonS3 s3, int threads, File dir, long ttl) {
+        this.s3 = s3;
+        this.threads = Math.max(1, threads);
+        this.dir = dir;
+        this.ttl = ttl;
+        this.executor = new ThreadPoolExecutor(this.threads, this.threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "s3-list");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Find the most recently modified object which key matches pattern.
+     * 
+     * @param bucket - S3 bucket name
+     * @param key - S3 storage path to search in, example: android/MyProject
+     * @param pattern - pattern to find single build artifact, example: .*prod-google-release.*
+     * @return S3ObjectSummary or null if nothing matches
+     */
+    public S3ObjectSummary getLatest(String bucket, String key, Pattern pattern) {
+        String prefix = getPrefix(key, pattern);
+        S3ObjectSummary latest = null;
+        for (S3ObjectSummary obj : list(bucket, prefix)) {
+            if (pattern.matcher(obj.getKey()).find() && (latest == null || obj.getLastModified().after(latest.getLastModified()))) {
+                latest = obj;
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * All objects which keys start with prefix.
+     * 
+     * @param bucket - S3 bucket name
+     * @param prefix - keys prefix
+     * @return unmodifiable list of S3ObjectSummary
+     */
+    public List<S3ObjectSummary> list(String bucket, String prefix) {
+        String id = bucket + DELIMITER + prefix;
+        return listings.compute(id, (k, cached) -> cached != null && cached.isActual() ? cached : load(bucket, prefix)).objects;
+    }
+
+    /**
+     * Key prefix to list: pattern which starts with the searched path (e.g. android/develop/build-.*\.apk inside
+     * android/develop) describes the whole key, so only keys starting with its literal part can match.
+     * 
+     * @param key - S3 storage path to search in
+     * @param pattern - artifact pattern
+     * @return prefix
+     */
+    static String getPrefix(String key, Pattern pattern) {
+        String literal = getLiteralPrefix(pattern.pattern());
+        if (key == null) {
+            key = "";
+        }
+        if (literal.startsWith(key) && (!key.isEmpty() || pattern.pattern().startsWith("^"))) {
+            return literal;
+        }
+        return key;
+    }
+
+    /**
+     * Literal beginning of the regular expression.
+     * 
+     * @param regex String
+     * @return literal prefix, empty if regex doesn't start with literal or contains alternatives
+     */
+    static String getLiteralPrefix(String regex) {
+        if (regex.contains("|")) {
+            return "";
+        }
+        StringBuilder literal = new StringBuilder();
+        int i = regex.startsWith("^") ? 1 : 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\' && i + 1 < regex.length() && !Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                literal.append(regex.charAt(i + 1));
+                i += 2;
+                continue;
+            }
+            if (REGEX_META.indexOf(c) >= 0) {
+                // previous char is optional
+                if ((c == '?' || c == '*' || c == '{') && literal.length() > 0) {
+                    literal.setLength(literal.length() - 1);
+                }
+                break;
+            }
+            literal.append(c);
+            i++;
+        }
+        return literal.toString();
+    }
+
+    private Listing load(String bucket, String prefix) {
+        File file = getFile(bucket, prefix);
+        if (file != null && file.isFile()) {
+            try {
+                Listing listing = read(file, bucket);
+                if (listing.isActual()) {
+                    LOGGER.debug(String.format("Reusing s3 listing of %s/%s: %d objects", bucket, prefix, listing.objects.size()));
+                    return listing;
+                }
+            } catch (IOException e) {
+                LOGGER.debug("Unable to read s3 listing index " + file.getAbsolutePath() + ": " + e.getMessage());
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        Listing listing = new Listing(start, Collections.unmodifiableList(listAll(bucket, prefix)));
+        LOGGER.info(String.format("Listed %d s3 objects in %s/%s in %d ms", listing.objects.size(), bucket, prefix,
+                System.currentTimeMillis() - start));
+        if (file != null && ttl > 0) {
+            try {
+                write(file, listing);
+            } catch (IOException e) {
+                LOGGER.debug("Unable to save s3 listing index " + file.getAbsolutePath() + ": " + e.getMessage());
+            }
+        }
+        return listing;
+    }
+
+    private List<S3ObjectSummary> listAll(String bucket, String prefix) {
+        // the first level is listed with delimiter, its folders split key space into ranges listed in parallel
+        List<S3ObjectSummary> objects = new ArrayList<>();
+        List<String> folders = new ArrayList<>();
+        ListObjectsV2Request request = new ListObjectsV2Request().withBucketName(bucket).withPrefix(prefix).withDelimiter(DELIMITER);
+        ListObjectsV2Result result;
+        do {
+            result = s3.listObjectsV2(request);
+            objects.addAll(result.getObjectSummaries());
+            folders.addAll(result.getCommonPrefixes());
+            request.setContinuationToken(result.getNextContinuationToken());
+        } while (result.isTruncated());
+
+        if (folders.isEmpty()) {
+            return objects;
+        }
+
+        int ranges = Math.min(threads, folders.size());
+        List<Future<List<S3ObjectSummary>>> futures = new ArrayList<>(ranges);
+        for (int i = 0; i < ranges; i++) {
+            String from = folders.get(i * folders.size() / ranges);
+            String to = i + 1 < ranges ? folders.get((i + 1) * folders.size() / ranges) : null;
+            futures.add(executor.submit(() -> listRange(bucket, prefix, from, to)));
+        }
+        try {
+            for (Future<List<S3ObjectSummary>> future : futures) {
+                objects.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("S3 listing was interrupted", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        }
+        return objects;
+    }
+
+    /**
+     * Objects inside folders from 'from' (inclusive) till 'to' (exclusive).
+     */
+    private List<S3ObjectSummary> listRange(String bucket, String prefix, String from, String to) {
+        List<S3ObjectSummary> objects = new ArrayList<>();
+        // keys inside the folder are greater than the folder itself
+        ListObjectsV2Request request = new ListObjectsV2Request().withBucketName(bucket).withPrefix(prefix).withStartAfter(from);
+        ListObjectsV2Result result;
+        do {
+            result = s3.listObjectsV2(request);
+            for (S3ObjectSummary obj : result.getObjectSummaries()) {
+                if (to != null && obj.getKey().compareTo(to) >= 0) {
+                    return objects;
+                }
+                objects.add(obj);
+            }
+            request.setContinuationToken(result.getNextContinuationToken());
+        } while (result.isTruncated());
+        return objects;
+    }
+
+    private File getFile(String bucket, String prefix) {
+        if (dir == null) {
+            return null;
+        }
+        return new File(dir, "s3-" + hash(bucket + DELIMITER + prefix) + ".index");
+    }
+
+    private Listing read(File file, String bucket) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unsupported index format");
+            }
+            long created = in.readLong();
+            int size = in.readInt();
+            List<S3ObjectSummary> objects = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                S3ObjectSummary obj = new S3ObjectSummary();
+                obj.setBucketName(bucket);
+                obj.setKey(in.readUTF());
+                obj.setLastModified(new Date(in.readLong()));
+                obj.setSize(in.readLong());
+                obj.setETag(in.readUTF());
+                obj.setStorageClass(in.readUTF());
+                objects.add(obj);
+            }
+            return new Listing(created, Collections.unmodifiableList(objects));
+        }
+    }
+
+    private void write(File file, Listing listing) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create folder " + dir.getAbsolutePath());
+        }
+        // written into temporary file and moved, so concurrent readers never see partial index
+        File tmp = new File(dir, file.getName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(listing.created);
+                out.writeInt(listing.objects.size());
+                for (S3ObjectSummary obj : listing.objects) {
+                    out.writeUTF(obj.getKey());
+                    out.writeLong(obj.getLastModified() == null ? 0 : obj.getLastModified().getTime());
+                    out.writeLong(obj.getSize());
+                    out.writeUTF(obj.getETag() == null ? "" : obj.getETag());
+                    out.writeUTF(obj.getStorageClass() == null ? "" : obj.getStorageClass());
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    private static String hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private class Listing {
+
+        private final long created;
+
+        private final List<S3ObjectSummary> objects;
+
+        private Listing(long created, List<S3ObjectSummary> objects) {
+            this.created = created;
+            this.objects = objects;
+        }
+
+        private boolean isActual() {
+            return ttl > 0 && System.currentTimeMillis() - created < ttl;
+        }
+    }
+}
@@ -16,18 +16,17 @@
 package com.qaprosoft.amazon.client;
 
 import java.io.File;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 
 import org.apache.log4j.Logger;
 
+import com.qaprosoft.amazon.AmazonS3Manager;
 import com.qaprosoft.carina.core.foundation.utils.Configuration;
+import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
 import com.qaprosoft.zafira.client.ZafiraSingleton;
 import com.qaprosoft.zafira.models.dto.aws.FileUploadType.Type;
 
@@ -35,8 +34,27 @@ public class AmazonS3Client {
 
     private static final Logger LOGGER = Logger.getLogger(AmazonS3Client.class);
 
-    private static final ExecutorService executorService = Executors.newFixedThreadPool(50);
-    private static final DateFormat DATE_FORMAT = new SimpleDateFormat("MM-dd-yyyy");
+    private static final int DEFAULT_UPLOAD_THREADS = 10;
+    private static final int DEFAULT_PART_SIZE_MB = 16;
+    private static final int UPLOAD_ATTEMPTS = 3;
+    private static final long UPLOAD_BACKOFF = 1000;
+
+    // DateTimeFormatter is thread-safe unlike shared SimpleDateFormat which corrupted concurrently generated paths
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MM-dd-yyyy");
+
+    private static final String uploadBucket = Configuration.get(Parameter.S3_UPLOAD_BUCKET);
+    private static final S3UploadEngine engine = createEngine();
+
+    private static S3UploadEngine createEngine() {
+        int threads = Configuration.isNull(Parameter.S3_UPLOAD_THREADS) ? DEFAULT_UPLOAD_THREADS
+                : Configuration.getInt(Parameter.S3_UPLOAD_THREADS);
+        long partSizeMb = Configuration.isNull(Parameter.S3_UPLOAD_PART_SIZE_MB) ? DEFAULT_PART_SIZE_MB
+                : Configuration.getLong(Parameter.S3_UPLOAD_PART_SIZE_MB);
+        long partSize = Math.max(S3UploadEngine.MIN_PART_SIZE, partSizeMb * 1024 * 1024);
+        // direct uploads use carina S3 credentials, otherwise Zafira client uploads into its storage
+        return new S3UploadEngine(uploadBucket.isEmpty() ? null : AmazonS3Manager.getInstance().getClient(), Math.max(1, threads),
+                partSize, UPLOAD_ATTEMPTS, UPLOAD_BACKOFF);
+    }
 
     public static Optional<CompletableFuture<String>> upload(File file) {
         return upload(file, () -> {}, link -> {}, Type.COMMON);
@@ -65,22 +83,40 @@ public class AmazonS3Client {
     
     public static Optional<CompletableFuture<String>> upload(File file, Runnable preparedAction, Consumer<String> callback, Type fileType) {
         preparedAction.run();
-        return Optional.ofNullable(CompletableFuture.supplyAsync(() -> {
-            String url = null;
+        int expiresIn = Configuration.getInt(Configuration.Parameter.ARTIFACTS_EXPIRATION_SECONDS);
+        LOGGER.debug("Uploading to AWS: " + file.getName() + ". Expires in " + expiresIn + " seconds.");
+
+        CompletableFuture<String> upload;
+        if (uploadBucket.isEmpty()) {
+            String path = String.format(fileType.getPath() + "/%s/", LocalDate.now().format(DATE_FORMAT));
+            upload = engine.submit(file.getName(), file.length(),
+                    () -> ZafiraSingleton.INSTANCE.getClient().uploadFile(file, expiresIn, path));
+        } else {
+            upload = engine.upload(uploadBucket, S3UploadEngine.generateKey(fileType.getPath(), file), file)
+                    .thenApply(key -> AmazonS3Manager.getInstance().generatePreSignUrl(uploadBucket, key, expiresIn * 1000L).toString());
+        }
+
+        return Optional.ofNullable(upload.thenApply(url -> {
+            LOGGER.debug("Uploaded to AWS: " + file.getName() + "; " + engine);
             try {
-                int expiresIn = Configuration.getInt(Configuration.Parameter.ARTIFACTS_EXPIRATION_SECONDS);
-                LOGGER.debug("Uploading to AWS: " + file.getName() + ". Expires in " + expiresIn + " seconds.");
-                url = ZafiraSingleton.INSTANCE.getClient().uploadFile(file, expiresIn, String.format(fileType.getPath() + "/%s/", DATE_FORMAT.format(new Date())));
-                LOGGER.debug("Uploaded to AWS: " + file.getName());
                 callback.accept(url);
                 LOGGER.debug("Updated AWS metadata: " + file.getName());
             } catch (Exception e) {
                 LOGGER.debug("Can't save file to Amazon S3!", e);
             }
             return url;
-        }, executorService).exceptionally(e -> {
+        }).exceptionally(e -> {
             LOGGER.debug("Can't save file to Amazon S3!", e);
             return null;
         }));
     }
+
+    /**
+     * Upload engine with queue depth and throughput metrics.
+     * 
+     * @return S3UploadEngine
+     */
+    public static S3UploadEngine getUploadEngine() {
+        return engine;
+    }
 }
@@ -0,0 +1,285 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.amazon.client;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.log4j.Logger;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+
+/**
+ * S3UploadEngine - bounded concurrency uploads to Amazon S3. Files bigger than part size are uploaded as multipart
+ * uploads with parts executed in parallel, every request is retried with exponential backoff.
+ */
+public class S3UploadEngine {
+
+    private static final Logger LOGGER = Logger.getLogger(S3UploadEngine.class);
+
+    // DateTimeFormatter is immutable so unlike SimpleDateFormat it can be shared between upload threads
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MM-dd-yyyy");
+
+    // S3 minimal part size except the last one
+    public static final long MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    private final AmazonS3 s3;
+
+    private final long partSize;
+
+    private final int maxAttempts;
+
+    private final long backoff;
+
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger uploadedFiles = new AtomicInteger();
+
+    private final AtomicLong uploadedBytes = new AtomicLong();
+
+    private final AtomicLong firstStart = new AtomicLong();
+
+    private final AtomicLong lastFinish = new AtomicLong();
+
+    /**
+     * @param s3 - client for direct uploads, could be null if only {@link #submit(String, long, Callable)} is used
+     * @param concurrency - max number of parallel requests
+     * @param partSize - multipart upload part size in bytes, smaller files are uploaded by single request
+     * @param maxAttempts - attempts per request
+     * @param backoff - delay before the first retry in ms, doubled for each next one
+     */
+    public S3UploadEngine(AmazonS3 s3, int concurrency, long partSize, int maxAttempts, long backoff) {
+        this.s3 = s3;
+        this.partSize = partSize;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoff = backoff;
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "s3-upload-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Generate unique key for the file: prefix/MM-dd-yyyy/random.ext
+     * 
+     * @param prefix - key prefix, i.e. artifact type path
+     * @param file File
+     * @return String
+     */
+    public static String generateKey(String prefix, File file) {
+        String extension = FilenameUtils.getExtension(file.getName());
+        String name = RandomStringUtils.randomAlphanumeric(20) + (extension.isEmpty() ? "" : "." + extension);
+        return prefix + "/" + LocalDate.now().format(DATE_FORMAT) + "/" + name;
+    }
+
+    /**
+     * Upload file to the bucket.
+     * 
+     * @param bucket String
+     * @param key String
+     * @param file File
+     * @return CompletableFuture with the key
+     */
+    public CompletableFuture<String> upload(String bucket, String key, File file) {
+        if (s3 == null) {
+            throw new RuntimeException("Amazon S3 client is not initialized!");
+        }
+        long length = file.length();
+        onStart();
+        CompletableFuture<String> upload;
+        if (length <= partSize) {
+            upload = CompletableFuture.supplyAsync(() -> retry("put " + key, () -> {
+                s3.putObject(new PutObjectRequest(bucket, key, file));
+                return key;
+            }), executor);
+        } else {
+            upload = uploadMultipart(bucket, key, file, length);
+        }
+        return upload.whenComplete((result, e) -> onFinish(e == null ? length : -1));
+    }
+
+    /**
+     * Execute custom upload with the same concurrency limit, retries and metrics.
+     * 
+     * @param name - upload description for logging
+     * @param bytes - size of uploaded data for throughput metric
+     * @param task - upload
+     * @param <T> result type
+     * @return CompletableFuture
+     */
+    public <T> CompletableFuture<T> submit(String name, long bytes, Callable<T> task) {
+        onStart();
+        return CompletableFuture.supplyAsync(() -> retry(name, task), executor).whenComplete((result, e) -> onFinish(e == null ? bytes : -1));
+    }
+
+    private CompletableFuture<String> uploadMultipart(String bucket, String key, File file, long length) {
+        return CompletableFuture.supplyAsync(() -> retry("initiate " + key,
+                () -> s3.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucket, key)).getUploadId()), executor)
+                .thenCompose(uploadId -> {
+                    List<CompletableFuture<PartETag>> parts = new ArrayList<>();
+                    int partNumber = 1;
+                    for (long offset = 0; offset < length; offset += partSize, partNumber++) {
+                        UploadPartRequest request = new UploadPartRequest()
+                                .withBucketName(bucket)
+                                .withKey(key)
+                                .withUploadId(uploadId)
+                                .withPartNumber(partNumber)
+                                .withFile(file)
+                                .withFileOffset(offset)
+                                .withPartSize(Math.min(partSize, length - offset));
+                        parts.add(CompletableFuture.supplyAsync(
+                                () -> retry("part " + request.getPartNumber() + " of " + key, () -> s3.uploadPart(request).getPartETag()),
+                                executor));
+                    }
+                    return CompletableFuture.allOf(parts.toArray(new CompletableFuture[0])).thenApplyAsync(v -> {
+                        List<PartETag> etags = new ArrayList<>();
+                        for (CompletableFuture<PartETag> part : parts) {
+                            etags.add(part.join());
+                        }
+                        retry("complete " + key, () -> s3.completeMultipartUpload(new CompleteMultipartUploadRequest(bucket, key, uploadId, etags)));
+                        LOGGER.debug("Uploaded " + etags.size() + " parts: " + key);
+                        return key;
+                    }, executor).whenComplete((result, e) -> {
+                        if (e != null) {
+                            LOGGER.debug("Aborting multipart upload: " + key);
+                            try {
+                                s3.abortMultipartUpload(new AbortMultipartUploadRequest(bucket, key, uploadId));
+                            } catch (Exception ex) {
+                                LOGGER.debug("Unable to abort multipart upload: " + key, ex);
+                            }
+                        }
+                    });
+                });
+    }
+
+    private <T> T retry(String name, Callable<T> task) {
+        for (int attempt = 1;; attempt++) {
+            try {
+                return task.call();
+            } catch (Exception e) {
+                if (attempt >= maxAttempts || !isRetryable(e)) {
+                    LOGGER.debug("Upload failed after " + attempt + " attempt(s): " + name, e);
+                    throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e.getMessage(), e);
+                }
+                long delay = backoff << (attempt - 1);
+                LOGGER.debug("Attempt " + attempt + " failed for " + name + ", retry in " + delay + " ms: " + e.getMessage());
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Upload is interrupted: " + name, ie);
+                }
+            }
+        }
+    }
+
+    static boolean isRetryable(Exception e) {
+        if (e instanceof AmazonServiceException) {
+            // throttling and server errors only, 4xx means invalid request or credentials
+            int status = ((AmazonServiceException) e).getStatusCode();
+            return status >= 500 || status == 429 || "SlowDown".equals(((AmazonServiceException) e).getErrorCode());
+        }
+        if (e instanceof AmazonClientException) {
+            return ((AmazonClientException) e).isRetryable();
+        }
+        return !(e instanceof RuntimeException);
+    }
+
+    private void onStart() {
+        inFlight.incrementAndGet();
+        firstStart.compareAndSet(0, System.currentTimeMillis());
+    }
+
+    private void onFinish(long bytes) {
+        inFlight.decrementAndGet();
+        if (bytes >= 0) {
+            uploadedFiles.incrementAndGet();
+            uploadedBytes.addAndGet(bytes);
+        }
+        lastFinish.set(System.currentTimeMillis());
+    }
+
+    /**
+     * Number of requests waiting for free upload thread.
+     * 
+     * @return int
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Number of not finished uploads.
+     * 
+     * @return int
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getUploadedFiles() {
+        return uploadedFiles.get();
+    }
+
+    public long getUploadedBytes() {
+        return uploadedBytes.get();
+    }
+
+    /**
+     * Upload throughput from the first upload start till the last upload finish.
+     * 
+     * @return bytes per second
+     */
+    public double getThroughput() {
+        long duration = lastFinish.get() - firstStart.get();
+        return duration > 0 ? uploadedBytes.get() * 1000.0 / duration : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("uploaded files: %d, bytes: %d, throughput: %.1f KB/s, in flight: %d, queue depth: %d", getUploadedFiles(),
+                getUploadedBytes(), getThroughput() / 1024, getInFlight(), getQueueDepth());
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.amazon;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.qaprosoft.amazon.client.S3StubServer;
+
+public class S3ListingIndexTest {
+
+    private static final String BUCKET = "builds";
+
+    private static final String[] BRANCHES = { "feature-0", "feature-1", "feature-2", "feature-3", "feature-4", "feature-5",
+            "feature-6", "feature-7", "release-1.x", "release-2.x" };
+
+    private static final int BUILDS = 1000;
+
+    private static final long BASE_TIME = 1546300800000L;
+
+    private S3StubServer server;
+
+    private AmazonS3 s3;
+
+    private File dir;
+
+    // key -> last modified of synthetic listing
+    private final Map<String, Long> listing = new HashMap<>();
+
+    @BeforeMethod
+    public void start() throws IOException {
+        server = new S3StubServer();
+        s3 = server.createClient();
+        dir = Files.createTempDirectory("s3-index").toFile();
+
+        // 10 branches x 1000 builds x 2 files
+        Random random = new Random(11);
+        listing.clear();
+        for (String branch : BRANCHES) {
+            for (int build = 0; build < BUILDS; build++) {
+                String folder = String.format("android/develop/%s/build-%04d/", branch, build);
+                long time = BASE_TIME + random.nextInt(1000000000);
+                add(folder + "app-" + build + ".apk", time);
+                add(folder + "mapping.txt", time + 1000);
+            }
+        }
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void stop() {
+        s3.shutdown();
+        server.close();
+        FileUtils.deleteQuietly(dir);
+    }
+
+    @Test
+    public void testLiteralPrefix() {
+        Assert.assertEquals(S3ListingIndex.getLiteralPrefix("android/develop/dfgdfg.*/Mapmyrun.apk"), "android/develop/dfgdfg");
+        Assert.assertEquals(S3ListingIndex.getLiteralPrefix("^ios/release-1\\.2\\.\\d+/app.ipa"), "ios/release-1.2.");
+        Assert.assertEquals(S3ListingIndex.getLiteralPrefix("ios/builds?/app.ipa"), "ios/build");
+        Assert.assertEquals(S3ListingIndex.getLiteralPrefix("ios/(qa|prod)/app.ipa"), "");
+        Assert.assertEquals(S3ListingIndex.getLiteralPrefix(".*prod-google-release.*"), "");
+
+        Assert.assertEquals(S3ListingIndex.getPrefix("android/develop", Pattern.compile("android/develop/release.*/app-.*\\.apk")),
+                "android/develop/release");
+        // pattern can match any part of the key, so it doesn't narrow the searched path
+        Assert.assertEquals(S3ListingIndex.getPrefix("android/develop", Pattern.compile("release.*/app-.*\\.apk")), "android/develop");
+        Assert.assertEquals(S3ListingIndex.getPrefix("", Pattern.compile("release.*/app-.*\\.apk")), "");
+        Assert.assertEquals(S3ListingIndex.getPrefix("", Pattern.compile("^android/release.*")), "android/release");
+    }
+
+    @Test
+    public void testLatestArtifactIsFoundInNarrowedListing() {
+        Pattern pattern = Pattern.compile("android/develop/release.*/app-.*\\.apk");
+        S3ObjectSummary latest = new S3ListingIndex(s3, 4, null, 0).getLatest(BUCKET, "android/develop", pattern);
+
+        Assert.assertNotNull(latest);
+        Assert.assertEquals(latest.getKey(), findLatest(pattern));
+        Assert.assertEquals(latest.getLastModified().getTime(), (long) listing.get(latest.getKey()));
+        // 4000 release objects: 1 folders request + 2 ranges x 2 pages instead of 20 pages of the whole path
+        Assert.assertTrue(server.getListRequests() <= 6, "Too many list requests: " + server.getListRequests());
+    }
+
+    @Test
+    public void testUnanchoredPatternScansWholePath() {
+        Pattern pattern = Pattern.compile("feature-3/build-09\\d\\d/mapping");
+        S3ListingIndex index = new S3ListingIndex(s3, 8, null, 0);
+
+        Assert.assertEquals(index.getLatest(BUCKET, "android", pattern).getKey(), findLatest(pattern));
+        Assert.assertNull(index.getLatest(BUCKET, "android", Pattern.compile("release-3.x")));
+    }
+
+    @Test
+    public void testRangesAreListedInParallel() {
+        // latency of real S3 list requests is bigger than parsing time
+        server.setDelay(150);
+
+        long start = System.currentTimeMillis();
+        Assert.assertEquals(new S3ListingIndex(s3, 1, null, 0).list(BUCKET, "android/develop/").size(), listing.size());
+        long sequential = System.currentTimeMillis() - start;
+        Assert.assertEquals(server.getMaxActive(), 1);
+
+        start = System.currentTimeMillis();
+        Assert.assertEquals(new S3ListingIndex(s3, 8, null, 0).list(BUCKET, "android/develop/").size(), listing.size());
+        long parallel = System.currentTimeMillis() - start;
+
+        Assert.assertTrue(server.getMaxActive() > 1, "List requests are not executed in parallel!");
+        Assert.assertTrue(parallel < sequential / 2, String.format("Parallel listing took %d ms, sequential: %d ms", parallel, sequential));
+    }
+
+    @Test
+    public void testListingIsReusedUntilExpiration() throws InterruptedException {
+        Pattern pattern = Pattern.compile("android/develop/feature-1/build-.*/app-.*\\.apk");
+        String expected = findLatest(pattern);
+
+        S3ListingIndex index = new S3ListingIndex(s3, 4, dir, 60000);
+        Assert.assertEquals(index.getLatest(BUCKET, "android/develop", pattern).getKey(), expected);
+        int requests = server.getListRequests();
+        Assert.assertEquals(index.getLatest(BUCKET, "android/develop", pattern).getKey(), expected);
+        Assert.assertEquals(server.getListRequests(), requests, "Listing is requested again!");
+
+        // another process on the same host uses the persisted listing
+        S3ObjectSummary persisted = new S3ListingIndex(s3, 4, dir, 60000).getLatest(BUCKET, "android/develop", pattern);
+        Assert.assertEquals(server.getListRequests(), requests, "Persisted listing is not reused!");
+        Assert.assertEquals(persisted.getKey(), expected);
+        Assert.assertEquals(persisted.getBucketName(), BUCKET);
+        Assert.assertEquals(persisted.getLastModified().getTime(), (long) listing.get(expected));
+
+        // new build is visible after expiration only
+        add("android/develop/feature-1/build-1000/app-1000.apk", BASE_TIME + 2000000000L);
+        S3ListingIndex expiring = new S3ListingIndex(s3, 4, dir, 50);
+        Thread.sleep(100);
+        Assert.assertEquals(expiring.getLatest(BUCKET, "android/develop", pattern).getKey(), "android/develop/feature-1/build-1000/app-1000.apk");
+        Assert.assertTrue(server.getListRequests() > requests);
+    }
+
+    private void add(String key, long time) {
+        listing.put(key, time);
+        server.addListing(key, time);
+    }
+
+    private String findLatest(Pattern pattern) {
+        String latest = null;
+        for (Map.Entry<String, Long> entry : listing.entrySet()) {
+            if (pattern.matcher(entry.getKey()).find() && (latest == null || entry.getValue() > listing.get(latest))) {
+                latest = entry.getKey();
+            }
+        }
+        return latest;
+    }
+}
@@ -0,0 +1,351 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.amazon.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.bind.DatatypeConverter;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder.EndpointConfiguration;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local S3-compatible stub with path style put object, multipart upload and list objects (v2) API.
+ */
+public class S3StubServer implements Closeable {
+
+    private static final String NAMESPACE = "http://s3.amazonaws.com/doc/2006-03-01/";
+
+    private final HttpServer server;
+
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+
+    private final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+
+    // key -> last modified time of all listed objects
+    private final NavigableMap<String, Long> listing = new ConcurrentSkipListMap<>();
+
+    private final AtomicInteger listRequests = new AtomicInteger();
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private final AtomicInteger parts = new AtomicInteger();
+
+    private final AtomicInteger aborts = new AtomicInteger();
+
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private final AtomicInteger active = new AtomicInteger();
+
+    private final AtomicInteger maxActive = new AtomicInteger();
+
+    private volatile long delay;
+
+    private volatile boolean failParts;
+
+    public S3StubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    public AmazonS3 createClient() {
+        ClientConfiguration configuration = new ClientConfiguration().withMaxErrorRetry(0);
+        configuration.setUseExpectContinue(false);
+        return AmazonS3ClientBuilder.standard()
+                .withEndpointConfiguration(new EndpointConfiguration("http://127.0.0.1:" + server.getAddress().getPort(), "us-east-1"))
+                .withPathStyleAccessEnabled(true)
+                .withCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials("access", "secret")))
+                .withClientConfiguration(configuration)
+                .disableChunkedEncoding()
+                .build();
+    }
+
+    public Map<String, byte[]> getObjects() {
+        return objects;
+    }
+
+    public int getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Add object to listing only, its content isn't stored.
+     * 
+     * @param key object key
+     * @param lastModified time in ms
+     */
+    public void addListing(String key, long lastModified) {
+        listing.put(key, lastModified);
+    }
+
+    public int getListRequests() {
+        return listRequests.get();
+    }
+
+    public int getParts() {
+        return parts.get();
+    }
+
+    public int getAborts() {
+        return aborts.get();
+    }
+
+    public int getMaxActive() {
+        return maxActive.get();
+    }
+
+    public int getPendingUploads() {
+        return uploads.size();
+    }
+
+    /**
+     * Respond with 500 Internal Error to the next requests.
+     */
+    public void failNext(int count) {
+        failures.set(count);
+    }
+
+    /**
+     * Respond with 500 Internal Error to all multipart upload parts.
+     */
+    public void setFailParts(boolean failParts) {
+        this.failParts = failParts;
+    }
+
+    public void setDelay(long delay) {
+        this.delay = delay;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            byte[] body = read(exchange.getRequestBody());
+            // requests are counted as active before the response is sent, so the next client request doesn't overlap
+            int current = active.incrementAndGet();
+            maxActive.accumulateAndGet(current, Math::max);
+            try {
+                if (delay > 0) {
+                    Thread.sleep(delay);
+                }
+            } finally {
+                active.decrementAndGet();
+            }
+            if (failures.getAndUpdate(count -> Math.max(0, count - 1)) > 0) {
+                respond(exchange, 500, "<Error><Code>InternalError</Code><Message>Injected failure</Message></Error>");
+                return;
+            }
+
+            // path style: /bucket/key
+            String path = exchange.getRequestURI().getPath();
+            String key = path.substring(path.indexOf('/', 1) + 1);
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String method = exchange.getRequestMethod();
+
+            if ("GET".equals(method) && query.containsKey("list-type")) {
+                listRequests.incrementAndGet();
+                respond(exchange, 200, list(query));
+            } else if ("POST".equals(method) && query.containsKey("uploads")) {
+                String uploadId = UUID.randomUUID().toString();
+                uploads.put(uploadId, new TreeMap<>());
+                respond(exchange, 200, "<InitiateMultipartUploadResult xmlns=\"" + NAMESPACE + "\"><Bucket>bucket</Bucket><Key>" + key
+                        + "</Key><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+            } else if ("PUT".equals(method) && query.containsKey("uploadId")) {
+                Map<Integer, byte[]> upload = uploads.get(query.get("uploadId"));
+                if (failParts) {
+                    respond(exchange, 500, "<Error><Code>InternalError</Code><Message>Injected failure</Message></Error>");
+                    return;
+                }
+                if (upload == null) {
+                    respond(exchange, 404, "<Error><Code>NoSuchUpload</Code></Error>");
+                    return;
+                }
+                synchronized (upload) {
+                    upload.put(Integer.valueOf(query.get("partNumber")), body);
+                }
+                parts.incrementAndGet();
+                exchange.getResponseHeaders().add("ETag", "\"" + md5(body) + "\"");
+                exchange.sendResponseHeaders(200, -1);
+            } else if ("PUT".equals(method)) {
+                objects.put(key, body);
+                listing.put(key, System.currentTimeMillis());
+                exchange.getResponseHeaders().add("ETag", "\"" + md5(body) + "\"");
+                exchange.sendResponseHeaders(200, -1);
+            } else if ("POST".equals(method) && query.containsKey("uploadId")) {
+                Map<Integer, byte[]> upload = uploads.remove(query.get("uploadId"));
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                synchronized (upload) {
+                    for (byte[] part : upload.values()) {
+                        content.write(part);
+                    }
+                }
+                objects.put(key, content.toByteArray());
+                listing.put(key, System.currentTimeMillis());
+                respond(exchange, 200, "<CompleteMultipartUploadResult xmlns=\"" + NAMESPACE + "\"><Location>" + key + "</Location><Bucket>bucket</Bucket><Key>"
+                        + key + "</Key><ETag>\"" + md5(content.toByteArray()) + "-" + upload.size() + "\"</ETag></CompleteMultipartUploadResult>");
+            } else if ("DELETE".equals(method) && query.containsKey("uploadId")) {
+                uploads.remove(query.get("uploadId"));
+                aborts.incrementAndGet();
+                exchange.sendResponseHeaders(204, -1);
+            } else {
+                respond(exchange, 400, "<Error><Code>NotImplemented</Code></Error>");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private String list(Map<String, String> query) {
+        String prefix = query.getOrDefault("prefix", "");
+        String delimiter = query.get("delimiter");
+        String token = query.get("continuation-token");
+        int maxKeys = query.containsKey("max-keys") ? Integer.parseInt(query.get("max-keys")) : 1000;
+
+        String from = token != null ? token : query.getOrDefault("start-after", "");
+        StringBuilder contents = new StringBuilder();
+        int count = 0;
+        String last = null;
+        boolean truncated = false;
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        NavigableMap<String, Long> keys = from.compareTo(prefix) < 0 ? listing.tailMap(prefix, true) : listing.tailMap(from, false);
+        for (Map.Entry<String, Long> entry : keys.entrySet()) {
+            String key = entry.getKey();
+            if (!key.startsWith(prefix)) {
+                break;
+            }
+            // the rest of already returned common prefix
+            if (delimiter != null && last != null && last.endsWith(delimiter) && key.startsWith(last)
+                    || delimiter != null && token != null && token.endsWith(delimiter) && key.startsWith(token)) {
+                continue;
+            }
+            if (count == maxKeys) {
+                truncated = true;
+                break;
+            }
+            int position = delimiter == null ? -1 : key.indexOf(delimiter, prefix.length());
+            if (position >= 0) {
+                last = key.substring(0, position + delimiter.length());
+                contents.append("<CommonPrefixes><Prefix>").append(escape(last)).append("</Prefix></CommonPrefixes>");
+            } else {
+                last = key;
+                contents.append("<Contents><Key>").append(escape(key)).append("</Key><LastModified>")
+                        .append(format.format(new Date(entry.getValue()))).append("</LastModified><ETag>&quot;")
+                        .append(md5(key.getBytes(StandardCharsets.UTF_8))).append("&quot;</ETag><Size>")
+                        .append(objects.containsKey(key) ? objects.get(key).length : 1024)
+                        .append("</Size><StorageClass>STANDARD</StorageClass></Contents>");
+            }
+            count++;
+        }
+
+        StringBuilder xml = new StringBuilder("<ListBucketResult xmlns=\"" + NAMESPACE + "\"><Name>bucket</Name><Prefix>")
+                .append(escape(prefix)).append("</Prefix><KeyCount>").append(count).append("</KeyCount><MaxKeys>").append(maxKeys)
+                .append("</MaxKeys>");
+        if (delimiter != null) {
+            xml.append("<Delimiter>").append(escape(delimiter)).append("</Delimiter>");
+        }
+        xml.append("<IsTruncated>").append(truncated).append("</IsTruncated>");
+        if (truncated) {
+            xml.append("<NextContinuationToken>").append(escape(last)).append("</NextContinuationToken>");
+        }
+        return xml.append(contents).append("</ListBucketResult>").toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new TreeMap<>();
+        if (query == null) {
+            return params;
+        }
+        for (String param : query.split("&")) {
+            int separator = param.indexOf('=');
+            params.put(separator < 0 ? param : param.substring(0, separator), separator < 0 ? "" : decode(param.substring(separator + 1)));
+        }
+        return params;
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int code, String xml) throws IOException {
+        byte[] response = xml.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(code, response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+        }
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static String md5(byte[] data) {
+        try {
+            return DatatypeConverter.printHexBinary(MessageDigest.getInstance("MD5").digest(data)).toLowerCase();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
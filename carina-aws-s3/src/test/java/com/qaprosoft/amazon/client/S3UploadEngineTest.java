@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.amazon.client;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class S3UploadEngineTest {
+
+    private static final String BUCKET = "artifacts";
+
+    private static final long PART_SIZE = 256 * 1024;
+
+    private S3StubServer server;
+
+    private S3UploadEngine engine;
+
+    @BeforeMethod
+    public void start() throws IOException {
+        server = new S3StubServer();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void stop() {
+        if (engine != null) {
+            engine.shutdown();
+        }
+        server.close();
+    }
+
+    @Test
+    public void testSinglePartUpload() throws Exception {
+        engine = new S3UploadEngine(server.createClient(), 2, PART_SIZE, 1, 0);
+        File file = createFile(1000);
+        Assert.assertEquals(engine.upload(BUCKET, "logs/test.log", file).get(10, TimeUnit.SECONDS), "logs/test.log");
+        Assert.assertEquals(server.getObjects().get("logs/test.log"), Files.readAllBytes(file.toPath()));
+        Assert.assertEquals(server.getParts(), 0);
+    }
+
+    @Test
+    public void testParallelMultipartUpload() throws Exception {
+        server.setDelay(50);
+        engine = new S3UploadEngine(server.createClient(), 4, PART_SIZE, 1, 0);
+        File file = createFile((int) (PART_SIZE * 5 + 100));
+        engine.upload(BUCKET, "videos/test.mp4", file).get(10, TimeUnit.SECONDS);
+
+        Assert.assertEquals(server.getObjects().get("videos/test.mp4"), Files.readAllBytes(file.toPath()));
+        Assert.assertEquals(server.getParts(), 6);
+        Assert.assertTrue(server.getMaxActive() > 1, "Parts are not uploaded in parallel");
+        Assert.assertEquals(engine.getUploadedBytes(), file.length());
+    }
+
+    @Test
+    public void testRetryWithBackoff() throws Exception {
+        engine = new S3UploadEngine(server.createClient(), 2, PART_SIZE, 3, 10);
+        server.failNext(2);
+        File file = createFile(100);
+        engine.upload(BUCKET, "screenshots/1.png", file).get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(server.getRequests(), 3);
+        Assert.assertTrue(server.getObjects().containsKey("screenshots/1.png"));
+    }
+
+    @Test
+    public void testFailedMultipartUploadIsAborted() throws Exception {
+        server.setFailParts(true);
+        engine = new S3UploadEngine(server.createClient(), 2, PART_SIZE, 2, 10);
+        File file = createFile((int) (PART_SIZE * 2 + 1));
+        try {
+            engine.upload(BUCKET, "videos/failed.mp4", file).get(10, TimeUnit.SECONDS);
+            Assert.fail("Upload should fail");
+        } catch (ExecutionException e) {
+            // expected
+        }
+
+        Assert.assertEquals(server.getAborts(), 1);
+        Assert.assertEquals(server.getPendingUploads(), 0);
+        Assert.assertFalse(server.getObjects().containsKey("videos/failed.mp4"));
+        Assert.assertEquals(engine.getInFlight(), 0);
+        Assert.assertEquals(engine.getUploadedFiles(), 0);
+    }
+
+    @Test
+    public void testConcurrencyLimitAndMetrics() throws Exception {
+        server.setDelay(30);
+        engine = new S3UploadEngine(server.createClient(), 3, PART_SIZE, 1, 0);
+        List<CompletableFuture<String>> uploads = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            uploads.add(engine.upload(BUCKET, "file" + i, createFile(1024)));
+        }
+        Assert.assertTrue(engine.getQueueDepth() > 0);
+        Assert.assertEquals(engine.getInFlight(), 20);
+        CompletableFuture.allOf(uploads.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+
+        Assert.assertTrue(server.getMaxActive() <= 3, "Concurrency limit is exceeded: " + server.getMaxActive());
+        Assert.assertEquals(engine.getUploadedFiles(), 20);
+        Assert.assertEquals(engine.getUploadedBytes(), 20 * 1024);
+        Assert.assertTrue(engine.getThroughput() > 0);
+        Assert.assertEquals(engine.getQueueDepth(), 0);
+    }
+
+    @Test
+    public void testConcurrentKeyGeneration() throws Exception {
+        String today = LocalDate.now().format(DateTimeFormatter.ofPattern("MM-dd-yyyy"));
+        File file = new File("video.mp4");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<String>> keys = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            keys.add(executor.submit(() -> S3UploadEngine.generateKey("artifacts/video", file)));
+        }
+        Set<String> unique = Collections.synchronizedSet(new HashSet<>());
+        for (Future<String> key : keys) {
+            String value = key.get();
+            Assert.assertTrue(value.matches("artifacts/video/" + today + "/[a-zA-Z0-9]{20}\\.mp4"), value);
+            unique.add(value);
+        }
+        executor.shutdown();
+        Assert.assertEquals(unique.size(), 2000);
+    }
+
+    private static File createFile(int size) throws IOException {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        File file = File.createTempFile("carina-s3", ".bin");
+        file.deleteOnExit();
+        Files.write(file.toPath(), content);
+        return file;
+    }
+}
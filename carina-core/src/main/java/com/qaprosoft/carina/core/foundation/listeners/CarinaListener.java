@@ -59,6 +59,7 @@ import com.qaprosoft.appcenter.AppCenterManager;
 import com.qaprosoft.carina.browsermobproxy.ProxyPool;
 import com.qaprosoft.carina.core.foundation.commons.SpecialKeywords;
 import com.qaprosoft.carina.core.foundation.jira.Jira;
+import com.qaprosoft.carina.core.foundation.report.Artifacts;
 import com.qaprosoft.carina.core.foundation.report.ReportContext;
 import com.qaprosoft.carina.core.foundation.report.TestResultItem;
 import com.qaprosoft.carina.core.foundation.report.TestResultType;
@@ -72,7 +73,7 @@ import com.qaprosoft.carina.core.foundation.utils.JsonUtils;
 import com.qaprosoft.carina.core.foundation.utils.Messager;
 import com.qaprosoft.carina.core.foundation.utils.R;
 import com.qaprosoft.carina.core.foundation.utils.async.AsyncOperation;
-import com.qaprosoft.carina.core.foundation.utils.common.CommonUtils;
+import com.qaprosoft.carina.core.foundation.utils.cache.ArtifactCache;
 import com.qaprosoft.carina.core.foundation.utils.ftp.FtpUtils;
 import com.qaprosoft.carina.core.foundation.utils.metadata.MetadataCollector;
 import com.qaprosoft.carina.core.foundation.utils.metadata.model.ElementsInfo;
@@ -323,6 +324,15 @@ public class CarinaListener extends AbstractTestListener implements ISuiteListen
         }
 
         super.onTestStart(result);
+
+        if (Configuration.getBoolean(Parameter.BROWSERMOB_HAR_STREAM)) {
+            ProxyPool.startHarCapture(new File(ReportContext.getTestDir(), "proxy.har"));
+        }
+
+        if (Configuration.getBoolean(Parameter.LOGCAT_STREAM)) {
+            // logcat of the test starts here, device of driver started inside the test has no offset and is skipped
+            IDriverPool.getDefaultDevice().startSysLog();
+        }
     }
 
     @Override
@@ -379,11 +389,24 @@ public class CarinaListener extends AbstractTestListener implements ISuiteListen
             R.ZAFIRA.clearTestProperties();
             
             LOGGER.debug("Test result is : " + result.getStatus());
+
+            if (Configuration.getBoolean(Parameter.LOGCAT_STREAM)) {
+                File logcat = IDriverPool.getDefaultDevice().saveSysLog(new File(ReportContext.getTestDir(), "logcat.log"));
+                if (logcat != null) {
+                    Artifacts.add("Logcat", logcat);
+                }
+            }
+
             // result status == 2 means failure, status == 3 means skip. We need to quit driver anyway for failure and skip
             if ((automaticDriversCleanup && !hasDependencies(result)) || result.getStatus() == 2 || result.getStatus() == 3) {
                 quitDrivers(Phase.BEFORE_METHOD, Phase.METHOD);
             }
 
+            File har = ProxyPool.stopHarCapture();
+            if (har != null) {
+                Artifacts.add("HAR", har);
+            }
+
             // TODO: improve later removing duplicates with AbstractTestListener
             // handle Zafira already passed exception for re-run and do nothing.
             // maybe return should be enough
@@ -466,12 +489,11 @@ public class CarinaListener extends AbstractTestListener implements ISuiteListen
 
             // Generate emailable html report using regular method
             EmailReportGenerator report = new EmailReportGenerator(title, env, Configuration.get(Parameter.APP_VERSION),
-                    deviceName, browser, DateUtils.now(), EmailReportItemCollector.getTestResults(),
+                    deviceName, browser, DateUtils.now(), EmailReportItemCollector.getEmailReport(),
                     EmailReportItemCollector.getCreatedItems());
 
-            String emailContent = report.getEmailBody();
             // Store emailable report under emailable-report.html
-            ReportContext.generateHtmlReport(emailContent);
+            ReportContext.generateHtmlReport(report::writeEmailBody);
 
             printExecutionSummary(EmailReportItemCollector.getTestResults());
 
@@ -495,12 +517,10 @@ public class CarinaListener extends AbstractTestListener implements ISuiteListen
             // wait until all async  operations (i.e. artifacts uploading) are finished
             AsyncOperation.waitUntilFinish(30);
             //TODO: remove as only AsyncOperation reused or uploading logic moved into zafira client
-            
-            int counter = 0;
-            while (FtpUtils.isUploading() && ++counter < 30) {
-                LOGGER.info("waiting to finish FTP uploading... " + counter + " sec.");
-                CommonUtils.pause(1);
+            if (FtpUtils.isUploading()) {
+                LOGGER.info("waiting to finish FTP uploading...");
             }
+            FtpUtils.waitUntilUploaded(30);
         }
     }
     
@@ -730,26 +750,14 @@ public class CarinaListener extends AbstractTestListener implements ISuiteListen
                 LOGGER.debug("preSigned URL: " + presignedAppUrl);
                 Configuration.setMobileApp(presignedAppUrl);
             } else {
-                // download artifact into the local storage
-                S3Object objBuild = AmazonS3Manager.getInstance().get(bucketName, key);
-    
+                // download artifact into the host-wide cache, the same build (ETag) is downloaded only once
+                File cached = AmazonS3Manager.getInstance().downloadToCache(bucketName, key);
+
                 String s3LocalStorage = Configuration.get(Parameter.S3_LOCAL_STORAGE);
-    
-                // download file from AWS to local storage
-    
-                String fileName = s3LocalStorage + "/" + StringUtils.substringAfterLast(objBuild.getKey(), "/");
-                File file = new File(fileName);
-    
-                // verify maybe requested artifact with the same size was already
-                // download
-                if (file.exists() && file.length() == objBuild.getObjectMetadata().getContentLength()) {
-                    LOGGER.info("build artifact with the same size already downloaded: " + file.getAbsolutePath());
-                } else {
-                    LOGGER.info(String.format("Following data was extracted: bucket: %s, key: %s, local file: %s",
-                            bucketName, key, file.getAbsolutePath()));
-                    AmazonS3Manager.getInstance().download(bucketName, key, new File(fileName));
-                }
-    
+                File file = ArtifactCache.materialize(cached, new File(s3LocalStorage, cached.getName()));
+                LOGGER.info(String.format("Following data was extracted: bucket: %s, key: %s, local file: %s",
+                        bucketName, key, file.getAbsolutePath()));
+
                 Configuration.setMobileApp(file.getAbsolutePath());
 
                 // try to redefine app_version if it's value is latest or empty
@@ -228,8 +228,10 @@ public class ZafiraConfigurator implements IConfigurator, ITestRailManager, IQTe
     @Override
     public Set<TestArtifactType> getArtifacts(TestResultAdapter testResultAdapter) {
         LOGGER.debug("Collecting artifacts...");
-        // Generate additional artifacts links on test run
-        return Artifacts.getArtifacts();
+        // Generate additional artifacts links on test run, uploads which aren't finished in time are published later
+        Object result = testResultAdapter.getTestResult();
+        Object testId = result instanceof ITestResult ? ((ITestResult) result).getAttribute("ztid") : null;
+        return Artifacts.getArtifacts(testId instanceof Long ? (Long) testId : null);
     }
 
     @Override
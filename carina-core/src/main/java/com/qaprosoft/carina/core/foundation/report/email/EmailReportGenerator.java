@@ -16,12 +16,14 @@
 package com.qaprosoft.carina.core.foundation.report.email;
 
 import java.io.File;
-import java.util.Collections;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.collections.CollectionUtils;
-import org.apache.commons.lang3.StringEscapeUtils;
-import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 
 import com.qaprosoft.carina.core.foundation.commons.SpecialKeywords;
@@ -33,27 +35,17 @@ import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
 import com.qaprosoft.carina.core.foundation.utils.R;
 
 /**
- * EmailReportGenerator generates emailable report using data from test suite log.
+ * EmailReportGenerator generates emailable report using data from test suite log. Result rows are streamed from
+ * {@link EmailReportWriter} into compiled container template.
  * 
  * @author Alex Khursevich
  */
 public class EmailReportGenerator {
     private static final Logger LOGGER = Logger.getLogger(EmailReportGenerator.class);
 
-    private static String CONTAINER = R.EMAIL.get("container");
-    private static String PACKAGE_TR = R.EMAIL.get("package_tr");
-    private static String PASS_TEST_LOG_DEMO_TR = R.EMAIL.get("pass_test_log_demo_tr");
-    private static String FAIL_TEST_LOG_DEMO_TR = R.EMAIL.get("fail_test_log_demo_tr");
-    private static String BUG_TEST_LOG_DEMO_TR = R.EMAIL.get("bug_test_log_demo_tr");
-    private static String SKIP_TEST_LOG_DEMO_TR = R.EMAIL.get("skip_test_log_demo_tr");
-    private static String FAIL_CONFIG_LOG_DEMO_TR = R.EMAIL.get("fail_config_log_demo_tr");
-    private static String PASS_TEST_LOG_TR = R.EMAIL.get("pass_test_log_tr");
-    private static String FAIL_TEST_LOG_TR = R.EMAIL.get("fail_test_log_tr");
-    private static String BUG_TEST_LOG_TR = R.EMAIL.get("bug_test_log_tr");
-    private static String SKIP_TEST_LOG_TR = R.EMAIL.get("skip_test_log_tr");
-    private static String FAIL_CONFIG_LOG_TR = R.EMAIL.get("fail_config_log_tr");
-    private static String CREATED_ITEMS_LIST = R.EMAIL.get("created_items_list");
-    private static String CREATED_ITEM = R.EMAIL.get("created_item");
+    private static EmailTemplate CONTAINER = EmailTemplate.compile(R.EMAIL.get("container"));
+    private static EmailTemplate CREATED_ITEMS_LIST = EmailTemplate.compile(R.EMAIL.get("created_items_list"));
+    private static EmailTemplate CREATED_ITEM = EmailTemplate.compile(R.EMAIL.get("created_item"));
     private static final String TITLE_PLACEHOLDER = "${title}";
     private static final String ENV_PLACEHOLDER = "${env}";
     private static final String DEVICE_PLACEHOLDER = "${device}";
@@ -65,199 +57,84 @@ public class EmailReportGenerator {
     private static final String SKIP_COUNT_PLACEHOLDER = "${skip_count}";
     private static final String PASS_RATE_PLACEHOLDER = "${pass_rate}";
     private static final String RESULTS_PLACEHOLDER = "${result_rows}";
-    private static final String PACKAGE_NAME_PLACEHOLDER = "${package_name}";
-    private static final String TEST_NAME_PLACEHOLDER = "${test_name}";
-    private static final String FAIL_REASON_PLACEHOLDER = "${fail_reason}";
-    private static final String SKIP_REASON_PLACEHOLDER = "${skip_reason}";
-    private static final String FAIL_CONFIG_REASON_PLACEHOLDER = "${fail_config_reason}";
-    private static final String SCREENSHOTS_URL_PLACEHOLDER = "${screenshots_url}";
-    private static final String LOG_URL_PLACEHOLDER = "${log_url}";
     private static final String CREATED_ITEMS_LIST_PLACEHOLDER = "${created_items_list}";
     private static final String CREATED_ITEM_PLACEHOLDER = "${created_item}";
-    private static final String BUG_URL_PLACEHOLDER = "${bug_url}";
-    private static final String BUG_ID_PLACEHOLDER = "${bug_id}";
-    private static final int MESSAGE_LIMIT = R.EMAIL.getInt("fail_description_limit");
     
     // Cucumber section
     private static final String CUCUMBER_RESULTS_PLACEHOLDER = "${cucumber_results}";
 
-    private static boolean INCLUDE_PASS = R.EMAIL.getBoolean("include_pass");
-    private static boolean INCLUDE_FAIL = R.EMAIL.getBoolean("include_fail");
-    private static boolean INCLUDE_SKIP = R.EMAIL.getBoolean("include_skip");
+    private final Map<String, Object> values = new HashMap<>();
 
-    private String emailBody = CONTAINER;
-    private StringBuilder testResults = null;
-
-    private int passCount = 0;
-    private int failCount = 0;
-    private int skipCount = 0;
+    private String emailBody = null;
 
     public EmailReportGenerator(String title, String url, String version, String device, String browser, String finishDate,
-            List<TestResultItem> testResultItems, List<String> createdItems) {
-        emailBody = emailBody.replace(TITLE_PLACEHOLDER, title);
-        emailBody = emailBody.replace(ENV_PLACEHOLDER, url);
-        emailBody = emailBody.replace(DEVICE_PLACEHOLDER, device);
-        emailBody = emailBody.replace(VERSION_PLACEHOLDER, version);
-        emailBody = emailBody.replace(BROWSER_PLACEHOLDER, browser);
-        emailBody = emailBody.replace(FINISH_DATE_PLACEHOLDER, finishDate);
-        emailBody = emailBody.replace(RESULTS_PLACEHOLDER, getTestResultsList(testResultItems));
-        emailBody = emailBody.replace(PASS_COUNT_PLACEHOLDER, String.valueOf(passCount));
-        emailBody = emailBody.replace(FAIL_COUNT_PLACEHOLDER, String.valueOf(failCount));
-        emailBody = emailBody.replace(SKIP_COUNT_PLACEHOLDER, String.valueOf(skipCount));
-        emailBody = emailBody.replace(PASS_RATE_PLACEHOLDER, String.valueOf(getSuccessRate()));
-        emailBody = emailBody.replace(CREATED_ITEMS_LIST_PLACEHOLDER, getCreatedItemsList(createdItems));
-        
-        // Cucumber section
-        emailBody = emailBody.replace(CUCUMBER_RESULTS_PLACEHOLDER, getCucumberResults());
+            EmailReportWriter report, List<String> createdItems) {
+        setHeader(title, url, version, device, browser, finishDate, createdItems);
+        setResults(report);
     }
 
-    public String getEmailBody() {
-        return emailBody;
-    }
-
-    private String getTestResultsList(List<TestResultItem> testResultItems) {
-        if (testResultItems.size() > 0) {
-            if (Configuration.getBoolean(Parameter.RESULT_SORTING)) {
-
-                // TODO: identify way to synch config failure with testNG method
-                Collections.sort(testResultItems, new EmailReportItemComparator());
-            }
-
-            String packageName = "";
-            testResults = new StringBuilder();
+    public EmailReportGenerator(String title, String url, String version, String device, String browser, String finishDate,
+            List<TestResultItem> testResultItems, List<String> createdItems) {
+        setHeader(title, url, version, device, browser, finishDate, createdItems);
+        EmailReportWriter report = new EmailReportWriter();
+        try {
             for (TestResultItem testResultItem : testResultItems) {
-                if (!testResultItem.isConfig() && !packageName.equals(testResultItem.getPack())) {
-                    packageName = testResultItem.getPack();
-                    testResults.append(PACKAGE_TR.replace(PACKAGE_NAME_PLACEHOLDER, packageName));
-                }
-                testResults.append(getTestRow(testResultItem));
+                report.append(testResultItem);
             }
+            setResults(report);
+            emailBody = CONTAINER.render(values);
+        } finally {
+            report.close();
         }
-        return testResults != null ? testResults.toString() : "";
     }
 
-    private String getTestRow(TestResultItem testResultItem) {
-        String result = "";
-        String failReason = "";
-        if (testResultItem.getResult().name().equalsIgnoreCase("FAIL")) {
-            if (INCLUDE_FAIL) {
-                if (testResultItem.isConfig()) {
-                    result = testResultItem.getLinkToScreenshots() != null ? FAIL_CONFIG_LOG_DEMO_TR : FAIL_CONFIG_LOG_TR;
-                    result = result.replace(TEST_NAME_PLACEHOLDER, testResultItem.getTest());
-
-                    failReason = testResultItem.getFailReason();
-                    if (!StringUtils.isEmpty(failReason)) {
-                        // Make description more compact for email report
-                        failReason = failReason.length() > MESSAGE_LIMIT ? (failReason.substring(0, MESSAGE_LIMIT) + "...") : failReason;
-                        result = result.replace(FAIL_CONFIG_REASON_PLACEHOLDER, formatFailReasonAsHtml(failReason));
-                    } else {
-                        result = result.replace(FAIL_CONFIG_REASON_PLACEHOLDER, "Undefined failure: contact qa engineer!");
-                    }
-                } else {
-                    if (Configuration.getBoolean(Parameter.TRACK_KNOWN_ISSUES) && !testResultItem.getJiraTickets().isEmpty()) {
-                        result = testResultItem.getLinkToScreenshots() != null ? BUG_TEST_LOG_DEMO_TR : BUG_TEST_LOG_TR;
-                    } else {
-                        result = testResultItem.getLinkToScreenshots() != null ? FAIL_TEST_LOG_DEMO_TR : FAIL_TEST_LOG_TR;
-                    }
-
-                    result = result.replace(TEST_NAME_PLACEHOLDER, testResultItem.getTest());
-
-                    failReason = testResultItem.getFailReason();
-                    if (!StringUtils.isEmpty(failReason)) {
-                        // Make description more compact for email report
-                        failReason = failReason.length() > MESSAGE_LIMIT ? (failReason.substring(0, MESSAGE_LIMIT) + "...") : failReason;
-                        result = result.replace(FAIL_REASON_PLACEHOLDER, formatFailReasonAsHtml(failReason));
-                    } else {
-                        result = result.replace(FAIL_REASON_PLACEHOLDER, "Undefined failure: contact qa engineer!");
-                    }
-                }
-
-                result = result.replace(LOG_URL_PLACEHOLDER, testResultItem.getLinkToLog());
-
-                if (testResultItem.getLinkToScreenshots() != null) {
-                    result = result.replace(SCREENSHOTS_URL_PLACEHOLDER, testResultItem.getLinkToScreenshots());
-                }
-            }
-
-            if (Configuration.getBoolean(Parameter.TRACK_KNOWN_ISSUES) && !testResultItem.getJiraTickets().isEmpty()) {
-                // do nothing
-            } else
-                failCount++;
-        }
-        if (testResultItem.getResult().name().equalsIgnoreCase("SKIP")) {
-            failReason = testResultItem.getFailReason();
-            if (!testResultItem.isConfig() && !failReason.contains(SpecialKeywords.ALREADY_PASSED)
-                    && !failReason.contains(SpecialKeywords.SKIP_EXECUTION)) {
-                if (INCLUDE_SKIP) {
-                    result = testResultItem.getLinkToScreenshots() != null ? SKIP_TEST_LOG_DEMO_TR : SKIP_TEST_LOG_TR;
-                    result = result.replace(TEST_NAME_PLACEHOLDER, testResultItem.getTest());
-
-                    if (!StringUtils.isEmpty(failReason)) {
-                        // Make description more compact for email report
-                        failReason = failReason.length() > MESSAGE_LIMIT
-                                ? (failReason.substring(0, MESSAGE_LIMIT) + "...")
-                                : failReason;
-                        result = result.replace(SKIP_REASON_PLACEHOLDER, formatFailReasonAsHtml(failReason));
-                    } else {
-                        result = result.replace(SKIP_REASON_PLACEHOLDER,
-                                "Analyze SYSTEM ISSUE log for details or check dependency settings for the test.");
-                    }
-
-                    result = result.replace(LOG_URL_PLACEHOLDER, testResultItem.getLinkToLog());
+    private void setHeader(String title, String url, String version, String device, String browser, String finishDate,
+            List<String> createdItems) {
+        values.put(TITLE_PLACEHOLDER, title);
+        values.put(ENV_PLACEHOLDER, url);
+        values.put(DEVICE_PLACEHOLDER, device);
+        values.put(VERSION_PLACEHOLDER, version);
+        values.put(BROWSER_PLACEHOLDER, browser);
+        values.put(FINISH_DATE_PLACEHOLDER, finishDate);
+        values.put(CREATED_ITEMS_LIST_PLACEHOLDER, getCreatedItemsList(createdItems));
+        
+        // Cucumber section
+        values.put(CUCUMBER_RESULTS_PLACEHOLDER, getCucumberResults());
+    }
 
-                    if (testResultItem.getLinkToScreenshots() != null) {
-                        result = result.replace(SCREENSHOTS_URL_PLACEHOLDER, testResultItem.getLinkToScreenshots());
-                    }
-                }
-                skipCount++;
-            }
-        }
-        if (testResultItem.getResult().name().equalsIgnoreCase("PASS")) {
-            if (!testResultItem.isConfig()) {
-                passCount++;
-                if (INCLUDE_PASS) {
-                    result = testResultItem.getLinkToScreenshots() != null ? PASS_TEST_LOG_DEMO_TR : PASS_TEST_LOG_TR;
-                    result = result.replace(TEST_NAME_PLACEHOLDER, testResultItem.getTest());
-                    result = result.replace(LOG_URL_PLACEHOLDER, testResultItem.getLinkToLog());
+    private void setResults(EmailReportWriter report) {
+        values.put(RESULTS_PLACEHOLDER, (EmailTemplate.Content) report::writeResultRows);
+        values.put(PASS_COUNT_PLACEHOLDER, report.getPassCount());
+        values.put(FAIL_COUNT_PLACEHOLDER, report.getFailCount());
+        values.put(SKIP_COUNT_PLACEHOLDER, report.getSkipCount());
+        values.put(PASS_RATE_PLACEHOLDER, report.getSuccessRate());
+    }
 
-                    if (testResultItem.getLinkToScreenshots() != null) {
-                        result = result.replace(SCREENSHOTS_URL_PLACEHOLDER, testResultItem.getLinkToScreenshots());
-                    }
-                }
-            }
+    /**
+     * Stream emailable report into the writer.
+     * 
+     * @param out - Writer
+     * @throws IOException
+     */
+    public void writeEmailBody(Writer out) throws IOException {
+        if (emailBody != null) {
+            out.write(emailBody);
+        } else {
+            CONTAINER.render(out, values);
         }
+    }
 
-        List<String> jiraTickets = testResultItem.getJiraTickets();
-
-        String bugId = null;
-        String bugUrl = null;
-
-        if (jiraTickets.size() > 0) {
-            bugId = jiraTickets.get(0);
-
-            if (!Configuration.get(Parameter.JIRA_URL).isEmpty()) {
-                bugUrl = Configuration.get(Parameter.JIRA_URL) + "/browse/" + jiraTickets.get(0);
-            }
-
-            if (jiraTickets.size() > 1) {
-                LOGGER.error("Current implementation doesn't support email report generation with several Jira Tickets fo single test!");
-            }
-        }
-        if (bugId == null) {
-            bugId = "N/A";
+    public String getEmailBody() {
+        if (emailBody != null) {
+            return emailBody;
         }
-
-        if (bugUrl == null) {
-            bugUrl = "#";
+        StringWriter out = new StringWriter();
+        try {
+            writeEmailBody(out);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to generate email report: " + e.getMessage(), e);
         }
-        result = result.replace(BUG_ID_PLACEHOLDER, bugId);
-        result = result.replace(BUG_URL_PLACEHOLDER, bugUrl);
-
-        return result;
-    }
-
-    private int getSuccessRate() {
-        return passCount > 0 ? (int) (((double) passCount) / ((double) passCount + (double) failCount + (double) skipCount) * 100) : 0;
+        return out.toString();
     }
 
     public static TestResultType getSuiteResult(List<TestResultItem> ris) {
@@ -330,21 +207,21 @@ public class EmailReportGenerator {
     public String getCreatedItemsList(List<String> createdItems) {
         if (!CollectionUtils.isEmpty(createdItems)) {
             StringBuilder result = new StringBuilder();
+            Map<String, String> item = new HashMap<>();
             for (String createdItem : createdItems) {
-                result.append(CREATED_ITEM.replace(CREATED_ITEM_PLACEHOLDER, createdItem));
+                item.put(CREATED_ITEM_PLACEHOLDER, createdItem);
+                result.append(CREATED_ITEM.render(item));
             }
-            return CREATED_ITEMS_LIST.replace(CREATED_ITEMS_LIST_PLACEHOLDER, result.toString());
+            Map<String, String> list = new HashMap<>();
+            list.put(CREATED_ITEMS_LIST_PLACEHOLDER, result.toString());
+            return CREATED_ITEMS_LIST.render(list);
         } else {
             return "";
         }
     }
 
     public String formatFailReasonAsHtml(String reasonText) {
-        if (!StringUtils.isEmpty(reasonText)) {
-            reasonText = StringEscapeUtils.escapeHtml4(reasonText);
-            reasonText = reasonText.replace("\n", "<br/>");
-        }
-        return reasonText;
+        return EmailReportWriter.formatFailReasonAsHtml(reasonText);
     }
 
     private String getCucumberResults() {
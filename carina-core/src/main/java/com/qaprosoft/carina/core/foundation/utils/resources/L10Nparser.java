@@ -19,19 +19,35 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
 
 import org.apache.log4j.Logger;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.events.EventFiringWebDriver;
 
 import com.qaprosoft.carina.core.foundation.report.ReportContext;
 import com.qaprosoft.carina.core.foundation.utils.Configuration;
 import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
 import com.qaprosoft.carina.core.foundation.utils.R;
+import com.qaprosoft.carina.core.foundation.utils.mobile.snapshot.UiSnapshot;
+import com.qaprosoft.carina.core.foundation.utils.mobile.snapshot.UiSnapshotCache;
 import com.qaprosoft.carina.core.foundation.webdriver.decorator.ExtendedWebElement;
 
+import io.appium.java_client.android.AndroidDriver;
+import io.appium.java_client.ios.IOSDriver;
+
 /*
  * L10Nparser can be used for checking multiple localization values and for creating new localization property file
  * based on actual localization of public elements.
@@ -66,6 +82,11 @@ import com.qaprosoft.carina.core.foundation.webdriver.decorator.ExtendedWebEleme
  * 
  * In this case localization tag in property file will have same name as element name.
  * 
+ * Or verify all ExtendedWebElement fields of the page which have localization key equal to the field name:
+ * Assert.assertTrue(L10Nparser.checkPageLocalization(loginPage), "Localization issue: " + L10Nparser.getAssertErrorMsg());
+ * 
+ * Texts of all elements are read at once: by single script call for web or single page source for mobile.
+ * 
  * For example:
  * Assert.assertTrue(L10Nparser.checkMultipleLocalization(loginPage.localizationCheckList), "Localization issue: "
  * + L10Nparser.getAssertErrorMsg());
@@ -431,7 +452,7 @@ public class L10Nparser {
      * @return boolean
      */
     public static boolean checkMultipleLocalization(ExtendedWebElement[] localizationCheckList, boolean skipPunctuationAndNumbers) {
-        return checkMultipleLocalization(localizationCheckList, BASIC_WAIT_SHORT_TIMEOUT, false);
+        return checkMultipleLocalization(localizationCheckList, BASIC_WAIT_SHORT_TIMEOUT, skipPunctuationAndNumbers);
     }
 
     /**
@@ -448,8 +469,17 @@ public class L10Nparser {
         boolean ret = true;
         String returnAssertErrorMsg = "";
         assertErrorMsg = "";
+        Map<ExtendedWebElement, String> texts = readTexts(localizationCheckList);
         for (ExtendedWebElement elem : localizationCheckList) {
-            if (!checkLocalizationText(elem, true, timeout, skipPunctuationAndNumbers)) {
+            String elemText = texts.get(elem);
+            boolean result;
+            if (elemText != null) {
+                result = checkLocalizationText(elemText, elem.getName(), skipPunctuationAndNumbers);
+            } else {
+                // not displayed yet or not resolvable in batch: wait for element and read it separately
+                result = checkLocalizationText(elem, true, timeout, skipPunctuationAndNumbers);
+            }
+            if (!result) {
                 ret = false;
                 returnAssertErrorMsg = returnAssertErrorMsg + " \n" + assertErrorMsg;
             }
@@ -458,6 +488,109 @@ public class L10Nparser {
         return ret;
     }
 
+    /**
+     * check localization of all ExtendedWebElement fields of the page which
+     * have localization key equal to field name
+     *
+     * @param page
+     *            - page object or UI object
+     * @return boolean
+     */
+    public static boolean checkPageLocalization(Object page) {
+        return checkPageLocalization(page, BASIC_WAIT_SHORT_TIMEOUT, false);
+    }
+
+    /**
+     * check localization of all ExtendedWebElement fields of the page which
+     * have localization key equal to field name. If new localization is
+     * generated all ExtendedWebElement fields are used.
+     *
+     * @param page
+     *            - page object or UI object
+     * @param timeout - timeout for element presence waiting.
+     * @param skipPunctuationAndNumbers - if true - there will be no numbers and tricky punctuation in l10n values
+     * @return boolean
+     */
+    public static boolean checkPageLocalization(Object page, int timeout, boolean skipPunctuationAndNumbers) {
+        List<ExtendedWebElement> elements = getLocalizedElements(page);
+        LOGGER.debug("Localized elements found on " + page.getClass().getSimpleName() + ": " + elements.size());
+        return checkMultipleLocalization(elements.toArray(new ExtendedWebElement[elements.size()]), timeout, skipPunctuationAndNumbers);
+    }
+
+    private static List<ExtendedWebElement> getLocalizedElements(Object page) {
+        boolean addNew = getAddNewLocalization();
+        List<ExtendedWebElement> elements = new ArrayList<ExtendedWebElement>();
+        for (Class<?> clazz = page.getClass(); clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (Field field : clazz.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || !ExtendedWebElement.class.isAssignableFrom(field.getType())) {
+                    continue;
+                }
+                try {
+                    field.setAccessible(true);
+                    ExtendedWebElement elem = (ExtendedWebElement) field.get(page);
+                    if (elem == null) {
+                        continue;
+                    }
+                    // L10N returns key itself when there is no localization for it
+                    if (addNew || !elem.getName().equals(L10N.getText(elem.getName(), actualLocale))) {
+                        elements.add(elem);
+                    }
+                } catch (IllegalAccessException e) {
+                    LOGGER.debug("Unable to read field " + field.getName(), e);
+                }
+            }
+        }
+        return elements;
+    }
+
+    /**
+     * Read texts of all displayed elements at once: using single script call
+     * for web or single page source for mobile.
+     *
+     * @param elements ExtendedWebElement[]
+     * @return texts by element, elements which can't be read in batch are not included
+     */
+    private static Map<ExtendedWebElement, String> readTexts(ExtendedWebElement[] elements) {
+        Map<ExtendedWebElement, String> texts = new IdentityHashMap<ExtendedWebElement, String>();
+        if (elements.length == 0) {
+            return texts;
+        }
+        try {
+            WebDriver driver = elements[0].getDriver();
+            if (driver instanceof EventFiringWebDriver) {
+                driver = ((EventFiringWebDriver) driver).getWrappedDriver();
+            }
+            boolean mobile = driver instanceof AndroidDriver || driver instanceof IOSDriver;
+
+            List<By> locators = new ArrayList<By>();
+            for (ExtendedWebElement elem : elements) {
+                By by = elem.getBy();
+                // nested elements are searched inside parent element so they are read separately
+                if (by == null || elem.getSearchContext() instanceof WebElement) {
+                    continue;
+                }
+                if (mobile ? UiSnapshot.isSupported(by) : ElementTextReader.isScriptSupported(by)) {
+                    locators.add(by);
+                }
+            }
+            if (locators.isEmpty()) {
+                return texts;
+            }
+
+            Map<By, String> byTexts = mobile ? ElementTextReader.readTexts(UiSnapshotCache.refresh(driver), locators)
+                    : ElementTextReader.readTexts((JavascriptExecutor) driver, locators);
+            for (ExtendedWebElement elem : elements) {
+                if (locators.contains(elem.getBy()) && byTexts.containsKey(elem.getBy())) {
+                    texts.put(elem, byTexts.get(elem.getBy()));
+                }
+            }
+            LOGGER.debug("Localization texts read in batch: " + texts.size() + " of " + elements.length);
+        } catch (Exception e) {
+            LOGGER.debug("Unable to read localization texts in batch, elements will be verified one by one.", e);
+        }
+        return texts;
+    }
+
     /**
      * Save Localization to property file
      */
@@ -484,12 +617,13 @@ public class L10Nparser {
 
                 String encoding = getLocalizationSaveEncoding();
                 if (encoding.contains("UTF")) {
-                    prop.store(new OutputStreamWriter(
-                            new FileOutputStream(propFileName), "UTF-8"), null);
+                    try (Writer output = new OutputStreamWriter(new FileOutputStream(propFileName), "UTF-8")) {
+                        prop.store(output, null);
+                    }
                 } else {
-                    OutputStream output = new FileOutputStream(propFileName);
-                    prop.store(output, null);
-                    output.close();
+                    try (OutputStream output = new FileOutputStream(propFileName)) {
+                        prop.store(output, null);
+                    }
                 }
 
             } catch (Exception e) {
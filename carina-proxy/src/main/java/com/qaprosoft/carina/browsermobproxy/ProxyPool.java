@@ -15,13 +15,16 @@
  *******************************************************************************/
 package com.qaprosoft.carina.browsermobproxy;
 
+import java.io.File;
 import java.util.Collections;
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.log4j.Logger;
 import org.testng.Assert;
 
+import com.qaprosoft.carina.browsermobproxy.har.HarStreamCapture;
+import com.qaprosoft.carina.browsermobproxy.har.HarStreamFiltersSource;
+import com.qaprosoft.carina.browsermobproxy.har.HarStreamOptions;
 import com.qaprosoft.carina.core.foundation.utils.Configuration;
 import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
 import com.qaprosoft.carina.core.foundation.utils.NetworkUtil;
@@ -36,9 +39,14 @@ public final class ProxyPool {
     private static ConcurrentHashMap<Long, Integer> proxyPortsByThread = new ConcurrentHashMap<Long, Integer>();
     
     /**
-     * map for storing of available ports range and their availability
+     * allocator of available ports range leased by threads
      */
-    private static ConcurrentHashMap<Integer, Boolean> proxyPortsFromRange = new ConcurrentHashMap<Integer, Boolean>();
+    private static final ProxyPortAllocator portAllocator = new ProxyPortAllocator();
+
+    /**
+     * HAR captures streamed to disk by test thread
+     */
+    private static final ConcurrentHashMap<Long, HarStreamCapture> harCaptures = new ConcurrentHashMap<Long, HarStreamCapture>();
 
     
 	static {
@@ -49,9 +57,7 @@ public final class ProxyPool {
 		if (!Configuration.get(Parameter.BROWSERMOB_PORTS_RANGE).isEmpty()) {
 			try {
 				String[] ports = Configuration.get(Parameter.BROWSERMOB_PORTS_RANGE).split(":");
-				for (int i = Integer.valueOf(ports[0]); i <= Integer.valueOf(ports[1]); i++) {
-					proxyPortsFromRange.put(i, true);
-				}
+				portAllocator.init(Integer.valueOf(ports[0]), Integer.valueOf(ports[1]));
 			} catch (Exception e) {
 				throw new RuntimeException("Please specify BROWSERMOB_PORTS_RANGE in format 'port_from:port_to'");
 			}
@@ -150,15 +156,8 @@ public final class ProxyPool {
 		if (!Configuration.get(Parameter.BROWSERMOB_PORT).isEmpty())
 			return Configuration.getInt(Parameter.BROWSERMOB_PORT);
 		else if (!Configuration.get(Parameter.BROWSERMOB_PORTS_RANGE).isEmpty()) {
-			for (Map.Entry<Integer, Boolean> pair : proxyPortsFromRange.entrySet()) {
-				if (pair.getValue()) {
-					LOGGER.info("Making BrowserMob proxy port busy: " + pair.getKey());
-					pair.setValue(false);
-					return pair.getKey().intValue();
-				}
-			}
-			throw new RuntimeException(
-					"All ports from Parameter.BROWSERMOB_PORTS_RANGE are currently busy. Please change execution thread count");
+			// port is leased by current thread, reused by next starts and released on stopProxy
+			return portAllocator.lease(Thread.currentThread().getId());
 		}
 		throw new RuntimeException(
 				"Neither Parameter.BROWSERMOB_PORT nor Parameter.BROWSERMOB_PORTS_RANGE are specified!");
@@ -171,11 +170,20 @@ public final class ProxyPool {
      * @return BrowserMobProxy
      * 
      */
-    public static synchronized BrowserMobProxy startProxy() {
-        return startProxy(getProxyPortFromConfig());
+    public static BrowserMobProxy startProxy() {
+        // port of already registered proxy is reused, see startProxy(int)
+        Integer port = proxyPortsByThread.get(Thread.currentThread().getId());
+        return startProxy(port != null ? port : getProxyPortFromConfig());
     }
     
-    public static synchronized BrowserMobProxy startProxy(int proxyPort) {
+    /**
+     * start BrowserMobProxy Server on specified port. Not synchronized as all the state is per thread so proxies for
+     * different threads are started in parallel.
+     * 
+     * @param proxyPort int
+     * @return BrowserMobProxy
+     */
+    public static BrowserMobProxy startProxy(int proxyPort) {
         if (!Configuration.getBoolean(Parameter.BROWSERMOB_PROXY)) {
             LOGGER.debug("Proxy is disabled.");
             return null;
@@ -194,13 +202,17 @@ public final class ProxyPool {
         // case when proxy was already instantiated but port doesn't correspond to current device
         if (null == proxy || proxy.getPort() != proxyPort) {
             proxy = ProxyPool.createProxy();
+            // requests are written into HAR capture of the thread which owns the proxy
+            proxy.addFirstHttpFilterFactory(new HarStreamFiltersSource(() -> harCaptures.get(threadId)));
             proxies.put(Thread.currentThread().getId(), proxy);
         }
         
         if (!proxy.isStarted()) {
             LOGGER.info("Starting BrowserMob proxy...");
-        	// TODO: [VD] confirmed with MB that restart was added just in case. Maybe comment/remove?
-            killProcessByPort(proxyPort);
+            // ports from the range are leased only when free, kill only foreign process which occupies explicit port
+            if (proxyPort != 0 && !portAllocator.isInRange(proxyPort) && !ProxyPortAllocator.isPortAvailable(proxyPort)) {
+                killProcessByPort(proxyPort);
+            }
             proxy.start(proxyPort);
         } else {
             LOGGER.info("BrowserMob proxy is already started on port " + proxy.getPort());
@@ -210,13 +222,11 @@ public final class ProxyPool {
     }
     
     private static void setProxyPortToAvailable(long threadId) {
-		if (proxyPortsByThread.get(threadId) != null) {
-			if (proxyPortsFromRange.get(proxyPortsByThread.get(threadId)) != null) {
-				LOGGER.info("Setting BrowserMob proxy port " + proxyPortsByThread.get(threadId) + " to available state");
-				proxyPortsFromRange.put(proxyPortsByThread.get(threadId), true);
-				proxyPortsByThread.remove(threadId);
-			}
-		}
+        Integer port = proxyPortsByThread.get(threadId);
+        if (port != null && portAllocator.isInRange(port)) {
+            proxyPortsByThread.remove(threadId);
+        }
+        portAllocator.releaseAll(threadId);
     }
 
     // https://github.com/lightbody/browsermob-proxy/issues/264 'started' flag is not set to false after stopping BrowserMobProxyServer
@@ -273,6 +283,48 @@ public final class ProxyPool {
         LOGGER.debug("stopProxy finished...");
     }
 
+    /**
+     * Start streaming of current thread proxy traffic into HAR file using options from configuration. Capture is
+     * applied to proxies started by ProxyPool, including ones started after this call.
+     * 
+     * @param file HAR file
+     * @return HarStreamCapture
+     */
+    public static HarStreamCapture startHarCapture(File file) {
+        return startHarCapture(file, HarStreamOptions.fromConfiguration());
+    }
+
+    /**
+     * Start streaming of current thread proxy traffic into HAR file. Previous capture of the thread is completed.
+     * 
+     * @param file HAR file
+     * @param options HarStreamOptions
+     * @return HarStreamCapture
+     */
+    public static HarStreamCapture startHarCapture(File file, HarStreamOptions options) {
+        HarStreamCapture capture = new HarStreamCapture(file, options);
+        HarStreamCapture previous = harCaptures.put(Thread.currentThread().getId(), capture);
+        if (previous != null) {
+            previous.close();
+        }
+        LOGGER.debug("HAR capture started: " + file.getAbsolutePath() + "; " + options);
+        return capture;
+    }
+
+    /**
+     * Complete HAR capture of current thread
+     * 
+     * @return HAR file or null if capture wasn't started or no requests were captured
+     */
+    public static File stopHarCapture() {
+        HarStreamCapture capture = harCaptures.remove(Thread.currentThread().getId());
+        if (capture == null) {
+            return null;
+        }
+        capture.close();
+        return capture.getEntryCount() > 0 ? capture.getFile() : null;
+    }
+
     /**
      * get registered BrowserMobProxy Server
      * 
@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.browsermobproxy;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.log4j.Logger;
+
+/**
+ * ProxyPortAllocator - lock-free allocator of BrowserMob proxy ports from the configured range.
+ * Free ports are kept in a concurrent queue so every port is leased by a single owner (thread) only and the owner keeps
+ * its port until release. Ports occupied by foreign processes are detected by a bind probe and never leased.
+ */
+public class ProxyPortAllocator {
+    private static final Logger LOGGER = Logger.getLogger(ProxyPortAllocator.class);
+
+    private final Queue<Integer> free = new ConcurrentLinkedQueue<>();
+
+    private final Map<Integer, Long> leases = new ConcurrentHashMap<>();
+
+    private volatile int from = -1;
+
+    private volatile int to = -1;
+
+    /**
+     * (Re)initialize ports range. All leases are dropped.
+     * 
+     * @param from first port of the range
+     * @param to last port of the range
+     */
+    public synchronized void init(int from, int to) {
+        free.clear();
+        leases.clear();
+        for (int port = from; port <= to; port++) {
+            free.offer(port);
+        }
+        this.from = from;
+        this.to = to;
+    }
+
+    public boolean isInRange(int port) {
+        return port >= from && port <= to;
+    }
+
+    /**
+     * Lease first available port from the range. Port already leased by the owner is returned as is.
+     * 
+     * @param owner lease owner id, usually thread id
+     * @return port
+     */
+    public int lease(long owner) {
+        Integer leased = getPort(owner);
+        if (leased != null) {
+            LOGGER.debug("Reusing BrowserMob proxy port " + leased + " leased by " + owner);
+            return leased;
+        }
+        List<Integer> busy = new ArrayList<>();
+        try {
+            int attempts = free.size();
+            for (int i = 0; i < attempts; i++) {
+                Integer port = free.poll();
+                if (port == null) {
+                    break;
+                }
+                if (port == 0 || isPortAvailable(port)) {
+                    return lease(port, owner);
+                }
+                LOGGER.debug("Port " + port + " is occupied by another process, trying next one");
+                busy.add(port);
+            }
+        } finally {
+            free.addAll(busy);
+        }
+        if (!busy.isEmpty()) {
+            throw new RuntimeException("All available ports from Parameter.BROWSERMOB_PORTS_RANGE are occupied by other processes: " + busy);
+        }
+        throw new RuntimeException("All ports from Parameter.BROWSERMOB_PORTS_RANGE are currently busy. Please change execution thread count");
+    }
+
+    private int lease(int port, long owner) {
+        leases.put(port, owner);
+        LOGGER.info("Making BrowserMob proxy port busy: " + port);
+        return port;
+    }
+
+    /**
+     * Return port to the free list if it was leased.
+     * 
+     * @param port int
+     */
+    public void release(int port) {
+        if (leases.remove(port) != null) {
+            LOGGER.info("Setting BrowserMob proxy port " + port + " to available state");
+            free.offer(port);
+        }
+    }
+
+    /**
+     * Return all ports leased by owner to the free list.
+     * 
+     * @param owner lease owner id
+     */
+    public void releaseAll(long owner) {
+        for (Map.Entry<Integer, Long> lease : leases.entrySet()) {
+            if (lease.getValue() == owner) {
+                release(lease.getKey());
+            }
+        }
+    }
+
+    public Long getOwner(int port) {
+        return leases.get(port);
+    }
+
+    /**
+     * Port leased by owner.
+     * 
+     * @param owner lease owner id
+     * @return port or null if owner has no lease
+     */
+    public Integer getPort(long owner) {
+        for (Map.Entry<Integer, Long> lease : leases.entrySet()) {
+            if (lease.getValue() == owner) {
+                return lease.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Verifies that nobody listens on the port by binding to it.
+     * 
+     * @param port int
+     * @return boolean
+     */
+    public static boolean isPortAvailable(int port) {
+        try (ServerSocket socket = new ServerSocket()) {
+            socket.setReuseAddress(true);
+            socket.bind(new InetSocketAddress(port));
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.browsermobproxy.har;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import net.lightbody.bmp.core.har.HarEntry;
+
+/**
+ * HarStreamCapture - writes HAR entries into the file as soon as they are completed so only entries in progress are
+ * kept in memory. File is created on first entry and becomes valid HAR document after {@link #close()}.
+ */
+public class HarStreamCapture implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(HarStreamCapture.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    private static final String HEADER = "{\"log\":{\"version\":\"1.2\",\"creator\":{\"name\":\"carina\",\"version\":\"1.0\"},\"pages\":[],\"entries\":[\n";
+
+    private static final String FOOTER = "\n]}}\n";
+
+    private final File file;
+
+    private final HarStreamOptions options;
+
+    private final AtomicLong skipped = new AtomicLong();
+
+    private Writer writer;
+
+    private long entries;
+
+    private boolean closed;
+
+    public HarStreamCapture(File file, HarStreamOptions options) {
+        this.file = file;
+        this.options = options;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public HarStreamOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * Decide if next request should be captured according to sampling option
+     * 
+     * @return boolean
+     */
+    public boolean isSampled() {
+        double sampling = options.getSampling();
+        boolean sampled = sampling >= 1 || (sampling > 0 && ThreadLocalRandom.current().nextDouble() < sampling);
+        if (!sampled) {
+            skipped.incrementAndGet();
+        }
+        return sampled;
+    }
+
+    /**
+     * Append entry to the file
+     * 
+     * @param entry HarEntry
+     */
+    public synchronized void write(HarEntry entry) {
+        if (closed) {
+            LOGGER.debug("HAR capture is already closed, entry is skipped: " + entry.getRequest().getUrl());
+            return;
+        }
+        try {
+            if (writer == null) {
+                file.getParentFile().mkdirs();
+                writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+                writer.write(HEADER);
+            } else {
+                writer.write(",\n");
+            }
+            MAPPER.writeValue(writer, entry);
+            entries++;
+        } catch (IOException e) {
+            LOGGER.error("Unable to write HAR entry into " + file.getAbsolutePath(), e);
+        }
+    }
+
+    public synchronized long getEntryCount() {
+        return entries;
+    }
+
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+
+    /**
+     * Complete HAR document. Entries received after close are skipped.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.write(FOOTER);
+            writer.close();
+            LOGGER.debug(String.format("HAR capture completed: %s, entries: %d, skipped by sampling: %d", file.getAbsolutePath(), entries,
+                    skipped.get()));
+        } catch (IOException e) {
+            LOGGER.error("Unable to complete HAR file " + file.getAbsolutePath(), e);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.browsermobproxy.har;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.LastHttpContent;
+import net.lightbody.bmp.core.har.HarContent;
+import net.lightbody.bmp.core.har.HarEntry;
+import net.lightbody.bmp.core.har.HarNameValuePair;
+import net.lightbody.bmp.core.har.HarPostData;
+import net.lightbody.bmp.core.har.HarRequest;
+import net.lightbody.bmp.core.har.HarResponse;
+import net.lightbody.bmp.core.har.HarTimings;
+import net.lightbody.bmp.exception.UnsupportedCharsetException;
+import net.lightbody.bmp.filters.HttpsAwareFiltersAdapter;
+import net.lightbody.bmp.util.BrowserMobHttpUtil;
+
+/**
+ * HarStreamFilter - collects timings, headers and capped bodies of a single request/response chunk by chunk, without
+ * aggregation of full messages, and passes completed entry to {@link HarStreamCapture}.
+ */
+class HarStreamFilter extends HttpsAwareFiltersAdapter {
+
+    private final HarStreamCapture capture;
+
+    private final HarEntry entry = new HarEntry();
+
+    private long connectStartedNanos;
+
+    private long sendStartedNanos;
+
+    private long sendCompletedNanos;
+
+    private long responseStartedNanos;
+
+    private BodyBuffer requestBody;
+
+    private BodyBuffer responseBody;
+
+    private boolean written;
+
+    HarStreamFilter(HttpRequest originalRequest, ChannelHandlerContext ctx, HarStreamCapture capture) {
+        super(originalRequest, ctx);
+        this.capture = capture;
+        this.entry.setStartedDateTime(new Date());
+        this.entry.setTimings(new HarTimings());
+    }
+
+    @Override
+    public HttpResponse clientToProxyRequest(HttpObject httpObject) {
+        if (httpObject instanceof HttpRequest) {
+            HttpRequest request = (HttpRequest) httpObject;
+            HarRequest harRequest = new HarRequest(request.getMethod().toString(), getFullUrl(request), request.getProtocolVersion().text());
+            addHeaders(harRequest.getHeaders(), request.headers());
+            harRequest.setHeadersSize(BrowserMobHttpUtil.getHeaderSize(request.headers()));
+            entry.setRequest(harRequest);
+            requestBody = new BodyBuffer(request.headers(), capture.getOptions());
+        }
+        if (httpObject instanceof HttpContent && requestBody != null) {
+            requestBody.append(((HttpContent) httpObject).content());
+        }
+        if (httpObject instanceof LastHttpContent && entry.getRequest() != null) {
+            entry.getRequest().setBodySize(requestBody.size);
+            if (requestBody.isCaptured()) {
+                HarPostData postData = new HarPostData();
+                postData.setMimeType(requestBody.contentType);
+                postData.setText(requestBody.getText());
+                postData.setComment(requestBody.getComment());
+                entry.getRequest().setPostData(postData);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void proxyToServerConnectionStarted() {
+        connectStartedNanos = System.nanoTime();
+    }
+
+    @Override
+    public void proxyToServerConnectionSucceeded(ChannelHandlerContext serverCtx) {
+        if (connectStartedNanos > 0) {
+            entry.getTimings().setConnect(System.nanoTime() - connectStartedNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void proxyToServerResolutionSucceeded(String serverHostAndPort, InetSocketAddress resolvedRemoteAddress) {
+        if (resolvedRemoteAddress.getAddress() != null) {
+            entry.setServerIPAddress(resolvedRemoteAddress.getAddress().getHostAddress());
+        }
+    }
+
+    @Override
+    public void proxyToServerRequestSending() {
+        sendStartedNanos = System.nanoTime();
+    }
+
+    @Override
+    public void proxyToServerRequestSent() {
+        sendCompletedNanos = System.nanoTime();
+        if (sendStartedNanos > 0) {
+            entry.getTimings().setSend(sendCompletedNanos - sendStartedNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void serverToProxyResponseReceiving() {
+        responseStartedNanos = System.nanoTime();
+        if (sendCompletedNanos > 0) {
+            entry.getTimings().setWait(responseStartedNanos - sendCompletedNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public HttpObject serverToProxyResponse(HttpObject httpObject) {
+        if (httpObject instanceof HttpResponse) {
+            HttpResponse response = (HttpResponse) httpObject;
+            HarResponse harResponse = new HarResponse(response.getStatus().code(), response.getStatus().reasonPhrase(),
+                    response.getProtocolVersion().text());
+            addHeaders(harResponse.getHeaders(), response.headers());
+            harResponse.setHeadersSize(BrowserMobHttpUtil.getHeaderSize(response.headers()));
+            String location = response.headers().get(HttpHeaders.Names.LOCATION);
+            harResponse.setRedirectURL(location == null ? "" : location);
+            entry.setResponse(harResponse);
+            responseBody = new BodyBuffer(response.headers(), capture.getOptions());
+        }
+        if (httpObject instanceof HttpContent && responseBody != null) {
+            responseBody.append(((HttpContent) httpObject).content());
+        }
+        if (httpObject instanceof LastHttpContent && entry.getResponse() != null) {
+            if (responseStartedNanos > 0) {
+                entry.getTimings().setReceive(System.nanoTime() - responseStartedNanos, TimeUnit.NANOSECONDS);
+            }
+            HarResponse harResponse = entry.getResponse();
+            harResponse.setBodySize(responseBody.size);
+            HarContent content = harResponse.getContent();
+            content.setSize(responseBody.size);
+            content.setMimeType(responseBody.contentType);
+            if (responseBody.isCaptured()) {
+                content.setText(responseBody.getText());
+                content.setComment(responseBody.getComment());
+            }
+            write();
+        }
+        return httpObject;
+    }
+
+    @Override
+    public void serverToProxyResponseTimedOut() {
+        fail("Response timed out");
+    }
+
+    @Override
+    public void proxyToServerConnectionFailed() {
+        fail("Unable to connect to host");
+    }
+
+    @Override
+    public void proxyToServerResolutionFailed(String hostAndPort) {
+        fail("Unable to resolve host");
+    }
+
+    private void fail(String error) {
+        if (entry.getResponse() == null) {
+            HarResponse response = new HarResponse(0, "", "unknown");
+            response.setError(error);
+            entry.setResponse(response);
+        }
+        write();
+    }
+
+    private void write() {
+        if (written || entry.getRequest() == null) {
+            return;
+        }
+        written = true;
+        capture.write(entry);
+    }
+
+    private static void addHeaders(List<HarNameValuePair> harHeaders, HttpHeaders headers) {
+        for (Map.Entry<String, String> header : headers.entries()) {
+            harHeaders.add(new HarNameValuePair(header.getKey(), header.getValue()));
+        }
+    }
+
+    /**
+     * Counts body size and keeps up to body limit bytes of allowed content type.
+     */
+    private static class BodyBuffer {
+        private final String contentType;
+
+        private final int limit;
+
+        private final boolean compressed;
+
+        private ByteArrayOutputStream bytes;
+
+        private long size;
+
+        private BodyBuffer(HttpHeaders headers, HarStreamOptions options) {
+            String type = headers.get(HttpHeaders.Names.CONTENT_TYPE);
+            this.contentType = type == null ? BrowserMobHttpUtil.UNKNOWN_CONTENT_TYPE : type;
+            String encoding = headers.get(HttpHeaders.Names.CONTENT_ENCODING);
+            this.compressed = encoding != null && !"identity".equalsIgnoreCase(encoding);
+            this.limit = options.getBodyLimit();
+            if (options.isBodyCaptured(type)) {
+                this.bytes = new ByteArrayOutputStream(Math.min(limit, 8192));
+            }
+        }
+
+        private void append(ByteBuf content) {
+            int readable = content.readableBytes();
+            if (bytes != null && !compressed && bytes.size() < limit) {
+                int length = Math.min(readable, limit - bytes.size());
+                byte[] chunk = new byte[length];
+                content.getBytes(content.readerIndex(), chunk);
+                bytes.write(chunk, 0, length);
+            }
+            size += readable;
+        }
+
+        private boolean isCaptured() {
+            return bytes != null && size > 0;
+        }
+
+        private String getText() {
+            if (compressed) {
+                return null;
+            }
+            Charset charset;
+            try {
+                charset = BrowserMobHttpUtil.readCharsetInContentTypeHeader(contentType);
+            } catch (UnsupportedCharsetException e) {
+                charset = null;
+            }
+            return new String(bytes.toByteArray(), charset == null ? BrowserMobHttpUtil.DEFAULT_HTTP_CHARSET : charset);
+        }
+
+        private String getComment() {
+            if (compressed) {
+                return "Compressed body is not captured";
+            }
+            if (size > bytes.size()) {
+                return "Body is truncated to " + bytes.size() + " of " + size + " bytes";
+            }
+            return null;
+        }
+    }
+}
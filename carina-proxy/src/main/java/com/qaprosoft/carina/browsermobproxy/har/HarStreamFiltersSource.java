@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.browsermobproxy.har;
+
+import java.util.function.Supplier;
+
+import org.littleshoot.proxy.HttpFilters;
+import org.littleshoot.proxy.HttpFiltersSourceAdapter;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+
+/**
+ * HarStreamFiltersSource - creates {@link HarStreamFilter} for every proxied request while HAR capture is active.
+ * Capture is resolved per request so it can be switched between tests without proxy restart.
+ */
+public class HarStreamFiltersSource extends HttpFiltersSourceAdapter {
+
+    private final Supplier<HarStreamCapture> capture;
+
+    public HarStreamFiltersSource(Supplier<HarStreamCapture> capture) {
+        this.capture = capture;
+    }
+
+    @Override
+    public HttpFilters filterRequest(HttpRequest originalRequest, ChannelHandlerContext ctx) {
+        HarStreamCapture current = capture.get();
+        if (current == null || HttpMethod.CONNECT.equals(originalRequest.getMethod()) || !current.isSampled()) {
+            return null;
+        }
+        return new HarStreamFilter(originalRequest, ctx, current);
+    }
+}
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.browsermobproxy.har;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import com.qaprosoft.carina.core.foundation.utils.Configuration;
+import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
+
+import net.lightbody.bmp.util.BrowserMobHttpUtil;
+
+/**
+ * HarStreamOptions - limits of HAR entries streamed by {@link HarStreamCapture}.
+ */
+public class HarStreamOptions {
+
+    private final int bodyLimit;
+
+    private final List<String> contentTypes;
+
+    private final double sampling;
+
+    /**
+     * @param bodyLimit max number of bytes of captured body, 0 - bodies are not captured
+     * @param contentTypes content type prefixes of captured bodies, empty - any textual content
+     * @param sampling share of captured requests from 0.0 to 1.0
+     */
+    public HarStreamOptions(int bodyLimit, List<String> contentTypes, double sampling) {
+        if (sampling < 0 || sampling > 1) {
+            throw new RuntimeException("HAR sampling should be in range from 0.0 to 1.0: " + sampling);
+        }
+        this.bodyLimit = Math.max(0, bodyLimit);
+        this.contentTypes = new ArrayList<>();
+        for (String contentType : contentTypes) {
+            if (!contentType.trim().isEmpty()) {
+                this.contentTypes.add(contentType.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        this.sampling = sampling;
+    }
+
+    public static HarStreamOptions fromConfiguration() {
+        int bodyLimit = Configuration.isNull(Parameter.BROWSERMOB_HAR_BODY_LIMIT) ? 0 : Configuration.getInt(Parameter.BROWSERMOB_HAR_BODY_LIMIT);
+        List<String> contentTypes = Configuration.isNull(Parameter.BROWSERMOB_HAR_CONTENT_TYPES) ? Collections.<String> emptyList()
+                : Arrays.asList(Configuration.get(Parameter.BROWSERMOB_HAR_CONTENT_TYPES).split(","));
+        double sampling = Configuration.isNull(Parameter.BROWSERMOB_HAR_SAMPLING) ? 1 : Configuration.getDouble(Parameter.BROWSERMOB_HAR_SAMPLING);
+        return new HarStreamOptions(bodyLimit, contentTypes, sampling);
+    }
+
+    public int getBodyLimit() {
+        return bodyLimit;
+    }
+
+    public List<String> getContentTypes() {
+        return Collections.unmodifiableList(contentTypes);
+    }
+
+    public double getSampling() {
+        return sampling;
+    }
+
+    /**
+     * Verifies if body of specified content type should be captured
+     * 
+     * @param contentType value of Content-Type header
+     * @return boolean
+     */
+    public boolean isBodyCaptured(String contentType) {
+        if (bodyLimit == 0 || contentType == null) {
+            return false;
+        }
+        if (contentTypes.isEmpty()) {
+            return BrowserMobHttpUtil.hasTextualContent(contentType);
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        for (String prefix : contentTypes) {
+            if (type.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "HarStreamOptions [bodyLimit=" + bodyLimit + ", contentTypes=" + contentTypes + ", sampling=" + sampling + "]";
+    }
+}
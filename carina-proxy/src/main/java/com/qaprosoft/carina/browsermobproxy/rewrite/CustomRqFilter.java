@@ -15,7 +15,6 @@
  ******************************************************************************/
 package com.qaprosoft.carina.browsermobproxy.rewrite;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.log4j.Logger;
@@ -35,26 +34,26 @@ public class CustomRqFilter implements RequestFilter {
     
     private static final Logger LOGGER = Logger.getLogger(CustomRqFilter.class);
     
-    private List<RewriteItem> rewrites = new ArrayList<>();
+    private final RewriteEngine engine;
 
     @Override
     public HttpResponse filterRequest(HttpRequest rq, HttpMessageContents contents, HttpMessageInfo messageInfo) {
-        if (rewrites.isEmpty()) {
+        if (engine.isEmpty()) {
             return null;
         }
-        String reqUrl = rq.getUri();
-        for (RewriteItem rewriteItem : rewrites) {
-            if(reqUrl.matches(rewriteItem.getHost())) {
-                // headers rewrite
-                LOGGER.debug("Rewrite rule will be applied for host: ".concat(reqUrl));
-                rq = applyHeaders(rq, rewriteItem.getHeaders());
-
-                // body rewrite
-                String content = contents.getTextContents();
-                content.replaceAll(rewriteItem.getRegex(), rewriteItem.getReplacement());
-                contents.setTextContents(content);
-            }
+        // uri is relative for https requests so use full url when available
+        String reqUrl = messageInfo != null && messageInfo.getOriginalUrl() != null ? messageInfo.getOriginalUrl() : rq.getUri();
+        List<RewriteItem> matched = engine.match(reqUrl);
+        if (matched.isEmpty()) {
+            return null;
+        }
+        LOGGER.debug("Rewrite rules will be applied for host: ".concat(reqUrl));
+        for (RewriteItem rewriteItem : matched) {
+            // headers rewrite
+            rq = applyHeaders(rq, rewriteItem.getHeaders());
         }
+        // body rewrite
+        engine.rewriteBody(matched, contents);
         
         return null;
     }
@@ -86,7 +85,7 @@ public class CustomRqFilter implements RequestFilter {
     }
     
     public CustomRqFilter (List<RewriteItem> rewrites) {
-        this.rewrites = rewrites;
+        this.engine = new RewriteEngine(rewrites);
     }
 
 }
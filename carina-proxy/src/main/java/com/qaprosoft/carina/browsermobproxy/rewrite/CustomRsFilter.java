@@ -15,7 +15,6 @@
  ******************************************************************************/
 package com.qaprosoft.carina.browsermobproxy.rewrite;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.log4j.Logger;
@@ -34,7 +33,7 @@ public class CustomRsFilter implements ResponseFilter {
     
     private static final Logger LOGGER = Logger.getLogger(CustomRsFilter.class);
 
-    private List<RewriteItem> rewrites = new ArrayList<>();
+    private final RewriteEngine engine;
 
     /**
      * Update response headers
@@ -61,28 +60,27 @@ public class CustomRsFilter implements ResponseFilter {
     }
 
     public CustomRsFilter(List<RewriteItem> rewrites) {
-        this.rewrites = rewrites;
+        this.engine = new RewriteEngine(rewrites);
     }
 
     @Override
     public void filterResponse(HttpResponse response, HttpMessageContents contents, HttpMessageInfo messageInfo) {
-        if (rewrites.isEmpty()) {
+        if (engine.isEmpty()) {
             return;
         }
 
         String reqUrl = messageInfo.getOriginalUrl();
-        for (RewriteItem rewriteItem : rewrites) {
-            if (reqUrl.matches(rewriteItem.getHost())) {
-                // headers rewrite
-                LOGGER.debug("Rewrite rule will be applied for host: ".concat(reqUrl));
-                applyHeaders(response, rewriteItem.getHeaders());
-
-                // body rewrite
-                String content = contents.getTextContents();
-                content.replaceAll(rewriteItem.getRegex(), rewriteItem.getReplacement());
-                contents.setTextContents(content);
-            }
+        List<RewriteItem> matched = engine.match(reqUrl);
+        if (matched.isEmpty()) {
+            return;
+        }
+        LOGGER.debug("Rewrite rules will be applied for host: ".concat(reqUrl));
+        for (RewriteItem rewriteItem : matched) {
+            // headers rewrite
+            applyHeaders(response, rewriteItem.getHeaders());
         }
+        // body rewrite
+        engine.rewriteBody(matched, contents);
 
     }
 
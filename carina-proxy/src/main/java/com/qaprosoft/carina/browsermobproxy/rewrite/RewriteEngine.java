@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.browsermobproxy.rewrite;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.Logger;
+
+import net.lightbody.bmp.util.HttpMessageContents;
+
+/**
+ * RewriteEngine - compiled set of rewrite rules shared by {@link CustomRqFilter} and {@link CustomRsFilter}.
+ * Host and body patterns are compiled once. Rules which host pattern is anchored to the host part of url (e.g.
+ * "https?://([^/]+\\.)?google\\.com/.*") are indexed by that domain and evaluated only for requests to the domain or
+ * its subdomains, all other rules (e.g. ".*google.com.*") are evaluated for every request. Rules are compiled when
+ * engine is created so later changes of {@link RewriteItem} are not picked up.
+ */
+public class RewriteEngine {
+    private static final Logger LOGGER = Logger.getLogger(RewriteEngine.class);
+
+    // scheme, optional subdomain wildcard limited by slash, domain with escaped dots and the end of host part
+    private static final Pattern HOST_ANCHORED = Pattern.compile("\\^?(?:[a-z]+s?\\??|[a-z]+\\[s\\]\\?)://"
+            + "(?:\\[\\^/\\][*+]\\\\\\.|\\((?:\\?:)?\\[\\^/\\][*+]\\\\\\.\\)\\??)?"
+            + "((?:[a-zA-Z0-9-]+\\\\\\.)+[a-zA-Z]{2,63})"
+            + "(?:\\$|(?:/|\\\\/).*|\\((?:\\?:)?/\\.\\*\\)\\?\\$?)?");
+
+    private final List<RewriteItem> rules;
+
+    private final Map<String, List<Integer>> rulesByHost = new HashMap<>();
+
+    private final List<Integer> anyHostRules = new ArrayList<>();
+
+    public RewriteEngine(List<RewriteItem> rewrites) {
+        this.rules = new ArrayList<>(rewrites);
+        for (int i = 0; i < rules.size(); i++) {
+            RewriteItem rule = rules.get(i);
+            // fail fast on invalid patterns
+            rule.getHostPattern();
+            rule.getRegexPattern();
+            String host = extractHost(rule.getHost());
+            if (host != null) {
+                List<Integer> indexes = rulesByHost.get(host);
+                if (indexes == null) {
+                    indexes = new ArrayList<>();
+                    rulesByHost.put(host, indexes);
+                }
+                indexes.add(i);
+            } else {
+                anyHostRules.add(i);
+            }
+        }
+        LOGGER.debug(String.format("Rewrite rules compiled: %d indexed by host, %d for any host", rules.size() - anyHostRules.size(),
+                anyHostRules.size()));
+    }
+
+    public boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    /**
+     * Find rules matching url. Only rules indexed by url host (or its parent domains) and rules without host index are
+     * matched using regex.
+     * 
+     * @param url String
+     * @return rules in declaration order
+     */
+    public List<RewriteItem> match(String url) {
+        if (rules.isEmpty() || url == null) {
+            return Collections.emptyList();
+        }
+        String host = getHost(url);
+        if (host == null) {
+            // host can't be resolved so every rule is evaluated
+            return matchAll(url);
+        }
+        List<Integer> candidates = new ArrayList<>(anyHostRules);
+        while (host != null) {
+            List<Integer> indexes = rulesByHost.get(host);
+            if (indexes != null) {
+                candidates.addAll(indexes);
+            }
+            int dot = host.indexOf('.');
+            host = dot < 0 ? null : host.substring(dot + 1);
+        }
+        if (candidates.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Collections.sort(candidates);
+
+        List<RewriteItem> matched = new ArrayList<>();
+        for (Integer index : candidates) {
+            RewriteItem rule = rules.get(index);
+            if (rule.getHostPattern().matcher(url).matches()) {
+                matched.add(rule);
+            }
+        }
+        return matched;
+    }
+
+    private List<RewriteItem> matchAll(String url) {
+        List<RewriteItem> matched = new ArrayList<>();
+        for (RewriteItem rule : rules) {
+            if (rule.getHostPattern().matcher(url).matches()) {
+                matched.add(rule);
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Apply body rewrites of matched rules. Contents are decoded and encoded only once and only if at least one rule
+     * rewrites body of such content type.
+     * 
+     * @param matched rules returned by {@link #match(String)}
+     * @param contents HttpMessageContents
+     * @return true if body was changed
+     */
+    public boolean rewriteBody(List<RewriteItem> matched, HttpMessageContents contents) {
+        String content = null;
+        boolean changed = false;
+        for (RewriteItem rule : matched) {
+            if (!rule.isBodyRewrite() || !isContentTypeSupported(rule, contents)) {
+                continue;
+            }
+            if (content == null) {
+                content = contents.getTextContents();
+            }
+            Matcher matcher = rule.getRegexPattern().matcher(content);
+            if (matcher.find()) {
+                content = matcher.replaceAll(rule.getReplacement());
+                changed = true;
+            }
+        }
+        if (changed) {
+            contents.setTextContents(content);
+        }
+        return changed;
+    }
+
+    private static boolean isContentTypeSupported(RewriteItem rule, HttpMessageContents contents) {
+        List<String> contentTypes = rule.getContentTypes();
+        if (contentTypes == null || contentTypes.isEmpty()) {
+            return contents.isText();
+        }
+        String contentType = contents.getContentType();
+        if (contentType == null) {
+            return false;
+        }
+        contentType = contentType.toLowerCase(Locale.ROOT);
+        for (String type : contentTypes) {
+            if (contentType.startsWith(type.toLowerCase(Locale.ROOT))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static String getHost(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host == null ? null : host.toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Extract domain which host pattern is anchored to, i.e. pattern can match only urls with such host or its
+     * subdomains: scheme, optional "[^/]*\\." subdomain wildcard, domain with escaped dots followed by the path, "$" or
+     * the end of pattern.
+     * 
+     * @param regex host pattern
+     * @return domain or null if pattern can't be indexed by host
+     */
+    static String extractHost(String regex) {
+        // alternation could add patterns for any other host
+        if (regex == null || regex.indexOf('|') >= 0) {
+            return null;
+        }
+        Matcher matcher = HOST_ANCHORED.matcher(regex);
+        if (!matcher.matches()) {
+            return null;
+        }
+        return matcher.group(1).replace("\\.", ".").toLowerCase(Locale.ROOT);
+    }
+}
@@ -17,6 +17,7 @@ package com.qaprosoft.carina.browsermobproxy.rewrite;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Pattern;
 
 public class RewriteItem {
 
@@ -28,6 +29,12 @@ public class RewriteItem {
 
     private List<HeaderItem> headers = new ArrayList<HeaderItem>();
 
+    private List<String> contentTypes = new ArrayList<String>();
+
+    private volatile Pattern hostPattern;
+
+    private volatile Pattern regexPattern;
+
     /**
      * Leave regexp empty in case you don't want to rewrite body
      * 
@@ -43,12 +50,64 @@ public class RewriteItem {
         this.headers = headers;
     }
 
+    /**
+     * Body is rewritten only for specified content types (prefix match, e.g. "text/" or "application/json").
+     * Leave it empty to rewrite any textual body
+     * 
+     * @param host
+     * @param regexp
+     * @param replacement
+     * @param headers
+     * @param contentTypes
+     */
+    public RewriteItem(final String host, final String regexp, final String replacement, final List<HeaderItem> headers,
+            final List<String> contentTypes) {
+        this(host, regexp, replacement, headers);
+        this.contentTypes = contentTypes;
+    }
+
     public String getHost() {
         return host;
     }
 
     public void setHost(String host) {
         this.host = host;
+        this.hostPattern = null;
+    }
+
+    /**
+     * Compiled host pattern, it is compiled once and reused for every request
+     * 
+     * @return Pattern
+     */
+    public Pattern getHostPattern() {
+        Pattern pattern = hostPattern;
+        if (pattern == null) {
+            pattern = Pattern.compile(host);
+            hostPattern = pattern;
+        }
+        return pattern;
+    }
+
+    /**
+     * Compiled body pattern
+     * 
+     * @return Pattern or null if body rewrite is not required
+     */
+    public Pattern getRegexPattern() {
+        if (!isBodyRewrite()) {
+            return null;
+        }
+        Pattern pattern = regexPattern;
+        if (pattern == null) {
+            pattern = Pattern.compile(regex);
+            regexPattern = pattern;
+        }
+        return pattern;
+    }
+
+    public boolean isBodyRewrite() {
+        return regex != null && !regex.isEmpty();
     }
 
     public String getRegex() {
@@ -57,6 +116,7 @@ public class RewriteItem {
 
     public void setRegex(String regex) {
         this.regex = regex;
+        this.regexPattern = null;
     }
 
     public String getReplacement() {
@@ -75,9 +135,17 @@ public class RewriteItem {
         this.headers = headers;
     }
 
+    public List<String> getContentTypes() {
+        return contentTypes;
+    }
+
+    public void setContentTypes(List<String> contentTypes) {
+        this.contentTypes = contentTypes;
+    }
+
     @Override
     public String toString() {
-        return "RewriteItem [host=" + host + ", regex=" + regex + ", replacement=" + replacement + ", headers=" + headers + "]";
+        return "RewriteItem [host=" + host + ", regex=" + regex + ", replacement=" + replacement + ", headers=" + headers + ", contentTypes=" + contentTypes + "]";
     }
 
 }
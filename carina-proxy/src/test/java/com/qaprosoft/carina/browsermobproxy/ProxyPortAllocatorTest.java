@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.browsermobproxy;
+
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ProxyPortAllocatorTest {
+    private static final int RANGE_FROM = 48100;
+    private static final int RANGE_SIZE = 8;
+
+    @Test
+    public void testConcurrentLeasesAreUnique() throws Exception {
+        ProxyPortAllocator allocator = new ProxyPortAllocator();
+        allocator.init(RANGE_FROM, RANGE_FROM + RANGE_SIZE - 1);
+
+        int threads = RANGE_SIZE * 2;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                final long owner = i;
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        start.await();
+                        try {
+                            return allocator.lease(owner);
+                        } catch (RuntimeException e) {
+                            rejected.incrementAndGet();
+                            return null;
+                        }
+                    }
+                }));
+            }
+            start.countDown();
+
+            Set<Integer> leased = new HashSet<>();
+            for (Future<Integer> future : futures) {
+                Integer port = future.get();
+                if (port != null) {
+                    Assert.assertTrue(leased.add(port), "Port " + port + " was leased twice!");
+                    Assert.assertTrue(allocator.isInRange(port), "Port " + port + " is out of range!");
+                }
+            }
+            Assert.assertEquals(leased.size(), RANGE_SIZE, "All ports from the range should be leased!");
+            Assert.assertEquals(rejected.get(), threads - RANGE_SIZE, "Extra lease requests should be rejected!");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testReleaseReturnsPort() {
+        ProxyPortAllocator allocator = new ProxyPortAllocator();
+        allocator.init(0, 0);
+
+        Assert.assertEquals(allocator.lease(1L), 0);
+        Assert.assertEquals(allocator.getOwner(0), Long.valueOf(1L));
+        Assert.assertEquals(allocator.getPort(1L), Integer.valueOf(0));
+        try {
+            allocator.lease(2L);
+            Assert.fail("Busy range should not be leased!");
+        } catch (RuntimeException e) {
+            // expected
+        }
+
+        allocator.releaseAll(1L);
+        Assert.assertNull(allocator.getOwner(0));
+        Assert.assertEquals(allocator.lease(2L), 0);
+    }
+
+    @Test
+    public void testOccupiedPortIsSkipped() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            int occupied = socket.getLocalPort();
+            Assert.assertFalse(ProxyPortAllocator.isPortAvailable(occupied));
+
+            ProxyPortAllocator allocator = new ProxyPortAllocator();
+            allocator.init(occupied, occupied + 1);
+            Assert.assertEquals(allocator.lease(1L), occupied + 1, "Occupied port should be skipped!");
+            // the only port left is occupied by foreign process
+            try {
+                allocator.lease(2L);
+                Assert.fail("Port occupied by another process should not be leased!");
+            } catch (RuntimeException e) {
+                Assert.assertTrue(e.getMessage().contains("occupied by other processes"), e.getMessage());
+            }
+            Assert.assertNull(allocator.getOwner(occupied));
+        }
+    }
+
+    @Test
+    public void testOwnerReusesLease() {
+        ProxyPortAllocator allocator = new ProxyPortAllocator();
+        allocator.init(RANGE_FROM, RANGE_FROM + 1);
+
+        int port = allocator.lease(1L);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(allocator.lease(1L), port, "Owner should keep its port!");
+        }
+        Assert.assertEquals(allocator.lease(2L), port + 1);
+
+        allocator.releaseAll(1L);
+        Assert.assertNull(allocator.getPort(1L));
+        Assert.assertEquals(allocator.lease(3L), port);
+    }
+}
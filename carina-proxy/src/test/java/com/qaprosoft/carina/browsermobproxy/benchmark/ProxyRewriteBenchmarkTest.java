@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.browsermobproxy.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.qaprosoft.carina.browsermobproxy.rewrite.CustomRqFilter;
+import com.qaprosoft.carina.browsermobproxy.rewrite.CustomRsFilter;
+import com.qaprosoft.carina.browsermobproxy.rewrite.HeaderItem;
+import com.qaprosoft.carina.browsermobproxy.rewrite.HeaderMethod;
+import com.qaprosoft.carina.browsermobproxy.rewrite.RewriteItem;
+import com.sun.net.httpserver.HttpServer;
+
+import net.lightbody.bmp.BrowserMobProxy;
+import net.lightbody.bmp.BrowserMobProxyServer;
+import net.lightbody.bmp.filters.ResponseFilter;
+
+/**
+ * Measures latency and throughput added by BrowserMob proxy with rewrite rules against an in-process HTTP origin.
+ * Scenarios: direct call, proxy without filters, proxy with {@link CustomRqFilter}/{@link CustomRsFilter} and proxy with
+ * per request regex matching (previous implementation of the filters).
+ * 
+ * Excluded from regular build, run it using:
+ * 
+ * <pre>
+ * mvn test -pl carina-proxy -am -Dgroups=benchmark -DexcludedGroups=none
+ * </pre>
+ * 
+ * Results are written to target/benchmark/carina-proxy.json.
+ */
+public class ProxyRewriteBenchmarkTest {
+    private static final Logger LOGGER = Logger.getLogger(ProxyRewriteBenchmarkTest.class);
+
+    private static final int WARMUP = Integer.getInteger("benchmark.warmup", 200);
+
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 1000);
+
+    private static final int THREADS = Integer.getInteger("benchmark.threads", 4);
+
+    private static final int RULES = Integer.getInteger("benchmark.rules", 200);
+
+    private static final String MARKER = "carina-marker";
+
+    private HttpServer origin;
+
+    private String url;
+
+    private byte[] page;
+
+    private final Map<String, Object> results = new LinkedHashMap<>();
+
+    @BeforeClass(alwaysRun = true)
+    public void startOrigin() throws IOException {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        StringBuilder html = new StringBuilder("<html><body>");
+        while (html.length() < 32 * 1024) {
+            html.append("<div class=\"row\">Lorem ipsum dolor sit amet</div>");
+        }
+        page = html.append("<p>").append(MARKER).append("</p></body></html>").toString().getBytes(StandardCharsets.UTF_8);
+
+        origin = HttpServer.create(new InetSocketAddress(0), 0);
+        origin.createContext("/", exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+            exchange.sendResponseHeaders(200, page.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(page);
+            }
+        });
+        origin.setExecutor(Executors.newCachedThreadPool());
+        origin.start();
+        url = "http://localhost:" + origin.getAddress().getPort() + "/index.html";
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopOrigin() {
+        origin.stop(0);
+    }
+
+    @Test(groups = "benchmark")
+    public void testRewriteOverhead() throws Exception {
+        results.put("direct", measure(null));
+
+        BrowserMobProxy proxy = startProxy();
+        try {
+            results.put("proxy", measure(proxy));
+        } finally {
+            proxy.stop();
+        }
+
+        List<RewriteItem> rules = rules();
+        proxy = startProxy();
+        proxy.addRequestFilter(new CustomRqFilter(rules));
+        proxy.addResponseFilter(new CustomRsFilter(rules));
+        try {
+            results.put("rewriteEngine", measure(proxy));
+        } finally {
+            proxy.stop();
+        }
+
+        proxy = startProxy();
+        proxy.addRequestFilter((request, contents, messageInfo) -> {
+            for (RewriteItem rule : rules) {
+                messageInfo.getOriginalUrl().matches(rule.getHost());
+            }
+            return null;
+        });
+        proxy.addResponseFilter(legacyFilter(rules));
+        try {
+            results.put("perRequestRegex", measure(proxy));
+        } finally {
+            proxy.stop();
+        }
+
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        File output = new File("target/benchmark/carina-proxy.json");
+        output.getParentFile().mkdirs();
+        mapper.writeValue(output, results);
+        LOGGER.info("Benchmark results saved to " + output.getAbsolutePath() + ":\n" + mapper.writeValueAsString(results));
+    }
+
+    private static BrowserMobProxy startProxy() {
+        BrowserMobProxy proxy = new BrowserMobProxyServer();
+        proxy.start(0);
+        return proxy;
+    }
+
+    /**
+     * Typical rule set: many rules for other hosts and a couple of rules matching the origin
+     */
+    private List<RewriteItem> rules() {
+        List<RewriteItem> rules = new ArrayList<>();
+        for (int i = 0; i < RULES; i++) {
+            rules.add(new RewriteItem("https?://host" + i + "\\.example\\.com/.*", "foo" + i, "bar" + i,
+                    Collections.singletonList(new HeaderItem(HeaderMethod.ADD, new ImmutablePair<>("X-Rule", String.valueOf(i))))));
+        }
+        rules.add(new RewriteItem(".*/index.html", MARKER, MARKER.toUpperCase(),
+                Collections.singletonList(new HeaderItem(HeaderMethod.ADD, new ImmutablePair<>("X-Rewritten", "true")))));
+        return rules;
+    }
+
+    private static ResponseFilter legacyFilter(List<RewriteItem> rules) {
+        return (response, contents, messageInfo) -> {
+            String reqUrl = messageInfo.getOriginalUrl();
+            for (RewriteItem rule : rules) {
+                if (reqUrl.matches(rule.getHost())) {
+                    response.headers().add("X-Rewritten", "true");
+                    String content = contents.getTextContents();
+                    contents.setTextContents(content.replaceAll(rule.getRegex(), rule.getReplacement()));
+                }
+            }
+        };
+    }
+
+    private Map<String, Object> measure(BrowserMobProxy proxy) throws Exception {
+        Proxy connectionProxy = proxy == null ? Proxy.NO_PROXY
+                : new Proxy(Proxy.Type.HTTP, new InetSocketAddress("127.0.0.1", proxy.getPort()));
+        for (int i = 0; i < WARMUP; i++) {
+            call(connectionProxy);
+        }
+
+        long latency = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            call(connectionProxy);
+            latency += System.nanoTime() - start;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        int perThread = Math.max(1, ITERATIONS / THREADS);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < perThread; j++) {
+                        call(connectionProxy);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("meanMicros", latency / 1000.0 / ITERATIONS);
+        result.put("throughput", perThread * THREADS / seconds);
+        result.put("threads", THREADS);
+        return result;
+    }
+
+    private void call(Proxy connectionProxy) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection(connectionProxy);
+        Assert.assertEquals(connection.getResponseCode(), 200);
+        ByteArrayOutputStream body = new ByteArrayOutputStream(page.length);
+        try (InputStream is = connection.getInputStream()) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+        }
+        Assert.assertTrue(body.size() >= page.length - MARKER.length(), "Response is truncated!");
+    }
+}
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.browsermobproxy.har;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.Executors;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qaprosoft.carina.browsermobproxy.ProxyPool;
+import com.qaprosoft.carina.core.foundation.utils.R;
+import com.sun.net.httpserver.HttpServer;
+
+import net.lightbody.bmp.BrowserMobProxy;
+
+public class HarStreamCaptureTest {
+    private static final String BODY = "{\"message\": \"streamed HAR capture response body\"}";
+
+    private HttpServer origin;
+
+    private String url;
+
+    @BeforeClass(alwaysRun = true)
+    public void beforeClass() throws IOException {
+        R.CONFIG.put("browsermob_proxy", "true");
+        R.CONFIG.put("browsermob_port", "0");
+        R.CONFIG.put("browsermob_ports_range", "NULL");
+
+        origin = HttpServer.create(new InetSocketAddress(0), 0);
+        origin.createContext("/", exchange -> {
+            byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        origin.setExecutor(Executors.newCachedThreadPool());
+        origin.start();
+        url = "http://localhost:" + origin.getAddress().getPort() + "/data";
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void afterClass() {
+        origin.stop(0);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void afterMethod() {
+        ProxyPool.stopHarCapture();
+        ProxyPool.stopAllProxies();
+    }
+
+    @Test
+    public void testEntriesAreStreamedToFile() throws Exception {
+        File file = Files.createTempDirectory("har").resolve("proxy.har").toFile();
+        HarStreamCapture capture = ProxyPool.startHarCapture(file, new HarStreamOptions(16, Collections.<String> emptyList(), 1));
+        BrowserMobProxy proxy = ProxyPool.startProxy();
+
+        for (int i = 0; i < 3; i++) {
+            call(proxy, url + "?i=" + i);
+        }
+        Assert.assertEquals(capture.getEntryCount(), 3, "Entries are not written while test is running!");
+        Assert.assertTrue(file.exists(), "HAR file is not created!");
+
+        Assert.assertEquals(ProxyPool.stopHarCapture(), file);
+        JsonNode entries = new ObjectMapper().readTree(file).path("log").path("entries");
+        Assert.assertEquals(entries.size(), 3);
+
+        JsonNode entry = entries.get(0);
+        Assert.assertEquals(entry.path("request").path("method").asText(), "GET");
+        Assert.assertEquals(entry.path("request").path("url").asText(), url + "?i=0");
+        Assert.assertEquals(entry.path("response").path("status").asInt(), 200);
+        Assert.assertEquals(entry.path("response").path("bodySize").asInt(), BODY.length());
+        Assert.assertEquals(entry.path("response").path("content").path("text").asText(), BODY.substring(0, 16), "Body is not truncated!");
+        Assert.assertTrue(entry.path("timings").has("wait"), "Timings are not captured!");
+    }
+
+    @Test
+    public void testBodyFilterAndSampling() throws Exception {
+        File file = Files.createTempDirectory("har").resolve("proxy.har").toFile();
+        ProxyPool.startHarCapture(file, new HarStreamOptions(1024, Arrays.asList("text/html"), 1));
+        BrowserMobProxy proxy = ProxyPool.startProxy();
+        call(proxy, url);
+
+        Assert.assertEquals(ProxyPool.stopHarCapture(), file);
+        JsonNode entry = new ObjectMapper().readTree(file).path("log").path("entries").get(0);
+        Assert.assertFalse(entry.path("response").path("content").has("text"), "Body of filtered content type is captured!");
+
+        File sampled = Files.createTempDirectory("har").resolve("proxy.har").toFile();
+        HarStreamCapture capture = ProxyPool.startHarCapture(sampled, new HarStreamOptions(0, Collections.<String> emptyList(), 0));
+        call(proxy, url);
+        Assert.assertEquals(capture.getSkippedCount(), 1);
+        Assert.assertNull(ProxyPool.stopHarCapture(), "HAR file is created without entries!");
+        Assert.assertFalse(sampled.exists());
+    }
+
+    private static void call(BrowserMobProxy proxy, String url) throws IOException {
+        Proxy httpProxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress("127.0.0.1", proxy.getPort()));
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection(httpProxy);
+        Assert.assertEquals(connection.getResponseCode(), 200);
+        try (InputStream is = connection.getInputStream()) {
+            while (is.read() != -1) {
+                // read whole response
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.browsermobproxy.rewrite;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import net.lightbody.bmp.util.HttpMessageContents;
+import net.lightbody.bmp.util.HttpMessageInfo;
+
+public class RewriteEngineTest {
+
+    @Test
+    public void testExtractHost() {
+        Assert.assertEquals(RewriteEngine.extractHost("https?://www\\.Example\\.org/.*"), "www.example.org");
+        Assert.assertEquals(RewriteEngine.extractHost("^https://([^/]+\\.)?google\\.com(/.*)?$"), "google.com");
+        Assert.assertEquals(RewriteEngine.extractHost("http://[^/]*\\.qaprosoft\\.com/api/v1.2.*"), "qaprosoft.com");
+        Assert.assertEquals(RewriteEngine.extractHost("https://example\\.org"), "example.org");
+        // not anchored to the host part of url
+        Assert.assertNull(RewriteEngine.extractHost(".*google.com.*"));
+        Assert.assertNull(RewriteEngine.extractHost(".*\\.qaprosoft\\.com/api/.*"));
+        Assert.assertNull(RewriteEngine.extractHost("https://google\\.com.*"));
+        Assert.assertNull(RewriteEngine.extractHost("https://google.com/.*"));
+        Assert.assertNull(RewriteEngine.extractHost("https://.*google\\.com/.*"));
+        Assert.assertNull(RewriteEngine.extractHost("https://google\\.com/.*|.*yahoo.*"));
+        Assert.assertNull(RewriteEngine.extractHost("(?i)https://google\\.com/.*"));
+        Assert.assertNull(RewriteEngine.extractHost(".*"));
+        Assert.assertNull(RewriteEngine.extractHost("http://localhost:8080/.*"));
+    }
+
+    @Test
+    public void testMatchIsRoutedByHost() {
+        RewriteItem google = new RewriteItem("https://([^/]+\\.)?google\\.com/.*", "", "", new ArrayList<HeaderItem>());
+        RewriteItem any = new RewriteItem(".*/api/.*", "", "", new ArrayList<HeaderItem>());
+        RewriteItem example = new RewriteItem("https://example\\.org/.*", "", "", new ArrayList<HeaderItem>());
+        RewriteEngine engine = new RewriteEngine(Arrays.asList(google, any, example));
+
+        Assert.assertEquals(engine.match("https://mail.google.com/api/inbox"), Arrays.asList(google, any));
+        Assert.assertEquals(engine.match("https://example.org/api/"), Arrays.asList(any, example));
+        Assert.assertEquals(engine.match("http://localhost:8080/index.html"), Collections.emptyList());
+        Assert.assertEquals(engine.match("/relative/api/path"), Collections.singletonList(any));
+    }
+
+    @Test
+    public void testUnanchoredHostPatternMatchesWholeUrl() {
+        RewriteItem google = new RewriteItem(".*google.com.*", "", "", new ArrayList<HeaderItem>());
+        RewriteItem dotted = new RewriteItem("https://google.com/.*", "", "", new ArrayList<HeaderItem>());
+        RewriteEngine engine = new RewriteEngine(Arrays.asList(google, dotted));
+
+        // text of the pattern in the query of another host
+        Assert.assertEquals(engine.match("https://example.org/search?q=google.com"), Collections.singletonList(google));
+        // unescaped dot matches any character
+        Assert.assertEquals(engine.match("https://google-com.example.org/"), Collections.singletonList(google));
+        Assert.assertEquals(engine.match("https://googlexcom/"), Arrays.asList(google, dotted));
+        Assert.assertEquals(engine.match("https://google.com/"), Arrays.asList(google, dotted));
+    }
+
+    @Test
+    public void testBodyRewriteIsApplied() {
+        List<HeaderItem> headers = Collections.emptyList();
+        RewriteEngine engine = new RewriteEngine(Arrays.asList(
+                new RewriteItem(".*", "foo", "bar", headers),
+                new RewriteItem(".*", "bar(\\d)", "baz$1", headers)));
+
+        HttpMessageContents contents = contents("text/html; charset=UTF-8", "foo1 foo2");
+        Assert.assertTrue(engine.rewriteBody(engine.match("http://localhost/"), contents));
+        Assert.assertEquals(contents.getTextContents(), "baz1 baz2");
+    }
+
+    @Test
+    public void testBodyRewriteRespectsContentType() {
+        List<HeaderItem> headers = Collections.emptyList();
+        RewriteItem json = new RewriteItem(".*", "foo", "bar", headers, Collections.singletonList("application/json"));
+        RewriteEngine engine = new RewriteEngine(Collections.singletonList(json));
+
+        HttpMessageContents html = contents("text/html", "foo");
+        Assert.assertFalse(engine.rewriteBody(engine.match("http://localhost/"), html));
+        Assert.assertEquals(html.getTextContents(), "foo");
+
+        HttpMessageContents binary = contents("image/png", "foo");
+        RewriteEngine textOnly = new RewriteEngine(Collections.singletonList(new RewriteItem(".*", "foo", "bar", headers)));
+        Assert.assertFalse(textOnly.rewriteBody(textOnly.match("http://localhost/"), binary));
+
+        HttpMessageContents body = contents("application/json;charset=UTF-8", "{\"foo\": 1}");
+        Assert.assertTrue(engine.rewriteBody(engine.match("http://localhost/"), body));
+        Assert.assertEquals(body.getTextContents(), "{\"bar\": 1}");
+    }
+
+    @Test
+    public void testResponseFilter() {
+        List<HeaderItem> headers = Collections.singletonList(new HeaderItem(HeaderMethod.ADD, new ImmutablePair<>("X-Rewritten", "true")));
+        CustomRsFilter filter = new CustomRsFilter(Collections.singletonList(new RewriteItem(".*localhost.*", "foo", "bar", headers)));
+
+        String url = "http://localhost:8080/index.html";
+        HttpMessageInfo info = new HttpMessageInfo(new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, url), null, false, url, url);
+
+        FullHttpResponse response = response("text/plain", "foo");
+        HttpMessageContents contents = new HttpMessageContents(response);
+        filter.filterResponse(response, contents, info);
+        Assert.assertEquals(contents.getTextContents(), "bar", "Response body was not rewritten!");
+        Assert.assertEquals(response.headers().get("X-Rewritten"), "true", "Response header was not added!");
+    }
+
+    private static HttpMessageContents contents(String contentType, String body) {
+        return new HttpMessageContents(response(contentType, body));
+    }
+
+    private static FullHttpResponse response(String contentType, String body) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                Unpooled.copiedBuffer(body, StandardCharsets.UTF_8));
+        response.headers().set(HttpHeaders.Names.CONTENT_TYPE, contentType);
+        return response;
+    }
+}
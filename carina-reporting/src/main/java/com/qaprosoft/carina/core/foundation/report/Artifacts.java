@@ -18,17 +18,22 @@ package com.qaprosoft.carina.core.foundation.report;
 import java.io.File;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-import java.util.stream.Collectors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 import com.qaprosoft.amazon.client.AmazonS3Client;
 import org.apache.log4j.Logger;
+import org.testng.ITestResult;
+import org.testng.Reporter;
 
 import com.qaprosoft.carina.core.foundation.utils.Configuration;
+import com.qaprosoft.zafira.client.ZafiraSingleton;
 import com.qaprosoft.zafira.models.dto.TestArtifactType;
 
 /**
  * Artifacts - represented by logs, screenshots, videos recorder by tests.
+ * Asynchronously uploaded artifacts complete into per-test registry, so test finalization either waits for them
+ * with a deadline or publishes placeholders which are replaced in Zafira when uploads are finished.
  *
  * @author akhursevich
  */
@@ -36,27 +41,86 @@ final public class Artifacts {
 
     private static final Logger LOGGER = Logger.getLogger(Artifacts.class);
 
-	private static final ThreadLocal<Set<TestArtifactType>> testArtifacts = ThreadLocal.withInitial(HashSet::new);
-	private static final ThreadLocal<Set<AsyncArtifact>> testArtifactsAsync = ThreadLocal.withInitial(HashSet::new);
+	/**
+	 * Link of the artifact which is still uploading during test finalization.
+	 */
+	public static final String PLACEHOLDER_LINK = "about:blank";
+
+	private static final List<IArtifactListener> listeners = new CopyOnWriteArrayList<>();
+
+	private static final ThreadLocal<TestArtifacts> testArtifacts = ThreadLocal.withInitial(() -> new TestArtifacts(Artifacts::notifyListeners));
 
 	public static void clearArtifacts() {
 		testArtifacts.remove();
-        testArtifactsAsync.remove();
 	}
 
-	public synchronized static Set<TestArtifactType> getArtifacts() {
-		Set<TestArtifactType> artifacts = testArtifacts.get();
-		artifacts.addAll(getArtifactsAsync());
-		return artifacts;
+	/**
+	 * Artifacts of the current test: waits for uploads during artifacts_wait_timeout, artifacts which are still uploading
+	 * are returned as placeholders and published into Zafira later.
+	 *
+	 * @return artifacts
+	 */
+	public static Set<TestArtifactType> getArtifacts() {
+		return getArtifacts(getZafiraTestId());
 	}
 
-    private synchronized static Set<TestArtifactType> getArtifactsAsync() {
-        Set<AsyncArtifact> asyncArtifacts = testArtifactsAsync.get();
-        return asyncArtifacts.stream().map(asyncArtifact -> {
-        	String url = retrieveUrl(asyncArtifact);
-        	return new TestArtifactType(asyncArtifact.getName(), url, asyncArtifact.getExpiresIn());
-		}).filter(testArtifact -> ! testArtifact.getLink().isEmpty()).collect(Collectors.toSet());
-    }
+	/**
+	 * Artifacts of the test: waits for uploads during artifacts_wait_timeout, artifacts which are still uploading
+	 * are returned as placeholders and published into Zafira later.
+	 *
+	 * @param testId - Zafira test id
+	 * @return artifacts
+	 */
+	public static Set<TestArtifactType> getArtifacts(Long testId) {
+		testArtifacts.get().await(Configuration.getLong(Configuration.Parameter.ARTIFACTS_WAIT_TIMEOUT), TimeUnit.SECONDS);
+		return getArtifactsWithPlaceholders(testId);
+	}
+
+	/**
+	 * Artifacts of the current test uploaded before deadline, the rest are skipped.
+	 *
+	 * @param timeout - max time to wait for uploads
+	 * @param unit TimeUnit
+	 * @return artifacts
+	 */
+	public static Set<TestArtifactType> getArtifacts(long timeout, TimeUnit unit) {
+		TestArtifacts artifacts = testArtifacts.get();
+		if (!artifacts.await(timeout, unit)) {
+			LOGGER.warn(artifacts.getPending() + " artifact(s) weren't uploaded in " + unit.toSeconds(timeout) + " sec and are skipped");
+		}
+		return artifacts.getArtifacts();
+	}
+
+	/**
+	 * Artifacts of the current test without waiting: artifacts which are still uploading are returned with
+	 * {@link #PLACEHOLDER_LINK} and are published into Zafira for provided test when uploaded.
+	 *
+	 * @param testId - Zafira test id, pending artifacts are skipped if it is null
+	 * @return artifacts
+	 */
+	public static Set<TestArtifactType> getArtifactsWithPlaceholders(Long testId) {
+		TestArtifacts artifacts = testArtifacts.get();
+		if (testId == null) {
+			if (artifacts.getPending() > 0) {
+				LOGGER.warn(artifacts.getPending() + " artifact(s) are still uploading and can't be published later without test id");
+			}
+			return artifacts.getArtifacts();
+		}
+		return artifacts.publish(testId, PLACEHOLDER_LINK, Artifacts::publish);
+	}
+
+	/**
+	 * Register listener of artifacts which links become available.
+	 *
+	 * @param listener IArtifactListener
+	 */
+	public static void addListener(IArtifactListener listener) {
+		listeners.add(listener);
+	}
+
+	public static void removeListener(IArtifactListener listener) {
+		listeners.remove(listener);
+	}
 
 	public static void add(String name, String link) {
 		add(name, link, getArtifactExpirationSeconds());
@@ -105,17 +169,28 @@ final public class Artifacts {
 
 	private static void add(AsyncArtifact asyncArtifact) {
 		LOGGER.debug("Adding async artifact");
-		testArtifactsAsync.get().add(asyncArtifact);
+		testArtifacts.get().add(asyncArtifact);
+	}
+
+	private static Long getZafiraTestId() {
+		ITestResult result = Reporter.getCurrentTestResult();
+		return result != null && result.getAttribute("ztid") != null ? (Long) result.getAttribute("ztid") : null;
 	}
 
-	private static String retrieveUrl(AsyncArtifact asyncArtifact) {
-		return asyncArtifact.getUrlFutures().stream().map(uf -> {
+	private static void publish(TestArtifactType artifact) {
+		if (ZafiraSingleton.INSTANCE.isRunning()) {
+			LOGGER.debug("Publishing uploaded artifact " + artifact.getName() + " into zafira");
+			ZafiraSingleton.INSTANCE.getClient().addTestArtifact(artifact);
+		}
+	}
+
+	private static void notifyListeners(TestArtifactType artifact) {
+		for (IArtifactListener listener : listeners) {
 			try {
-				return uf.get();
-			} catch (InterruptedException | ExecutionException e) {
-				LOGGER.error(e.getMessage(), e);
+				listener.onArtifactAvailable(artifact);
+			} catch (RuntimeException e) {
+				LOGGER.error("Artifact listener failed: " + e.getMessage(), e);
 			}
-			return null;
-		}).filter(Objects::nonNull).collect(Collectors.joining(" "));
+		}
 	}
 }
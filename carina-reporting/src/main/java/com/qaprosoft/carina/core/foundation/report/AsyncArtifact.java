@@ -16,18 +16,30 @@
 package com.qaprosoft.carina.core.foundation.report;
 
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import org.apache.log4j.Logger;
+
+import com.qaprosoft.zafira.models.dto.TestArtifactType;
 
 class AsyncArtifact {
 
+    private static final Logger LOGGER = Logger.getLogger(AsyncArtifact.class);
+
     private List<CompletableFuture<String>> urlFutures;
     private String name;
     private Integer expiresIn;
+    private CompletableFuture<TestArtifactType> artifact;
 
     AsyncArtifact(List<CompletableFuture<String>> urlFutures, String name, Integer expiresIn) {
         this.urlFutures = urlFutures;
         this.name = name;
         this.expiresIn = expiresIn;
+        // completes when all uploads are finished, links of failed uploads are skipped
+        this.artifact = CompletableFuture.allOf(urlFutures.toArray(new CompletableFuture[0]))
+                .handle((result, e) -> new TestArtifactType(name, retrieveUrl(), expiresIn));
     }
 
     public List<CompletableFuture<String>> getUrlFutures() {
@@ -41,4 +53,24 @@ class AsyncArtifact {
     public Integer getExpiresIn() {
         return expiresIn;
     }
+
+    /**
+     * Artifact with links of all uploaded files, link is empty when nothing was uploaded.
+     * 
+     * @return CompletableFuture
+     */
+    public CompletableFuture<TestArtifactType> getArtifact() {
+        return artifact;
+    }
+
+    private String retrieveUrl() {
+        return urlFutures.stream().map(uf -> {
+            try {
+                return uf.join();
+            } catch (RuntimeException e) {
+                LOGGER.error("Artifact '" + name + "' wasn't uploaded: " + e.getMessage(), e);
+            }
+            return null;
+        }).filter(Objects::nonNull).collect(Collectors.joining(" "));
+    }
 }
@@ -0,0 +1,32 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.report;
+
+import com.qaprosoft.zafira.models.dto.TestArtifactType;
+
+/**
+ * Listener of test artifacts which links become available, i.e. registered directly or when the asynchronous upload is
+ * finished. Notifications come from the uploading threads.
+ */
+public interface IArtifactListener {
+
+    /**
+     * Triggered when artifact link is available.
+     * 
+     * @param artifact {@link TestArtifactType}, test id is specified for artifacts published after test finalization
+     */
+    void onArtifactAvailable(TestArtifactType artifact);
+}
@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.report;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import org.apache.log4j.Logger;
+
+import com.qaprosoft.zafira.models.dto.TestArtifactType;
+
+/**
+ * Artifacts of the single test. Asynchronous artifacts complete into this registry from the uploading threads, so
+ * test finalization never blocks other tests.
+ */
+class TestArtifacts {
+
+    private static final Logger LOGGER = Logger.getLogger(TestArtifacts.class);
+
+    private final Set<TestArtifactType> artifacts = ConcurrentHashMap.newKeySet();
+
+    private final Set<AsyncArtifact> pending = ConcurrentHashMap.newKeySet();
+
+    private final Consumer<TestArtifactType> listener;
+
+    // test id and publisher of artifacts uploaded after test finalization
+    private volatile Long testId;
+
+    private volatile Consumer<TestArtifactType> publisher;
+
+    TestArtifacts(Consumer<TestArtifactType> listener) {
+        this.listener = listener;
+    }
+
+    void add(TestArtifactType artifact) {
+        artifacts.add(artifact);
+        listener.accept(artifact);
+    }
+
+    void add(AsyncArtifact asyncArtifact) {
+        pending.add(asyncArtifact);
+        asyncArtifact.getArtifact().thenAccept(artifact -> complete(asyncArtifact, artifact));
+    }
+
+    private void complete(AsyncArtifact asyncArtifact, TestArtifactType artifact) {
+        pending.remove(asyncArtifact);
+        if (artifact.getLink().isEmpty()) {
+            return;
+        }
+        artifacts.add(artifact);
+        // read after the artifact is registered: either finalization sees it or it is published here
+        Consumer<TestArtifactType> latePublisher = publisher;
+        if (latePublisher != null) {
+            artifact.setTestId(testId);
+            latePublisher.accept(artifact);
+        }
+        listener.accept(artifact);
+    }
+
+    /**
+     * Wait for pending artifacts.
+     * 
+     * @param timeout - max time to wait
+     * @param unit TimeUnit
+     * @return true if all artifacts are uploaded
+     */
+    boolean await(long timeout, TimeUnit unit) {
+        List<CompletableFuture<TestArtifactType>> uploads = new ArrayList<>();
+        pending.forEach(asyncArtifact -> uploads.add(asyncArtifact.getArtifact()));
+        if (uploads.isEmpty()) {
+            return true;
+        }
+        try {
+            CompletableFuture.allOf(uploads.toArray(new CompletableFuture[0])).get(timeout, unit);
+        } catch (TimeoutException e) {
+            LOGGER.debug(pending.size() + " artifact(s) are not uploaded in " + unit.toMillis(timeout) + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // artifact futures complete normally, upload errors are logged by AsyncArtifact
+            LOGGER.debug(e.getMessage(), e);
+        }
+        return pending.isEmpty();
+    }
+
+    /**
+     * Available artifacts.
+     * 
+     * @return copy of available artifacts
+     */
+    Set<TestArtifactType> getArtifacts() {
+        return new HashSet<>(artifacts);
+    }
+
+    /**
+     * Available artifacts and placeholders of pending ones. Pending artifacts are passed to publisher with provided
+     * test id when uploaded.
+     * 
+     * @param testId - id of the finalized test
+     * @param placeholderLink - link of pending artifacts
+     * @param publisher - publishes uploaded artifacts
+     * @return artifacts
+     */
+    Set<TestArtifactType> publish(Long testId, String placeholderLink, Consumer<TestArtifactType> publisher) {
+        this.testId = testId;
+        this.publisher = publisher;
+        Set<TestArtifactType> result = getArtifacts();
+        for (AsyncArtifact asyncArtifact : pending) {
+            LOGGER.debug("Artifact '" + asyncArtifact.getName() + "' is still uploading, it will be published later");
+            result.add(new TestArtifactType(asyncArtifact.getName(), placeholderLink, asyncArtifact.getExpiresIn()));
+        }
+        return result;
+    }
+
+    int getPending() {
+        return pending.size();
+    }
+}
@@ -15,7 +15,10 @@
  *******************************************************************************/
 package com.qaprosoft.carina.core.foundation.report.email;
 
-import java.util.*;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.testng.ITestResult;
 
@@ -23,33 +26,38 @@ import com.qaprosoft.carina.core.foundation.report.TestResultItem;
 import com.qaprosoft.carina.core.foundation.utils.naming.TestNamingUtil;
 
 /**
- * EmailReportGenerator generates emailable report using data from test suite log.
+ * EmailReportItemCollector collects test results for emailable report. Result rows are rendered by
+ * {@link EmailReportWriter} as soon as tests finish.
  * 
  * @author Alex Khursevich
  */
 public class EmailReportItemCollector {
-    private static LinkedHashMap<String, TestResultItem> emailResultsMap = new LinkedHashMap<String, TestResultItem>();
-    private static Map<String, TestResultItem> testResultsMap = Collections.synchronizedMap(new HashMap<String, TestResultItem>());
-    private static List<String> createdItems = new ArrayList<String>();
+    private static final EmailReportWriter emailReport = new EmailReportWriter();
+    private static Map<String, TestResultItem> testResultsMap = new ConcurrentHashMap<String, TestResultItem>();
+    private static List<String> createdItems = new CopyOnWriteArrayList<String>();
 
-    public static synchronized void push(TestResultItem emailItem) {
-        emailResultsMap.put(emailItem.hash(), emailItem);
+    public static void push(TestResultItem emailItem) {
+        emailReport.append(emailItem);
         testResultsMap.put(emailItem.getTest(), emailItem);
     }
 
-    public static synchronized void push(String itemToDelete) {
+    public static void push(String itemToDelete) {
         createdItems.add(itemToDelete);
     }
 
-    public static synchronized TestResultItem pull(ITestResult result) {
+    public static TestResultItem pull(ITestResult result) {
         return testResultsMap.get(TestNamingUtil.getCanonicalTestName(result));
     }
 
     public static List<TestResultItem> getTestResults() {
-        return new ArrayList<TestResultItem>(emailResultsMap.values());
+        return emailReport.getTestResults();
     }
 
     public static List<String> getCreatedItems() {
         return createdItems;
     }
+
+    public static EmailReportWriter getEmailReport() {
+        return emailReport;
+    }
 }
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.report;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.qaprosoft.zafira.models.dto.TestArtifactType;
+
+/**
+ * Tests for {@link TestArtifacts}
+ */
+public class TestArtifactsTest {
+
+    private static final String PLACEHOLDER = "about:blank";
+
+    @Test
+    public void testSyncArtifactIsAvailable() {
+        List<TestArtifactType> notified = new CopyOnWriteArrayList<>();
+        TestArtifacts artifacts = new TestArtifacts(notified::add);
+        artifacts.add(new TestArtifactType("log", "http://host/log", 1));
+
+        Assert.assertTrue(artifacts.await(0, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(artifacts.getArtifacts().size(), 1);
+        Assert.assertEquals(notified.size(), 1);
+    }
+
+    @Test
+    public void testAwaitDoesNotBlockOnPendingUpload() {
+        CompletableFuture<String> upload = new CompletableFuture<>();
+        TestArtifacts artifacts = new TestArtifacts(artifact -> {
+        });
+        artifacts.add(new AsyncArtifact(Collections.singletonList(upload), "video", 1));
+
+        long start = System.currentTimeMillis();
+        Assert.assertFalse(artifacts.await(100, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+        Assert.assertEquals(artifacts.getPending(), 1);
+        Assert.assertTrue(artifacts.getArtifacts().isEmpty());
+
+        upload.complete("http://host/video.mp4");
+        Assert.assertTrue(artifacts.await(0, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(artifacts.getArtifacts().iterator().next().getLink(), "http://host/video.mp4");
+    }
+
+    @Test
+    public void testPendingArtifactIsPublishedLater() {
+        CompletableFuture<String> upload = new CompletableFuture<>();
+        List<TestArtifactType> notified = new CopyOnWriteArrayList<>();
+        List<TestArtifactType> published = new CopyOnWriteArrayList<>();
+        TestArtifacts artifacts = new TestArtifacts(notified::add);
+        artifacts.add(new TestArtifactType("log", "http://host/log", 1));
+        artifacts.add(new AsyncArtifact(Collections.singletonList(upload), "video", 1));
+
+        Set<TestArtifactType> result = artifacts.publish(10L, PLACEHOLDER, published::add);
+        Assert.assertEquals(result.size(), 2);
+        Assert.assertTrue(result.stream().anyMatch(a -> "video".equals(a.getName()) && PLACEHOLDER.equals(a.getLink())));
+        Assert.assertTrue(published.isEmpty());
+
+        upload.complete("http://host/video.mp4");
+        Assert.assertEquals(published.size(), 1);
+        Assert.assertEquals(published.get(0).getTestId(), Long.valueOf(10L));
+        Assert.assertEquals(published.get(0).getLink(), "http://host/video.mp4");
+        Assert.assertEquals(notified.size(), 2);
+    }
+
+    @Test
+    public void testFailedUploadIsSkipped() {
+        CompletableFuture<String> uploaded = CompletableFuture.completedFuture("http://host/1.png");
+        CompletableFuture<String> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new RuntimeException("Upload failed"));
+        CompletableFuture<String> nothing = new CompletableFuture<>();
+        nothing.completeExceptionally(new RuntimeException("Upload failed"));
+
+        TestArtifacts artifacts = new TestArtifacts(artifact -> {
+        });
+        artifacts.add(new AsyncArtifact(Arrays.asList(uploaded, failed), "screenshots", 1));
+        artifacts.add(new AsyncArtifact(Collections.singletonList(nothing), "video", 1));
+
+        Assert.assertTrue(artifacts.await(1, TimeUnit.SECONDS));
+        Set<TestArtifactType> result = artifacts.getArtifacts();
+        Assert.assertEquals(result.size(), 1);
+        Assert.assertEquals(result.iterator().next().getLink(), "http://host/1.png");
+    }
+}
@@ -58,6 +58,7 @@ import org.testng.Assert;
 
 import com.qaprosoft.carina.core.foundation.commons.SpecialKeywords;
 import com.qaprosoft.carina.core.foundation.log.ThreadLogAppender;
+import com.qaprosoft.carina.core.foundation.report.email.EmailTemplate;
 import com.qaprosoft.carina.core.foundation.utils.Configuration;
 import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
 import com.qaprosoft.carina.core.foundation.utils.FileManager;
@@ -550,6 +551,15 @@ public class ReportContext {
     }
 
     public static void generateHtmlReport(String content) {
+        generateHtmlReport(out -> out.write(content));
+    }
+
+    /**
+     * Stream emailable report into emailable-report.html.
+     * 
+     * @param content - report content
+     */
+    public static void generateHtmlReport(EmailTemplate.Content content) {
         String emailableReport = SpecialKeywords.HTML_REPORT;
 
         try {
@@ -565,7 +575,7 @@ public class ReportContext {
             try {
                 BufferedWriter bw = new BufferedWriter(fw);
                 try {
-                    bw.write(content);
+                    content.writeTo(bw);
                 } finally {
                     bw.close();
                 }
@@ -0,0 +1,350 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.report.email;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.Logger;
+
+import com.qaprosoft.carina.core.foundation.commons.SpecialKeywords;
+import com.qaprosoft.carina.core.foundation.report.TestResultItem;
+import com.qaprosoft.carina.core.foundation.utils.Configuration;
+import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
+import com.qaprosoft.carina.core.foundation.utils.R;
+
+/**
+ * EmailReportWriter renders result rows of emailable report as soon as tests finish. Rows are appended to temporary
+ * file and only their positions are kept in memory, so the report is assembled at the end of suite by copying rows
+ * into the output.
+ * 
+ * Result pushed again for the same test (i.e. retry) replaces previous row keeping its position in the report.
+ */
+public class EmailReportWriter implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(EmailReportWriter.class);
+
+    private static final String PACKAGE_NAME_PLACEHOLDER = "${package_name}";
+    private static final String TEST_NAME_PLACEHOLDER = "${test_name}";
+    private static final String FAIL_REASON_PLACEHOLDER = "${fail_reason}";
+    private static final String SKIP_REASON_PLACEHOLDER = "${skip_reason}";
+    private static final String FAIL_CONFIG_REASON_PLACEHOLDER = "${fail_config_reason}";
+    private static final String SCREENSHOTS_URL_PLACEHOLDER = "${screenshots_url}";
+    private static final String LOG_URL_PLACEHOLDER = "${log_url}";
+    private static final String BUG_URL_PLACEHOLDER = "${bug_url}";
+    private static final String BUG_ID_PLACEHOLDER = "${bug_id}";
+
+    private static final String UNDEFINED_FAILURE = "Undefined failure: contact qa engineer!";
+    private static final String UNDEFINED_SKIP = "Analyze SYSTEM ISSUE log for details or check dependency settings for the test.";
+
+    private enum Counter {
+        PASS, FAIL, SKIP, NONE
+    }
+
+    private final EmailTemplate packageTr = EmailTemplate.compile(R.EMAIL.get("package_tr"));
+    private final EmailTemplate passTestLogDemoTr = EmailTemplate.compile(R.EMAIL.get("pass_test_log_demo_tr"));
+    private final EmailTemplate failTestLogDemoTr = EmailTemplate.compile(R.EMAIL.get("fail_test_log_demo_tr"));
+    private final EmailTemplate bugTestLogDemoTr = EmailTemplate.compile(R.EMAIL.get("bug_test_log_demo_tr"));
+    private final EmailTemplate skipTestLogDemoTr = EmailTemplate.compile(R.EMAIL.get("skip_test_log_demo_tr"));
+    private final EmailTemplate failConfigLogDemoTr = EmailTemplate.compile(R.EMAIL.get("fail_config_log_demo_tr"));
+    private final EmailTemplate passTestLogTr = EmailTemplate.compile(R.EMAIL.get("pass_test_log_tr"));
+    private final EmailTemplate failTestLogTr = EmailTemplate.compile(R.EMAIL.get("fail_test_log_tr"));
+    private final EmailTemplate bugTestLogTr = EmailTemplate.compile(R.EMAIL.get("bug_test_log_tr"));
+    private final EmailTemplate skipTestLogTr = EmailTemplate.compile(R.EMAIL.get("skip_test_log_tr"));
+    private final EmailTemplate failConfigLogTr = EmailTemplate.compile(R.EMAIL.get("fail_config_log_tr"));
+
+    private final int messageLimit = R.EMAIL.getInt("fail_description_limit");
+    private final boolean includePass = R.EMAIL.getBoolean("include_pass");
+    private final boolean includeFail = R.EMAIL.getBoolean("include_fail");
+    private final boolean includeSkip = R.EMAIL.getBoolean("include_skip");
+
+    private final Map<String, Row> rows = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    // bytes reserved in the rows file
+    private final AtomicLong size = new AtomicLong();
+
+    private volatile File file;
+    private volatile FileChannel channel;
+
+    private static class Row {
+        private final long sequence;
+        private final TestResultItem item;
+        private final Counter counter;
+        private final long offset;
+        private final int length;
+        // row which wasn't written into the file
+        private final String html;
+
+        private Row(long sequence, TestResultItem item, Counter counter, long offset, int length, String html) {
+            this.sequence = sequence;
+            this.item = item;
+            this.counter = counter;
+            this.offset = offset;
+            this.length = length;
+            this.html = html;
+        }
+    }
+
+    /**
+     * Render result row and append it to the report.
+     * 
+     * @param item - TestResultItem
+     */
+    public void append(TestResultItem item) {
+        Map<String, String> values = new HashMap<>();
+        EmailTemplate template = null;
+        Counter counter = Counter.NONE;
+
+        boolean screenshots = item.getLinkToScreenshots() != null;
+        boolean knownIssue = Configuration.getBoolean(Parameter.TRACK_KNOWN_ISSUES) && !item.getJiraTickets().isEmpty();
+        String failReason = item.getFailReason();
+
+        switch (item.getResult()) {
+        case FAIL:
+            if (includeFail) {
+                if (item.isConfig()) {
+                    template = screenshots ? failConfigLogDemoTr : failConfigLogTr;
+                    values.put(FAIL_CONFIG_REASON_PLACEHOLDER, getReason(failReason, UNDEFINED_FAILURE));
+                } else {
+                    if (knownIssue) {
+                        template = screenshots ? bugTestLogDemoTr : bugTestLogTr;
+                    } else {
+                        template = screenshots ? failTestLogDemoTr : failTestLogTr;
+                    }
+                    values.put(FAIL_REASON_PLACEHOLDER, getReason(failReason, UNDEFINED_FAILURE));
+                }
+            }
+            if (!knownIssue) {
+                counter = Counter.FAIL;
+            }
+            break;
+        case SKIP:
+            if (!item.isConfig() && !StringUtils.contains(failReason, SpecialKeywords.ALREADY_PASSED)
+                    && !StringUtils.contains(failReason, SpecialKeywords.SKIP_EXECUTION)) {
+                if (includeSkip) {
+                    template = screenshots ? skipTestLogDemoTr : skipTestLogTr;
+                    values.put(SKIP_REASON_PLACEHOLDER, getReason(failReason, UNDEFINED_SKIP));
+                }
+                counter = Counter.SKIP;
+            }
+            break;
+        case PASS:
+            if (!item.isConfig()) {
+                if (includePass) {
+                    template = screenshots ? passTestLogDemoTr : passTestLogTr;
+                }
+                counter = Counter.PASS;
+            }
+            break;
+        default:
+            // do nothing
+            break;
+        }
+
+        List<String> jiraTickets = item.getJiraTickets();
+        String bugId = "N/A";
+        String bugUrl = "#";
+        if (jiraTickets.size() > 0) {
+            bugId = jiraTickets.get(0);
+            if (!Configuration.get(Parameter.JIRA_URL).isEmpty()) {
+                bugUrl = Configuration.get(Parameter.JIRA_URL) + "/browse/" + jiraTickets.get(0);
+            }
+            if (jiraTickets.size() > 1) {
+                LOGGER.error("Current implementation doesn't support email report generation with several Jira Tickets fo single test!");
+            }
+        }
+
+        String html = "";
+        if (template != null) {
+            values.put(TEST_NAME_PLACEHOLDER, item.getTest());
+            values.put(LOG_URL_PLACEHOLDER, item.getLinkToLog());
+            values.put(SCREENSHOTS_URL_PLACEHOLDER, item.getLinkToScreenshots());
+            values.put(BUG_ID_PLACEHOLDER, bugId);
+            values.put(BUG_URL_PLACEHOLDER, bugUrl);
+            html = template.render(values);
+        }
+
+        byte[] bytes = html.getBytes(StandardCharsets.UTF_8);
+        long offset = size.getAndAdd(bytes.length);
+        String inMemory = null;
+        try {
+            write(bytes, offset);
+        } catch (IOException e) {
+            LOGGER.error("Unable to buffer email report row, it will be kept in memory: " + e.getMessage(), e);
+            inMemory = html;
+        }
+
+        Counter rowCounter = counter;
+        String rowHtml = inMemory;
+        rows.compute(item.hash(), (hash, previous) -> new Row(previous != null ? previous.sequence : sequence.incrementAndGet(), item,
+                rowCounter, offset, bytes.length, rowHtml));
+    }
+
+    /**
+     * Write result rows in the order tests were finished or sorted by package and test name when result_sorting is
+     * enabled. Package header row is inserted before tests of each package.
+     * 
+     * @param out - Writer
+     * @throws IOException
+     */
+    public void writeResultRows(Writer out) throws IOException {
+        List<Row> ordered = getRows();
+        if (Configuration.getBoolean(Parameter.RESULT_SORTING)) {
+            // TODO: identify way to synch config failure with testNG method
+            Comparator<TestResultItem> comparator = new EmailReportItemComparator();
+            ordered.sort((row1, row2) -> comparator.compare(row1.item, row2.item));
+        }
+
+        Map<String, String> values = new HashMap<>();
+        String packageName = "";
+        ByteBuffer buffer = ByteBuffer.allocate(8 * 1024);
+        for (Row row : ordered) {
+            if (!row.item.isConfig() && !packageName.equals(row.item.getPack())) {
+                packageName = row.item.getPack();
+                values.put(PACKAGE_NAME_PLACEHOLDER, packageName);
+                packageTr.render(out, values);
+            }
+            if (row.html != null) {
+                out.write(row.html);
+            } else if (row.length > 0) {
+                if (buffer.capacity() < row.length) {
+                    buffer = ByteBuffer.allocate(row.length);
+                }
+                buffer.clear().limit(row.length);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, row.offset + buffer.position()) < 0) {
+                        throw new IOException("Email report row is truncated: " + file.getAbsolutePath());
+                    }
+                }
+                out.write(new String(buffer.array(), 0, row.length, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * Get test results in the order they were pushed.
+     * 
+     * @return list of TestResultItem
+     */
+    public List<TestResultItem> getTestResults() {
+        return getRows().stream().map(row -> row.item).collect(Collectors.toList());
+    }
+
+    public int getPassCount() {
+        return count(Counter.PASS);
+    }
+
+    public int getFailCount() {
+        return count(Counter.FAIL);
+    }
+
+    public int getSkipCount() {
+        return count(Counter.SKIP);
+    }
+
+    public int getSuccessRate() {
+        int passCount = getPassCount();
+        int failCount = getFailCount();
+        int skipCount = getSkipCount();
+        return passCount > 0 ? (int) (((double) passCount) / ((double) passCount + (double) failCount + (double) skipCount) * 100) : 0;
+    }
+
+    public static String formatFailReasonAsHtml(String reasonText) {
+        if (!StringUtils.isEmpty(reasonText)) {
+            reasonText = StringEscapeUtils.escapeHtml4(reasonText);
+            reasonText = reasonText.replace("\n", "<br/>");
+        }
+        return reasonText;
+    }
+
+    /**
+     * Remove temporary file with rendered rows.
+     */
+    @Override
+    public void close() {
+        rows.clear();
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.debug(e.getMessage(), e);
+            }
+            if (!file.delete()) {
+                LOGGER.debug("Unable to delete " + file.getAbsolutePath());
+            }
+        }
+    }
+
+    private String getReason(String failReason, String defaultReason) {
+        if (StringUtils.isEmpty(failReason)) {
+            return defaultReason;
+        }
+        // Make description more compact for email report
+        failReason = failReason.length() > messageLimit ? (failReason.substring(0, messageLimit) + "...") : failReason;
+        return formatFailReasonAsHtml(failReason);
+    }
+
+    private List<Row> getRows() {
+        List<Row> ordered = new ArrayList<>(rows.values());
+        Collections.sort(ordered, Comparator.comparingLong(row -> row.sequence));
+        return ordered;
+    }
+
+    private int count(Counter counter) {
+        return (int) rows.values().stream().filter(row -> row.counter == counter).count();
+    }
+
+    private void write(byte[] bytes, long offset) throws IOException {
+        if (bytes.length == 0) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        FileChannel fileChannel = getChannel();
+        while (buffer.hasRemaining()) {
+            fileChannel.write(buffer, offset + buffer.position());
+        }
+    }
+
+    private FileChannel getChannel() throws IOException {
+        if (channel == null) {
+            synchronized (this) {
+                if (channel == null) {
+                    File rowsFile = File.createTempFile("email-report", ".rows");
+                    rowsFile.deleteOnExit();
+                    file = rowsFile;
+                    channel = FileChannel.open(rowsFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+                }
+            }
+        }
+        return channel;
+    }
+}
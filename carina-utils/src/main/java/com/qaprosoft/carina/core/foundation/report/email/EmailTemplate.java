@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.report.email;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * EmailTemplate is email.properties template compiled once into literal segments and ${...} placeholders, so rendering
+ * is a single pass over the output instead of String.replace call per placeholder.
+ */
+public class EmailTemplate {
+
+    private static final String PLACEHOLDER_START = "${";
+    private static final String PLACEHOLDER_END = "}";
+
+    /**
+     * Placeholder value streamed directly into the output.
+     */
+    @FunctionalInterface
+    public interface Content {
+        void writeTo(Writer out) throws IOException;
+    }
+
+    // literals.length == placeholders.length + 1
+    private final String[] literals;
+    private final String[] placeholders;
+
+    private EmailTemplate(List<String> literals, List<String> placeholders) {
+        this.literals = literals.toArray(new String[0]);
+        this.placeholders = placeholders.toArray(new String[0]);
+    }
+
+    public static EmailTemplate compile(String template) {
+        List<String> literals = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        String text = template != null ? template : "";
+        int from = 0;
+        int start;
+        while ((start = text.indexOf(PLACEHOLDER_START, from)) >= 0) {
+            int end = text.indexOf(PLACEHOLDER_END, start + PLACEHOLDER_START.length());
+            if (end < 0) {
+                break;
+            }
+            literals.add(text.substring(from, start));
+            placeholders.add(text.substring(start, end + PLACEHOLDER_END.length()));
+            from = end + PLACEHOLDER_END.length();
+        }
+        literals.add(text.substring(from));
+        return new EmailTemplate(literals, placeholders);
+    }
+
+    /**
+     * Render template into the writer.
+     * 
+     * @param out - Writer
+     * @param values - values by placeholder i.e. "${title}". String, {@link Content} or any object written using
+     *            toString. Placeholders without value are kept as is.
+     * @throws IOException
+     */
+    public void render(Writer out, Map<String, ?> values) throws IOException {
+        for (int i = 0; i < placeholders.length; i++) {
+            out.write(literals[i]);
+            Object value = values.get(placeholders[i]);
+            if (value == null) {
+                out.write(placeholders[i]);
+            } else if (value instanceof Content) {
+                ((Content) value).writeTo(out);
+            } else {
+                out.write(value.toString());
+            }
+        }
+        out.write(literals[placeholders.length]);
+    }
+
+    public String render(Map<String, ?> values) {
+        StringWriter out = new StringWriter();
+        try {
+            render(out, values);
+        } catch (IOException e) {
+            // StringWriter doesn't throw it, only Content could
+            throw new RuntimeException(e.getMessage(), e);
+        }
+        return out.toString();
+    }
+
+    public boolean isEmpty() {
+        return placeholders.length == 0 && literals[0].isEmpty();
+    }
+}
@@ -108,6 +108,14 @@ public class Configuration {
 
         BROWSERMOB_MITM("browsermob_disabled_mitm"),
 
+        BROWSERMOB_HAR_STREAM("browsermob_har_stream"),
+
+        BROWSERMOB_HAR_BODY_LIMIT("browsermob_har_body_limit"),
+
+        BROWSERMOB_HAR_CONTENT_TYPES("browsermob_har_content_types"),
+
+        BROWSERMOB_HAR_SAMPLING("browsermob_har_sampling"),
+
         PROXY_SET_TO_SYSTEM("proxy_set_to_system"),
 
         REPORT_URL("report_url"),
@@ -172,8 +180,18 @@ public class Configuration {
 
         ARTIFACTS_EXPIRATION_SECONDS("artifacts_expiration_seconds"),
 
+        ARTIFACTS_WAIT_TIMEOUT("artifacts_wait_timeout"),
+
         LOG_ALL_JSON("log_all_json"),
 
+        API_LOG_MODE("api_log_mode"),
+
+        API_LOG_BODY_LIMIT("api_log_body_limit"),
+
+        API_LOG_INLINE_LIMIT("api_log_inline_limit"),
+
+        API_LOG_SUCCESSFUL_BODIES("api_log_successful_bodies"),
+
         DATE_FORMAT("date_format"),
 
         TIME_FORMAT("time_format"),
@@ -223,6 +241,21 @@ public class Configuration {
         
         S3_LOCAL_STORAGE("s3_local_storage"),
 
+        S3_UPLOAD_BUCKET("s3_upload_bucket"),
+
+        S3_UPLOAD_THREADS("s3_upload_threads"),
+
+        S3_UPLOAD_PART_SIZE_MB("s3_upload_part_size_mb"),
+
+        S3_INDEX_TTL_SEC("s3_index_ttl_sec"),
+
+        // Downloaded artifacts cache
+        ARTIFACT_CACHE_DIR("artifact_cache_dir"),
+
+        ARTIFACT_CACHE_SIZE_MB("artifact_cache_size_mb"),
+
+        ARTIFACT_DOWNLOAD_THREADS("artifact_download_threads"),
+
         // AppCenter token
         APPCENTER_TOKEN("appcenter_token"),
 
@@ -247,6 +280,14 @@ public class Configuration {
 
         UNINSTALL_RELATED_APPS("uninstall_related_apps"),
 
+        ADB_SOCKET_CLIENT("adb_socket_client"),
+
+        LOGCAT_STREAM("logcat_stream"),
+
+        LOGCAT_FILTER("logcat_filter"),
+
+        PAGE_SOURCE_SNAPSHOT("page_source_snapshot"),
+
         // For Device default timezone and language
         DEFAULT_DEVICE_TIMEZONE("default_device_timezone"),
 
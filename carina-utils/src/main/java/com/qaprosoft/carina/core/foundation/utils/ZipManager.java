@@ -17,85 +17,209 @@ package com.qaprosoft.carina.core.foundation.utils;
 
 import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.Enumeration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 import org.apache.log4j.Logger;
 
 public class ZipManager {
     private static final Logger LOGGER = Logger.getLogger(ZipManager.class);
 
-    @SuppressWarnings("rawtypes")
-    public static void unzip(String zip, String extractTo) {
-        Enumeration entries;
-        ZipFile zipFile = null;
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    public static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors();
 
-        try {
-            zipFile = new ZipFile(zip);
+    // already compressed formats are stored with compression level 0
+    private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<>(Arrays.asList("png", "jpg", "jpeg", "gif", "mp4", "webm",
+            "zip", "gz", "apk", "ipa"));
 
-            entries = zipFile.entries();
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
 
-            while (entries.hasMoreElements()) {
-                ZipEntry entry = (ZipEntry) entries.nextElement();
+    public static void unzip(String zip, String extractTo) {
+        unzip(zip, extractTo, DEFAULT_THREADS);
+    }
 
-                if (entry.isDirectory()) {
-                    File folder = new File(extractTo + "/" + entry.getName());
-                    boolean isCreated = folder.mkdir();
-                    if (!isCreated) {
-                        throw new RuntimeException("Folder not created: " + folder.getAbsolutePath());
-                    }
-                    continue;
+    /**
+     * Extract zip archive. Entries are read using ZipFile random access and extracted in parallel, the largest ones
+     * first. Archive is rejected without extracting anything if any entry points outside of the target folder.
+     * 
+     * @param zip - path to zip archive
+     * @param extractTo - target folder
+     * @param threads - max number of entries extracted in parallel
+     */
+    public static void unzip(String zip, String extractTo, int threads) {
+        try (ZipFile zipFile = new ZipFile(zip)) {
+            File root = new File(extractTo).getCanonicalFile();
+            List<ZipEntry> files = new ArrayList<>();
+            List<File> targets = new ArrayList<>();
+            for (ZipEntry entry : Collections.list(zipFile.entries())) {
+                File target = resolve(root, entry.getName());
+                File folder = entry.isDirectory() ? target : target.getParentFile();
+                if (!folder.isDirectory() && !folder.mkdirs() && !folder.isDirectory()) {
+                    throw new RuntimeException("Folder not created: " + folder.getAbsolutePath());
+                }
+                if (!entry.isDirectory()) {
+                    files.add(entry);
+                    targets.add(target);
                 }
+            }
 
-                InputStream is = zipFile.getInputStream(entry);
-                try {
-                    FileOutputStream fos = new FileOutputStream(extractTo + "/" + entry.getName());
-                    try {
-                        BufferedOutputStream bos = new BufferedOutputStream(fos);
-                        try {
-                            copyInputStream(is, bos);
-                        } finally {
-							bos.close();
-                        }
-                    } finally {
-						fos.close();
-                    }
-                } finally {
-                    if (is != null) {
-                        is.close();
-                    }
+            int workers = Math.max(1, Math.min(threads, files.size()));
+            if (workers == 1) {
+                for (int i = 0; i < files.size(); i++) {
+                    extract(zipFile, files.get(i), targets.get(i));
                 }
+                return;
             }
-        } catch (IOException e) {
-            LOGGER.error(e.getMessage(), e);
-        } finally {
+
+            // schedule the largest entries first to balance workers
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < files.size(); i++) {
+                order.add(i);
+            }
+            order.sort(Comparator.comparingLong((Integer i) -> files.get(i).getSize()).reversed());
+
+            ExecutorService executor = Executors.newFixedThreadPool(workers, r -> {
+                Thread thread = new Thread(r, "unzip-" + new File(zip).getName());
+                thread.setDaemon(true);
+                return thread;
+            });
             try {
-                if (zipFile != null) {
-                    zipFile.close();
+                List<Future<?>> extractions = new ArrayList<>(files.size());
+                for (int i : order) {
+                    extractions.add(executor.submit(() -> {
+                        extract(zipFile, files.get(i), targets.get(i));
+                        return null;
+                    }));
                 }
-            } catch (IOException e) {
-                LOGGER.error(e.getMessage(), e);
+                for (Future<?> extraction : extractions) {
+                    extraction.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Extraction of " + zip + " was interrupted", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+            } finally {
+                executor.shutdownNow();
             }
+        } catch (IOException e) {
+            LOGGER.error(e.getMessage(), e);
         }
     }
 
-    public static final void copyInputStream(InputStream in, OutputStream out) throws IOException {
-        byte[] buffer = new byte[1024];
-        int len;
+    public static void zip(String output, File... files) {
+        zip(output, Deflater.DEFAULT_COMPRESSION, files);
+    }
+
+    /**
+     * Archive files and folders into the single zip archive. Folders are added recursively with paths relative to the
+     * folder parent. Already compressed files (png, mp4 etc) are stored with level 0 to not waste time on compression.
+     * 
+     * @param output - zip file path
+     * @param level - compression level from 0 to 9 or {@link Deflater#DEFAULT_COMPRESSION}
+     * @param files - files and folders to archive
+     */
+    public static void zip(String output, int level, File... files) {
+        try (ZipOutputStream zipOut = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(output), BUFFER_SIZE))) {
+            for (File file : files) {
+                addEntry(zipOut, level, file, file.getName());
+            }
+        } catch (IOException e) {
+            LOGGER.error("IO exception for archive operation!", e);
+        }
+    }
+
+    public static boolean isCompressed(String fileName) {
+        int index = fileName.lastIndexOf('.');
+        return index >= 0 && COMPRESSED_EXTENSIONS.contains(fileName.substring(index + 1).toLowerCase(Locale.ENGLISH));
+    }
 
+    public static final void copyInputStream(InputStream in, OutputStream out) throws IOException {
         if (in == null) {
-        	return;
+            return;
         }
-        
+
+        byte[] buffer = BUFFER.get();
+        int len;
         while ((len = in.read(buffer)) >= 0)
             out.write(buffer, 0, len);
 
         in.close();
         out.close();
     }
+
+    /**
+     * Resolve entry in the target folder.
+     * 
+     * @param root - canonical target folder
+     * @param name - entry name
+     * @return File
+     * @throws IOException
+     */
+    static File resolve(File root, String name) throws IOException {
+        File target = new File(root, name).getCanonicalFile();
+        if (!target.toPath().startsWith(root.toPath())) {
+            throw new RuntimeException("Zip entry is outside of the target folder: " + name);
+        }
+        return target;
+    }
+
+    private static void extract(ZipFile zipFile, ZipEntry entry, File target) throws IOException {
+        try (InputStream is = zipFile.getInputStream(entry); OutputStream os = new FileOutputStream(target)) {
+            byte[] buffer = BUFFER.get();
+            int len;
+            while ((len = is.read(buffer)) >= 0) {
+                os.write(buffer, 0, len);
+            }
+        }
+    }
+
+    private static void addEntry(ZipOutputStream zipOut, int level, File file, String name) throws IOException {
+        if (file.isDirectory()) {
+            zipOut.putNextEntry(new ZipEntry(name + "/"));
+            zipOut.closeEntry();
+            File[] children = file.listFiles();
+            if (children != null) {
+                Arrays.sort(children);
+                for (File child : children) {
+                    addEntry(zipOut, level, child, name + "/" + child.getName());
+                }
+            }
+            return;
+        }
+
+        zipOut.setLevel(isCompressed(name) ? Deflater.NO_COMPRESSION : level);
+        ZipEntry entry = new ZipEntry(name);
+        entry.setTime(file.lastModified());
+        zipOut.putNextEntry(entry);
+        try (InputStream is = new FileInputStream(file)) {
+            byte[] buffer = BUFFER.get();
+            int len;
+            while ((len = is.read(buffer)) >= 0) {
+                zipOut.write(buffer, 0, len);
+            }
+        }
+        zipOut.closeEntry();
+    }
 }
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.android;
+
+/**
+ * ApkManifest - application metadata from AndroidManifest.xml of apk file.
+ */
+public class ApkManifest {
+
+    private final String packageName;
+
+    private final String versionCode;
+
+    private final String versionName;
+
+    private final String launchableActivity;
+
+    public ApkManifest(String packageName, String versionCode, String versionName, String launchableActivity) {
+        this.packageName = packageName;
+        this.versionCode = versionCode;
+        this.versionName = versionName;
+        this.launchableActivity = launchableActivity;
+    }
+
+    public String getPackageName() {
+        return packageName;
+    }
+
+    public String getVersionCode() {
+        return versionCode;
+    }
+
+    /**
+     * Version name. Reference to string resource is returned as "@0x7f..." as resources.arsc is not parsed
+     * 
+     * @return String
+     */
+    public String getVersionName() {
+        return versionName;
+    }
+
+    /**
+     * Fully qualified name of activity with MAIN action and LAUNCHER category
+     * 
+     * @return String or null if application has no launchable activity
+     */
+    public String getLaunchableActivity() {
+        return launchableActivity;
+    }
+
+    @Override
+    public String toString() {
+        return "ApkManifest [packageName=" + packageName + ", versionCode=" + versionCode + ", versionName=" + versionName
+                + ", launchableActivity=" + launchableActivity + "]";
+    }
+}
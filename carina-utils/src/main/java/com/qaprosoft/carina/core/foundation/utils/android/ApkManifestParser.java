@@ -0,0 +1,311 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.android;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.log4j.Logger;
+
+/**
+ * ApkManifestParser - reads package, version and launchable activity from binary AndroidManifest.xml inside apk
+ * without aapt. Only manifest entry is inflated so big apk files are processed in milliseconds. Results are cached by
+ * file path, size and modification time.
+ */
+public class ApkManifestParser {
+    private static final Logger LOGGER = Logger.getLogger(ApkManifestParser.class);
+
+    private static final String MANIFEST = "AndroidManifest.xml";
+
+    private static final int RES_STRING_POOL_TYPE = 0x0001;
+    private static final int RES_XML_TYPE = 0x0003;
+    private static final int RES_XML_START_ELEMENT_TYPE = 0x0102;
+    private static final int RES_XML_END_ELEMENT_TYPE = 0x0103;
+    private static final int RES_XML_RESOURCE_MAP_TYPE = 0x0180;
+
+    private static final int UTF8_FLAG = 1 << 8;
+
+    private static final int TYPE_REFERENCE = 0x01;
+    private static final int TYPE_STRING = 0x03;
+    private static final int TYPE_INT_DEC = 0x10;
+    private static final int TYPE_INT_HEX = 0x11;
+    private static final int TYPE_INT_BOOLEAN = 0x12;
+
+    // android:name, android:versionCode and android:versionName resource ids for manifests with stripped attribute names
+    private static final int ATTR_NAME = 0x01010003;
+    private static final int ATTR_VERSION_CODE = 0x0101021b;
+    private static final int ATTR_VERSION_NAME = 0x0101021c;
+
+    private static final String ACTION_MAIN = "android.intent.action.MAIN";
+    private static final String CATEGORY_LAUNCHER = "android.intent.category.LAUNCHER";
+
+    private static final Map<String, CachedManifest> CACHE = new ConcurrentHashMap<>();
+
+    private ApkManifestParser() {
+    }
+
+    /**
+     * Parse manifest of apk file. Result is cached until file size or modification time is changed.
+     * 
+     * @param apk apk file
+     * @return ApkManifest
+     */
+    public static ApkManifest parse(File apk) {
+        if (!apk.isFile()) {
+            throw new RuntimeException("Unable to find apk file: " + apk.getAbsolutePath());
+        }
+        String path = apk.getAbsolutePath();
+        long size = apk.length();
+        long modified = apk.lastModified();
+        CachedManifest cached = CACHE.get(path);
+        if (cached != null && cached.size == size && cached.modified == modified) {
+            return cached.manifest;
+        }
+
+        long start = System.currentTimeMillis();
+        ApkManifest manifest = parseManifest(readManifest(apk));
+        CACHE.put(path, new CachedManifest(size, modified, manifest));
+        LOGGER.debug(String.format("Parsed %s in %d ms: %s", path, System.currentTimeMillis() - start, manifest));
+        return manifest;
+    }
+
+    public static void clearCache() {
+        CACHE.clear();
+    }
+
+    private static byte[] readManifest(File apk) {
+        try (ZipFile zip = new ZipFile(apk)) {
+            ZipEntry entry = zip.getEntry(MANIFEST);
+            if (entry == null) {
+                throw new RuntimeException(MANIFEST + " is not found in " + apk.getAbsolutePath());
+            }
+            try (InputStream is = zip.getInputStream(entry)) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(entry.getSize() > 0 ? (int) entry.getSize() : 8192);
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = is.read(buffer)) != -1) {
+                    bytes.write(buffer, 0, read);
+                }
+                return bytes.toByteArray();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read " + MANIFEST + " from " + apk.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Parse binary xml of AndroidManifest.xml
+     * 
+     * @param data binary xml
+     * @return ApkManifest
+     */
+    static ApkManifest parseManifest(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        if (data.length < 8 || (buffer.getShort(0) & 0xffff) != RES_XML_TYPE) {
+            throw new RuntimeException("Invalid binary " + MANIFEST);
+        }
+
+        String[] strings = new String[0];
+        int[] resourceIds = new int[0];
+
+        String packageName = null;
+        String versionCode = null;
+        String versionName = null;
+        String launchableActivity = null;
+
+        // activity which intent filters are parsed at the moment
+        String activity = null;
+        boolean main = false;
+        boolean launcher = false;
+
+        int offset = buffer.getShort(2) & 0xffff;
+        while (offset + 8 <= data.length) {
+            int type = buffer.getShort(offset) & 0xffff;
+            int headerSize = buffer.getShort(offset + 2) & 0xffff;
+            int size = buffer.getInt(offset + 4);
+            if (size < 8 || offset + size > data.length) {
+                throw new RuntimeException("Corrupted binary " + MANIFEST + " chunk at " + offset);
+            }
+
+            if (type == RES_STRING_POOL_TYPE) {
+                strings = readStringPool(buffer, offset);
+            } else if (type == RES_XML_RESOURCE_MAP_TYPE) {
+                resourceIds = new int[(size - headerSize) / 4];
+                for (int i = 0; i < resourceIds.length; i++) {
+                    resourceIds[i] = buffer.getInt(offset + headerSize + i * 4);
+                }
+            } else if (type == RES_XML_START_ELEMENT_TYPE) {
+                int ext = offset + headerSize;
+                String name = getString(strings, buffer.getInt(ext + 4));
+                int attributeStart = buffer.getShort(ext + 8) & 0xffff;
+                int attributeSize = buffer.getShort(ext + 10) & 0xffff;
+                int attributeCount = buffer.getShort(ext + 12) & 0xffff;
+
+                String nameAttr = null;
+                for (int i = 0; i < attributeCount; i++) {
+                    int attr = ext + attributeStart + i * attributeSize;
+                    int attrNameIndex = buffer.getInt(attr + 4);
+                    String attrName = getString(strings, attrNameIndex);
+                    int attrId = attrNameIndex >= 0 && attrNameIndex < resourceIds.length ? resourceIds[attrNameIndex] : 0;
+                    String value = getValue(buffer, strings, attr);
+
+                    if ("manifest".equals(name) && "package".equals(attrName)) {
+                        packageName = value;
+                    } else if (attrId == ATTR_VERSION_CODE || (attrId == 0 && "versionCode".equals(attrName))) {
+                        versionCode = value;
+                    } else if (attrId == ATTR_VERSION_NAME || (attrId == 0 && "versionName".equals(attrName))) {
+                        versionName = value;
+                    } else if (attrId == ATTR_NAME || (attrId == 0 && "name".equals(attrName))) {
+                        nameAttr = value;
+                    }
+                }
+
+                if ("activity".equals(name) || "activity-alias".equals(name)) {
+                    activity = nameAttr;
+                } else if ("intent-filter".equals(name)) {
+                    main = false;
+                    launcher = false;
+                } else if ("action".equals(name) && ACTION_MAIN.equals(nameAttr)) {
+                    main = true;
+                } else if ("category".equals(name) && CATEGORY_LAUNCHER.equals(nameAttr)) {
+                    launcher = true;
+                }
+            } else if (type == RES_XML_END_ELEMENT_TYPE) {
+                String name = getString(strings, buffer.getInt(offset + headerSize + 4));
+                if ("intent-filter".equals(name) && main && launcher && activity != null && launchableActivity == null) {
+                    launchableActivity = activity;
+                } else if ("activity".equals(name) || "activity-alias".equals(name)) {
+                    activity = null;
+                }
+            }
+            offset += size;
+        }
+
+        if (packageName == null) {
+            throw new RuntimeException("Package name is not found in " + MANIFEST);
+        }
+        return new ApkManifest(packageName, versionCode, versionName, toFullClassName(packageName, launchableActivity));
+    }
+
+    private static String toFullClassName(String packageName, String className) {
+        if (className == null) {
+            return null;
+        }
+        if (className.startsWith(".")) {
+            return packageName + className;
+        }
+        if (!className.contains(".")) {
+            return packageName + "." + className;
+        }
+        return className;
+    }
+
+    private static String getValue(ByteBuffer buffer, String[] strings, int attr) {
+        int rawValue = buffer.getInt(attr + 8);
+        if (rawValue >= 0) {
+            return getString(strings, rawValue);
+        }
+        int dataType = buffer.get(attr + 15) & 0xff;
+        int value = buffer.getInt(attr + 16);
+        switch (dataType) {
+        case TYPE_STRING:
+            return getString(strings, value);
+        case TYPE_INT_DEC:
+        case TYPE_INT_HEX:
+            return String.valueOf(value);
+        case TYPE_INT_BOOLEAN:
+            return String.valueOf(value != 0);
+        case TYPE_REFERENCE:
+            return String.format("@0x%08x", value);
+        default:
+            return String.valueOf(value);
+        }
+    }
+
+    private static String getString(String[] strings, int index) {
+        return index >= 0 && index < strings.length ? strings[index] : null;
+    }
+
+    private static String[] readStringPool(ByteBuffer buffer, int offset) {
+        int headerSize = buffer.getShort(offset + 2) & 0xffff;
+        int stringCount = buffer.getInt(offset + 8);
+        int flags = buffer.getInt(offset + 16);
+        int stringsStart = offset + buffer.getInt(offset + 20);
+        boolean utf8 = (flags & UTF8_FLAG) != 0;
+
+        String[] strings = new String[stringCount];
+        for (int i = 0; i < stringCount; i++) {
+            int position = stringsStart + buffer.getInt(offset + headerSize + i * 4);
+            strings[i] = utf8 ? readUtf8(buffer, position) : readUtf16(buffer, position);
+        }
+        return strings;
+    }
+
+    private static String readUtf8(ByteBuffer buffer, int position) {
+        // utf-16 length followed by utf-8 length, each is 1 or 2 bytes
+        position += (buffer.get(position) & 0x80) != 0 ? 2 : 1;
+        int length = buffer.get(position) & 0xff;
+        if ((length & 0x80) != 0) {
+            length = ((length & 0x7f) << 8) | (buffer.get(position + 1) & 0xff);
+            position += 2;
+        } else {
+            position += 1;
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(position + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String readUtf16(ByteBuffer buffer, int position) {
+        int length = buffer.getShort(position) & 0xffff;
+        if ((length & 0x8000) != 0) {
+            length = ((length & 0x7fff) << 16) | (buffer.getShort(position + 2) & 0xffff);
+            position += 4;
+        } else {
+            position += 2;
+        }
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = buffer.getChar(position + i * 2);
+        }
+        return new String(chars);
+    }
+
+    private static class CachedManifest {
+        private final long size;
+
+        private final long modified;
+
+        private final ApkManifest manifest;
+
+        private CachedManifest(long size, long modified, ApkManifest manifest) {
+            this.size = size;
+            this.modified = modified;
+            this.manifest = manifest;
+        }
+    }
+}
@@ -0,0 +1,373 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.android;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.Logger;
+
+/**
+ * LogcatCollector - keeps single long-running "adb logcat" reader per device and writes its output into rolling on-disk
+ * buffer. Callers record offsets via {@link #mark()} at test start and finish and extract exactly that slice, so log
+ * collection cost depends on test log size only and not on size of device log buffer.
+ * 
+ * Buffer consists of two segment files, when current segment reaches segment size the older one is dropped. Offsets
+ * are absolute and stay valid after rollover and reader restart.
+ */
+public class LogcatCollector implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(LogcatCollector.class);
+
+    public static final long DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private final Object lock = new Object();
+
+    private final String name;
+
+    private final long segmentSize;
+
+    private final File[] segments = new File[2];
+
+    private final long[] segmentStart = new long[2];
+
+    private int current = 0;
+
+    private OutputStream out;
+
+    private long position = 0;
+
+    private Process process;
+
+    private Thread reader;
+
+    private volatile boolean running = false;
+
+    private volatile boolean closed = false;
+
+    public LogcatCollector(File dir, String name) {
+        this(dir, name, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public LogcatCollector(File dir, String name, long segmentSize) {
+        this.name = name;
+        this.segmentSize = segmentSize;
+        String fileName = name.replaceAll("[^\\w.-]", "_");
+        this.segments[0] = new File(dir, fileName + ".0.logcat");
+        this.segments[1] = new File(dir, fileName + ".1.logcat");
+        // drop buffer of previous run
+        for (File segment : segments) {
+            segment.delete();
+        }
+    }
+
+    /**
+     * Start logcat process, i.e. "adb -s UDID logcat -v threadtime -T 1". Does nothing if reader is already running.
+     * Restarted reader continues to append into the same buffer.
+     * 
+     * @param cmd logcat command line
+     */
+    public void start(String[] cmd) {
+        synchronized (lock) {
+            if (running) {
+                return;
+            }
+            LOGGER.debug("Starting logcat reader for " + name + ": " + Arrays.toString(cmd));
+            try {
+                process = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to start logcat reader for " + name, e);
+            }
+            start(process.getInputStream());
+        }
+    }
+
+    void start(InputStream in) {
+        synchronized (lock) {
+            if (closed) {
+                throw new RuntimeException("Logcat collector is already closed: " + name);
+            }
+            running = true;
+            reader = new Thread(() -> read(in), "logcat-" + name);
+            reader.setDaemon(true);
+            reader.start();
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Flush buffered output and return current offset in logcat stream.
+     * 
+     * @return long offset
+     */
+    public long mark() {
+        synchronized (lock) {
+            flush();
+            return position;
+        }
+    }
+
+    /**
+     * Logcat lines written between two marks.
+     * 
+     * @param from offset returned by {@link #mark()} at test start
+     * @param to offset returned by {@link #mark()} at test finish
+     * @param filter tag/priority filter or null to get all lines
+     * @return String
+     */
+    public String getLog(long from, long to, LogcatFilter filter) {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        try {
+            writeLog(from, to, filter, log);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read logcat buffer of " + name, e);
+        }
+        return new String(log.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write logcat lines between two marks into stream.
+     * 
+     * @param from offset returned by {@link #mark()} at test start
+     * @param to offset returned by {@link #mark()} at test finish
+     * @param filter tag/priority filter or null to get all lines
+     * @param target OutputStream
+     * @return number of written bytes
+     * @throws IOException on buffer read failure
+     */
+    public long writeLog(long from, long to, LogcatFilter filter, OutputStream target) throws IOException {
+        byte[] slice;
+        synchronized (lock) {
+            flush();
+            to = Math.min(to, position);
+            int older = 1 - current;
+            long available = segments[older].exists() ? segmentStart[older] : segmentStart[current];
+            if (from < available) {
+                LOGGER.warn(String.format("%d bytes of %s logcat were rolled over and are not available", available - from, name));
+                from = available;
+            }
+            if (from >= to) {
+                return 0;
+            }
+            slice = new byte[(int) Math.min(Integer.MAX_VALUE - 8, to - from)];
+            int filled = 0;
+            for (int segment : new int[] { older, current }) {
+                if (!segments[segment].exists()) {
+                    continue;
+                }
+                long start = Math.max(from, segmentStart[segment]);
+                long end = Math.min(to, segmentStart[segment] + segments[segment].length());
+                if (start >= end) {
+                    continue;
+                }
+                try (RandomAccessFile file = new RandomAccessFile(segments[segment], "r")) {
+                    file.seek(start - segmentStart[segment]);
+                    int length = (int) Math.min(end - start, slice.length - filled);
+                    file.readFully(slice, filled, length);
+                    filled += length;
+                }
+            }
+            if (filled < slice.length) {
+                slice = Arrays.copyOf(slice, filled);
+            }
+        }
+
+        if (filter == null) {
+            target.write(slice);
+            return slice.length;
+        }
+        return filter.write(slice, target);
+    }
+
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            running = false;
+            if (process != null) {
+                process.destroy();
+            }
+            if (reader != null) {
+                reader.interrupt();
+            }
+            closeOutput();
+        }
+        for (File segment : segments) {
+            segment.delete();
+        }
+    }
+
+    private void read(InputStream in) {
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while (!closed && (line = lines.readLine()) != null) {
+                write((line + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                LOGGER.debug("Logcat reader of " + name + " is interrupted: " + e.getMessage());
+            }
+        } finally {
+            synchronized (lock) {
+                running = false;
+                flush();
+            }
+            LOGGER.debug("Logcat reader of " + name + " is stopped.");
+        }
+    }
+
+    private void write(byte[] line) throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            if (out == null) {
+                openSegment(current);
+            } else if (position - segmentStart[current] >= segmentSize) {
+                closeOutput();
+                current = 1 - current;
+                openSegment(current);
+            }
+            out.write(line);
+            position += line.length;
+        }
+    }
+
+    private void openSegment(int segment) throws IOException {
+        segmentStart[segment] = position;
+        segments[segment].getParentFile().mkdirs();
+        out = new BufferedOutputStream(new FileOutputStream(segments[segment], false), 64 * 1024);
+    }
+
+    private void flush() {
+        if (out != null) {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                LOGGER.debug("Unable to flush logcat buffer of " + name, e);
+            }
+        }
+    }
+
+    private void closeOutput() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                LOGGER.debug("Unable to close logcat buffer of " + name, e);
+            }
+            out = null;
+        }
+    }
+
+    /**
+     * LogcatFilter - tag/priority filter in logcat filterspec notation, i.e. "ActivityManager:I MyApp:D *:S". Tags
+     * without explicit priority are printed starting from verbose level like logcat does. Lines are expected in
+     * "threadtime" format, continuation lines follow decision made for previous line.
+     */
+    public static class LogcatFilter {
+        private static final String PRIORITIES = "VDIWEFS";
+
+        private static final Pattern THREADTIME = Pattern.compile("^\\d\\d-\\d\\d\\s+\\S+\\s+\\d+\\s+\\d+\\s+([VDIWEFA])\\s+(.*?)\\s*:\\s");
+
+        private final Map<String, Integer> tags = new HashMap<>();
+
+        private int defaultPriority = 0;
+
+        private LogcatFilter() {
+        }
+
+        /**
+         * Parse filterspec.
+         * 
+         * @param spec space separated list of tag:priority pairs
+         * @return LogcatFilter or null if spec is empty
+         */
+        public static LogcatFilter parse(String spec) {
+            if (spec == null || spec.trim().isEmpty()) {
+                return null;
+            }
+            LogcatFilter filter = new LogcatFilter();
+            for (String item : spec.trim().split("[\\s,]+")) {
+                int separator = item.lastIndexOf(':');
+                String tag = separator < 0 ? item : item.substring(0, separator);
+                int priority = separator < 0 ? 0 : toPriority(item.substring(separator + 1));
+                if ("*".equals(tag)) {
+                    filter.defaultPriority = priority;
+                } else {
+                    filter.tags.put(tag, priority);
+                }
+            }
+            return filter;
+        }
+
+        public boolean accept(char priority, String tag) {
+            Integer minimum = tags.get(tag);
+            return toPriority(String.valueOf(priority)) >= (minimum != null ? minimum : defaultPriority);
+        }
+
+        long write(byte[] log, OutputStream target) throws IOException {
+            long written = 0;
+            boolean accepted = true;
+            int lineStart = 0;
+            for (int i = 0; i < log.length; i++) {
+                if (log[i] != '\n' && i != log.length - 1) {
+                    continue;
+                }
+                int lineEnd = i + 1;
+                String line = new String(log, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8);
+                Matcher matcher = THREADTIME.matcher(line);
+                if (matcher.find()) {
+                    accepted = accept(matcher.group(1).charAt(0), matcher.group(2));
+                }
+                if (accepted) {
+                    target.write(log, lineStart, lineEnd - lineStart);
+                    written += lineEnd - lineStart;
+                }
+                lineStart = lineEnd;
+            }
+            return written;
+        }
+
+        private static int toPriority(String priority) {
+            if ("A".equalsIgnoreCase(priority)) {
+                return PRIORITIES.indexOf('F');
+            }
+            int index = PRIORITIES.indexOf(priority.toUpperCase());
+            if (priority.length() != 1 || index < 0) {
+                throw new RuntimeException("Invalid logcat priority: " + priority);
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,580 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.android.recorder.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.Logger;
+
+/**
+ * AdbClient - talks to adb server directly over its socket protocol instead of forking adb process per command.
+ * Supports host services (devices, connect, disconnect), shell commands and sync service for push/pull. Sync
+ * connections are kept open per device and reused, shell and host services are one-shot by protocol and use new local
+ * connection per command.
+ */
+public class AdbClient {
+    private static final Logger LOGGER = Logger.getLogger(AdbClient.class);
+
+    public static final int DEFAULT_PORT = 5037;
+
+    private static final int CONNECT_TIMEOUT = 2000;
+
+    private static final int SYNC_DATA_MAX = 64 * 1024;
+
+    private static final int MAX_IDLE_SYNC_CONNECTIONS = 2;
+
+    private static final int DEFAULT_FILE_MODE = 0100644;
+
+    private static final String TMP_DIR = "/data/local/tmp/";
+
+    private static final Pattern SAFE_SHELL_ARG = Pattern.compile("[\\w@%+=:,./-]+");
+
+    private static volatile AdbClient instance;
+
+    private final String host;
+
+    private final int port;
+
+    private final Map<String, Deque<SyncConnection>> syncConnections = new ConcurrentHashMap<>();
+
+    public AdbClient(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Client for adb server declared by ADB_SERVER_SOCKET or ANDROID_ADB_SERVER_PORT environment variables, localhost:5037
+     * by default.
+     * 
+     * @return AdbClient
+     */
+    public static AdbClient getInstance() {
+        if (instance == null) {
+            synchronized (AdbClient.class) {
+                if (instance == null) {
+                    instance = fromEnvironment(System.getenv("ADB_SERVER_SOCKET"), System.getenv("ANDROID_ADB_SERVER_PORT"));
+                }
+            }
+        }
+        return instance;
+    }
+
+    static AdbClient fromEnvironment(String serverSocket, String serverPort) {
+        // ADB_SERVER_SOCKET=tcp:host:port
+        if (serverSocket != null && serverSocket.startsWith("tcp:")) {
+            String[] address = serverSocket.split(":");
+            if (address.length == 3) {
+                return new AdbClient(address[1], Integer.parseInt(address[2]));
+            }
+            return new AdbClient("127.0.0.1", Integer.parseInt(address[1]));
+        }
+        if (serverPort != null && !serverPort.isEmpty()) {
+            return new AdbClient("127.0.0.1", Integer.parseInt(serverPort));
+        }
+        return new AdbClient("127.0.0.1", DEFAULT_PORT);
+    }
+
+    /**
+     * Execute adb command line via adb server protocol.
+     * 
+     * @param cmd command line, i.e. "adb -s UDID shell pm list packages"
+     * @return output lines or null if command is not supported by client and should be executed by adb process
+     * @throws AdbConnectException when adb server is not available and command is not sent to device
+     * @throws IOException when command execution is failed
+     */
+    public List<String> execute(String[] cmd) throws IOException {
+        if (cmd.length < 2 || !isAdb(cmd[0])) {
+            return null;
+        }
+        String serial = null;
+        int i = 1;
+        while (i < cmd.length && cmd[i].startsWith("-")) {
+            if ("-s".equals(cmd[i]) && i + 1 < cmd.length) {
+                serial = cmd[i + 1];
+                i += 2;
+            } else {
+                // -d, -e, -P, -H etc are not supported
+                return null;
+            }
+        }
+        if (i >= cmd.length) {
+            return null;
+        }
+        String command = cmd[i];
+        String[] args = Arrays.copyOfRange(cmd, i + 1, cmd.length);
+
+        switch (command) {
+        case "devices":
+            if (args.length > 0) {
+                return null;
+            }
+            List<String> devices = new ArrayList<>();
+            devices.add("List of devices attached");
+            devices.addAll(devices());
+            devices.add("");
+            return devices;
+        case "connect":
+            return args.length == 1 ? Collections.singletonList(query("host:connect:" + args[0])) : null;
+        case "disconnect":
+            return args.length <= 1 ? Collections.singletonList(query("host:disconnect:" + (args.length == 1 ? args[0] : ""))) : null;
+        case "shell":
+            return args.length > 0 ? shell(serial, toShellCommand(args)) : null;
+        case "logcat":
+            return shell(serial, "logcat" + (args.length > 0 ? " " + toShellCommand(args) : ""));
+        case "pull":
+            if (args.length != 2) {
+                return null;
+            }
+            File local = new File(args[1]);
+            if (local.isDirectory()) {
+                local = new File(local, new File(args[0]).getName());
+            }
+            pull(serial, args[0], local);
+            return Collections.singletonList(args[0] + ": 1 file pulled");
+        case "push":
+            if (args.length != 2) {
+                return null;
+            }
+            String remote = args[1].endsWith("/") ? args[1] + new File(args[0]).getName() : args[1];
+            push(serial, new File(args[0]), remote);
+            return Collections.singletonList(args[0] + ": 1 file pushed");
+        case "install":
+            return args.length > 0 ? install(serial, args) : null;
+        case "uninstall":
+            return args.length > 0 ? shell(serial, "pm uninstall " + toShellCommand(args)) : null;
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * List attached devices
+     * 
+     * @return lines in "serial\tstate" format
+     * @throws IOException
+     */
+    public List<String> devices() throws IOException {
+        return toLines(query("host:devices"));
+    }
+
+    /**
+     * Execute host service and read its response, i.e. "host:connect:192.168.0.1:5555"
+     * 
+     * @param service String
+     * @return response
+     * @throws IOException
+     */
+    public String query(String service) throws IOException {
+        try (Socket socket = open()) {
+            send(socket.getOutputStream(), service);
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            readStatus(in);
+            return readHexPrefixed(in);
+        }
+    }
+
+    /**
+     * Execute shell command on device
+     * 
+     * @param serial device serial or null for the only connected device
+     * @param command String
+     * @return output lines
+     * @throws IOException
+     */
+    public List<String> shell(String serial, String command) throws IOException {
+        try (Socket socket = open()) {
+            OutputStream out = socket.getOutputStream();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            transport(out, in, serial);
+            send(out, "shell:" + command);
+            readStatus(in);
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            List<String> lines = toLines(new String(output.toByteArray(), StandardCharsets.UTF_8));
+            for (String line : lines) {
+                LOGGER.debug(line);
+            }
+            return lines;
+        }
+    }
+
+    public void pull(String serial, String remote, File local) throws IOException {
+        File parent = local.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        withSync(serial, connection -> {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(local))) {
+                connection.recv(remote, out);
+            }
+        });
+    }
+
+    public void push(String serial, File local, String remote) throws IOException {
+        withSync(serial, connection -> {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(local))) {
+                connection.send(in, remote, DEFAULT_FILE_MODE, (int) (local.lastModified() / 1000));
+            }
+        });
+    }
+
+    /**
+     * Install apk the same way as "adb install": push into temp folder and install by package manager
+     * 
+     * @param serial device serial
+     * @param args install options followed by apk path
+     * @return package manager output
+     * @throws IOException
+     */
+    private List<String> install(String serial, String[] args) throws IOException {
+        File apk = new File(args[args.length - 1]);
+        String remote = TMP_DIR + apk.getName();
+        push(serial, apk, remote);
+        try {
+            String[] options = Arrays.copyOf(args, args.length - 1);
+            String command = "pm install " + (options.length > 0 ? toShellCommand(options) + " " : "") + quote(remote);
+            return shell(serial, command);
+        } catch (AdbConnectException e) {
+            // apk is already pushed, install can't be repeated by adb process from scratch
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            shell(serial, "rm -f " + quote(remote));
+        }
+    }
+
+    /**
+     * Close idle sync connections
+     */
+    public void close() {
+        for (Deque<SyncConnection> connections : syncConnections.values()) {
+            SyncConnection connection;
+            while ((connection = connections.poll()) != null) {
+                connection.close();
+            }
+        }
+    }
+
+    int getIdleSyncConnections(String serial) {
+        Deque<SyncConnection> idle = syncConnections.get(serial == null ? "" : serial);
+        return idle == null ? 0 : idle.size();
+    }
+
+    private void withSync(String serial, SyncAction action) throws IOException {
+        String key = serial == null ? "" : serial;
+        Deque<SyncConnection> idle = syncConnections.computeIfAbsent(key, k -> new ConcurrentLinkedDeque<>());
+        SyncConnection connection = idle.poll();
+        boolean reused = connection != null;
+        if (connection == null) {
+            connection = openSync(serial);
+        }
+        try {
+            action.run(connection);
+        } catch (AdbFailureException e) {
+            // adbd closes sync connection after FAIL
+            connection.close();
+            throw e;
+        } catch (IOException e) {
+            connection.close();
+            if (!reused) {
+                throw e;
+            }
+            // idle connection might be closed by server, retry once using new one
+            LOGGER.debug("Reopening sync connection to " + key + ": " + e.getMessage());
+            try {
+                connection = openSync(serial);
+            } catch (AdbConnectException ex) {
+                // request might be already handled by device using previous connection
+                throw new IOException(ex.getMessage(), ex);
+            }
+            try {
+                action.run(connection);
+            } catch (IOException ex) {
+                connection.close();
+                throw ex;
+            }
+        }
+        release(idle, connection);
+    }
+
+    private static void release(Deque<SyncConnection> idle, SyncConnection connection) {
+        if (idle.size() < MAX_IDLE_SYNC_CONNECTIONS) {
+            idle.offer(connection);
+        } else {
+            connection.close();
+        }
+    }
+
+    private SyncConnection openSync(String serial) throws IOException {
+        Socket socket = open();
+        try {
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            transport(out, in, serial);
+            handshake(out, in, "sync:");
+            return new SyncConnection(socket, in, out);
+        } catch (IOException e) {
+            AdbExecutor.closeQuietly(socket);
+            throw e;
+        }
+    }
+
+    private Socket open() throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+            return socket;
+        } catch (IOException e) {
+            AdbExecutor.closeQuietly(socket);
+            throw new AdbConnectException("Unable to connect to adb server " + host + ":" + port + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static void transport(OutputStream out, DataInputStream in, String serial) throws IOException {
+        handshake(out, in, serial == null ? "host:transport-any" : "host:transport:" + serial);
+    }
+
+    /**
+     * Send service request which prepares connection for command, i.e. switches it to device transport
+     */
+    private static void handshake(OutputStream out, DataInputStream in, String request) throws IOException {
+        try {
+            send(out, request);
+            readStatus(in);
+        } catch (AdbFailureException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new AdbConnectException("adb server handshake failed on '" + request + "': " + e.getMessage(), e);
+        }
+    }
+
+    private static void send(OutputStream out, String request) throws IOException {
+        byte[] payload = request.getBytes(StandardCharsets.UTF_8);
+        out.write(String.format("%04x", payload.length).getBytes(StandardCharsets.US_ASCII));
+        out.write(payload);
+        out.flush();
+    }
+
+    private static void readStatus(DataInputStream in) throws IOException {
+        String status = readId(in);
+        if ("FAIL".equals(status)) {
+            throw new AdbFailureException(readHexPrefixed(in));
+        }
+        if (!"OKAY".equals(status)) {
+            throw new IOException("Unexpected adb server response: " + status);
+        }
+    }
+
+    private static String readHexPrefixed(DataInputStream in) throws IOException {
+        byte[] length = new byte[4];
+        in.readFully(length);
+        byte[] payload = new byte[Integer.parseInt(new String(length, StandardCharsets.US_ASCII), 16)];
+        in.readFully(payload);
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+
+    private static String readId(DataInputStream in) throws IOException {
+        byte[] id = new byte[4];
+        in.readFully(id);
+        return new String(id, StandardCharsets.US_ASCII);
+    }
+
+    private static List<String> toLines(String text) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new StringReader(text))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private static boolean isAdb(String executable) {
+        String name = new File(executable).getName();
+        return "adb".equals(name) || "adb.exe".equalsIgnoreCase(name);
+    }
+
+    /**
+     * Join arguments into shell command the same way as adb client does: arguments are separated by spaces and passed
+     * to device shell as is, so pipes, redirects and quotes keep their meaning.
+     */
+    static String toShellCommand(String[] args) {
+        return String.join(" ", args);
+    }
+
+    private static String quote(String arg) {
+        if (SAFE_SHELL_ARG.matcher(arg).matches()) {
+            return arg;
+        }
+        return "'" + arg.replace("'", "'\\''") + "'";
+    }
+
+    private interface SyncAction {
+        void run(SyncConnection connection) throws IOException;
+    }
+
+    /**
+     * Failure reported by adb server or device, i.e. unknown device or missing file
+     */
+    public static class AdbFailureException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public AdbFailureException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Failure to connect to adb server or to prepare connection for command. Command is not sent to device yet, so it can
+     * be safely executed by adb process.
+     */
+    public static class AdbConnectException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public AdbConnectException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * Connection switched to sync service. Handles multiple SEND/RECV requests until QUIT.
+     */
+    private static class SyncConnection {
+        private final Socket socket;
+
+        private final DataInputStream in;
+
+        private final OutputStream out;
+
+        private SyncConnection(Socket socket, DataInputStream in, OutputStream out) {
+            this.socket = socket;
+            this.in = in;
+            this.out = out;
+        }
+
+        private void recv(String remote, OutputStream target) throws IOException {
+            request("RECV", remote.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            byte[] buffer = new byte[SYNC_DATA_MAX];
+            while (true) {
+                String id = readId(in);
+                int length = readIntLE();
+                if ("DATA".equals(id)) {
+                    int remaining = length;
+                    while (remaining > 0) {
+                        int read = in.read(buffer, 0, Math.min(buffer.length, remaining));
+                        if (read == -1) {
+                            throw new IOException("Unexpected end of sync stream");
+                        }
+                        target.write(buffer, 0, read);
+                        remaining -= read;
+                    }
+                } else if ("DONE".equals(id)) {
+                    return;
+                } else if ("FAIL".equals(id)) {
+                    throw new AdbFailureException(readString(length));
+                } else {
+                    throw new IOException("Unexpected sync response: " + id);
+                }
+            }
+        }
+
+        private void send(InputStream source, String remote, int mode, int mtime) throws IOException {
+            request("SEND", (remote + "," + mode).getBytes(StandardCharsets.UTF_8));
+            byte[] buffer = new byte[SYNC_DATA_MAX];
+            int read;
+            while ((read = source.read(buffer)) != -1) {
+                out.write("DATA".getBytes(StandardCharsets.US_ASCII));
+                writeIntLE(read);
+                out.write(buffer, 0, read);
+            }
+            out.write("DONE".getBytes(StandardCharsets.US_ASCII));
+            writeIntLE(mtime);
+            out.flush();
+
+            String id = readId(in);
+            int length = readIntLE();
+            if ("FAIL".equals(id)) {
+                throw new AdbFailureException(readString(length));
+            }
+            if (!"OKAY".equals(id)) {
+                throw new IOException("Unexpected sync response: " + id);
+            }
+        }
+
+        private void request(String id, byte[] data) throws IOException {
+            out.write(id.getBytes(StandardCharsets.US_ASCII));
+            writeIntLE(data.length);
+            out.write(data);
+        }
+
+        private void writeIntLE(int value) throws IOException {
+            out.write(value & 0xff);
+            out.write((value >> 8) & 0xff);
+            out.write((value >> 16) & 0xff);
+            out.write((value >> 24) & 0xff);
+        }
+
+        private int readIntLE() throws IOException {
+            return Integer.reverseBytes(in.readInt());
+        }
+
+        private String readString(int length) throws IOException {
+            byte[] data = new byte[length];
+            in.readFully(data);
+            return new String(data, StandardCharsets.UTF_8);
+        }
+
+        private void close() {
+            try {
+                request("QUIT", new byte[0]);
+                out.flush();
+            } catch (IOException e) {
+                // connection is already broken
+            }
+            AdbExecutor.closeQuietly(socket);
+        }
+    }
+}
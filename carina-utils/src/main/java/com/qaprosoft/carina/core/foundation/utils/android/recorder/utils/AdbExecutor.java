@@ -17,7 +17,9 @@ package com.qaprosoft.carina.core.foundation.utils.android.recorder.utils;
 
 import java.io.BufferedReader;
 import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.net.ConnectException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -25,6 +27,9 @@ import java.util.regex.Pattern;
 
 import org.apache.log4j.Logger;
 
+import com.qaprosoft.carina.core.foundation.utils.Configuration;
+import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
+
 /**
  * Created by YP.
  * Date: 8/19/2014
@@ -38,8 +43,27 @@ public class AdbExecutor {
     // private static final String REMOTE_ADB_EXECUTION_CMD = "ssh %s@%s %s";
     private static String[] cmdInit;
 
+    // don't try adb server socket for a while when it is not started, adb process will start it
+    private static final long ADB_SERVER_RETRY_INTERVAL = 30000;
+
+    private static volatile long adbServerUnavailableUntil;
+
+    private final AdbClient client;
+
     public AdbExecutor() {
+        this(isAdbClientEnabled() ? AdbClient.getInstance() : null);
+    }
+
+    /**
+     * @param client AdbClient to execute adb commands via adb server protocol, null to fork adb process for every command
+     */
+    public AdbExecutor(AdbClient client) {
         cmdInit = "adb".split(" ");
+        this.client = client;
+    }
+
+    private static boolean isAdbClientEnabled() {
+        return !Configuration.isNull(Parameter.ADB_SOCKET_CLIENT) && Configuration.getBoolean(Parameter.ADB_SOCKET_CLIENT);
     }
 
     /**
@@ -83,6 +107,31 @@ public class AdbExecutor {
     }
 
     public List<String> execute(String[] cmd) {
+        if (client != null && System.currentTimeMillis() >= adbServerUnavailableUntil) {
+            try {
+                List<String> output = client.execute(cmd);
+                if (output != null) {
+                    return output;
+                }
+            } catch (AdbClient.AdbFailureException e) {
+                // the same as adb process which prints error into stderr only
+                LOGGER.warn("adb command failed: " + CmdLine.arrayToString(cmd) + "; " + e.getMessage());
+                return new ArrayList<String>();
+            } catch (AdbClient.AdbConnectException e) {
+                // command is not sent to device yet
+                LOGGER.debug("adb server is not available, adb process will be used: " + e.getMessage());
+                if (e.getCause() instanceof ConnectException) {
+                    adbServerUnavailableUntil = System.currentTimeMillis() + ADB_SERVER_RETRY_INTERVAL;
+                }
+            } catch (IOException e) {
+                // command might be already executed on device, so it is not repeated by adb process
+                throw new RuntimeException("Unable to execute command via adb server: " + CmdLine.arrayToString(cmd), e);
+            }
+        }
+        return executeProcess(cmd);
+    }
+
+    private List<String> executeProcess(String[] cmd) {
         ProcessBuilderExecutor executor = null;
         BufferedReader in = null;
         List<String> output = new ArrayList<String>();
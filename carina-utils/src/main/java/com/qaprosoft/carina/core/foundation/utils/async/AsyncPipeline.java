@@ -0,0 +1,281 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.async;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+/**
+ * AsyncPipeline - executes named steps as dependency graph. Step starts as soon as all its dependencies are finished,
+ * so independent steps run concurrently. Step returns false when its result is already satisfied and it was skipped.
+ * Failure of the step cancels all dependent steps. Per-step timings are available in {@link Result}.
+ */
+public class AsyncPipeline {
+    private static final Logger LOGGER = Logger.getLogger(AsyncPipeline.class);
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "pipeline-" + THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public enum Status {
+        DONE, SKIPPED, FAILED, CANCELLED
+    }
+
+    private final String name;
+
+    private final ExecutorService executor;
+
+    private final Map<String, StepDefinition> steps = new LinkedHashMap<>();
+
+    public AsyncPipeline(String name) {
+        this(name, DEFAULT_EXECUTOR);
+    }
+
+    public AsyncPipeline(String name, ExecutorService executor) {
+        this.name = name;
+        this.executor = executor;
+    }
+
+    /**
+     * Declare step. Dependencies should be declared before dependent step.
+     * 
+     * @param stepName unique step name
+     * @param action returns true when step is done or false when it is skipped as already satisfied
+     * @param dependsOn names of steps to wait for
+     * @return AsyncPipeline
+     */
+    public AsyncPipeline step(String stepName, Callable<Boolean> action, String... dependsOn) {
+        if (steps.containsKey(stepName)) {
+            throw new RuntimeException("Step is already declared in pipeline '" + name + "': " + stepName);
+        }
+        for (String dependency : dependsOn) {
+            if (!steps.containsKey(dependency)) {
+                throw new RuntimeException("Unknown dependency '" + dependency + "' of step '" + stepName + "' in pipeline '" + name + "'");
+            }
+        }
+        steps.put(stepName, new StepDefinition(stepName, action, dependsOn));
+        return this;
+    }
+
+    /**
+     * Execute all steps and wait for completion.
+     * 
+     * @param timeout seconds
+     * @return Result
+     */
+    public Result run(long timeout) {
+        long start = System.currentTimeMillis();
+        Map<String, CompletableFuture<StepResult>> futures = new LinkedHashMap<>();
+        for (StepDefinition step : steps.values()) {
+            // futures of dependencies are resolved here, the map is never read by executing steps
+            List<CompletableFuture<StepResult>> dependencies = new ArrayList<>(step.dependsOn.length);
+            for (String dependency : step.dependsOn) {
+                dependencies.add(futures.get(dependency));
+            }
+            CompletableFuture<StepResult> future = CompletableFuture.allOf(dependencies.toArray(new CompletableFuture<?>[0]))
+                    .thenApplyAsync(v -> execute(step, dependencies, start), executor);
+            futures.put(step.name, future);
+        }
+
+        Map<String, StepResult> results = new LinkedHashMap<>();
+        long deadline = start + TimeUnit.SECONDS.toMillis(timeout);
+        for (Map.Entry<String, CompletableFuture<StepResult>> entry : futures.entrySet()) {
+            StepResult result;
+            try {
+                result = entry.getValue().get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                entry.getValue().cancel(true);
+                result = new StepResult(entry.getKey(), Status.FAILED, -1, -1,
+                        new TimeoutException("Step is not finished in " + timeout + " seconds"));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result = new StepResult(entry.getKey(), Status.CANCELLED, -1, -1, e);
+            } catch (ExecutionException | CompletionException e) {
+                result = new StepResult(entry.getKey(), Status.FAILED, -1, -1, e.getCause());
+            }
+            results.put(entry.getKey(), result);
+        }
+        Result result = new Result(name, System.currentTimeMillis() - start, results);
+        LOGGER.debug(result);
+        return result;
+    }
+
+    private StepResult execute(StepDefinition step, List<CompletableFuture<StepResult>> dependencies, long pipelineStart) {
+        for (CompletableFuture<StepResult> dependency : dependencies) {
+            // dependencies are completed at this moment
+            StepResult result = dependency.join();
+            if (result.getStatus() == Status.FAILED || result.getStatus() == Status.CANCELLED) {
+                LOGGER.debug(String.format("Step '%s' of '%s' is cancelled as '%s' is %s", step.name, name, result.getName(), result.getStatus()));
+                return new StepResult(step.name, Status.CANCELLED, -1, -1, null);
+            }
+        }
+        long start = System.currentTimeMillis();
+        try {
+            boolean done = step.action.call();
+            return new StepResult(step.name, done ? Status.DONE : Status.SKIPPED, start - pipelineStart,
+                    System.currentTimeMillis() - start, null);
+        } catch (Exception e) {
+            LOGGER.warn(String.format("Step '%s' of '%s' failed: %s", step.name, name, e.getMessage()), e);
+            return new StepResult(step.name, Status.FAILED, start - pipelineStart, System.currentTimeMillis() - start, e);
+        }
+    }
+
+    private static class StepDefinition {
+        private final String name;
+
+        private final Callable<Boolean> action;
+
+        private final String[] dependsOn;
+
+        private StepDefinition(String name, Callable<Boolean> action, String[] dependsOn) {
+            this.name = name;
+            this.action = action;
+            this.dependsOn = dependsOn;
+        }
+    }
+
+    public static class StepResult {
+        private final String name;
+
+        private final Status status;
+
+        private final long startOffset;
+
+        private final long duration;
+
+        private final Throwable error;
+
+        StepResult(String name, Status status, long startOffset, long duration, Throwable error) {
+            this.name = name;
+            this.status = status;
+            this.startOffset = startOffset;
+            this.duration = duration;
+            this.error = error;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * Step start time relative to pipeline start in milliseconds, -1 if step was not started
+         * 
+         * @return long
+         */
+        public long getStartOffset() {
+            return startOffset;
+        }
+
+        /**
+         * Step duration in milliseconds, -1 if step was not started
+         * 
+         * @return long
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        public Throwable getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %s start=%dms duration=%dms%s", name, status, startOffset, duration,
+                    error != null ? " error=" + error.getMessage() : "");
+        }
+    }
+
+    public static class Result {
+        private final String name;
+
+        private final long duration;
+
+        private final Map<String, StepResult> steps;
+
+        Result(String name, long duration, Map<String, StepResult> steps) {
+            this.name = name;
+            this.duration = duration;
+            this.steps = Collections.unmodifiableMap(steps);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Pipeline wall time in milliseconds
+         * 
+         * @return long
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        public Map<String, StepResult> getSteps() {
+            return steps;
+        }
+
+        public StepResult getStep(String stepName) {
+            return steps.get(stepName);
+        }
+
+        public boolean isSuccessful() {
+            return getFailures().isEmpty();
+        }
+
+        public List<StepResult> getFailures() {
+            List<StepResult> failures = new ArrayList<>();
+            for (StepResult step : steps.values()) {
+                if (step.getStatus() == Status.FAILED || step.getStatus() == Status.CANCELLED) {
+                    failures.add(step);
+                }
+            }
+            return failures;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder result = new StringBuilder(String.format("Pipeline '%s' finished in %d ms", name, duration));
+            for (StepResult step : steps.values()) {
+                result.append("\n\t").append(step);
+            }
+            return result.toString();
+        }
+    }
+}
@@ -0,0 +1,310 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+
+import com.qaprosoft.carina.core.foundation.utils.Configuration;
+import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
+
+/**
+ * ArtifactCache - on-disk cache of downloaded artifacts (app binaries etc.) shared by all processes of the host.
+ * Entries are identified by stable keys (ETag, content hash, build id) so the same artifact is downloaded only once.
+ * Every entry is written into temporary file and atomically moved into the cache under the entry file lock, least
+ * recently used entries are removed when cache size exceeds the limit.
+ */
+public class ArtifactCache {
+
+    private static final Logger LOGGER = Logger.getLogger(ArtifactCache.class);
+
+    private static final String LOCK_EXTENSION = ".lock";
+
+    private static final String PART_EXTENSION = ".part";
+
+    private static final Map<String, ArtifactCache> caches = new ConcurrentHashMap<>();
+
+    // file locks are held by the whole JVM so threads of the same process are serialized by these locks
+    private static final Map<String, ReentrantLock> threadLocks = new ConcurrentHashMap<>();
+
+    private final File dir;
+
+    private final long maxSize;
+
+    /**
+     * Fetches artifact into the provided file.
+     */
+    public interface Fetcher {
+        void fetch(File target) throws IOException;
+    }
+
+    public ArtifactCache(File dir, long maxSize) {
+        this.dir = dir;
+        this.maxSize = maxSize;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new RuntimeException("Unable to create artifact cache folder: " + dir.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Cache configured by artifact_cache_dir and artifact_cache_size_mb properties.
+     * 
+     * @return ArtifactCache
+     */
+    public static ArtifactCache getInstance() {
+        String folder = Configuration.isNull(Parameter.ARTIFACT_CACHE_DIR)
+                ? System.getProperty("user.home") + "/.carina/artifacts"
+                : Configuration.get(Parameter.ARTIFACT_CACHE_DIR);
+        long maxSize = Configuration.getLong(Parameter.ARTIFACT_CACHE_SIZE_MB) * 1024 * 1024;
+        File dir = new File(folder).getAbsoluteFile();
+        return caches.computeIfAbsent(dir.getPath(), path -> new ArtifactCache(dir, maxSize));
+    }
+
+    /**
+     * Get cached artifact, artifact is fetched when it is missing in the cache. Concurrent calls with the same key
+     * (from this or other processes) wait for the single fetch.
+     * 
+     * @param key - stable artifact identifier, e.g. bucket/key#etag
+     * @param fileName - name of the cached file
+     * @param fetcher - downloads artifact into provided file
+     * @return cached File
+     */
+    public File get(String key, String fileName, Fetcher fetcher) {
+        String id = hash(key);
+        File entry = new File(dir, id);
+        File file = new File(entry, fileName);
+
+        lock(id, () -> {
+            if (file.isFile()) {
+                LOGGER.info("Artifact is found in the cache: " + file.getAbsolutePath());
+                entry.setLastModified(System.currentTimeMillis());
+                return;
+            }
+
+            LOGGER.info(String.format("Artifact '%s' is missing in the cache, downloading...", key));
+            // drop leftovers of interrupted downloads
+            FileUtils.deleteQuietly(entry);
+            if (!entry.mkdirs()) {
+                throw new IOException("Unable to create cache entry folder: " + entry.getAbsolutePath());
+            }
+            File part = new File(entry, fileName + "." + UUID.randomUUID() + PART_EXTENSION);
+            long start = System.currentTimeMillis();
+            try {
+                fetcher.fetch(part);
+                move(part, file);
+            } catch (IOException | RuntimeException e) {
+                FileUtils.deleteQuietly(entry);
+                throw e;
+            }
+            LOGGER.info(String.format("Artifact '%s' (%d bytes) is cached in %d ms: %s", key, file.length(),
+                    System.currentTimeMillis() - start, file.getAbsolutePath()));
+        });
+
+        evict(id);
+        return file;
+    }
+
+    /**
+     * Check if artifact is cached.
+     * 
+     * @param key - artifact identifier
+     * @param fileName - name of the cached file
+     * @return boolean
+     */
+    public boolean contains(String key, String fileName) {
+        return new File(new File(dir, hash(key)), fileName).isFile();
+    }
+
+    /**
+     * Current size of cached artifacts.
+     * 
+     * @return size in bytes
+     */
+    public long getSize() {
+        long size = 0;
+        for (File entry : listEntries()) {
+            size += FileUtils.sizeOfDirectory(entry);
+        }
+        return size;
+    }
+
+    public File getDir() {
+        return dir;
+    }
+
+    /**
+     * Expose cached artifact under another path without copying when possible (hard link), previous file is replaced
+     * atomically.
+     * 
+     * @param cached - file from the cache
+     * @param target - destination path
+     * @return target File
+     */
+    public static File materialize(File cached, File target) {
+        if (cached.getAbsoluteFile().equals(target.getAbsoluteFile())) {
+            return target;
+        }
+        File parent = target.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new RuntimeException("Unable to create folder: " + parent.getAbsolutePath());
+        }
+        File tmp = new File(parent, "." + target.getName() + "." + UUID.randomUUID() + PART_EXTENSION);
+        try {
+            try {
+                Files.createLink(tmp.toPath(), cached.toPath());
+            } catch (IOException | UnsupportedOperationException e) {
+                LOGGER.debug("Unable to create hard link, copying cached artifact: " + e.getMessage());
+                Files.copy(cached.toPath(), tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            move(tmp, target);
+        } catch (IOException e) {
+            FileUtils.deleteQuietly(tmp);
+            throw new RuntimeException("Unable to copy cached artifact to " + target.getAbsolutePath(), e);
+        }
+        return target;
+    }
+
+    private void evict(String current) {
+        if (maxSize <= 0) {
+            return;
+        }
+        Map<File, Long> sizes = new HashMap<>();
+        Map<File, Long> accessed = new HashMap<>();
+        long size = 0;
+        for (File entry : listEntries()) {
+            long entrySize = FileUtils.sizeOfDirectory(entry);
+            sizes.put(entry, entrySize);
+            accessed.put(entry, entry.lastModified());
+            size += entrySize;
+        }
+        if (size <= maxSize) {
+            return;
+        }
+
+        // the least recently used entries go first
+        List<File> entries = new ArrayList<>(sizes.keySet());
+        entries.sort(Comparator.comparing(accessed::get));
+        for (File entry : entries) {
+            if (size <= maxSize) {
+                break;
+            }
+            if (!entry.getName().equals(current) && tryDelete(entry)) {
+                LOGGER.info("Evicted from artifact cache: " + entry.getAbsolutePath());
+                size -= sizes.get(entry);
+            }
+        }
+    }
+
+    private boolean tryDelete(File entry) {
+        String id = entry.getName();
+        ReentrantLock threadLock = threadLocks.computeIfAbsent(lockPath(id), path -> new ReentrantLock());
+        if (!threadLock.tryLock()) {
+            return false;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(lockPath(id), "rw");
+                FileChannel channel = raf.getChannel();
+                FileLock lock = channel.tryLock()) {
+            if (lock == null) {
+                // entry is being downloaded or read by another process
+                return false;
+            }
+            FileUtils.deleteDirectory(entry);
+            return true;
+        } catch (IOException e) {
+            LOGGER.warn("Unable to evict artifact cache entry " + entry.getAbsolutePath() + ": " + e.getMessage());
+            return false;
+        } finally {
+            threadLock.unlock();
+        }
+    }
+
+    private interface Action {
+        void run() throws IOException;
+    }
+
+    private void lock(String id, Action action) {
+        String path = lockPath(id);
+        ReentrantLock threadLock = threadLocks.computeIfAbsent(path, p -> new ReentrantLock());
+        threadLock.lock();
+        try (RandomAccessFile raf = new RandomAccessFile(path, "rw");
+                FileChannel channel = raf.getChannel();
+                FileLock lock = channel.lock()) {
+            action.run();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to cache artifact: " + e.getMessage(), e);
+        } finally {
+            threadLock.unlock();
+        }
+    }
+
+    private List<File> listEntries() {
+        List<File> entries = new ArrayList<>();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    entries.add(file);
+                }
+            }
+        }
+        return entries;
+    }
+
+    private String lockPath(String id) {
+        return new File(dir, id + LOCK_EXTENSION).getAbsolutePath();
+    }
+
+    private static void move(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
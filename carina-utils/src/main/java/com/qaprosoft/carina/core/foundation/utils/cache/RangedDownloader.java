@@ -0,0 +1,226 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.cache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+
+/**
+ * RangedDownloader - downloads big artifacts by several parallel range requests written directly into their positions
+ * of the target file.
+ */
+public final class RangedDownloader {
+
+    private static final Logger LOGGER = Logger.getLogger(RangedDownloader.class);
+
+    public static final long DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final int TIMEOUT = 60000;
+
+    /**
+     * Source of artifact bytes which supports range reads.
+     */
+    public interface RangeSource {
+        /**
+         * Open stream for the range of bytes.
+         * 
+         * @param start - first byte position
+         * @param end - last byte position, inclusive
+         * @return InputStream
+         * @throws IOException on read failures
+         */
+        InputStream open(long start, long end) throws IOException;
+    }
+
+    private RangedDownloader() {
+    }
+
+    /**
+     * Download artifact from the source which content length is known.
+     * 
+     * @param source RangeSource
+     * @param length - artifact size in bytes
+     * @param target - file to write
+     * @param threads - max number of parallel range requests
+     * @param chunkSize - size of single range request
+     * @throws IOException when any range can't be downloaded
+     */
+    public static void download(RangeSource source, long length, File target, int threads, long chunkSize) throws IOException {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size should be positive: " + chunkSize);
+        }
+        int chunks = (int) Math.max(1, (length + chunkSize - 1) / chunkSize);
+        int workers = Math.max(1, Math.min(threads, chunks));
+        LOGGER.debug(String.format("Downloading %d bytes to %s by %d range(s) in %d thread(s)", length, target.getName(), chunks, workers));
+
+        try (RandomAccessFile raf = new RandomAccessFile(target, "rw")) {
+            raf.setLength(length);
+            FileChannel channel = raf.getChannel();
+            if (workers == 1) {
+                for (long start = 0; start < length; start += chunkSize) {
+                    downloadRange(source, channel, start, Math.min(length, start + chunkSize) - 1);
+                }
+                return;
+            }
+
+            ExecutorService executor = Executors.newFixedThreadPool(workers, r -> {
+                Thread thread = new Thread(r, "ranged-download-" + target.getName());
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                List<Future<?>> ranges = new ArrayList<>(chunks);
+                for (long start = 0; start < length; start += chunkSize) {
+                    final long from = start;
+                    final long to = Math.min(length, start + chunkSize) - 1;
+                    ranges.add(executor.submit(() -> {
+                        downloadRange(source, channel, from, to);
+                        return null;
+                    }));
+                }
+                for (Future<?> range : ranges) {
+                    range.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Download of " + target.getName() + " was interrupted", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Download artifact by http(s) url. Range requests are used when server accepts them and reports content length,
+     * otherwise artifact is downloaded by single request.
+     * 
+     * @param url URL
+     * @param target - file to write
+     * @param threads - max number of parallel range requests
+     * @param chunkSize - size of single range request
+     * @throws IOException on download failures
+     */
+    public static void download(URL url, File target, int threads, long chunkSize) throws IOException {
+        HttpURLConnection head = (HttpURLConnection) url.openConnection();
+        head.setRequestMethod("HEAD");
+        head.setConnectTimeout(TIMEOUT);
+        head.setReadTimeout(TIMEOUT);
+        long length;
+        boolean ranges;
+        // redirects are resolved once, e.g. AppCenter download urls point to storage blobs
+        URL location;
+        try {
+            if (head.getResponseCode() / 100 != 2) {
+                throw new IOException("Unable to get info about " + url + ": HTTP " + head.getResponseCode());
+            }
+            length = head.getContentLengthLong();
+            ranges = "bytes".equalsIgnoreCase(head.getHeaderField("Accept-Ranges"));
+            location = head.getURL();
+        } finally {
+            head.disconnect();
+        }
+
+        if (ranges && length > 0) {
+            download((start, end) -> openRange(location, start, end), length, target, threads, chunkSize);
+            return;
+        }
+
+        LOGGER.debug("Range requests aren't supported by " + location.getHost() + ", downloading " + target.getName() + " by single request");
+        HttpURLConnection connection = (HttpURLConnection) location.openConnection();
+        connection.setConnectTimeout(TIMEOUT);
+        connection.setReadTimeout(TIMEOUT);
+        try (InputStream is = connection.getInputStream(); OutputStream os = new FileOutputStream(target)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                os.write(buffer, 0, read);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static InputStream openRange(URL url, long start, long end) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(TIMEOUT);
+        connection.setReadTimeout(TIMEOUT);
+        connection.setRequestProperty("Range", "bytes=" + start + "-" + end);
+        int code = connection.getResponseCode();
+        // 200 means whole content which is acceptable only for the first range
+        if (code != HttpURLConnection.HTTP_PARTIAL && !(code == HttpURLConnection.HTTP_OK && start == 0)) {
+            connection.disconnect();
+            throw new IOException(String.format("Unexpected response for range %d-%d of %s: HTTP %d", start, end, url, code));
+        }
+        return connection.getInputStream();
+    }
+
+    private static void downloadRange(RangeSource source, FileChannel channel, long start, long end) throws IOException {
+        IOException error = null;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new IOException("Range download was interrupted");
+            }
+            try {
+                copyRange(source, channel, start, end);
+                return;
+            } catch (IOException e) {
+                error = e;
+                LOGGER.debug(String.format("Attempt #%d to download range %d-%d failed: %s", attempt, start, end, e.getMessage()));
+            }
+        }
+        throw error;
+    }
+
+    private static void copyRange(RangeSource source, FileChannel channel, long start, long end) throws IOException {
+        long position = start;
+        try (InputStream is = source.open(start, end)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while (position <= end && (read = is.read(buffer, 0, (int) Math.min(buffer.length, end - position + 1))) != -1) {
+                ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+                while (bytes.hasRemaining()) {
+                    position += channel.write(bytes, position);
+                }
+            }
+        }
+        if (position != end + 1) {
+            throw new IOException(String.format("Range %d-%d is incomplete, received %d bytes", start, end, position - start));
+        }
+    }
+}
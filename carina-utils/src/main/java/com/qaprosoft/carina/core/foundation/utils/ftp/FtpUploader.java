@@ -0,0 +1,278 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.ftp;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.net.ftp.FTP;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPReply;
+import org.apache.log4j.Logger;
+
+/**
+ * FtpUploader - asynchronous uploads to single FTP host. Uploads are queued (bounded queue, the caller thread uploads
+ * itself when queue is full) and executed by few workers which reuse persistent logged in connections.
+ */
+public class FtpUploader {
+
+    private static final Logger LOGGER = Logger.getLogger(FtpUploader.class);
+
+    public static final int DEFAULT_CONNECTIONS = 2;
+
+    public static final int DEFAULT_QUEUE_SIZE = 100;
+
+    private final String host;
+
+    private final int port;
+
+    private final String user;
+
+    private final String password;
+
+    private final ThreadPoolExecutor executor;
+
+    private final BlockingQueue<FTPClient> connections;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    // upload name -> number of queued uploads with this name
+    private final Map<String, Integer> pending = new ConcurrentHashMap<>();
+
+    private final List<String> failed = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger logins = new AtomicInteger();
+
+    public FtpUploader(String host, int port, String user, String password) {
+        this(host, port, user, password, DEFAULT_CONNECTIONS, DEFAULT_QUEUE_SIZE);
+    }
+
+    public FtpUploader(String host, int port, String user, String password, int maxConnections, int queueSize) {
+        this.host = host;
+        this.port = port;
+        this.user = user;
+        this.password = password;
+        this.connections = new LinkedBlockingQueue<>(maxConnections);
+        this.executor = new ThreadPoolExecutor(maxConnections, maxConnections, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize),
+                r -> {
+                    Thread thread = new Thread(r, "ftp-upload-" + host);
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queue file upload.
+     * 
+     * @param file File
+     * @param remoteName - destination file name
+     * @return Future with upload status
+     */
+    public Future<Boolean> upload(File file, String remoteName) {
+        return submit(remoteName, () -> new FileInputStream(file));
+    }
+
+    /**
+     * Queue data upload.
+     * 
+     * @param data byte[]
+     * @param remoteName - destination file name
+     * @return Future with upload status
+     */
+    public Future<Boolean> upload(byte[] data, String remoteName) {
+        return submit(remoteName, () -> new ByteArrayInputStream(data));
+    }
+
+    /**
+     * Number of queued and running uploads.
+     * 
+     * @return int
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Number of logins to FTP server, i.e. opened connections.
+     * 
+     * @return int
+     */
+    public int getLogins() {
+        return logins.get();
+    }
+
+    /**
+     * Wait until all queued uploads are finished.
+     * 
+     * @param timeout - max time to wait
+     * @param unit TimeUnit
+     * @return names of failed uploads and uploads which are not finished before deadline
+     */
+    public List<String> drain(long timeout, TimeUnit unit) {
+        long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+        synchronized (inFlight) {
+            while (inFlight.get() > 0) {
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) {
+                    break;
+                }
+                try {
+                    inFlight.wait(left);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        List<String> notUploaded = new ArrayList<>(failed);
+        failed.removeAll(notUploaded);
+        for (Map.Entry<String, Integer> entry : pending.entrySet()) {
+            for (int i = 0; i < entry.getValue(); i++) {
+                notUploaded.add(entry.getKey());
+            }
+        }
+        return notUploaded;
+    }
+
+    /**
+     * Stop workers and disconnect all pooled connections. Queued uploads are not executed.
+     */
+    public void close() {
+        executor.shutdownNow();
+        FTPClient ftp;
+        while ((ftp = connections.poll()) != null) {
+            FtpUtils.ftpDisconnect(ftp);
+        }
+    }
+
+    private Future<Boolean> submit(String remoteName, StreamSupplier source) {
+        inFlight.incrementAndGet();
+        pending.merge(remoteName, 1, Integer::sum);
+        if (executor.isShutdown()) {
+            LOGGER.error("FTP uploader is closed. File won't be uploaded: " + remoteName);
+            complete(remoteName, false);
+            return CompletableFuture.completedFuture(false);
+        }
+        return executor.submit(() -> {
+            boolean uploaded = false;
+            try {
+                uploaded = store(remoteName, source);
+                return uploaded;
+            } finally {
+                complete(remoteName, uploaded);
+            }
+        });
+    }
+
+    private void complete(String remoteName, boolean uploaded) {
+        pending.computeIfPresent(remoteName, (name, count) -> count > 1 ? count - 1 : null);
+        if (!uploaded) {
+            failed.add(remoteName);
+        }
+        synchronized (inFlight) {
+            inFlight.decrementAndGet();
+            inFlight.notifyAll();
+        }
+    }
+
+    private boolean store(String remoteName, StreamSupplier source) {
+        long start = System.currentTimeMillis();
+        LOGGER.info("Uploading to " + host + ": " + remoteName);
+        // pooled connection could be closed by server on idle timeout so one more attempt is done with new connection
+        for (int attempt = 1; attempt <= 2; attempt++) {
+            FTPClient ftp = null;
+            try {
+                ftp = borrow();
+                boolean stored;
+                try (InputStream is = source.open()) {
+                    stored = ftp.storeFile(remoteName, is);
+                }
+                if (stored) {
+                    LOGGER.info("Uploaded in " + (System.currentTimeMillis() - start) + " msecs: " + remoteName);
+                } else {
+                    LOGGER.error("Failed to upload " + remoteName + ". Reply: " + ftp.getReplyString());
+                }
+                release(ftp);
+                return stored;
+            } catch (IOException e) {
+                LOGGER.debug("Upload attempt " + attempt + " failed for " + remoteName, e);
+                if (ftp != null) {
+                    FtpUtils.ftpDisconnect(ftp);
+                }
+                if (attempt == 2) {
+                    LOGGER.error("Exception while uploading to FTP: " + remoteName, e);
+                }
+            }
+        }
+        return false;
+    }
+
+    private FTPClient borrow() throws IOException {
+        FTPClient ftp = connections.poll();
+        if (ftp != null && ftp.isConnected()) {
+            return ftp;
+        }
+        return connect();
+    }
+
+    private void release(FTPClient ftp) {
+        if (!connections.offer(ftp)) {
+            FtpUtils.ftpDisconnect(ftp);
+        }
+    }
+
+    private FTPClient connect() throws IOException {
+        FTPClient ftp = new FTPClient();
+        ftp.connect(host, port);
+        if (!FTPReply.isPositiveCompletion(ftp.getReplyCode())) {
+            int reply = ftp.getReplyCode();
+            ftp.disconnect();
+            throw new IOException("FTP server refused connection. Reply code is : " + reply);
+        }
+        if (!ftp.login(user, password)) {
+            FtpUtils.ftpDisconnect(ftp);
+            throw new IOException("Login to ftp failed. Check user credentials.");
+        }
+        logins.incrementAndGet();
+        ftp.setFileType(FTP.BINARY_FILE_TYPE);
+        ftp.enterLocalPassiveMode();
+        LOGGER.debug("Connected to FTP server: " + host + ":" + port);
+        return ftp;
+    }
+
+    @FunctionalInterface
+    private interface StreamSupplier {
+        InputStream open() throws IOException;
+    }
+}
@@ -1,24 +1,28 @@
 package com.qaprosoft.carina.core.foundation.utils.ftp;
 
-import java.io.ByteArrayInputStream;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
-import org.apache.commons.net.ftp.FTP;
 import org.apache.commons.net.ftp.FTPClient;
-import org.apache.commons.net.ftp.FTPReply;
 import org.apache.log4j.Logger;
 
 public class FtpUtils {
     private static final Logger LOGGER = Logger.getLogger(FtpUtils.class);
 	private static final int DEFAULT_PORT = 21;
-	
-	//TODO: https://github.com/qaprosoft/carina/issues/954
-	// migrate FtpUtils methods to use com.qaprosoft.carina.core.foundation.utils.async.AsyncOperation
-	private static int uploading = 0;
+
+	// single uploader with pooled connections per user@host:port
+	private static final Map<String, FtpUploader> uploaders = new ConcurrentHashMap<>();
+
+	static {
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> uploaders.values().forEach(FtpUploader::close)));
+	}
 
 	public static void uploadFile(String ftpHost, String user, String password, String filePassToUpload,
 			String fileName) {
@@ -27,13 +31,27 @@ public class FtpUtils {
 
 	public static void uploadFile(String ftpHost, int port, String user, String password, String filePassToUpload,
 			String fileName) {
-		try (InputStream is = new FileInputStream(filePassToUpload)) {
-			upload(ftpHost, port, user, password, is, fileName);
-		} catch (FileNotFoundException e) {
+		if (!new File(filePassToUpload).exists()) {
 			LOGGER.info("File is not found. Specify correct file pass");
-		} catch (IOException e) {
-			LOGGER.info("Exception while opening file for upload.");
+			return;
 		}
+		waitFor(uploadFileAsync(ftpHost, port, user, password, filePassToUpload, fileName), fileName);
+	}
+
+	/**
+	 * Queue file upload. Uploads to the same host reuse pooled FTP connections.
+	 * 
+	 * @param ftpHost String
+	 * @param port int
+	 * @param user String
+	 * @param password String
+	 * @param filePassToUpload String
+	 * @param fileName - destination file name
+	 * @return Future with upload status
+	 */
+	public static Future<Boolean> uploadFileAsync(String ftpHost, int port, String user, String password, String filePassToUpload,
+			String fileName) {
+		return getUploader(ftpHost, port, user, password).upload(new File(filePassToUpload), fileName);
 	}
 
 	public static void uploadData(String ftpHost, String user, String password, String data,
@@ -43,62 +61,39 @@ public class FtpUtils {
 
 	public static void uploadData(String ftpHost, int port, String user, String password, String data,
 			String destinationFileName) {
+		waitFor(uploadDataAsync(ftpHost, port, user, password, data, destinationFileName), destinationFileName);
+	}
+
+	/**
+	 * Queue upload of base64 encoded data.
+	 * 
+	 * @param ftpHost String
+	 * @param port int
+	 * @param user String
+	 * @param password String
+	 * @param data - base64 encoded data
+	 * @param destinationFileName String
+	 * @return Future with upload status
+	 */
+	public static Future<Boolean> uploadDataAsync(String ftpHost, int port, String user, String password, String data,
+			String destinationFileName) {
 		byte[] decode = Base64.getDecoder().decode(data);
 		LOGGER.debug("Data size to upload: " + data.length());
 		LOGGER.debug("Encoded data size to upload: " + decode.length);
-		try (InputStream is = new ByteArrayInputStream(decode)) {
-			upload(ftpHost, port, user, password, is, destinationFileName);
-		} catch (IOException e) {
-			LOGGER.info("Exception while opening file for upload.");
-		}
+		return getUploader(ftpHost, port, user, password).upload(decode, destinationFileName);
 	}
 
-	private static void upload(String ftpHost, int port, String user, String password, InputStream is,
-			String fileName) {
-	    LOGGER.debug("FTP host to upload data : " + ftpHost);
-	    LOGGER.debug("FTP port to upload data : " + port);
-        LOGGER.debug("Destination file name : " + fileName);
-        long start = System.currentTimeMillis();
-		FTPClient ftp = new FTPClient();
+	public static FtpUploader getUploader(String ftpHost, int port, String user, String password) {
+		return uploaders.computeIfAbsent(user + "@" + ftpHost + ":" + port, key -> new FtpUploader(ftpHost, port, user, password));
+	}
+
+	private static void waitFor(Future<Boolean> upload, String fileName) {
 		try {
-			int reply;
-			ftp.connect(ftpHost, port);
-			LOGGER.debug("Connected to server : " + ftpHost);
-			reply = ftp.getReplyCode();
-			LOGGER.debug("Reply code is : " + reply);
-			if (!FTPReply.isPositiveCompletion(reply)) {
-				ftp.disconnect();
-				LOGGER.error("FTP server refused connection. Reply code is : " + reply);
-				throw new Exception("FTP server refused connection.");
-			}
-			if (!ftp.login(user, password)) {
-			    throw new Exception("Login to ftp failed. Check user credentials.");
-			};
-			LOGGER.debug("User has been successfully logged in.");
-			ftp.setFileType(FTP.BINARY_FILE_TYPE);
-			try {
-			    ftp.enterLocalPassiveMode();
-			    LOGGER.debug("Passive host : " + ftp.getPassiveHost() + " Passive port : " + ftp.getPassivePort());
-			    LOGGER.debug("Default port : " + ftp.getDefaultPort());
-			    LOGGER.debug("Local port : " + ftp.getLocalPort());
-			    LOGGER.debug("Remote port : " + ftp.getRemotePort());
-			    
-			    uploading++;
-			    LOGGER.info("Uploading video: " + fileName);
-				if (ftp.storeFile(fileName, is)) {
-                    LOGGER.info("Uploaded video in " + (System.currentTimeMillis() - start) + " msecs for: " + fileName);
-				} else {
-				    LOGGER.error("Failed to upload video in " + (System.currentTimeMillis() - start) + " msecs for: " + fileName);			    
-				}
-			} catch (IOException e) {
-				LOGGER.error("Exception while storing file to FTP", e);
-			} finally {
-			    uploading--;
-			}
-		} catch (Exception e) {
-			LOGGER.error("Exception while uploading while to FTP", e);
-		} finally {
-			ftpDisconnect(ftp);
+			upload.get();
+		} catch (ExecutionException e) {
+			LOGGER.error("Exception while uploading to FTP: " + fileName, e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 		}
 	}
 
@@ -119,6 +114,29 @@ public class FtpUtils {
     }
     
     public static boolean isUploading() {
-        return uploading > 0;
+        for (FtpUploader uploader : uploaders.values()) {
+            if (uploader.getInFlight() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Wait until all queued uploads are finished.
+     * 
+     * @param timeout - max time to wait in seconds for all uploads
+     * @return names of failed uploads and uploads which are not finished before deadline
+     */
+    public static List<String> waitUntilUploaded(long timeout) {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(timeout);
+        List<String> notUploaded = new ArrayList<>();
+        for (FtpUploader uploader : uploaders.values()) {
+            notUploaded.addAll(uploader.drain(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS));
+        }
+        if (!notUploaded.isEmpty()) {
+            LOGGER.error("Files were not uploaded to FTP: " + notUploaded);
+        }
+        return notUploaded;
     }
 }
@@ -15,44 +15,101 @@
  *******************************************************************************/
 package com.qaprosoft.carina.core.foundation.utils.marshaller;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
 
 import org.apache.log4j.Logger;
 
+/**
+ * Thread-safe JAXB marshaller. JAXBContext is created once per class, (un)marshallers aren't thread-safe, so they are
+ * borrowed from per-class pool for a single call and returned back after it.
+ */
 class Marshaller {
 
-    private static Marshaller instance;
+    private static final Marshaller instance = new Marshaller();
 
-    private final Map<Class<?>, JAXBContext> contextCache;
+    /**
+     * Max number of idle (un)marshallers kept per class
+     */
+    static final int POOL_SIZE = Math.max(8, Runtime.getRuntime().availableProcessors() * 2);
+
+    private final Map<Class<?>, JAXBContext> contextCache = new ConcurrentHashMap<>();
+
+    private final Map<Class<?>, Pool<javax.xml.bind.Marshaller>> marshallers = new ConcurrentHashMap<>();
+
+    private final Map<Class<?>, Pool<Unmarshaller>> unmarshallers = new ConcurrentHashMap<>();
+
+    private final XMLInputFactory inputFactory;
 
     /**
      * Class Logger
      */
     private static final Logger LOGGER = Logger.getLogger(Marshaller.class);
 
-    private Marshaller() {
+    @FunctionalInterface
+    private interface JAXBFunction<T, R> {
+        R apply(T t) throws JAXBException, XMLStreamException;
+    }
+
+    /**
+     * Bounded pool of idle objects. Objects are created on demand when pool is empty, extra ones are dropped on
+     * release.
+     */
+    private static class Pool<T> {
+        private final Queue<T> idle = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
 
-        contextCache = new HashMap<Class<?>, JAXBContext>();
+        private T poll() {
+            T item = idle.poll();
+            if (item != null) {
+                size.decrementAndGet();
+            }
+            return item;
+        }
+
+        private void offer(T item) {
+            if (size.incrementAndGet() <= POOL_SIZE) {
+                idle.offer(item);
+            } else {
+                size.decrementAndGet();
+            }
+        }
+    }
+
+    private Marshaller() {
+        inputFactory = XMLInputFactory.newInstance();
+        // documents are parsed by StAX, external entities are never resolved
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
     }
 
     /**
      * Get instance for Marshaller
      */
     static Marshaller getInstance() {
-        if (null == instance) {
-            instance = new Marshaller();
-        }
         return instance;
     }
 
@@ -64,56 +121,51 @@ class Marshaller {
      * @return - JAXBContext for specified class
      */
     private JAXBContext getJAXBContext(Class<?> clazz) {
-        try {
-            if (!contextCache.containsKey(clazz)) {
-                JAXBContext context = JAXBContext.newInstance(clazz);
-                contextCache.put(clazz, context);
-                return context;
-
+        return contextCache.computeIfAbsent(clazz, key -> {
+            try {
+                return JAXBContext.newInstance(key);
+            } catch (JAXBException e) {
+                LOGGER.error(e.getMessage(), e);
+                throw new RuntimeException(e);
             }
-            return contextCache.get(clazz);
-        } catch (JAXBException e) {
-            LOGGER.error(e.getMessage(), e);
-            throw new RuntimeException(e);
-        }
+        });
     }
 
     /**
-     * Returns Marshaller from JAXBContext for specified class
-     * 
-     * @param clazz
-     *            - Class
-     * @return - Marshaller
+     * Runs action with pooled Marshaller for specified class. Marshaller is returned into the pool only when action is
+     * completed successfully.
      */
-    private javax.xml.bind.Marshaller getMarshaller(Class<?> clazz) {
+    private <R> R withMarshaller(Class<?> clazz, JAXBFunction<javax.xml.bind.Marshaller, R> action) {
+        Pool<javax.xml.bind.Marshaller> pool = marshallers.computeIfAbsent(clazz, key -> new Pool<>());
         try {
-
-            javax.xml.bind.Marshaller marshaller = getJAXBContext(clazz)
-                    .createMarshaller();
-            return marshaller;
-
-        } catch (JAXBException e) {
+            javax.xml.bind.Marshaller marshaller = pool.poll();
+            if (marshaller == null) {
+                marshaller = getJAXBContext(clazz).createMarshaller();
+            }
+            R result = action.apply(marshaller);
+            pool.offer(marshaller);
+            return result;
+        } catch (JAXBException | XMLStreamException e) {
             LOGGER.error(e.getMessage(), e);
             throw new RuntimeException(e);
         }
     }
 
     /**
-     * Returns Unmarshaller from JAXBContext for specified class
-     * 
-     * @param clazz
-     *            - Class
-     * @return - Unmarshaller
+     * Runs action with pooled Unmarshaller for specified class. Unmarshaller is returned into the pool only when
+     * action is completed successfully.
      */
-    private javax.xml.bind.Unmarshaller getUnmarshaller(Class<?> clazz) {
+    private <R> R withUnmarshaller(Class<?> clazz, JAXBFunction<Unmarshaller, R> action) {
+        Pool<Unmarshaller> pool = unmarshallers.computeIfAbsent(clazz, key -> new Pool<>());
         try {
-
-            javax.xml.bind.Unmarshaller unmarshaller = getJAXBContext(clazz)
-                    .createUnmarshaller();
-
-            return unmarshaller;
-
-        } catch (JAXBException e) {
+            Unmarshaller unmarshaller = pool.poll();
+            if (unmarshaller == null) {
+                unmarshaller = getJAXBContext(clazz).createUnmarshaller();
+            }
+            R result = action.apply(unmarshaller);
+            pool.offer(unmarshaller);
+            return result;
+        } catch (JAXBException | XMLStreamException e) {
             LOGGER.error(e.getMessage(), e);
             throw new RuntimeException(e);
         }
@@ -121,76 +173,100 @@ class Marshaller {
 
     @SuppressWarnings("unchecked")
     public <T> T unmarshall(Source source, Class<T> resultClazz) {
-        try {
-
-            return (T) getUnmarshaller(resultClazz).unmarshal(source);
-        } catch (JAXBException e) {
-            LOGGER.error(e.getMessage(), e);
-            throw new RuntimeException(e);
-        }
+        return withUnmarshaller(resultClazz, unmarshaller -> (T) unmarshaller.unmarshal(source));
     }
 
-    @SuppressWarnings("unchecked")
     public <T> T unmarshall(String string, Class<T> resultClazz) {
-        try {
-
-            return (T) getUnmarshaller(resultClazz).unmarshal(new ByteArrayInputStream(string.getBytes()));
-        } catch (JAXBException e) {
-            LOGGER.error(e.getMessage(), e);
-            throw new RuntimeException(e);
-        }
+        return unmarshall(new StringReader(string), resultClazz);
     }
 
-    @SuppressWarnings("unchecked")
     public <T> T unmarshall(File file, Class<T> resultClazz) {
-        try {
-            return (T) getUnmarshaller(resultClazz).unmarshal(file);
-        } catch (JAXBException e) {
+        try (InputStream is = new FileInputStream(file)) {
+            return unmarshall(is, resultClazz);
+        } catch (IOException e) {
             LOGGER.error(e.getMessage(), e);
             throw new RuntimeException(e);
         }
     }
 
-    @SuppressWarnings("unchecked")
     public <T> T unmarshall(InputStream is, Class<T> resultClazz) {
-        try {
-            return (T) getUnmarshaller(resultClazz).unmarshal(is);
-        } catch (JAXBException e) {
-            LOGGER.error(e.getMessage(), e);
-            throw new RuntimeException(e);
-        }
+        return withUnmarshaller(resultClazz, unmarshaller -> read(unmarshaller, inputFactory.createXMLStreamReader(is), resultClazz));
     }
 
-    public void marshall(Object jaxbElement, Result paramResult) {
-        try {
-            getMarshaller(jaxbElement.getClass()).marshal(jaxbElement,
-                    paramResult);
-        } catch (JAXBException e) {
-            LOGGER.error(e.getMessage(), e);
-            throw new RuntimeException(e);
-        }
+    public <T> T unmarshall(Reader reader, Class<T> resultClazz) {
+        return withUnmarshaller(resultClazz,
+                unmarshaller -> read(unmarshaller, inputFactory.createXMLStreamReader(reader), resultClazz));
+    }
+
+    /**
+     * Unmarshall every element with specified local name one by one, so only a single element of large document is
+     * kept in memory.
+     * 
+     * @param is - InputStream
+     * @param elementName - local name of elements to unmarshall
+     * @param resultClazz - class of elements
+     * @param consumer - receives unmarshalled elements
+     * @return number of unmarshalled elements
+     */
+    public <T> int unmarshall(InputStream is, String elementName, Class<T> resultClazz, Consumer<? super T> consumer) {
+        return withUnmarshaller(resultClazz, unmarshaller -> {
+            XMLStreamReader reader = inputFactory.createXMLStreamReader(is);
+            try {
+                int count = 0;
+                while (reader.hasNext()) {
+                    if (reader.getEventType() == XMLStreamConstants.START_ELEMENT && elementName.equals(reader.getLocalName())) {
+                        // unmarshal moves reader to the event after the element
+                        consumer.accept(unmarshaller.unmarshal(reader, resultClazz).getValue());
+                        count++;
+                    } else {
+                        reader.next();
+                    }
+                }
+                return count;
+            } finally {
+                reader.close();
+            }
+        });
+    }
 
+    public void marshall(Object jaxbElement, Result paramResult) {
+        withMarshaller(jaxbElement.getClass(), marshaller -> {
+            marshaller.marshal(jaxbElement, paramResult);
+            return null;
+        });
     }
 
     public void marshall(Object jaxbElement, Writer writer) {
-        try {
-            getMarshaller(jaxbElement.getClass()).marshal(jaxbElement, writer);
-        } catch (JAXBException e) {
-            LOGGER.error(e.getMessage(), e);
-            throw new RuntimeException(e);
-        }
-
+        withMarshaller(jaxbElement.getClass(), marshaller -> {
+            marshaller.marshal(jaxbElement, writer);
+            return null;
+        });
     }
 
     public String marshall(Object jaxbElement) {
+        final StringWriter w = new StringWriter();
+        marshall(jaxbElement, w);
+        return w.toString();
+    }
+
+    /**
+     * Unmarshall root element from StAX reader. Root element is checked by JAXB when class is annotated with
+     * XmlRootElement, otherwise root element is bound to the class.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T read(Unmarshaller unmarshaller, XMLStreamReader reader, Class<T> resultClazz)
+            throws JAXBException, XMLStreamException {
         try {
-            final StringWriter w = new StringWriter();
-            getMarshaller(jaxbElement.getClass()).marshal(jaxbElement, w);
-            return w.toString();
-        } catch (JAXBException e) {
-            LOGGER.error(e.getMessage(), e);
-            throw new RuntimeException(e);
+            if (!resultClazz.isAnnotationPresent(XmlRootElement.class)) {
+                return unmarshaller.unmarshal(reader, resultClazz).getValue();
+            }
+            Object result = unmarshaller.unmarshal(reader);
+            if (result instanceof JAXBElement) {
+                result = ((JAXBElement<?>) result).getValue();
+            }
+            return (T) result;
+        } finally {
+            reader.close();
         }
-
     }
 }
@@ -18,7 +18,9 @@ package com.qaprosoft.carina.core.foundation.utils.marshaller;
 import java.io.File;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.Reader;
 import java.io.Writer;
+import java.util.function.Consumer;
 
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
@@ -112,6 +114,35 @@ public class MarshallerHelper {
         return marshaller.unmarshall(string, resultClazz);
     }
 
+    /**
+     * Create JAXBElement from Reader
+     * 
+     * @param <T> Generic
+     * @param reader Reader
+     * @param resultClazz expected class
+     * 
+     * @return T &lt;T&gt;
+     */
+    public static <T> T unmarshall(Reader reader, Class<T> resultClazz) {
+        return marshaller.unmarshall(reader, resultClazz);
+    }
+
+    /**
+     * Stream elements of large XML document: every element with specified local name is unmarshalled and passed to
+     * consumer one by one, so the document is never kept in memory.
+     * 
+     * @param <T> Generic
+     * @param is Input Stream
+     * @param elementName local name of elements to unmarshall
+     * @param resultClazz expected class of elements
+     * @param consumer receives unmarshalled elements
+     * 
+     * @return number of unmarshalled elements
+     */
+    public static <T> int unmarshall(InputStream is, String elementName, Class<T> resultClazz, Consumer<? super T> consumer) {
+        return marshaller.unmarshall(is, elementName, resultClazz, consumer);
+    }
+
     /**
      * Serializes JAXBElement into Writer
      * 
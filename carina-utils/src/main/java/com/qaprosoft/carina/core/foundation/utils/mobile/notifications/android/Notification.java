@@ -19,6 +19,7 @@ public class Notification {
 
     private String notificationPkg;
     private String tickerText;
+    private String key;
 
     public Notification() {
 
@@ -45,6 +46,19 @@ public class Notification {
         this.tickerText = tickerText;
     }
 
+    /**
+     * Unique notification record key, i.e. "0|com.android.systemui|1|null|10023"
+     *
+     * @return String or null if key is not available in dumpsys output
+     */
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.mobile.notifications.android;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * NotificationParser - extracts notification records from "adb shell dumpsys notification" output. Only record header
+ * and tickerText lines are analyzed, so output can be filtered on device side by
+ * "grep -e NotificationRecord -e tickerText=" to reduce transferred data.
+ */
+public class NotificationParser {
+
+    public static final String RECORD = "NotificationRecord(";
+
+    public static final String TICKER_TEXT = "tickerText=";
+
+    private static final String PKG = "pkg=";
+
+    private static final String USER = " user";
+
+    private static final String KEY = " key=";
+
+    private NotificationParser() {
+    }
+
+    /**
+     * Parse dumpsys notification output. Notification is registered when its tickerText line is found.
+     *
+     * @param lines dumpsys output lines
+     * @return List of Notification
+     */
+    public static List<Notification> parse(Iterable<String> lines) {
+        List<Notification> notifications = new ArrayList<>();
+        String pkg = null;
+        String key = null;
+        for (String line : lines) {
+            int record = line.indexOf(RECORD);
+            if (record >= 0) {
+                pkg = getPackage(line, record);
+                key = getKey(line, record);
+                continue;
+            }
+            int text = line.indexOf(TICKER_TEXT);
+            if (text >= 0) {
+                Notification notification = new Notification(pkg, line.substring(text + TICKER_TEXT.length()));
+                notification.setKey(key);
+                notifications.add(notification);
+                pkg = null;
+                key = null;
+            }
+        }
+        return notifications;
+    }
+
+    /**
+     * Check if line is meaningful for {@link #parse(Iterable)}.
+     *
+     * @param line dumpsys output line
+     * @return boolean
+     */
+    public static boolean isRelevant(String line) {
+        return line.contains(RECORD) || line.contains(TICKER_TEXT);
+    }
+
+    private static String getPackage(String line, int from) {
+        // NotificationRecord(0x0e5c2f3a: pkg=com.android.systemui user=UserHandle{0} id=1 ...
+        int start = line.indexOf(PKG, from);
+        if (start < 0) {
+            return null;
+        }
+        start += PKG.length();
+        int end = line.lastIndexOf(USER);
+        return end > start ? line.substring(start, end) : line.substring(start);
+    }
+
+    private static String getKey(String line, int from) {
+        // ... importance=2 key=0|com.android.systemui|1|null|10023: Notification(...
+        int start = line.indexOf(KEY, from);
+        if (start < 0) {
+            return null;
+        }
+        start += KEY.length();
+        int end = line.indexOf(": ", start);
+        return end > start ? line.substring(start, end) : line.substring(start).trim();
+    }
+}
@@ -0,0 +1,429 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.mobile.notifications.android;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+
+import org.apache.log4j.Logger;
+
+/**
+ * NotificationWatcher - keeps single monitoring channel per device: one long-running adb shell which prints filtered
+ * "dumpsys notification" snapshots separated by {@link #SNAPSHOT_END} line. Unchanged snapshots are skipped, changed
+ * ones are diffed by notification key with current state and {@link NotificationListener}s are notified about posted
+ * and removed notifications. Waits are completed by listeners instead of sleep-polling.
+ * <p>
+ * Watcher created with command is started on demand by the first registered listener and stopped together with adb
+ * shell as soon as the last listener is removed, so device is not polled while nobody waits for notifications.
+ */
+public class NotificationWatcher implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(NotificationWatcher.class);
+
+    public static final String SNAPSHOT_END = "--carina-notifications--";
+
+    private static final long FIRST_SNAPSHOT_TIMEOUT = 10;
+
+    private final String name;
+
+    private final Callable<InputStream> source;
+
+    private final List<NotificationListener> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile CountDownLatch firstSnapshot = new CountDownLatch(1);
+
+    private volatile Map<String, Notification> notifications = Collections.emptyMap();
+
+    private volatile boolean running = false;
+
+    private volatile boolean closed = false;
+
+    private Process process;
+
+    private InputStream stream;
+
+    private volatile Thread reader;
+
+    private int snapshotHash;
+
+    private volatile long snapshotCount;
+
+    /**
+     * Watcher which is started manually by {@link #start(InputStream)} and stopped by {@link #close()}.
+     *
+     * @param name device name
+     */
+    public NotificationWatcher(String name) {
+        this(name, (Callable<InputStream>) null);
+    }
+
+    /**
+     * Watcher which starts monitoring process on demand.
+     *
+     * @param name device name
+     * @param cmd command line, i.e. "adb -s UDID shell &lt;monitor command&gt;"
+     */
+    public NotificationWatcher(String name, String[] cmd) {
+        this.name = name;
+        this.source = () -> {
+            LOGGER.debug("Starting notification watcher for " + name + ": " + Arrays.toString(cmd));
+            process = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+            return process.getInputStream();
+        };
+    }
+
+    NotificationWatcher(String name, Callable<InputStream> source) {
+        this.name = name;
+        this.source = source;
+    }
+
+    /**
+     * Shell command for device which prints notification snapshots, use it as "adb -s UDID shell &lt;command&gt;".
+     *
+     * @param intervalSeconds pause between snapshots
+     * @return String
+     */
+    public static String getMonitorCommand(int intervalSeconds) {
+        return String.format("while true; do dumpsys notification | grep -e '%s' -e '%s'; echo '%s'; sleep %d; done",
+                NotificationParser.RECORD, NotificationParser.TICKER_TEXT, SNAPSHOT_END, intervalSeconds);
+    }
+
+    synchronized void start(InputStream in) {
+        if (closed) {
+            throw new RuntimeException("Notification watcher is already closed: " + name);
+        }
+        // state of previous monitoring session is not actual anymore
+        notifications = Collections.emptyMap();
+        snapshotHash = 0;
+        CountDownLatch latch = new CountDownLatch(1);
+        firstSnapshot = latch;
+        stream = in;
+        running = true;
+        reader = new Thread(() -> read(in, latch), "notifications-" + name);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private void startSource() {
+        if (closed) {
+            throw new RuntimeException("Notification watcher is already closed: " + name);
+        }
+        try {
+            start(source.call());
+        } catch (Exception e) {
+            stop();
+            throw new RuntimeException("Unable to start notification watcher for " + name, e);
+        }
+    }
+
+    /**
+     * Stop monitoring process, it is started again by the next listener.
+     */
+    public synchronized void stop() {
+        running = false;
+        reader = null;
+        if (process != null) {
+            process.destroy();
+            process = null;
+        }
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                LOGGER.debug("Unable to close notifications stream of " + name + ": " + e.getMessage());
+            }
+            stream = null;
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Register listener, monitoring process is started if it is not running yet.
+     *
+     * @param listener NotificationListener
+     */
+    public synchronized void addListener(NotificationListener listener) {
+        listeners.add(listener);
+        if (source != null && !running) {
+            try {
+                startSource();
+            } catch (RuntimeException e) {
+                listeners.remove(listener);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Unregister listener, monitoring process is stopped when the last listener is removed.
+     *
+     * @param listener NotificationListener
+     */
+    public synchronized void removeListener(NotificationListener listener) {
+        listeners.remove(listener);
+        if (source != null && listeners.isEmpty() && running) {
+            LOGGER.debug("Stopping notification watcher of " + name + " as there are no listeners.");
+            stop();
+        }
+    }
+
+    /**
+     * Current notifications. Waits for the first snapshot if monitoring is just started, returns the last known state
+     * if watcher is not running.
+     *
+     * @return List of Notification
+     */
+    public List<Notification> getNotifications() {
+        try {
+            if (running && !firstSnapshot.await(FIRST_SNAPSHOT_TIMEOUT, TimeUnit.SECONDS)) {
+                LOGGER.warn("Notifications snapshot is not received from " + name + " in " + FIRST_SNAPSHOT_TIMEOUT + " seconds.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return new ArrayList<>(notifications.values());
+    }
+
+    /**
+     * Future completed by the first current or posted notification matching the condition.
+     *
+     * @param condition Predicate
+     * @return CompletableFuture of Notification
+     */
+    public CompletableFuture<Notification> waitFor(Predicate<Notification> condition) {
+        CompletableFuture<Notification> future = listen(condition);
+        if (!future.isDone()) {
+            // notification may already exist or be posted before listener registration
+            getNotifications().stream().filter(condition).findFirst().ifPresent(future::complete);
+        }
+        return future;
+    }
+
+    /**
+     * Future completed by the first notification matching the condition which is posted after this call, notifications
+     * existing at the moment of call are ignored.
+     *
+     * @param condition Predicate
+     * @return CompletableFuture of Notification
+     */
+    public CompletableFuture<Notification> waitForNew(Predicate<Notification> condition) {
+        // listeners are not notified about notifications of the first snapshot, so existing ones are ignored
+        return listen(condition);
+    }
+
+    private CompletableFuture<Notification> listen(Predicate<Notification> condition) {
+        CompletableFuture<Notification> future = new CompletableFuture<>();
+        NotificationListener listener = notification -> {
+            if (condition.test(notification)) {
+                future.complete(notification);
+            }
+        };
+        try {
+            addListener(listener);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        future.whenComplete((notification, e) -> removeListener(listener));
+
+        if (!running) {
+            future.completeExceptionally(new IllegalStateException("Notification watcher is stopped: " + name));
+        }
+        return future;
+    }
+
+    /**
+     * Wait until notification matching the condition exists.
+     *
+     * @param condition Predicate
+     * @param timeout seconds
+     * @return boolean
+     */
+    public boolean waitFor(Predicate<Notification> condition, long timeout) {
+        return await(waitFor(condition), timeout);
+    }
+
+    /**
+     * Wait until new notification matching the condition is posted.
+     *
+     * @param condition Predicate
+     * @param timeout seconds
+     * @return boolean
+     */
+    public boolean waitForNew(Predicate<Notification> condition, long timeout) {
+        return await(waitForNew(condition), timeout);
+    }
+
+    /**
+     * Wait for completion of notification future, future is cancelled on timeout.
+     *
+     * @param future future returned by {@link #waitFor(Predicate)} or {@link #waitForNew(Predicate)}
+     * @param timeout seconds
+     * @return boolean
+     */
+    public boolean await(CompletableFuture<Notification> future, long timeout) {
+        try {
+            Notification notification = future.get(timeout, TimeUnit.SECONDS);
+            LOGGER.info("Found notification: " + notification);
+            return true;
+        } catch (TimeoutException e) {
+            LOGGER.info("Notification is not found in " + timeout + " seconds.");
+            return false;
+        } catch (ExecutionException e) {
+            LOGGER.warn(e.getCause().getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            future.cancel(false);
+        }
+    }
+
+    long getSnapshotCount() {
+        return snapshotCount;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        Thread thread = reader;
+        stop();
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void read(InputStream in, CountDownLatch latch) {
+        List<String> snapshot = new ArrayList<>();
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while (isActive() && (line = lines.readLine()) != null) {
+                if (SNAPSHOT_END.equals(line.trim())) {
+                    if (!isActive()) {
+                        break;
+                    }
+                    onSnapshot(snapshot);
+                    snapshot = new ArrayList<>();
+                } else if (NotificationParser.isRelevant(line)) {
+                    snapshot.add(line);
+                }
+            }
+        } catch (IOException e) {
+            if (isActive()) {
+                LOGGER.debug("Notification watcher of " + name + " is interrupted: " + e.getMessage());
+            }
+        } finally {
+            synchronized (this) {
+                if (reader == Thread.currentThread()) {
+                    running = false;
+                    reader = null;
+                }
+            }
+            // release waiters of the first snapshot
+            latch.countDown();
+            LOGGER.debug("Notification watcher of " + name + " is stopped.");
+        }
+    }
+
+    private boolean isActive() {
+        // reader of stopped or restarted monitoring session exits without touching actual state
+        return !closed && reader == Thread.currentThread();
+    }
+
+    void onSnapshot(List<String> snapshot) {
+        try {
+            diff(snapshot);
+        } finally {
+            snapshotCount++;
+        }
+    }
+
+    private void diff(List<String> snapshot) {
+        int hash = snapshot.hashCode();
+        CountDownLatch latch = firstSnapshot;
+        boolean baseline = latch.getCount() > 0;
+        if (hash == snapshotHash && !baseline) {
+            // nothing is changed since previous snapshot
+            return;
+        }
+        snapshotHash = hash;
+
+        Map<String, Notification> actual = new LinkedHashMap<>();
+        for (Notification notification : NotificationParser.parse(snapshot)) {
+            actual.put(getKey(notification), notification);
+        }
+        Map<String, Notification> previous = notifications;
+        notifications = Collections.unmodifiableMap(actual);
+        latch.countDown();
+        if (baseline) {
+            // the first snapshot describes notifications existing before monitoring start
+            return;
+        }
+
+        for (Map.Entry<String, Notification> entry : actual.entrySet()) {
+            if (!previous.containsKey(entry.getKey())) {
+                LOGGER.debug("Notification posted on " + name + ": " + entry.getValue());
+                for (NotificationListener listener : listeners) {
+                    try {
+                        listener.onNotificationPosted(entry.getValue());
+                    } catch (RuntimeException e) {
+                        LOGGER.warn("Notification listener failure", e);
+                    }
+                }
+            }
+        }
+        for (Map.Entry<String, Notification> entry : previous.entrySet()) {
+            if (!actual.containsKey(entry.getKey())) {
+                LOGGER.debug("Notification removed on " + name + ": " + entry.getValue());
+                for (NotificationListener listener : listeners) {
+                    try {
+                        listener.onNotificationRemoved(entry.getValue());
+                    } catch (RuntimeException e) {
+                        LOGGER.warn("Notification listener failure", e);
+                    }
+                }
+            }
+        }
+    }
+
+    private static String getKey(Notification notification) {
+        if (notification.getKey() != null) {
+            return notification.getKey();
+        }
+        return notification.getNotificationPkg() + "|" + notification.getNotificationText();
+    }
+}
@@ -0,0 +1,328 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.mobile.snapshot;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.Rectangle;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+/**
+ * UiSnapshot - element geometry from single Appium page source. Supports Android ("bounds" attribute) and iOS ("x",
+ * "y", "width", "height" attributes) hierarchies and resolves By.xpath, By.id, By.AccessibilityId, By.name and
+ * By.className locators against it without additional driver calls.
+ */
+public class UiSnapshot {
+
+    private static final Pattern ANDROID_BOUNDS = Pattern.compile("\\[(-?\\d+),(-?\\d+)\\]\\[(-?\\d+),(-?\\d+)\\]");
+
+    private static final String[] ID_ATTRIBUTES = { "resource-id", "name" };
+
+    private static final String[] ACCESSIBILITY_ATTRIBUTES = { "content-desc", "name", "label" };
+
+    private static final String[] NAME_ATTRIBUTES = { "text", "name", "label" };
+
+    private static final String[] TEXT_ATTRIBUTES = { "text", "value", "label" };
+
+    private static final String[] DESCRIPTOR_ATTRIBUTES = { "resource-id", "text", "content-desc", "name", "label", "value" };
+
+    private final Document document;
+
+    private UiSnapshot(Document document) {
+        this.document = document;
+    }
+
+    public static UiSnapshot parse(String pageSource) {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            DocumentBuilder builder = factory.newDocumentBuilder();
+            return new UiSnapshot(builder.parse(new InputSource(new StringReader(pageSource))));
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to parse page source: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Check if locator can be resolved against page source.
+     * 
+     * @param locator By
+     * @return boolean
+     */
+    public static boolean isSupported(By locator) {
+        String type = getType(locator);
+        return "xpath".equals(type) || "id".equals(type) || "AccessibilityId".equals(type) || "name".equals(type)
+                || "className".equals(type);
+    }
+
+    /**
+     * Bounds of the first hierarchy node with geometry, i.e. application window.
+     * 
+     * @return Rectangle or null
+     */
+    public Rectangle getScreen() {
+        NodeList nodes = document.getElementsByTagName("*");
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Rectangle bounds = getBounds((Element) nodes.item(i));
+            if (bounds != null && bounds.getWidth() > 0 && bounds.getHeight() > 0) {
+                return bounds;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Bounds of the first node matching the locator.
+     * 
+     * @param locator By
+     * @return Rectangle or null if node is not present in page source
+     */
+    public Rectangle find(By locator) {
+        for (Element element : findElements(locator)) {
+            Rectangle bounds = getBounds(element);
+            if (bounds != null) {
+                return bounds;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check if any node matching the locator is present in page source.
+     * 
+     * @param locator By
+     * @return boolean
+     */
+    public boolean isPresent(By locator) {
+        return !findElements(locator).isEmpty();
+    }
+
+    /**
+     * Check if any node matching the locator is displayed, i.e. has not empty bounds and is not marked as invisible.
+     * 
+     * @param locator By
+     * @return boolean
+     */
+    public boolean isVisible(By locator) {
+        for (Element element : findElements(locator)) {
+            if (isVisible(element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if any displayed node matching the locator contains text.
+     * 
+     * @param locator By
+     * @param text String
+     * @return boolean
+     */
+    public boolean isTextPresent(By locator, String text) {
+        for (Element element : findElements(locator)) {
+            if (isVisible(element) && getText(element).contains(text)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Text of the first displayed node matching the locator.
+     * 
+     * @param locator By
+     * @return String or null if there is no displayed node
+     */
+    public String getText(By locator) {
+        for (Element element : findElements(locator)) {
+            if (isVisible(element)) {
+                return getText(element);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Signature of all nodes located inside viewport. It is changed when content of scrollable container is moved, so
+     * equal signatures before and after swipe mean that the end of the list is reached.
+     * 
+     * @param viewport Rectangle
+     * @return String
+     */
+    public String getSignature(Rectangle viewport) {
+        StringBuilder signature = new StringBuilder();
+        NodeList nodes = document.getElementsByTagName("*");
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Element element = (Element) nodes.item(i);
+            Rectangle bounds = getBounds(element);
+            if (bounds == null || bounds.equals(viewport) || !contains(viewport, bounds)) {
+                continue;
+            }
+            signature.append(element.getTagName());
+            for (String attribute : DESCRIPTOR_ATTRIBUTES) {
+                signature.append('|').append(element.getAttribute(attribute));
+            }
+            signature.append('|').append(bounds.getX()).append(',').append(bounds.getY()).append(',').append(bounds.getWidth())
+                    .append(',').append(bounds.getHeight()).append('\n');
+        }
+        return signature.toString();
+    }
+
+    static boolean contains(Rectangle outer, Rectangle inner) {
+        return inner.getX() >= outer.getX() && inner.getY() >= outer.getY()
+                && inner.getX() + inner.getWidth() <= outer.getX() + outer.getWidth()
+                && inner.getY() + inner.getHeight() <= outer.getY() + outer.getHeight();
+    }
+
+    private List<Element> findElements(By locator) {
+        String type = getType(locator);
+        String value = getValue(locator);
+        List<Element> result = new ArrayList<>();
+        if ("xpath".equals(type)) {
+            try {
+                NodeList nodes = (NodeList) XPathFactory.newInstance().newXPath().evaluate(value, document, XPathConstants.NODESET);
+                for (int i = 0; i < nodes.getLength(); i++) {
+                    if (nodes.item(i).getNodeType() == Node.ELEMENT_NODE) {
+                        result.add((Element) nodes.item(i));
+                    }
+                }
+            } catch (XPathExpressionException e) {
+                throw new RuntimeException("Invalid xpath: " + value, e);
+            }
+            return result;
+        }
+
+        NodeList nodes = document.getElementsByTagName("*");
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Element element = (Element) nodes.item(i);
+            if (matches(element, type, value)) {
+                result.add(element);
+            }
+        }
+        return result;
+    }
+
+    private static boolean matches(Element element, String type, String value) {
+        switch (type) {
+        case "id":
+            for (String attribute : ID_ATTRIBUTES) {
+                String id = element.getAttribute(attribute);
+                // Android short id "title" matches resource-id "com.android.settings:id/title"
+                if (id.equals(value) || id.endsWith(":id/" + value)) {
+                    return true;
+                }
+            }
+            return false;
+        case "AccessibilityId":
+            return hasAttribute(element, ACCESSIBILITY_ATTRIBUTES, value);
+        case "name":
+            return hasAttribute(element, NAME_ATTRIBUTES, value);
+        case "className":
+            return element.getTagName().equals(value) || element.getAttribute("class").equals(value)
+                    || element.getAttribute("type").equals(value);
+        default:
+            throw new RuntimeException("Unsupported locator for page source: " + type);
+        }
+    }
+
+    private static boolean hasAttribute(Element element, String[] attributes, String value) {
+        for (String attribute : attributes) {
+            if (element.getAttribute(attribute).equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isVisible(Element element) {
+        // android: displayed="false" for views out of the window; ios: visible="false"
+        if ("false".equals(element.getAttribute("displayed")) || "false".equals(element.getAttribute("visible"))) {
+            return false;
+        }
+        Rectangle bounds = getBounds(element);
+        return bounds != null && bounds.getWidth() > 0 && bounds.getHeight() > 0;
+    }
+
+    private static String getText(Element element) {
+        for (String attribute : TEXT_ATTRIBUTES) {
+            if (element.hasAttribute(attribute)) {
+                return element.getAttribute(attribute);
+            }
+        }
+        return "";
+    }
+
+    static Rectangle getBounds(Element element) {
+        String bounds = element.getAttribute("bounds");
+        if (!bounds.isEmpty()) {
+            // bounds="[0,210][1080,399]"
+            Matcher matcher = ANDROID_BOUNDS.matcher(bounds);
+            if (!matcher.matches()) {
+                return null;
+            }
+            int x1 = Integer.parseInt(matcher.group(1));
+            int y1 = Integer.parseInt(matcher.group(2));
+            int x2 = Integer.parseInt(matcher.group(3));
+            int y2 = Integer.parseInt(matcher.group(4));
+            return new Rectangle(x1, y1, y2 - y1, x2 - x1);
+        }
+        String x = element.getAttribute("x");
+        String y = element.getAttribute("y");
+        String width = element.getAttribute("width");
+        String height = element.getAttribute("height");
+        if (x.isEmpty() || y.isEmpty() || width.isEmpty() || height.isEmpty()) {
+            return null;
+        }
+        try {
+            return new Rectangle(Integer.parseInt(x), Integer.parseInt(y), Integer.parseInt(height), Integer.parseInt(width));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String getType(By locator) {
+        // By.id: value, By.AccessibilityId: value
+        String description = locator.toString();
+        int separator = description.indexOf(": ");
+        if (!description.startsWith("By.") || separator < 0) {
+            return "";
+        }
+        return description.substring("By.".length(), separator);
+    }
+
+    private static String getValue(By locator) {
+        String description = locator.toString();
+        return description.substring(description.indexOf(": ") + 2);
+    }
+}
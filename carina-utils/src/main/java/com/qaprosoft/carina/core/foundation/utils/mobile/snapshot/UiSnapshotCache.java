@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.mobile.snapshot;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.log4j.Logger;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WrapsDriver;
+
+/**
+ * UiSnapshotCache - single parsed page source per driver. Read-only checks are evaluated against cached snapshot while
+ * screen is not changed, any mutating action (click, type, swipe etc) has to invalidate it. Screen could also be changed
+ * by the application itself (spinners, transitions, push updates), so checks should limit the age of used snapshot.
+ */
+public final class UiSnapshotCache {
+
+    private static final Logger LOGGER = Logger.getLogger(UiSnapshotCache.class);
+
+    private static final Map<WebDriver, Entry> SNAPSHOTS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private UiSnapshotCache() {
+    }
+
+    /**
+     * Get cached snapshot of the current screen or fetch new one.
+     * 
+     * @param driver WebDriver
+     * @return UiSnapshot
+     */
+    public static UiSnapshot get(WebDriver driver) {
+        Entry entry = SNAPSHOTS.get(unwrap(driver));
+        return entry != null ? entry.snapshot : refresh(driver);
+    }
+
+    /**
+     * Get cached snapshot of the current screen if it is not older than maxAge or fetch new one.
+     * 
+     * @param driver WebDriver
+     * @param maxAge max age of cached snapshot in milliseconds
+     * @return UiSnapshot
+     */
+    public static UiSnapshot get(WebDriver driver, long maxAge) {
+        Entry entry = SNAPSHOTS.get(unwrap(driver));
+        if (entry != null && System.currentTimeMillis() - entry.time <= maxAge) {
+            return entry.snapshot;
+        }
+        return refresh(driver);
+    }
+
+    /**
+     * Fetch page source and replace cached snapshot.
+     * 
+     * @param driver WebDriver
+     * @return UiSnapshot
+     */
+    public static UiSnapshot refresh(WebDriver driver) {
+        WebDriver drv = unwrap(driver);
+        long start = System.currentTimeMillis();
+        UiSnapshot snapshot = UiSnapshot.parse(drv.getPageSource());
+        LOGGER.debug("Page source snapshot is taken in " + (System.currentTimeMillis() - start) + " ms");
+        SNAPSHOTS.put(drv, new Entry(snapshot, System.currentTimeMillis()));
+        return snapshot;
+    }
+
+    /**
+     * Drop cached snapshot after action which may change the screen.
+     * 
+     * @param driver WebDriver
+     */
+    public static void invalidate(WebDriver driver) {
+        if (driver != null) {
+            SNAPSHOTS.remove(unwrap(driver));
+        }
+    }
+
+    private static WebDriver unwrap(WebDriver driver) {
+        WebDriver drv = driver;
+        while (drv instanceof WrapsDriver && ((WrapsDriver) drv).getWrappedDriver() != drv) {
+            drv = ((WrapsDriver) drv).getWrappedDriver();
+        }
+        return drv;
+    }
+
+    private static final class Entry {
+        private final UiSnapshot snapshot;
+
+        private final long time;
+
+        private Entry(UiSnapshot snapshot, long time) {
+            this.snapshot = snapshot;
+            this.time = time;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.mobile.swipe;
+
+import java.time.Duration;
+import java.util.Collections;
+
+import org.apache.log4j.Logger;
+import org.openqa.selenium.By;
+import org.openqa.selenium.Rectangle;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.interactions.Interactive;
+import org.openqa.selenium.interactions.PointerInput;
+import org.openqa.selenium.interactions.PointerInput.Kind;
+import org.openqa.selenium.interactions.PointerInput.MouseButton;
+import org.openqa.selenium.interactions.PointerInput.Origin;
+import org.openqa.selenium.interactions.Sequence;
+
+import com.qaprosoft.carina.core.foundation.utils.mobile.snapshot.UiSnapshot;
+import com.qaprosoft.carina.core.foundation.utils.mobile.snapshot.UiSnapshotCache;
+
+/**
+ * SwipeEngine - swipes to element using geometry from page source snapshots instead of fixed distance swipes followed by
+ * element lookup. Container bounds and target position are read from one snapshot, when target is present in page
+ * source the exact distance to bring it to the center of container is swiped, otherwise the largest safe distance is
+ * used. End of the list is detected when snapshot of container content is not changed after swipe. Every swipe is a
+ * single W3C pointer actions sequence.
+ */
+public class SwipeEngine {
+    private static final Logger LOGGER = Logger.getLogger(SwipeEngine.class);
+
+    public enum Axis {
+        VERTICAL,
+        HORIZONTAL
+    }
+
+    // part of container span which is not used by gesture to avoid edge gestures
+    private static final double MARGIN = 0.15;
+
+    private final WebDriver driver;
+
+    private int swipeCount;
+
+    private int snapshotCount;
+
+    public SwipeEngine(WebDriver driver) {
+        if (!(driver instanceof Interactive)) {
+            throw new RuntimeException("Driver doesn't support W3C actions: " + driver.getClass().getName());
+        }
+        this.driver = driver;
+    }
+
+    /**
+     * Swipe inside container till target is visible.
+     * 
+     * @param target locator of element to swipe to
+     * @param container locator of scrollable container or null to use whole screen
+     * @param axis swipe axis
+     * @param forward true to reveal content below/right first (swipe UP or LEFT), false to swipe DOWN or RIGHT first
+     * @param bothDirections swipe in opposite direction when the end of the list is reached
+     * @param maxSwipes max number of gestures per direction
+     * @param duration gesture duration, ms
+     * @return true if target center is inside container
+     */
+    public boolean swipeTo(By target, By container, Axis axis, boolean forward, boolean bothDirections, int maxSwipes, int duration) {
+        UiSnapshot snapshot = snapshot();
+        Rectangle viewport = container == null ? snapshot.getScreen() : snapshot.find(container);
+        if (viewport == null) {
+            throw new RuntimeException("Unable to find swipe container in page source: " + (container == null ? "screen" : container));
+        }
+
+        int directions = bothDirections ? 2 : 1;
+        for (int i = 0; i < directions; i++) {
+            int sign = forward ^ (i == 1) ? 1 : -1;
+            String signature = snapshot.getSignature(viewport);
+            for (int attempt = 0;; attempt++) {
+                Rectangle bounds = snapshot.find(target);
+                if (bounds != null && isVisible(bounds, viewport)) {
+                    LOGGER.debug(String.format("Target %s is visible after %d swipes", target, swipeCount));
+                    return true;
+                }
+                if (attempt >= maxSwipes) {
+                    break;
+                }
+                // exact distance to the center of container if target is already in page source
+                int distance = bounds != null ? getDistance(bounds, viewport, axis) : sign * getMaxDistance(viewport, axis);
+                swipe(viewport, axis, clamp(distance, getMaxDistance(viewport, axis)), duration);
+                snapshot = snapshot();
+                String actual = snapshot.getSignature(viewport);
+                if (actual.equals(signature)) {
+                    LOGGER.debug("End of the list is reached for " + target);
+                    break;
+                }
+                signature = actual;
+            }
+        }
+        LOGGER.debug(String.format("Target %s is not found after %d swipes", target, swipeCount));
+        return false;
+    }
+
+    /**
+     * Single swipe inside viewport moving content by distance. Positive distance moves content up/left.
+     * 
+     * @param viewport container bounds
+     * @param axis swipe axis
+     * @param distance pixels
+     * @param duration ms
+     */
+    public void swipe(Rectangle viewport, Axis axis, int distance, int duration) {
+        int centerX = viewport.getX() + viewport.getWidth() / 2;
+        int centerY = viewport.getY() + viewport.getHeight() / 2;
+        int startX = centerX;
+        int startY = centerY;
+        int endX = centerX;
+        int endY = centerY;
+        if (axis == Axis.VERTICAL) {
+            startY = centerY + distance / 2;
+            endY = startY - distance;
+        } else {
+            startX = centerX + distance / 2;
+            endX = startX - distance;
+        }
+        LOGGER.debug(String.format("Swipe from (X = %d; Y = %d) to (X = %d; Y = %d)", startX, startY, endX, endY));
+
+        PointerInput finger = new PointerInput(Kind.TOUCH, "finger");
+        Sequence swipe = new Sequence(finger, 0);
+        swipe.addAction(finger.createPointerMove(Duration.ZERO, Origin.viewport(), startX, startY));
+        swipe.addAction(finger.createPointerDown(MouseButton.LEFT.asArg()));
+        swipe.addAction(finger.createPointerMove(Duration.ofMillis(duration), Origin.viewport(), endX, endY));
+        swipe.addAction(finger.createPointerUp(MouseButton.LEFT.asArg()));
+        UiSnapshotCache.invalidate(driver);
+        ((Interactive) driver).perform(Collections.singletonList(swipe));
+        swipeCount++;
+    }
+
+    public int getSwipeCount() {
+        return swipeCount;
+    }
+
+    public int getSnapshotCount() {
+        return snapshotCount;
+    }
+
+    private UiSnapshot snapshot() {
+        snapshotCount++;
+        return UiSnapshotCache.refresh(driver);
+    }
+
+    static int getDistance(Rectangle bounds, Rectangle viewport, Axis axis) {
+        if (axis == Axis.VERTICAL) {
+            return bounds.getY() + bounds.getHeight() / 2 - (viewport.getY() + viewport.getHeight() / 2);
+        }
+        return bounds.getX() + bounds.getWidth() / 2 - (viewport.getX() + viewport.getWidth() / 2);
+    }
+
+    static int getMaxDistance(Rectangle viewport, Axis axis) {
+        int span = axis == Axis.VERTICAL ? viewport.getHeight() : viewport.getWidth();
+        return (int) Math.round(span * (1 - 2 * MARGIN));
+    }
+
+    static boolean isVisible(Rectangle bounds, Rectangle viewport) {
+        int centerX = bounds.getX() + bounds.getWidth() / 2;
+        int centerY = bounds.getY() + bounds.getHeight() / 2;
+        return bounds.getWidth() > 0 && bounds.getHeight() > 0
+                && centerX >= viewport.getX() && centerX < viewport.getX() + viewport.getWidth()
+                && centerY >= viewport.getY() && centerY < viewport.getY() + viewport.getHeight();
+    }
+
+    private static int clamp(int distance, int max) {
+        return Math.max(-max, Math.min(max, distance));
+    }
+}
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.resources;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+
+import com.qaprosoft.carina.core.foundation.utils.mobile.snapshot.UiSnapshot;
+
+/**
+ * ElementTextReader - reads texts of many elements at once: single script call for web pages or single page source
+ * snapshot for mobile applications. Used by localization checks instead of per element getText round trips.
+ */
+public final class ElementTextReader {
+
+    private static final List<String> SCRIPT_LOCATORS = Arrays.asList("xpath", "cssSelector", "id", "name", "className", "tagName");
+
+    // returns innerText of the first displayed element for each [type, value] pair or null
+    static final String SCRIPT = "var locators = arguments[0]; var result = [];"
+            + "for (var i = 0; i < locators.length; i++) {"
+            + "  var type = locators[i][0], value = locators[i][1], el = null;"
+            + "  try {"
+            + "    if (type === 'xpath') { el = document.evaluate(value, document, null, XPathResult.FIRST_ORDERED_NODE_TYPE, null).singleNodeValue; }"
+            + "    else if (type === 'cssSelector') { el = document.querySelector(value); }"
+            + "    else if (type === 'id') { el = document.getElementById(value); }"
+            + "    else if (type === 'name') { el = document.getElementsByName(value)[0]; }"
+            + "    else if (type === 'className') { el = document.getElementsByClassName(value)[0]; }"
+            + "    else if (type === 'tagName') { el = document.getElementsByTagName(value)[0]; }"
+            + "  } catch (e) { el = null; }"
+            + "  var displayed = el && el.nodeType === 1 && (el.offsetWidth > 0 || el.offsetHeight > 0 || el.getClientRects().length > 0);"
+            + "  result.push(displayed ? (el.innerText || el.textContent || '').trim() : null);"
+            + "}"
+            + "return result;";
+
+    private ElementTextReader() {
+    }
+
+    /**
+     * Check if locator can be resolved by the script in browser.
+     * 
+     * @param locator By
+     * @return boolean
+     */
+    public static boolean isScriptSupported(By locator) {
+        return SCRIPT_LOCATORS.contains(getType(locator));
+    }
+
+    /**
+     * Read texts of displayed elements using single script call.
+     * 
+     * @param executor JavascriptExecutor
+     * @param locators - locators supported by script
+     * @return texts by locator, missed or invisible elements are not included
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<By, String> readTexts(JavascriptExecutor executor, List<By> locators) {
+        Map<By, String> texts = new LinkedHashMap<>();
+        if (locators.isEmpty()) {
+            return texts;
+        }
+        List<List<String>> arguments = new ArrayList<>();
+        for (By locator : locators) {
+            arguments.add(Arrays.asList(getType(locator), getValue(locator)));
+        }
+        List<Object> result = (List<Object>) executor.executeScript(SCRIPT, arguments);
+        for (int i = 0; i < locators.size() && i < result.size(); i++) {
+            if (result.get(i) != null) {
+                texts.put(locators.get(i), result.get(i).toString());
+            }
+        }
+        return texts;
+    }
+
+    /**
+     * Read texts of displayed elements from page source snapshot.
+     * 
+     * @param snapshot UiSnapshot
+     * @param locators - locators supported by snapshot
+     * @return texts by locator, missed or invisible elements are not included
+     */
+    public static Map<By, String> readTexts(UiSnapshot snapshot, List<By> locators) {
+        Map<By, String> texts = new LinkedHashMap<>();
+        for (By locator : locators) {
+            String text = snapshot.getText(locator);
+            if (text != null) {
+                texts.put(locator, text);
+            }
+        }
+        return texts;
+    }
+
+    private static String getType(By locator) {
+        // By.cssSelector: value
+        String description = locator.toString();
+        int separator = description.indexOf(": ");
+        if (!description.startsWith("By.") || separator < 0) {
+            return "";
+        }
+        return description.substring("By.".length(), separator);
+    }
+
+    private static String getValue(By locator) {
+        String description = locator.toString();
+        return description.substring(description.indexOf(": ") + 2);
+    }
+}
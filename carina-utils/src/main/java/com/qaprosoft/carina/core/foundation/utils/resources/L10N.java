@@ -15,16 +15,24 @@
  *******************************************************************************/
 package com.qaprosoft.carina.core.foundation.utils.resources;
 
-import java.io.UnsupportedEncodingException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.MissingResourceException;
+import java.util.PropertyResourceBundle;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
 
-import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 
@@ -49,95 +57,51 @@ import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
 public class L10N {
     private static final Logger LOGGER = Logger.getLogger(L10N.class);
 
-    private static ArrayList<ResourceBundle> resBoundles = new ArrayList<ResourceBundle>();
+    // locale -> key -> text, replaced as a whole on init
+    private static volatile Map<String, Map<String, String>> texts = Collections.emptyMap();
+
+    // parsed 'locale' setting, it could be overridden for the current test
+    private static final Map<String, List<Locale>> localeCache = new ConcurrentHashMap<>();
 
     public static void init() {
         if (!Configuration.getBoolean(Parameter.ENABLE_L10N)) {
             return;
         }
 
-        List<Locale> locales = LocaleReader.init(Configuration
-                .get(Parameter.LOCALE));
-
-        List<String> loadedResources = new ArrayList<String>();
-
-        for (URL u : Resources.getResourceURLs(new ResourceURLFilter() {
-            public @Override boolean accept(URL u) {
-				String s = u.getPath();
-				boolean contains = s.contains(SpecialKeywords.L10N);
-				if (contains) {
-					LOGGER.debug("L10N: file URL: " + u);
-				}
-				return contains;
-            }
-        })) {
-            LOGGER.debug(String.format(
-                    "Analyzing '%s' L10N resource for loading...", u));
+        List<Locale> locales = getLocales();
+        ResourceBundle.Control control = new EncodingControl(getEncoding());
 
+        Map<String, Map<String, String>> index = new HashMap<>();
+        for (String resource : ResourceBundleIndex.getBundleNames(SpecialKeywords.L10N)) {
             // workable examples for resource loading are
             // ResourceBundle.getBundle("L10N.messages", locale);
             // ResourceBundle.getBundle("L10N.system.data-access.resources.gwt.datasourceAdminDialog",
             // locale);
-
-            /*
-             * 2. Exclude localization resources like such L10N.messages_de,
-             * L10N.messages_ptBR etc... Note: we ignore valid resources if 3rd
-             * or 5th char from the end is "_". As designed :(
-             */
-            String fileName = FilenameUtils.getBaseName(u.getPath());
-
-            if (u.getPath().endsWith("L10N.class")
-                    || u.getPath().endsWith("L10N$1.class")) {
-                // separate conditions to support core JUnit tests
-                continue;
-            }
-
-            if (fileName.lastIndexOf('_') == fileName.length() - 3
-                    || fileName.lastIndexOf('_') == fileName.length() - 5) {
-                LOGGER.debug(String
-                        .format("'%s' resource IGNORED as it looks like localized resource!",
-                                fileName));
-                continue;
-            }
-            /*
-             * convert "file:
-             * E:\pentaho\qa-automation\target\classes\L10N\messages
-             * .properties" to "L10N.messages"
-             */
-            String filePath = FilenameUtils.getPath(u.getPath());
-            int index = filePath.indexOf(SpecialKeywords.L10N);
-
-            if (index == -1) {
-                LOGGER.warn("Unable to find L10N pattern for " + u.getPath() + " resource!");
-                continue;
-            }
-
-            String resource = filePath.substring(
-                    filePath.indexOf(SpecialKeywords.L10N))
-                    .replaceAll("/", ".")
-                    + fileName;
-
-            if (!loadedResources.contains(resource)) {
-                loadedResources.add(resource);
-                try {
-                    LOGGER.debug(String.format("Adding '%s' resource...",
-                            resource));
-                    for (Locale locale : locales) {
-                        resBoundles.add(ResourceBundle.getBundle(resource, locale));
+            try {
+                LOGGER.debug(String.format("Adding '%s' resource...", resource));
+                for (Locale locale : locales) {
+                    ResourceBundle bundle = ResourceBundle.getBundle(resource, locale, control);
+                    // the first loaded bundle wins for duplicated keys
+                    Map<String, String> values = index.computeIfAbsent(bundle.getLocale().toString(), k -> new HashMap<>());
+                    for (String key : bundle.keySet()) {
+                        Object value = bundle.getObject(key);
+                        if (value instanceof String && !values.containsKey(key)) {
+                            values.put(key, (String) value);
+                        }
                     }
-                    LOGGER.debug(String
-                            .format("Resource '%s' added.", resource));
-                } catch (MissingResourceException e) {
-                    LOGGER.debug(e.getMessage(), e);
                 }
-            } else {
-                LOGGER.debug(String
-                        .format("Requested resource '%s' is already loaded into the ResourceBundle!",
-                                resource));
+                LOGGER.debug(String.format("Resource '%s' added.", resource));
+            } catch (MissingResourceException e) {
+                LOGGER.debug(e.getMessage(), e);
             }
         }
 
-        LOGGER.debug("init: L10N bundle size: " + resBoundles.size());
+        Map<String, Map<String, String>> immutable = new HashMap<>();
+        for (Map.Entry<String, Map<String, String>> entry : index.entrySet()) {
+            immutable.put(entry.getKey(), Collections.unmodifiableMap(entry.getValue()));
+        }
+        texts = Collections.unmodifiableMap(immutable);
+        LOGGER.debug("init: L10N texts loaded for locales: " + texts.keySet());
     }
 
     /**
@@ -146,8 +110,7 @@ public class L10N {
      * @return Locale
      */
     public static Locale getDefaultLocale() {
-        List<Locale> locales = LocaleReader.init(Configuration
-                .get(Parameter.LOCALE));
+        List<Locale> locales = getLocales();
 
         if (locales.size() == 0) {
             throw new RuntimeException("Undefined default locale specified! Review 'locale' setting in _config.properties.");
@@ -178,35 +141,9 @@ public class L10N {
      * @return String
      */
     public static String getText(String key, Locale locale) {
-        LOGGER.debug("getText: L10N bundle size: " + resBoundles.size());
-        Iterator<ResourceBundle> iter = resBoundles.iterator();
-        while (iter.hasNext()) {
-            ResourceBundle bundle = iter.next();
-            try {
-                String value = bundle.getString(key);
-				if (isUTF8()) {
-					try {
-						LOGGER.debug("converting key '" + value + "' to UTF-8");
-						value = new String(value.getBytes("ISO-8859-1"), "UTF-8");
-					} catch (UnsupportedEncodingException er) {
-						LOGGER.debug("Error: ", er);
-					}
-				}
-				
-                LOGGER.debug("Looking for value for locale:'"
-                        + locale.toString()
-                        + "' current iteration locale is: '"
-                        + bundle.getLocale().toString() + "'.");
-                if (bundle.getLocale().toString().equals(locale.toString())) {
-                    LOGGER.debug("Found locale:'" + locale.toString()
-                            + "' and value is '" + value + "'.");
-                    return value;
-                }
-            } catch (MissingResourceException e) {
-                // do nothing
-            }
-        }
-        return key;
+        Map<String, String> values = texts.get(locale.toString());
+        String value = values != null ? values.get(key) : null;
+        return value != null ? value : key;
     }
 
     /*
@@ -258,6 +195,26 @@ public class L10N {
         return returnString;
     }
 
+    private static List<Locale> getLocales() {
+        return localeCache.computeIfAbsent(Configuration.get(Parameter.LOCALE),
+                locale -> Collections.unmodifiableList(LocaleReader.init(locale)));
+    }
+
+    private static Charset getEncoding() {
+        String encoding = "";
+        try {
+            encoding = Configuration.get(Parameter.L10N_ENCODING);
+        } catch (Exception e) {
+            LOGGER.debug("There is no l10n_encoding parameter in config properties.");
+        }
+        try {
+            return encoding.isEmpty() ? StandardCharsets.ISO_8859_1 : Charset.forName(encoding);
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Unsupported l10n_encoding '" + encoding + "', ISO-8859-1 will be used.");
+            return StandardCharsets.ISO_8859_1;
+        }
+    }
+
     /**
      * get Localization Encoding from properties.
      *
@@ -273,4 +230,40 @@ public class L10N {
         LOGGER.debug("Will use L10N encoding: " + encoding);
         return encoding.toUpperCase().contains("UTF-8");
     }
+
+    /**
+     * Reads properties bundles using l10n_encoding, so the result doesn't depend on the default encoding of
+     * ResourceBundle which is ISO-8859-1 on Java 8 and UTF-8 since Java 9.
+     */
+    private static class EncodingControl extends ResourceBundle.Control {
+        private final Charset charset;
+
+        private EncodingControl(Charset charset) {
+            this.charset = charset;
+        }
+
+        @Override
+        public ResourceBundle newBundle(String baseName, Locale locale, String format, ClassLoader loader, boolean reload)
+                throws IllegalAccessException, InstantiationException, IOException {
+            if (!"java.properties".equals(format)) {
+                return super.newBundle(baseName, locale, format, loader, reload);
+            }
+            String resourceName = toResourceName(toBundleName(baseName, locale), "properties");
+            URL url = loader.getResource(resourceName);
+            if (url == null) {
+                return null;
+            }
+            URLConnection connection = url.openConnection();
+            connection.setUseCaches(!reload);
+            try (InputStream is = connection.getInputStream(); Reader reader = new InputStreamReader(is, charset)) {
+                return new PropertyResourceBundle(reader);
+            }
+        }
+
+        @Override
+        public long getTimeToLive(String baseName, Locale locale) {
+            // bundles loaded with another encoding must not be reused
+            return TTL_DONT_CACHE;
+        }
+    }
 }
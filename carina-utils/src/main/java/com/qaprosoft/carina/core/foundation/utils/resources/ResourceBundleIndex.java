@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.resources;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.log4j.Logger;
+
+import com.qaprosoft.carina.core.foundation.commons.SpecialKeywords;
+
+/**
+ * ResourceBundleIndex lists base names of resource bundles from resource folder like L10N on the classpath. Folder
+ * with bundles.index file generated on build is not scanned at all, otherwise only the folder itself is scanned
+ * instead of the whole classpath.
+ * 
+ * Index is generated by main method, i.e. using exec-maven-plugin on process-resources phase:
+ * 
+ * <pre>
+ * java com.qaprosoft.carina.core.foundation.utils.resources.ResourceBundleIndex target/classes L10N
+ * </pre>
+ */
+public class ResourceBundleIndex {
+    private static final Logger LOGGER = Logger.getLogger(ResourceBundleIndex.class);
+
+    public static final String INDEX_FILE = "bundles.index";
+
+    private static final String PROPERTIES = "properties";
+
+    /**
+     * Get base names of bundles from the folder in all classpath roots, i.e. "L10N.messages".
+     * 
+     * @param folder - resource folder
+     * @return bundle names
+     */
+    public static List<String> getBundleNames(String folder) {
+        return getBundleNames(ResourceBundleIndex.class.getClassLoader(), folder);
+    }
+
+    static List<String> getBundleNames(ClassLoader classLoader, String folder) {
+        Set<String> bundles = new LinkedHashSet<>();
+        Set<String> indexed = new HashSet<>();
+        try {
+            for (URL index : Collections.list(classLoader.getResources(folder + "/" + INDEX_FILE))) {
+                LOGGER.debug("Reading resource bundles index: " + index);
+                bundles.addAll(read(index));
+                indexed.add(index.toString().substring(0, index.toString().length() - INDEX_FILE.length() - 1));
+            }
+            for (URL url : Collections.list(classLoader.getResources(folder))) {
+                if (indexed.contains(url.toString()) || indexed.contains(url.toString().replaceAll("/$", ""))) {
+                    continue;
+                }
+                if (!"file".equals(url.getProtocol())) {
+                    // as before only folders are scanned, bundles in jars should be indexed
+                    LOGGER.debug("Resource bundles are not indexed: " + url);
+                    continue;
+                }
+                LOGGER.debug("Scanning resource bundles folder: " + url);
+                bundles.addAll(scan(new File(url.toURI()), folder));
+            }
+        } catch (IOException | URISyntaxException e) {
+            LOGGER.error("Unable to find " + folder + " resource bundles: " + e.getMessage(), e);
+        }
+        return new ArrayList<>(bundles);
+    }
+
+    /**
+     * Scan folder for resource bundles. Localized bundles like messages_de or messages_pt_BR are ignored.
+     * 
+     * @param dir - resource folder
+     * @param folder - resource folder name used as bundle name prefix
+     * @return bundle names
+     */
+    public static List<String> scan(File dir, String folder) {
+        List<String> bundles = new ArrayList<>();
+        scan(dir, folder, bundles);
+        Collections.sort(bundles);
+        return bundles;
+    }
+
+    /**
+     * Generate index file of the resource folder.
+     * 
+     * @param root - classpath root, i.e. target/classes
+     * @param folder - resource folder
+     * @return index file or null if folder doesn't exist
+     * @throws IOException
+     */
+    public static File generate(File root, String folder) throws IOException {
+        File dir = new File(root, folder);
+        if (!dir.isDirectory()) {
+            return null;
+        }
+        File index = new File(dir, INDEX_FILE);
+        File tmp = new File(dir, INDEX_FILE + ".tmp");
+        Files.write(tmp.toPath(), scan(dir, folder), StandardCharsets.UTF_8);
+        Files.move(tmp.toPath(), index.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return index;
+    }
+
+    public static void main(String[] args) throws IOException {
+        File root = new File(args.length > 0 ? args[0] : "target/classes");
+        String[] folders = args.length > 1 ? Arrays.copyOfRange(args, 1, args.length)
+                : new String[] { SpecialKeywords.L10N };
+        for (String folder : folders) {
+            File index = generate(root, folder);
+            System.out.println(index != null ? "Generated " + index.getAbsolutePath() : "No " + folder + " folder in " + root);
+        }
+    }
+
+    private static void scan(File dir, String prefix, List<String> bundles) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                scan(file, prefix + "." + file.getName(), bundles);
+                continue;
+            }
+            String fileName = FilenameUtils.getBaseName(file.getName());
+            if (!PROPERTIES.equals(FilenameUtils.getExtension(file.getName()))) {
+                continue;
+            }
+            /*
+             * Exclude localization resources like such L10N.messages_de, L10N.messages_ptBR etc... Note: we ignore
+             * valid resources if 3rd or 5th char from the end is "_". As designed :(
+             */
+            if (fileName.lastIndexOf('_') == fileName.length() - 3 || fileName.lastIndexOf('_') == fileName.length() - 5) {
+                LOGGER.debug(String.format("'%s' resource IGNORED as it looks like localized resource!", fileName));
+                continue;
+            }
+            bundles.add(prefix + "." + fileName);
+        }
+    }
+
+    private static List<String> read(URL index) throws IOException {
+        List<String> bundles = new ArrayList<>();
+        try (InputStream is = index.openStream();
+                BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    bundles.add(line);
+                }
+            }
+        }
+        return bundles;
+    }
+}
@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.report.email;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang3.StringUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.qaprosoft.carina.core.foundation.commons.SpecialKeywords;
+import com.qaprosoft.carina.core.foundation.report.TestResultItem;
+import com.qaprosoft.carina.core.foundation.report.TestResultType;
+import com.qaprosoft.carina.core.foundation.utils.Configuration;
+import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
+import com.qaprosoft.carina.core.foundation.utils.R;
+
+/**
+ * Tests for {@link EmailTemplate} and {@link EmailReportWriter}
+ */
+public class EmailReportWriterTest {
+
+    @Test
+    public void testTemplate() {
+        EmailTemplate template = EmailTemplate.compile("<b>${title}</b>${rows}${unknown} ${broken");
+        Map<String, Object> values = new HashMap<>();
+        values.put("${title}", "Title ${rows}");
+        values.put("${rows}", (EmailTemplate.Content) out -> out.write("<tr/>"));
+        Assert.assertEquals(template.render(values), "<b>Title ${rows}</b><tr/>${unknown} ${broken");
+        Assert.assertTrue(EmailTemplate.compile(null).isEmpty());
+        Assert.assertEquals(EmailTemplate.compile("").render(values), "");
+    }
+
+    @Test
+    public void testRowsMatchLegacyReport() throws IOException {
+        List<TestResultItem> items = generate(200);
+        EmailReportWriter report = new EmailReportWriter();
+        try {
+            items.forEach(report::append);
+            StringWriter out = new StringWriter();
+            report.writeResultRows(out);
+
+            int[] counts = new int[3];
+            Assert.assertEquals(out.toString(), renderLegacyRows(items, counts));
+            Assert.assertEquals(report.getPassCount(), counts[0]);
+            Assert.assertEquals(report.getFailCount(), counts[1]);
+            Assert.assertEquals(report.getSkipCount(), counts[2]);
+            Assert.assertEquals(report.getTestResults(), items);
+        } finally {
+            report.close();
+        }
+    }
+
+    @Test
+    public void testRetryReplacesRow() throws IOException {
+        EmailReportWriter report = new EmailReportWriter();
+        try {
+            TestResultItem first = new TestResultItem("pack", "test1", TestResultType.FAIL, null, "log1", "first failure");
+            TestResultItem second = new TestResultItem("pack", "test2", TestResultType.PASS, null, "log2", null);
+            TestResultItem retry = new TestResultItem("pack", "test1", TestResultType.PASS, null, "log1", null);
+            report.append(first);
+            report.append(second);
+            report.append(retry);
+
+            Assert.assertEquals(report.getTestResults(), Arrays.asList(retry, second));
+            Assert.assertEquals(report.getPassCount(), 2);
+            Assert.assertEquals(report.getFailCount(), 0);
+
+            StringWriter out = new StringWriter();
+            report.writeResultRows(out);
+            Assert.assertEquals(out.toString(), renderLegacyRows(Arrays.asList(retry, second), new int[3]));
+            Assert.assertFalse(out.toString().contains("first failure"));
+        } finally {
+            report.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentAppend() throws Exception {
+        List<TestResultItem> items = generate(2000);
+        EmailReportWriter report = new EmailReportWriter();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (TestResultItem item : items) {
+                futures.add(executor.submit(() -> report.append(item)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            List<TestResultItem> pushed = report.getTestResults();
+            Assert.assertEquals(pushed.size(), items.size());
+
+            StringWriter out = new StringWriter();
+            report.writeResultRows(out);
+            Assert.assertEquals(out.toString(), renderLegacyRows(pushed, new int[3]));
+        } finally {
+            executor.shutdown();
+            report.close();
+        }
+    }
+
+    /**
+     * Synthetic results: passed, failed with multiline reason, skipped, known issue and configuration failure.
+     * 
+     * @param count - number of results
+     * @return list of TestResultItem
+     */
+    public static List<TestResultItem> generate(int count) {
+        String reason = StringUtils.repeat("java.lang.AssertionError: expected [true] but found [false] <at> line\n", 8);
+        List<TestResultItem> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String pack = "com.qaprosoft.carina.demo.Package" + (i / 50);
+            String test = "testMethod" + i;
+            String log = "http://ci/artifacts/" + i + "/test.log";
+            String screenshots = i % 3 == 0 ? "http://ci/artifacts/" + i + "/report.html" : null;
+            TestResultItem item;
+            switch (i % 5) {
+            case 1:
+                item = new TestResultItem(pack, test, TestResultType.FAIL, screenshots, log, reason + i);
+                break;
+            case 2:
+                item = new TestResultItem(pack, test, TestResultType.SKIP, screenshots, log, "Skipped " + i);
+                break;
+            case 3:
+                item = new TestResultItem(pack, test, TestResultType.FAIL, screenshots, log, reason);
+                item.setJiraTickets(Collections.singletonList("JIRA-" + i));
+                break;
+            case 4:
+                item = new TestResultItem(pack, test, TestResultType.SKIP, screenshots, log, SpecialKeywords.ALREADY_PASSED);
+                break;
+            default:
+                item = new TestResultItem(pack, test, TestResultType.PASS, screenshots, log, null);
+                break;
+            }
+            items.add(item);
+        }
+        return items;
+    }
+
+    /**
+     * Result rows rendered as EmailReportGenerator did before streaming report: String.replace per placeholder.
+     * 
+     * @param items - results
+     * @param counts - receives pass, fail and skip count
+     * @return rows
+     */
+    public static String renderLegacyRows(List<TestResultItem> items, int[] counts) {
+        String packageName = "";
+        StringBuilder testResults = new StringBuilder();
+        for (TestResultItem item : items) {
+            if (!item.isConfig() && !packageName.equals(item.getPack())) {
+                packageName = item.getPack();
+                testResults.append(R.EMAIL.get("package_tr").replace("${package_name}", packageName));
+            }
+            testResults.append(renderLegacyRow(item, counts));
+        }
+        return testResults.toString();
+    }
+
+    private static String renderLegacyRow(TestResultItem item, int[] counts) {
+        int limit = R.EMAIL.getInt("fail_description_limit");
+        String result = "";
+        String failReason = item.getFailReason();
+        boolean demo = item.getLinkToScreenshots() != null;
+        boolean knownIssue = Configuration.getBoolean(Parameter.TRACK_KNOWN_ISSUES) && !item.getJiraTickets().isEmpty();
+        if (item.getResult() == TestResultType.FAIL) {
+            if (item.isConfig()) {
+                result = R.EMAIL.get(demo ? "fail_config_log_demo_tr" : "fail_config_log_tr");
+            } else if (knownIssue) {
+                result = R.EMAIL.get(demo ? "bug_test_log_demo_tr" : "bug_test_log_tr");
+            } else {
+                result = R.EMAIL.get(demo ? "fail_test_log_demo_tr" : "fail_test_log_tr");
+            }
+            result = result.replace("${test_name}", item.getTest());
+            failReason = failReason.length() > limit ? (failReason.substring(0, limit) + "...") : failReason;
+            result = result.replace(item.isConfig() ? "${fail_config_reason}" : "${fail_reason}",
+                    EmailReportWriter.formatFailReasonAsHtml(failReason));
+            result = result.replace("${log_url}", item.getLinkToLog());
+            if (demo) {
+                result = result.replace("${screenshots_url}", item.getLinkToScreenshots());
+            }
+            if (!knownIssue) {
+                counts[1]++;
+            }
+        }
+        if (item.getResult() == TestResultType.SKIP && !failReason.contains(SpecialKeywords.ALREADY_PASSED)) {
+            result = R.EMAIL.get(demo ? "skip_test_log_demo_tr" : "skip_test_log_tr");
+            result = result.replace("${test_name}", item.getTest());
+            result = result.replace("${skip_reason}", EmailReportWriter.formatFailReasonAsHtml(failReason));
+            result = result.replace("${log_url}", item.getLinkToLog());
+            if (demo) {
+                result = result.replace("${screenshots_url}", item.getLinkToScreenshots());
+            }
+            counts[2]++;
+        }
+        if (item.getResult() == TestResultType.PASS) {
+            counts[0]++;
+            result = R.EMAIL.get(demo ? "pass_test_log_demo_tr" : "pass_test_log_tr");
+            result = result.replace("${test_name}", item.getTest());
+            result = result.replace("${log_url}", item.getLinkToLog());
+            if (demo) {
+                result = result.replace("${screenshots_url}", item.getLinkToScreenshots());
+            }
+        }
+        String bugId = item.getJiraTickets().isEmpty() ? "N/A" : item.getJiraTickets().get(0);
+        result = result.replace("${bug_id}", bugId);
+        String bugUrl = item.getJiraTickets().isEmpty() || Configuration.get(Parameter.JIRA_URL).isEmpty() ? "#"
+                : Configuration.get(Parameter.JIRA_URL) + "/browse/" + bugId;
+        result = result.replace("${bug_url}", bugUrl);
+        return result;
+    }
+}
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link ZipManager}
+ */
+public class ZipManagerTest {
+
+    private File dir;
+
+    @BeforeMethod
+    public void createDir() throws IOException {
+        dir = Files.createTempDirectory("zip-manager").toFile();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void removeDir() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testZipUnzip() throws IOException {
+        File source = new File(dir, "artifacts");
+        Random random = new Random(1);
+        for (int i = 0; i < 20; i++) {
+            byte[] content = new byte[random.nextInt(200 * 1024)];
+            random.nextBytes(content);
+            write(new File(source, "folder" + (i % 3) + "/nested/file" + i + ".bin"), content);
+        }
+        write(new File(source, "test.log"), "log".getBytes());
+        new File(source, "empty").mkdirs();
+
+        File zip = new File(dir, "artifacts.zip");
+        ZipManager.zip(zip.getAbsolutePath(), source);
+
+        File target = new File(dir, "target");
+        target.mkdirs();
+        ZipManager.unzip(zip.getAbsolutePath(), target.getAbsolutePath(), 4);
+
+        Assert.assertTrue(new File(target, "artifacts/empty").isDirectory());
+        for (File file : FileUtils.listFiles(source, null, true)) {
+            String path = source.toPath().relativize(file.toPath()).toString();
+            File extracted = new File(target, "artifacts/" + path);
+            Assert.assertTrue(FileUtils.contentEquals(file, extracted), "Content differs: " + path);
+        }
+    }
+
+    @Test
+    public void testCompressedFilesAreStored() throws IOException {
+        byte[] content = new byte[100 * 1024];
+        File screenshot = new File(dir, "screenshot.png");
+        File log = new File(dir, "test.log");
+        write(screenshot, content);
+        write(log, content);
+
+        File zip = new File(dir, "artifacts.zip");
+        ZipManager.zip(zip.getAbsolutePath(), 9, screenshot, log);
+
+        try (ZipFile zipFile = new ZipFile(zip)) {
+            Assert.assertTrue(zipFile.getEntry("screenshot.png").getCompressedSize() >= content.length);
+            Assert.assertTrue(zipFile.getEntry("test.log").getCompressedSize() < content.length / 10);
+        }
+        Assert.assertTrue(ZipManager.isCompressed("video.MP4"));
+        Assert.assertFalse(ZipManager.isCompressed("ui-dump.xml"));
+    }
+
+    @Test
+    public void testZipSlipIsRejected() throws IOException {
+        File zip = new File(dir, "evil.zip");
+        try (ZipOutputStream zipOut = new ZipOutputStream(new FileOutputStream(zip))) {
+            zipOut.putNextEntry(new ZipEntry("good.txt"));
+            zipOut.write("good".getBytes());
+            zipOut.closeEntry();
+            zipOut.putNextEntry(new ZipEntry("../../evil.txt"));
+            zipOut.write("evil".getBytes());
+            zipOut.closeEntry();
+        }
+
+        File target = new File(dir, "target/nested");
+        target.mkdirs();
+        try {
+            ZipManager.unzip(zip.getAbsolutePath(), target.getAbsolutePath());
+            Assert.fail("Zip entry outside of the target folder is extracted!");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("../../evil.txt"), e.getMessage());
+        }
+        Assert.assertFalse(new File(dir, "evil.txt").exists());
+        Assert.assertFalse(new File(target, "good.txt").exists());
+    }
+
+    private static void write(File file, byte[] content) throws IOException {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content);
+    }
+}
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.android;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+public class ApkManifestParserTest {
+
+    private static final File APK = new File("src/test/resources/apk/TimeZone_Changer.apk");
+
+    @AfterMethod(alwaysRun = true)
+    public void clearCache() {
+        ApkManifestParser.clearCache();
+    }
+
+    @Test
+    public void testParse() {
+        ApkManifest manifest = ApkManifestParser.parse(APK);
+        Assert.assertEquals(manifest.getPackageName(), "com.futurek.android.tzc");
+        Assert.assertNotNull(manifest.getVersionCode(), "versionCode is not parsed");
+        Assert.assertNotNull(manifest.getVersionName(), "versionName is not parsed");
+        Assert.assertNotNull(manifest.getLaunchableActivity(), "launchable activity is not parsed");
+        Assert.assertTrue(manifest.getLaunchableActivity().startsWith(manifest.getPackageName()),
+                "Launchable activity is not fully qualified: " + manifest.getLaunchableActivity());
+    }
+
+    @Test
+    public void testCachedByPathSizeAndModificationTime() throws IOException {
+        File copy = File.createTempFile("carina", ".apk");
+        copy.deleteOnExit();
+        Files.copy(APK.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        ApkManifest manifest = ApkManifestParser.parse(copy);
+        Assert.assertSame(ApkManifestParser.parse(copy), manifest, "Manifest is not cached");
+
+        Assert.assertTrue(copy.setLastModified(copy.lastModified() - 60000));
+        Assert.assertNotSame(ApkManifestParser.parse(copy), manifest, "Cache is not invalidated after file change");
+    }
+
+    @Test(expectedExceptions = RuntimeException.class)
+    public void testMissingApk() {
+        ApkManifestParser.parse(new File("src/test/resources/apk/missing.apk"));
+    }
+
+    @Test(expectedExceptions = RuntimeException.class)
+    public void testInvalidManifest() {
+        ApkManifestParser.parseManifest(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+    }
+}
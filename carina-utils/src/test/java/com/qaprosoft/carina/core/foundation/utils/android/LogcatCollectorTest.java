@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.android;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.qaprosoft.carina.core.foundation.utils.android.LogcatCollector.LogcatFilter;
+
+public class LogcatCollectorTest {
+
+    private static final String LINE = "10-19 12:00:00.000  1000  1001 %s %s: %s\n";
+
+    private File dir;
+
+    private PipedOutputStream device;
+
+    private LogcatCollector collector;
+
+    private long written;
+
+    @BeforeMethod
+    public void start() throws IOException {
+        dir = Files.createTempDirectory("logcat").toFile();
+        dir.deleteOnExit();
+        device = new PipedOutputStream();
+        collector = new LogcatCollector(dir, "emulator-5554", 1024);
+        collector.start(new PipedInputStream(device, 64 * 1024));
+        written = 0;
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void close() throws IOException {
+        device.close();
+        collector.close();
+    }
+
+    @Test
+    public void testTestSlice() throws Exception {
+        log("I", "Before", "previous test");
+        long start = collector.mark();
+        log("I", "Test", "first");
+        log("E", "Test", "second");
+        long end = collector.mark();
+        log("I", "After", "next test");
+        collector.mark();
+
+        Assert.assertEquals(collector.getLog(start, end, null),
+                String.format(LINE, "I", "Test", "first") + String.format(LINE, "E", "Test", "second"));
+    }
+
+    @Test
+    public void testFilter() throws Exception {
+        long start = collector.mark();
+        log("D", "MyApp", "debug");
+        log("V", "Other", "verbose");
+        log("W", "Other", "warning");
+        log("I", "ActivityManager", "info");
+        long end = collector.mark();
+
+        LogcatFilter filter = LogcatFilter.parse("MyApp:D ActivityManager:W *:W");
+        Assert.assertEquals(collector.getLog(start, end, filter),
+                String.format(LINE, "D", "MyApp", "debug") + String.format(LINE, "W", "Other", "warning"));
+        Assert.assertNull(LogcatFilter.parse(" "));
+    }
+
+    @Test
+    public void testRollover() throws Exception {
+        long start = collector.mark();
+        for (int i = 0; i < 100; i++) {
+            log("I", "Test", "line " + i);
+        }
+        long from = collector.mark();
+        log("I", "Test", "last");
+        long end = collector.mark();
+
+        Assert.assertEquals(collector.getLog(from, end, null), String.format(LINE, "I", "Test", "last"));
+        String rolled = collector.getLog(start, end, null);
+        Assert.assertTrue(rolled.length() < end - start, "Rolled over lines are returned");
+        Assert.assertTrue(rolled.endsWith(String.format(LINE, "I", "Test", "last")));
+        Assert.assertTrue(dir.list().length <= 2, "Only two buffer segments are expected");
+    }
+
+    @Test
+    public void testReaderStop() throws Exception {
+        log("I", "Test", "line");
+        device.close();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (collector.isRunning() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertFalse(collector.isRunning());
+        Assert.assertEquals(collector.getLog(0, collector.mark(), null), String.format(LINE, "I", "Test", "line"));
+    }
+
+    private void log(String priority, String tag, String message) throws Exception {
+        byte[] line = String.format(LINE, priority, tag, message).getBytes(StandardCharsets.UTF_8);
+        device.write(line);
+        device.flush();
+        written += line.length;
+        long deadline = System.currentTimeMillis() + 5000;
+        while (collector.mark() < written && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        Assert.assertEquals(collector.mark(), written, "Line is not consumed by logcat reader");
+    }
+}
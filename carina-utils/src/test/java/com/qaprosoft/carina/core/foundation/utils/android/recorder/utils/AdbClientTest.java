@@ -0,0 +1,223 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.android.recorder.utils;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class AdbClientTest {
+    private static final String SERIAL = FakeAdbServer.SERIAL;
+
+    private FakeAdbServer server;
+
+    private AdbClient client;
+
+    private AdbExecutor executor;
+
+    @BeforeClass(alwaysRun = true)
+    public void startServer() throws IOException {
+        server = new FakeAdbServer();
+        client = new AdbClient("127.0.0.1", server.getPort());
+        executor = new AdbExecutor(client);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopServer() {
+        client.close();
+        server.stop();
+    }
+
+    @Test
+    public void testHostServices() {
+        Assert.assertEquals(executor.execute(cmd("devices")), Arrays.asList("List of devices attached", SERIAL + "\tdevice", ""));
+        Assert.assertEquals(executor.execute(cmd("connect", "192.168.0.10:5555")), Collections.singletonList("connected to 192.168.0.10:5555"));
+        Assert.assertEquals(executor.execute(cmd("disconnect", "192.168.0.10:5555")), Collections.singletonList("disconnected 192.168.0.10:5555"));
+    }
+
+    @Test
+    public void testShell() {
+        server.addShellResponse("pm list packages", "package:com.android.settings\r\npackage:com.qaprosoft.carina\r\n");
+        Assert.assertEquals(executor.execute(cmd("-s", SERIAL, "shell", "pm", "list", "packages")),
+                Arrays.asList("package:com.android.settings", "package:com.qaprosoft.carina"));
+
+        server.addShellResponse("echo 'hello world'", "hello world\n");
+        Assert.assertEquals(executor.execute(cmd("shell", "echo", "'hello world'")), Collections.singletonList("hello world"));
+
+        server.addShellResponse("logcat -d", "I/Test: line\n");
+        Assert.assertEquals(executor.execute(cmd("-s", SERIAL, "logcat", "-d")), Collections.singletonList("I/Test: line"));
+    }
+
+    @Test
+    public void testUnknownDeviceReturnsEmptyOutput() {
+        Assert.assertEquals(executor.execute(cmd("-s", "unknown", "shell", "pm", "clear", "com.qaprosoft.carina")), Collections.emptyList());
+    }
+
+    @Test
+    public void testPushAndPullReuseSyncConnection() throws IOException {
+        File local = File.createTempFile("adb", ".txt");
+        local.deleteOnExit();
+        Files.write(local.toPath(), "carina".getBytes(StandardCharsets.UTF_8));
+        int sessions = server.getSyncSessions();
+
+        executor.execute(cmd("-s", SERIAL, "push", local.getAbsolutePath(), "/sdcard/"));
+        Assert.assertEquals(new String(server.getFiles().get("/sdcard/" + local.getName()), StandardCharsets.UTF_8), "carina");
+
+        File pulled = new File(local.getParentFile(), local.getName() + ".pulled");
+        pulled.deleteOnExit();
+        for (int i = 0; i < 3; i++) {
+            executor.execute(cmd("-s", SERIAL, "pull", "/sdcard/" + local.getName(), pulled.getAbsolutePath()));
+            Assert.assertEquals(new String(Files.readAllBytes(pulled.toPath()), StandardCharsets.UTF_8), "carina");
+        }
+        // pooled connection might be already opened by another test
+        Assert.assertTrue(server.getSyncSessions() - sessions <= 1, "Sync connection is not reused!");
+
+        Assert.assertEquals(client.getIdleSyncConnections(SERIAL), 1);
+        Assert.assertEquals(executor.execute(cmd("-s", SERIAL, "pull", "/sdcard/missing.txt", pulled.getAbsolutePath())), Collections.emptyList());
+        Assert.assertEquals(client.getIdleSyncConnections(SERIAL), 0, "Failed sync connection is returned to the pool!");
+        executor.execute(cmd("-s", SERIAL, "pull", "/sdcard/" + local.getName(), pulled.getAbsolutePath()));
+        Assert.assertEquals(new String(Files.readAllBytes(pulled.toPath()), StandardCharsets.UTF_8), "carina");
+        Assert.assertEquals(client.getIdleSyncConnections(SERIAL), 1);
+    }
+
+    @Test
+    public void testInstall() throws IOException {
+        File apk = File.createTempFile("app", ".apk");
+        apk.deleteOnExit();
+        String remote = "/data/local/tmp/" + apk.getName();
+        server.addShellResponse("pm install -r " + remote, "Success\n");
+
+        Assert.assertEquals(executor.execute(cmd("-s", SERIAL, "install", "-r", apk.getAbsolutePath())), Collections.singletonList("Success"));
+        Assert.assertTrue(server.getFiles().containsKey(remote), "Apk was not pushed!");
+        Assert.assertTrue(server.getRequests().contains("shell:rm -f " + remote), "Apk was not removed!");
+    }
+
+    @Test
+    public void testShellArgumentsJoining() {
+        Assert.assertEquals(AdbClient.toShellCommand(new String[] { "pm list packages" }), "pm list packages");
+        Assert.assertEquals(AdbClient.toShellCommand(new String[] { "am", "start", "-e", "key", "'it is secret'" }),
+                "am start -e key 'it is secret'");
+    }
+
+    @Test
+    public void testPipedShellCommand() {
+        String command = "dumpsys window windows | grep -E 'mCurrentFocus|mFocusedApp'";
+        server.addShellResponse(command, "  mCurrentFocus=Window{42 u0 com.android.settings}\n");
+        Assert.assertEquals(
+                executor.execute(cmd("-s", SERIAL, "shell", "dumpsys", "window", "windows", "|", "grep", "-E", "'mCurrentFocus|mFocusedApp'")),
+                Collections.singletonList("  mCurrentFocus=Window{42 u0 com.android.settings}"));
+        Assert.assertTrue(server.getRequests().contains("shell:" + command), "Shell command is changed!");
+    }
+
+    @Test
+    public void testUnsupportedCommandsAreNotHandled() throws IOException {
+        Assert.assertNull(client.execute(new String[] { "aapt", "dump", "badging", "app.apk" }));
+        Assert.assertNull(client.execute(cmd("-d", "shell", "ls")));
+        Assert.assertNull(client.execute(cmd("forward", "tcp:8080", "tcp:8080")));
+    }
+
+    @Test
+    public void testProcessFallback() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        AdbExecutor fallback = new AdbExecutor(new AdbClient("127.0.0.1", port));
+        // non adb commands are always executed by process
+        List<String> output = fallback.execute(new String[] { "echo", "carina" });
+        Assert.assertEquals(output, Collections.singletonList("carina"));
+    }
+
+    @Test
+    public void testConnectFailure() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        try {
+            new AdbClient("127.0.0.1", port).execute(cmd("devices"));
+            Assert.fail("Connection failure is not reported!");
+        } catch (AdbClient.AdbConnectException e) {
+            Assert.assertTrue(e.getCause() instanceof ConnectException);
+        }
+    }
+
+    @Test
+    public void testHandshakeFailure() throws Exception {
+        try (ServerSocket broken = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            // adb server drops connection without response on transport request
+            Thread server = serve(broken, "");
+            try {
+                new AdbClient("127.0.0.1", broken.getLocalPort()).execute(cmd("-s", SERIAL, "shell", "ls"));
+                Assert.fail("Handshake failure is not reported!");
+            } catch (AdbClient.AdbConnectException e) {
+                // command is not sent, adb process can be used
+            }
+            server.join(5000);
+        }
+    }
+
+    @Test
+    public void testFailureAfterCommandIsSent() throws Exception {
+        try (ServerSocket broken = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            // adb server accepts host service and drops connection without its output
+            Thread server = serve(broken, "OKAY");
+            try {
+                new AdbExecutor(new AdbClient("127.0.0.1", broken.getLocalPort())).execute(cmd("devices"));
+                Assert.fail("Failure after command is sent is not reported!");
+            } catch (RuntimeException e) {
+                Assert.assertTrue(e.getMessage().startsWith("Unable to execute command via adb server"), e.getMessage());
+                Assert.assertFalse(e.getCause() instanceof AdbClient.AdbConnectException, "Command is repeated by adb process!");
+            }
+            server.join(5000);
+        }
+    }
+
+    private static Thread serve(ServerSocket server, String response) {
+        Thread thread = new Thread(() -> {
+            try (Socket socket = server.accept()) {
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                byte[] length = new byte[4];
+                in.readFully(length);
+                in.readFully(new byte[Integer.parseInt(new String(length, StandardCharsets.US_ASCII), 16)]);
+                socket.getOutputStream().write(response.getBytes(StandardCharsets.US_ASCII));
+            } catch (IOException e) {
+                // client closed connection
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static String[] cmd(String... args) {
+        return CmdLine.insertCommandsBefore(args, "adb");
+    }
+}
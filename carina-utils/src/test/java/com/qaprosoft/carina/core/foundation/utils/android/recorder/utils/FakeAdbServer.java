@@ -0,0 +1,221 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.android.recorder.utils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process adb server which implements subset of adb server protocol used by {@link AdbClient}: host:devices,
+ * host:connect, host:transport, shell: and sync: (SEND, RECV, QUIT). Shell output is configured per command, files are
+ * stored in memory.
+ */
+public class FakeAdbServer {
+    public static final String SERIAL = "emulator-5554";
+
+    private final ServerSocket server;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final Map<String, String> shellResponses = new ConcurrentHashMap<>();
+
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger syncSessions = new AtomicInteger();
+
+    public FakeAdbServer() throws IOException {
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        executor.submit(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    executor.submit(() -> handle(socket));
+                } catch (IOException e) {
+                    // server is stopped
+                }
+            }
+        });
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    public void addShellResponse(String command, String output) {
+        shellResponses.put(command, output);
+    }
+
+    public Map<String, byte[]> getFiles() {
+        return files;
+    }
+
+    public List<String> getRequests() {
+        return requests;
+    }
+
+    public int getSyncSessions() {
+        return syncSessions.get();
+    }
+
+    public void stop() {
+        try {
+            server.close();
+        } catch (IOException e) {
+            // do nothing
+        }
+        executor.shutdownNow();
+    }
+
+    private void handle(Socket socket) {
+        try (Socket s = socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            OutputStream out = s.getOutputStream();
+            String request = readRequest(in);
+            requests.add(request);
+            if ("host:devices".equals(request)) {
+                okay(out, SERIAL + "\tdevice\n");
+            } else if (request.startsWith("host:connect:")) {
+                okay(out, "connected to " + request.substring("host:connect:".length()));
+            } else if (request.startsWith("host:disconnect:")) {
+                okay(out, "disconnected " + request.substring("host:disconnect:".length()));
+            } else if ("host:transport-any".equals(request) || ("host:transport:" + SERIAL).equals(request)) {
+                out.write("OKAY".getBytes(StandardCharsets.US_ASCII));
+                handleService(in, out);
+            } else if (request.startsWith("host:transport:")) {
+                fail(out, "device '" + request.substring("host:transport:".length()) + "' not found");
+            } else {
+                fail(out, "unknown host service");
+            }
+        } catch (IOException e) {
+            // client closed connection
+        }
+    }
+
+    private void handleService(DataInputStream in, OutputStream out) throws IOException {
+        String service = readRequest(in);
+        requests.add(service);
+        if (service.startsWith("shell:")) {
+            String output = shellResponses.getOrDefault(service.substring("shell:".length()), "");
+            out.write("OKAY".getBytes(StandardCharsets.US_ASCII));
+            out.write(output.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        } else if ("sync:".equals(service)) {
+            syncSessions.incrementAndGet();
+            out.write("OKAY".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            handleSync(in, out);
+        } else {
+            fail(out, "unknown service");
+        }
+    }
+
+    private void handleSync(DataInputStream in, OutputStream out) throws IOException {
+        while (true) {
+            String id = readId(in);
+            byte[] data = new byte[readIntLE(in)];
+            in.readFully(data);
+            String argument = new String(data, StandardCharsets.UTF_8);
+            if ("QUIT".equals(id)) {
+                return;
+            } else if ("RECV".equals(id)) {
+                requests.add("RECV " + argument);
+                byte[] content = files.get(argument);
+                if (content == null) {
+                    writeSync(out, "FAIL", "No such file or directory".getBytes(StandardCharsets.UTF_8));
+                    // adbd closes sync connection after failure
+                    out.flush();
+                    return;
+                } else {
+                    writeSync(out, "DATA", content);
+                    writeSync(out, "DONE", new byte[0]);
+                }
+            } else if ("SEND".equals(id)) {
+                requests.add("SEND " + argument);
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                while (true) {
+                    String chunk = readId(in);
+                    int length = readIntLE(in);
+                    if ("DONE".equals(chunk)) {
+                        break;
+                    }
+                    byte[] bytes = new byte[length];
+                    in.readFully(bytes);
+                    content.write(bytes);
+                }
+                files.put(argument.substring(0, argument.lastIndexOf(',')), content.toByteArray());
+                writeSync(out, "OKAY", new byte[0]);
+            } else {
+                throw new IOException("Unsupported sync request: " + id);
+            }
+            out.flush();
+        }
+    }
+
+    private static String readRequest(DataInputStream in) throws IOException {
+        byte[] length = new byte[4];
+        in.readFully(length);
+        byte[] payload = new byte[Integer.parseInt(new String(length, StandardCharsets.US_ASCII), 16)];
+        in.readFully(payload);
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+
+    private static String readId(DataInputStream in) throws IOException {
+        byte[] id = new byte[4];
+        in.readFully(id);
+        return new String(id, StandardCharsets.US_ASCII);
+    }
+
+    private static int readIntLE(DataInputStream in) throws IOException {
+        return Integer.reverseBytes(in.readInt());
+    }
+
+    private static void writeSync(OutputStream out, String id, byte[] data) throws IOException {
+        out.write(id.getBytes(StandardCharsets.US_ASCII));
+        int length = "DONE".equals(id) ? 0 : data.length;
+        out.write(new byte[] { (byte) length, (byte) (length >> 8), (byte) (length >> 16), (byte) (length >> 24) });
+        out.write(data);
+    }
+
+    private static void okay(OutputStream out, String payload) throws IOException {
+        byte[] data = payload.getBytes(StandardCharsets.UTF_8);
+        out.write(("OKAY" + String.format("%04x", data.length)).getBytes(StandardCharsets.US_ASCII));
+        out.write(data);
+        out.flush();
+    }
+
+    private static void fail(OutputStream out, String message) throws IOException {
+        byte[] data = message.getBytes(StandardCharsets.UTF_8);
+        out.write(("FAIL" + String.format("%04x", data.length)).getBytes(StandardCharsets.US_ASCII));
+        out.write(data);
+        out.flush();
+    }
+}
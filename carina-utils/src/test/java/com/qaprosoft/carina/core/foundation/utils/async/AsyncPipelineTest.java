@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.async;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.qaprosoft.carina.core.foundation.utils.async.AsyncPipeline.Result;
+import com.qaprosoft.carina.core.foundation.utils.async.AsyncPipeline.Status;
+
+public class AsyncPipelineTest {
+
+    @Test
+    public void testIndependentStepsRunConcurrently() {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        Result result = new AsyncPipeline("concurrent")
+                .step("connect", () -> awaitOther(bothStarted))
+                .step("metadata", () -> awaitOther(bothStarted))
+                .run(10);
+        Assert.assertTrue(result.isSuccessful(), result.toString());
+        Assert.assertEquals(result.getStep("connect").getStatus(), Status.DONE);
+        Assert.assertEquals(result.getStep("metadata").getStatus(), Status.DONE);
+    }
+
+    @Test
+    public void testDependencyOrderAndSkip() {
+        List<String> order = new CopyOnWriteArrayList<>();
+        Result result = new AsyncPipeline("order")
+                .step("connect", () -> order.add("connect"))
+                .step("metadata", () -> order.add("metadata"))
+                .step("install", () -> {
+                    order.add("install");
+                    return false;
+                }, "connect", "metadata")
+                .step("grant", () -> order.add("grant"), "install")
+                .run(10);
+        Assert.assertTrue(result.isSuccessful(), result.toString());
+        Assert.assertEquals(order.size(), 4);
+        Assert.assertEquals(order.get(2), "install");
+        Assert.assertEquals(order.get(3), "grant");
+        Assert.assertEquals(result.getStep("install").getStatus(), Status.SKIPPED);
+        Assert.assertTrue(result.getStep("grant").getStartOffset() >= 0);
+    }
+
+    @Test
+    public void testFailureCancelsDependents() {
+        Result result = new AsyncPipeline("failure")
+                .step("connect", () -> {
+                    throw new RuntimeException("device is offline");
+                })
+                .step("metadata", () -> true)
+                .step("install", () -> true, "connect", "metadata")
+                .step("grant", () -> true, "install")
+                .run(10);
+        Assert.assertFalse(result.isSuccessful());
+        Assert.assertEquals(result.getStep("connect").getStatus(), Status.FAILED);
+        Assert.assertEquals(result.getStep("connect").getError().getMessage(), "device is offline");
+        Assert.assertEquals(result.getStep("metadata").getStatus(), Status.DONE);
+        Assert.assertEquals(result.getStep("install").getStatus(), Status.CANCELLED);
+        Assert.assertEquals(result.getStep("grant").getStatus(), Status.CANCELLED);
+        Assert.assertEquals(result.getFailures().size(), 3);
+    }
+
+    @Test
+    public void testTimeout() {
+        Result result = new AsyncPipeline("timeout")
+                .step("hang", () -> {
+                    Thread.sleep(5000);
+                    return true;
+                })
+                .run(1);
+        Assert.assertEquals(result.getStep("hang").getStatus(), Status.FAILED);
+        Assert.assertTrue(result.getDuration() < 4000);
+    }
+
+    @Test(expectedExceptions = RuntimeException.class)
+    public void testUnknownDependency() {
+        new AsyncPipeline("invalid").step("install", () -> true, "connect");
+    }
+
+    private static boolean awaitOther(CountDownLatch latch) throws InterruptedException {
+        latch.countDown();
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS), "Independent step is not started concurrently");
+        return true;
+    }
+}
@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.qaprosoft.carina.core.foundation.report.TestResultItem;
+import com.qaprosoft.carina.core.foundation.report.email.EmailReportWriter;
+import com.qaprosoft.carina.core.foundation.report.email.EmailReportWriterTest;
+import com.qaprosoft.carina.core.foundation.report.email.EmailTemplate;
+import com.qaprosoft.carina.core.foundation.utils.R;
+
+/**
+ * Measures emailable report generation for benchmark.records synthetic results (50k by default). Scenarios:
+ * String.replace on full body (previous EmailReportGenerator implementation), {@link EmailReportWriter} including row
+ * rendering and its end of suite part only, where rendered rows are streamed into the file.
+ * 
+ * Excluded from regular build, run it using:
+ * 
+ * <pre>
+ * mvn test -pl carina-utils -am -Dgroups=benchmark -DexcludedGroups=none -Dtest=EmailReportBenchmarkTest
+ * </pre>
+ * 
+ * Results are written to target/benchmark/email-report.json.
+ */
+public class EmailReportBenchmarkTest {
+    private static final Logger LOGGER = Logger.getLogger(EmailReportBenchmarkTest.class);
+
+    private static final int WARMUP = Integer.getInteger("benchmark.warmup", 1);
+
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 3);
+
+    private static final int RECORDS = Integer.getInteger("benchmark.records", 50000);
+
+    private static final String[][] HEADER = { { "${title}", "FAIL: Carina Demo Suite" }, { "${env}", "DEMO" },
+            { "${device}", "Desktop" }, { "${version}", "1.0" }, { "${browser}", "chrome" }, { "${finish_date}", "2019-01-01 00:00" },
+            { "${created_items_list}", "" }, { "${cucumber_results}", "" } };
+
+    private static final File OUTPUT = new File("target/benchmark/emailable-report.html");
+
+    @Test(groups = "benchmark")
+    public void testEmailReport() throws Exception {
+        List<TestResultItem> items = EmailReportWriterTest.generate(RECORDS);
+        OUTPUT.getParentFile().mkdirs();
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        results.put("records", RECORDS);
+        results.put("legacyReplace", measure(() -> legacy(items)));
+        results.put("streaming", measure(() -> streaming(items)));
+        EmailReportWriter report = new EmailReportWriter();
+        try {
+            items.forEach(report::append);
+            results.put("streamingSuiteEnd", measure(() -> assemble(report)));
+        } finally {
+            report.close();
+        }
+
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        File output = new File("target/benchmark/email-report.json");
+        mapper.writeValue(output, results);
+        LOGGER.info("Benchmark results saved to " + output.getAbsolutePath() + ":\n" + mapper.writeValueAsString(results));
+    }
+
+    @FunctionalInterface
+    private interface Scenario {
+        long run() throws IOException;
+    }
+
+    private Map<String, Object> measure(Scenario scenario) throws IOException {
+        long length = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            length = scenario.run();
+        }
+        long allocated = 0;
+        long elapsed = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            System.gc();
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            length = scenario.run();
+            elapsed += System.nanoTime() - start;
+            allocated += allocatedBytes() - allocatedBefore;
+        }
+        Assert.assertEquals(OUTPUT.length(), length);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("meanMillis", elapsed / 1000000.0 / ITERATIONS);
+        result.put("allocatedMB", allocated / 1024.0 / 1024.0 / ITERATIONS);
+        result.put("reportMB", length / 1024.0 / 1024.0);
+        return result;
+    }
+
+    /**
+     * Previous EmailReportGenerator: rows joined into StringBuilder and placeholders of container replaced one by one.
+     */
+    private long legacy(List<TestResultItem> items) throws IOException {
+        int[] counts = new int[3];
+        String emailBody = R.EMAIL.get("container");
+        for (String[] header : HEADER) {
+            emailBody = emailBody.replace(header[0], header[1]);
+        }
+        emailBody = emailBody.replace("${result_rows}", EmailReportWriterTest.renderLegacyRows(items, counts));
+        emailBody = emailBody.replace("${pass_count}", String.valueOf(counts[0]));
+        emailBody = emailBody.replace("${fail_count}", String.valueOf(counts[1]));
+        emailBody = emailBody.replace("${skip_count}", String.valueOf(counts[2]));
+        emailBody = emailBody.replace("${pass_rate}", String.valueOf(counts[0] * 100 / (counts[0] + counts[1] + counts[2])));
+        try (Writer out = new BufferedWriter(new FileWriter(OUTPUT))) {
+            out.write(emailBody);
+        }
+        return OUTPUT.length();
+    }
+
+    /**
+     * Rows appended to {@link EmailReportWriter} as tests finish and report streamed into the file at the end of suite.
+     */
+    private long streaming(List<TestResultItem> items) throws IOException {
+        EmailReportWriter report = new EmailReportWriter();
+        try {
+            items.forEach(report::append);
+            return assemble(report);
+        } finally {
+            report.close();
+        }
+    }
+
+    /**
+     * End of suite part of streaming report: rendered rows are copied into compiled container.
+     */
+    private long assemble(EmailReportWriter report) throws IOException {
+        Map<String, Object> values = new HashMap<>();
+        for (String[] header : HEADER) {
+            values.put(header[0], header[1]);
+        }
+        values.put("${result_rows}", (EmailTemplate.Content) report::writeResultRows);
+        values.put("${pass_count}", report.getPassCount());
+        values.put("${fail_count}", report.getFailCount());
+        values.put("${skip_count}", report.getSkipCount());
+        values.put("${pass_rate}", report.getSuccessRate());
+        try (Writer out = new BufferedWriter(new FileWriter(OUTPUT))) {
+            EmailTemplate.compile(R.EMAIL.get("container")).render(out, values);
+        }
+        return OUTPUT.length();
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.bind.JAXBContext;
+
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.qaprosoft.carina.core.foundation.utils.marshaller.MarshallerHelper;
+import com.qaprosoft.carina.core.foundation.utils.marshaller.MarshallerTest;
+import com.qaprosoft.carina.core.foundation.utils.marshaller.MarshallerTest.Catalog;
+import com.qaprosoft.carina.core.foundation.utils.marshaller.MarshallerTest.Item;
+
+/**
+ * Measures JAXB marshall/unmarshall round trip throughput in benchmark.threads threads and unmarshalling of large
+ * document with benchmark.records items. Scenarios: previous Marshaller implementation (new (un)marshaller per call,
+ * document read into String) and pooled {@link MarshallerHelper} with StAX streaming.
+ * 
+ * Excluded from regular build, run it using:
+ * 
+ * <pre>
+ * mvn test -pl carina-utils -am -Dgroups=benchmark -DexcludedGroups=none -Dtest=MarshallerBenchmarkTest
+ * </pre>
+ * 
+ * Results are written to target/benchmark/marshaller.json.
+ */
+public class MarshallerBenchmarkTest {
+    private static final Logger LOGGER = Logger.getLogger(MarshallerBenchmarkTest.class);
+
+    private static final int THREADS = Integer.getInteger("benchmark.threads", 4);
+
+    private static final int OPERATIONS = Integer.getInteger("benchmark.operations", 20000);
+
+    private static final int RECORDS = Integer.getInteger("benchmark.records", 200000);
+
+    @FunctionalInterface
+    private interface RoundTrip {
+        Item run(Item item) throws Exception;
+    }
+
+    @Test(groups = "benchmark")
+    public void testMarshaller() throws Exception {
+        JAXBContext context = JAXBContext.newInstance(Item.class);
+        RoundTrip legacy = item -> {
+            StringWriter w = new StringWriter();
+            context.createMarshaller().marshal(item, w);
+            return (Item) context.createUnmarshaller().unmarshal(new ByteArrayInputStream(w.toString().getBytes()));
+        };
+        RoundTrip pooled = item -> MarshallerHelper.unmarshall(MarshallerHelper.marshall(item), Item.class);
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        results.put("threads", THREADS);
+        // warmup
+        throughput(legacy, OPERATIONS / 10);
+        throughput(pooled, OPERATIONS / 10);
+        results.put("legacyRoundTrip", throughput(legacy, OPERATIONS));
+        results.put("pooledRoundTrip", throughput(pooled, OPERATIONS));
+
+        File file = File.createTempFile("marshaller-benchmark", ".xml");
+        try {
+            try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                MarshallerTest.writeCatalog(writer, RECORDS);
+            }
+            results.put("documentMB", file.length() / 1024.0 / 1024.0);
+            results.put("legacyDocument", measure(() -> {
+                String xml = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+                Catalog catalog = MarshallerHelper.unmarshall(xml, Catalog.class);
+                return new Object[] { catalog.getItems().size(), catalog };
+            }));
+            results.put("streamingDocument", measure(() -> {
+                try (InputStream is = new FileInputStream(file)) {
+                    int count = MarshallerHelper.unmarshall(is, "item", Item.class, item -> {
+                    });
+                    return new Object[] { count, null };
+                }
+            }));
+        } finally {
+            file.delete();
+        }
+
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        File output = new File("target/benchmark/marshaller.json");
+        output.getParentFile().mkdirs();
+        mapper.writeValue(output, results);
+        LOGGER.info("Benchmark results saved to " + output.getAbsolutePath() + ":\n" + mapper.writeValueAsString(results));
+    }
+
+    private Map<String, Object> throughput(RoundTrip roundTrip, int operations) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            long start = System.nanoTime();
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                final int thread = t;
+                workers.add(executor.submit(() -> {
+                    for (int i = thread; i < operations; i += THREADS) {
+                        Item item = new Item(i);
+                        Assert.assertEquals(roundTrip.run(item), item);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+            long elapsed = System.nanoTime() - start;
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("opsPerSecond", operations * 1e9 / elapsed);
+            result.put("meanMicros", elapsed / 1000.0 / operations * THREADS);
+            return result;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Scenario returns number of items and the object it keeps, i.e. the whole document for legacy implementation.
+     */
+    private Map<String, Object> measure(Callable<Object[]> scenario) throws Exception {
+        // warmup
+        Assert.assertEquals(scenario.call()[0], RECORDS);
+        long usedBefore = usedHeap();
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        Object[] result = scenario.call();
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        long retained = usedHeap() - usedBefore;
+        Assert.assertEquals(result[0], RECORDS);
+
+        Map<String, Object> measurement = new LinkedHashMap<>();
+        measurement.put("millis", elapsed / 1000000.0);
+        measurement.put("allocatedMB", allocated / 1024.0 / 1024.0);
+        measurement.put("retainedMB", Math.max(0, retained) / 1024.0 / 1024.0);
+        return measurement;
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
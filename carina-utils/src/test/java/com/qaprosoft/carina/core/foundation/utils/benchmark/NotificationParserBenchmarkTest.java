@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.benchmark;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.qaprosoft.carina.core.foundation.utils.mobile.notifications.android.Notification;
+import com.qaprosoft.carina.core.foundation.utils.mobile.notifications.android.NotificationParser;
+import com.qaprosoft.carina.core.foundation.utils.mobile.notifications.android.NotificationParserTest;
+
+/**
+ * Measures parsing cost of one notifications poll on captured "dumpsys notification" fixture multiplied to
+ * benchmark.records records. Scenarios: regex parsing of full dump (previous AndroidService implementation),
+ * {@link NotificationParser} on full dump and on output filtered on device side as NotificationWatcher does.
+ * 
+ * Excluded from regular build, run it using:
+ * 
+ * <pre>
+ * mvn test -pl carina-utils -am -Dgroups=benchmark -DexcludedGroups=none -Dtest=NotificationParserBenchmarkTest
+ * </pre>
+ * 
+ * Results are written to target/benchmark/notification-parser.json.
+ */
+public class NotificationParserBenchmarkTest {
+    private static final Logger LOGGER = Logger.getLogger(NotificationParserBenchmarkTest.class);
+
+    private static final int WARMUP = Integer.getInteger("benchmark.warmup", 20);
+
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 100);
+
+    private static final int RECORDS = Integer.getInteger("benchmark.records", 20);
+
+    @Test(groups = "benchmark")
+    public void testParsePoll() throws Exception {
+        List<String> dump = dump();
+        List<String> filtered = dump.stream().filter(NotificationParser::isRelevant).collect(Collectors.toList());
+        Assert.assertEquals(NotificationParser.parse(dump).size(), RECORDS);
+        Assert.assertEquals(NotificationParser.parse(filtered).toString(), NotificationParserTest.parseLegacy(dump).toString());
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        results.put("legacyRegex", measure(dump, NotificationParserTest::parseLegacy));
+        results.put("parser", measure(dump, NotificationParser::parse));
+        results.put("filteredParser", measure(filtered, NotificationParser::parse));
+
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        File output = new File("target/benchmark/notification-parser.json");
+        output.getParentFile().mkdirs();
+        mapper.writeValue(output, results);
+        LOGGER.info("Benchmark results saved to " + output.getAbsolutePath() + ":\n" + mapper.writeValueAsString(results));
+    }
+
+    private Map<String, Object> measure(List<String> lines, Function<List<String>, List<Notification>> parser) {
+        int found = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            found += parser.apply(lines).size();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            found += parser.apply(lines).size();
+        }
+        long elapsed = System.nanoTime() - start;
+        Assert.assertEquals(found, (WARMUP + ITERATIONS) * RECORDS);
+
+        long bytes = 0;
+        for (String line : lines) {
+            bytes += line.getBytes(StandardCharsets.UTF_8).length + 1;
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("meanMicros", elapsed / 1000.0 / ITERATIONS);
+        result.put("bytesPerPoll", bytes);
+        result.put("linesPerPoll", lines.size());
+        return result;
+    }
+
+    private static List<String> dump() throws Exception {
+        List<String> fixture = NotificationParserTest.readDumpsys();
+        List<String> header = new ArrayList<>();
+        List<List<String>> records = new ArrayList<>();
+        List<String> footer = new ArrayList<>();
+        for (String line : fixture) {
+            if (line.contains(NotificationParser.RECORD)) {
+                records.add(new ArrayList<>());
+            } else if (line.trim().startsWith("mArchive:")) {
+                footer = new ArrayList<>();
+                records.add(footer);
+            }
+            (records.isEmpty() ? header : records.get(records.size() - 1)).add(line);
+        }
+        records.remove(footer);
+
+        List<String> dump = new ArrayList<>(header);
+        for (int i = 0; i < RECORDS; i++) {
+            int copy = i / records.size();
+            for (String line : records.get(i % records.size())) {
+                dump.add(line.replace("|null|", "|copy" + copy + "|").replace("|gmail|", "|gmail" + copy + "|")
+                        .replace("|msg|", "|msg" + copy + "|").replace("|sms|", "|sms" + copy + "|"));
+            }
+        }
+        dump.addAll(footer);
+        return dump;
+    }
+}
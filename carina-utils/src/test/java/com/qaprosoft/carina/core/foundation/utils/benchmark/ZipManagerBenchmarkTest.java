@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.qaprosoft.carina.core.foundation.utils.ZipManager;
+
+/**
+ * Measures zip and unzip of benchmark.size.mb (500 MB by default) of mixed artifacts: videos and screenshots
+ * (incompressible), logs and page sources (compressible) and many small files like gallery library. Scenarios:
+ * previous implementation (1 KB buffer, single thread, everything deflated) and {@link ZipManager}.
+ * 
+ * Excluded from regular build, run it using:
+ * 
+ * <pre>
+ * mvn test -pl carina-utils -am -Dgroups=benchmark -DexcludedGroups=none -Dtest=ZipManagerBenchmarkTest
+ * </pre>
+ * 
+ * Results are written to target/benchmark/zip-manager.json.
+ */
+public class ZipManagerBenchmarkTest {
+    private static final Logger LOGGER = Logger.getLogger(ZipManagerBenchmarkTest.class);
+
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 2);
+
+    private static final int SIZE_MB = Integer.getInteger("benchmark.size.mb", 500);
+
+    private static final int THREADS = Integer.getInteger("benchmark.threads", Math.max(4, ZipManager.DEFAULT_THREADS));
+
+    @FunctionalInterface
+    private interface Scenario {
+        void run(File zip, File target) throws IOException;
+    }
+
+    @Test(groups = "benchmark")
+    public void testZipManager() throws Exception {
+        File dir = Files.createTempDirectory("zip-benchmark").toFile();
+        try {
+            File source = new File(dir, "artifacts");
+            long size = generate(source, SIZE_MB * 1024L * 1024L);
+            File[] files = source.listFiles();
+
+            Map<String, Object> results = new LinkedHashMap<>();
+            results.put("sourceMB", size / 1024.0 / 1024.0);
+            results.put("threads", THREADS);
+            results.put("legacyZip", measure(dir, (zip, target) -> legacyZip(zip.getAbsolutePath(), files)));
+            results.put("zip", measure(dir, (zip, target) -> ZipManager.zip(zip.getAbsolutePath(), files)));
+
+            File zip = new File(dir, "artifacts.zip");
+            ZipManager.zip(zip.getAbsolutePath(), files);
+            results.put("legacyUnzip", measure(dir, (archive, target) -> legacyUnzip(zip.getAbsolutePath(), target.getAbsolutePath())));
+            results.put("unzip", measure(dir, (archive, target) -> ZipManager.unzip(zip.getAbsolutePath(), target.getAbsolutePath(), THREADS)));
+
+            File target = new File(dir, "verify");
+            target.mkdirs();
+            ZipManager.unzip(zip.getAbsolutePath(), target.getAbsolutePath(), THREADS);
+            Assert.assertEquals(FileUtils.sizeOfDirectory(target), size);
+
+            ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+            File output = new File("target/benchmark/zip-manager.json");
+            output.getParentFile().mkdirs();
+            mapper.writeValue(output, results);
+            LOGGER.info("Benchmark results saved to " + output.getAbsolutePath() + ":\n" + mapper.writeValueAsString(results));
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    private Map<String, Object> measure(File dir, Scenario scenario) throws IOException {
+        File zip = new File(dir, "measured.zip");
+        File target = new File(dir, "measured");
+        long elapsed = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            FileUtils.deleteDirectory(target);
+            target.mkdirs();
+            zip.delete();
+            long start = System.nanoTime();
+            scenario.run(zip, target);
+            elapsed += System.nanoTime() - start;
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("meanMillis", elapsed / 1000000.0 / ITERATIONS);
+        if (zip.exists()) {
+            result.put("zipMB", zip.length() / 1024.0 / 1024.0);
+        }
+        FileUtils.deleteDirectory(target);
+        zip.delete();
+        return result;
+    }
+
+    /**
+     * Mixed artifacts: 60% videos and screenshots, 30% logs and page sources, 10% small gallery files.
+     */
+    private static long generate(File source, long size) throws IOException {
+        Random random = new Random(1);
+        long total = 0;
+        long media = size * 6 / 10;
+        long text = size * 3 / 10;
+        long small = size - media - text;
+        for (int i = 0; total < media; i++) {
+            byte[] content = new byte[(int) Math.min(media - total, i % 4 == 0 ? 20 * 1024 * 1024 : 300 * 1024)];
+            random.nextBytes(content);
+            total += write(new File(source, (i % 4 == 0 ? "video/video" + i + ".mp4" : "screenshots/" + i + ".png")), content);
+        }
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; total < media + text; i++) {
+            line.setLength(0);
+            while (line.length() < 2 * 1024 * 1024) {
+                line.append(String.format("%tT INFO [TestThread-%d] Step %d: element '%s' is clicked%n", System.currentTimeMillis(), i,
+                        random.nextInt(1000), Long.toHexString(random.nextLong())));
+            }
+            byte[] content = line.toString().getBytes(StandardCharsets.UTF_8);
+            content = content.length > media + text - total ? Arrays.copyOf(content, (int) (media + text - total)) : content;
+            total += write(new File(source, (i % 2 == 0 ? "logs/test" + i + ".log" : "dumps/ui-dump" + i + ".xml")), content);
+        }
+        for (int i = 0; total < size; i++) {
+            byte[] content = new byte[(int) Math.min(size - total, 4 * 1024 + random.nextInt(12 * 1024))];
+            for (int j = 0; j < content.length; j++) {
+                content[j] = (byte) ('a' + random.nextInt(16));
+            }
+            total += write(new File(source, "gallery-lib/folder" + (i % 50) + "/file" + i + ".js"), content);
+        }
+        return total;
+    }
+
+    private static long write(File file, byte[] content) throws IOException {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content);
+        return content.length;
+    }
+
+    /**
+     * Previous FileManager.zipFiles extended to folders: default compression for every entry.
+     */
+    private static void legacyZip(String output, File... files) throws IOException {
+        try (ZipOutputStream zipOut = new ZipOutputStream(new FileOutputStream(output))) {
+            for (File file : files) {
+                legacyAdd(zipOut, file, file.getName());
+            }
+        }
+    }
+
+    private static void legacyAdd(ZipOutputStream zipOut, File file, String name) throws IOException {
+        if (file.isDirectory()) {
+            for (File child : file.listFiles()) {
+                legacyAdd(zipOut, child, name + "/" + child.getName());
+            }
+            return;
+        }
+        zipOut.putNextEntry(new ZipEntry(name));
+        Files.copy(file.toPath(), zipOut);
+    }
+
+    /**
+     * Previous ZipManager.unzip: entries one by one through 1 KB buffer.
+     */
+    private static void legacyUnzip(String zip, String extractTo) throws IOException {
+        try (ZipFile zipFile = new ZipFile(zip)) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                File file = new File(extractTo + "/" + entry.getName());
+                if (entry.isDirectory()) {
+                    file.mkdir();
+                    continue;
+                }
+                // legacy archive didn't contain folder entries
+                file.getParentFile().mkdirs();
+                try (InputStream is = zipFile.getInputStream(entry);
+                        OutputStream os = new BufferedOutputStream(new FileOutputStream(file))) {
+                    byte[] buffer = new byte[1024];
+                    int len;
+                    while ((len = is.read(buffer)) >= 0) {
+                        os.write(buffer, 0, len);
+                    }
+                }
+            }
+        }
+    }
+}
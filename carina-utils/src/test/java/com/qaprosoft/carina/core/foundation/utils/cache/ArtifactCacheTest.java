@@ -0,0 +1,227 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class ArtifactCacheTest {
+
+    private File dir;
+
+    @BeforeMethod
+    public void createDir() throws IOException {
+        dir = Files.createTempDirectory("artifact-cache").toFile();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteDir() {
+        FileUtils.deleteQuietly(dir);
+    }
+
+    @Test
+    public void testConcurrentRequestsFetchOnce() throws Exception {
+        ArtifactCache cache = new ArtifactCache(dir, 0);
+        AtomicInteger fetches = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<File>> files = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                files.add(executor.submit(() -> cache.get("s3://builds/app.apk#etag1", "app.apk", target -> {
+                    fetches.incrementAndGet();
+                    pause(200);
+                    FileUtils.writeByteArrayToFile(target, new byte[] { 1, 2, 3 });
+                })));
+            }
+            for (Future<File> file : files) {
+                Assert.assertEquals(FileUtils.readFileToByteArray(file.get(10, TimeUnit.SECONDS)), new byte[] { 1, 2, 3 });
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(fetches.get(), 1, "Artifact was downloaded several times!");
+        Assert.assertTrue(cache.contains("s3://builds/app.apk#etag1", "app.apk"));
+        Assert.assertFalse(cache.contains("s3://builds/app.apk#etag2", "app.apk"));
+    }
+
+    @Test
+    public void testFailedFetchLeavesNoEntry() {
+        ArtifactCache cache = new ArtifactCache(dir, 0);
+        try {
+            cache.get("appcenter://app/42", "app.ipa", target -> {
+                FileUtils.writeByteArrayToFile(target, new byte[] { 1 });
+                throw new IOException("connection reset");
+            });
+            Assert.fail("Fetch failure is not reported!");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("connection reset"), e.getMessage());
+        }
+        Assert.assertFalse(cache.contains("appcenter://app/42", "app.ipa"));
+        Assert.assertEquals(cache.getSize(), 0);
+
+        File file = cache.get("appcenter://app/42", "app.ipa", target -> FileUtils.writeByteArrayToFile(target, new byte[] { 2 }));
+        Assert.assertEquals(file.getName(), "app.ipa");
+        Assert.assertEquals(file.length(), 1);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntriesAreEvicted() {
+        ArtifactCache cache = new ArtifactCache(dir, 3000);
+        File first = cache.get("build1", "build1.apk", target -> FileUtils.writeByteArrayToFile(target, new byte[1000]));
+        File second = cache.get("build2", "build2.apk", target -> FileUtils.writeByteArrayToFile(target, new byte[1000]));
+        cache.get("build3", "build3.apk", target -> FileUtils.writeByteArrayToFile(target, new byte[1000]));
+        // make access order explicit as file system timestamps may be too coarse
+        first.getParentFile().setLastModified(System.currentTimeMillis() - 10000);
+        second.getParentFile().setLastModified(System.currentTimeMillis() - 20000);
+        cache.get("build1", "build1.apk", target -> Assert.fail("Cached artifact is downloaded again!"));
+
+        cache.get("build4", "build4.apk", target -> FileUtils.writeByteArrayToFile(target, new byte[1000]));
+        Assert.assertTrue(cache.contains("build1", "build1.apk"));
+        Assert.assertFalse(cache.contains("build2", "build2.apk"));
+        Assert.assertTrue(cache.contains("build3", "build3.apk"));
+        Assert.assertTrue(cache.contains("build4", "build4.apk"));
+        Assert.assertTrue(cache.getSize() <= 3000);
+    }
+
+    @Test
+    public void testOtherProcessDownloadIsReused() throws Exception {
+        File started = new File(dir, "started");
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), Downloader.class.getName(),
+                dir.getAbsolutePath(), started.getAbsolutePath()).inheritIO().start();
+        try {
+            long deadline = System.currentTimeMillis() + 30000;
+            while (!started.exists() && System.currentTimeMillis() < deadline) {
+                pause(50);
+            }
+            Assert.assertTrue(started.exists(), "Child process didn't start download");
+
+            ArtifactCache cache = new ArtifactCache(dir, 0);
+            File file = cache.get(Downloader.KEY, "shared.apk", target -> Assert.fail("Artifact is downloaded by both processes!"));
+            Assert.assertEquals(FileUtils.readFileToString(file, "UTF-8"), "downloaded by child");
+            Assert.assertTrue(process.waitFor(30, TimeUnit.SECONDS));
+            Assert.assertEquals(process.exitValue(), 0);
+        } finally {
+            process.destroy();
+        }
+    }
+
+    @Test
+    public void testRangedDownload() throws Exception {
+        byte[] content = new byte[1024 * 1024 + 123];
+        new Random(7).nextBytes(content);
+        AtomicInteger ranges = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/app.apk", exchange -> {
+            exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().add("Content-Length", String.valueOf(content.length));
+                exchange.sendResponseHeaders(200, -1);
+            } else if (range != null) {
+                ranges.incrementAndGet();
+                String[] bounds = range.substring("bytes=".length()).split("-");
+                int start = Integer.parseInt(bounds[0]);
+                int end = Integer.parseInt(bounds[1]);
+                exchange.sendResponseHeaders(206, end - start + 1);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(content, start, end - start + 1);
+                }
+            } else {
+                exchange.sendResponseHeaders(200, content.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(content);
+                }
+            }
+            exchange.close();
+        });
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.start();
+        try {
+            File target = new File(dir, "app.apk");
+            URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/app.apk");
+            RangedDownloader.download(url, target, 4, 100 * 1024);
+            Assert.assertTrue(Arrays.equals(FileUtils.readFileToByteArray(target), content), "Downloaded content is corrupted!");
+            Assert.assertEquals(ranges.get(), 11);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testIncompleteRangeIsRetried() throws Exception {
+        byte[] content = new byte[1000];
+        new Random(3).nextBytes(content);
+        AtomicInteger attempts = new AtomicInteger();
+        File target = new File(dir, "app.ipa");
+        RangedDownloader.download((start, end) -> {
+            int length = (int) (end - start + 1);
+            // the first response of the last range is truncated
+            if (start == 900 && attempts.incrementAndGet() == 1) {
+                length = 10;
+            }
+            return new ByteArrayInputStream(content, (int) start, length);
+        }, content.length, target, 3, 100);
+        Assert.assertTrue(Arrays.equals(FileUtils.readFileToByteArray(target), content), "Downloaded content is corrupted!");
+        Assert.assertEquals(attempts.get(), 2);
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Downloads artifact slowly in a separate JVM.
+     */
+    public static class Downloader {
+
+        static final String KEY = "s3://builds/shared.apk#etag";
+
+        public static void main(String[] args) {
+            new ArtifactCache(new File(args[0]), 0).get(KEY, "shared.apk", target -> {
+                new File(args[1]).createNewFile();
+                pause(1500);
+                FileUtils.writeStringToFile(target, "downloaded by child", "UTF-8");
+            });
+        }
+    }
+}
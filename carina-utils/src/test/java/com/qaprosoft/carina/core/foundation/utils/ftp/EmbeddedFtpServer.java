@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.ftp;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal embedded FTP server for upload tests: USER/PASS login, passive mode and STOR into memory.
+ */
+public class EmbeddedFtpServer implements Closeable {
+
+    private final String user;
+
+    private final String password;
+
+    private final ServerSocket server;
+
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+
+    private final AtomicInteger logins = new AtomicInteger();
+
+    private final AtomicInteger activeTransfers = new AtomicInteger();
+
+    private final AtomicInteger maxActiveTransfers = new AtomicInteger();
+
+    private volatile long storeDelay;
+
+    private volatile boolean dropAfterStore;
+
+    public EmbeddedFtpServer(String user, String password) throws IOException {
+        this.user = user;
+        this.password = password;
+        this.server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "embedded-ftp");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    public Map<String, byte[]> getFiles() {
+        return files;
+    }
+
+    public int getLogins() {
+        return logins.get();
+    }
+
+    public int getMaxActiveTransfers() {
+        return maxActiveTransfers.get();
+    }
+
+    public void setStoreDelay(long storeDelay) {
+        this.storeDelay = storeDelay;
+    }
+
+    /**
+     * Close control connection after each upload like servers with short idle timeout do.
+     */
+    public void setDropAfterStore(boolean dropAfterStore) {
+        this.dropAfterStore = dropAfterStore;
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                Thread session = new Thread(() -> session(socket), "embedded-ftp-session");
+                session.setDaemon(true);
+                session.start();
+            } catch (IOException e) {
+                // server is closed
+            }
+        }
+    }
+
+    private void session(Socket socket) {
+        ServerSocket passive = null;
+        try (Socket control = socket) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(control.getInputStream(), StandardCharsets.US_ASCII));
+            OutputStream out = control.getOutputStream();
+            reply(out, "220 Embedded FTP ready");
+            String login = null;
+            boolean authorized = false;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int space = line.indexOf(' ');
+                String command = (space < 0 ? line : line.substring(0, space)).toUpperCase();
+                String argument = space < 0 ? "" : line.substring(space + 1);
+                switch (command) {
+                case "USER":
+                    login = argument;
+                    reply(out, "331 Password required");
+                    break;
+                case "PASS":
+                    authorized = user.equals(login) && password.equals(argument);
+                    if (authorized) {
+                        logins.incrementAndGet();
+                        reply(out, "230 Logged in");
+                    } else {
+                        reply(out, "530 Login incorrect");
+                    }
+                    break;
+                case "TYPE":
+                case "NOOP":
+                    reply(out, "200 OK");
+                    break;
+                case "PASV":
+                    if (passive != null) {
+                        passive.close();
+                    }
+                    passive = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+                    int port = passive.getLocalPort();
+                    reply(out, "227 Entering Passive Mode (127,0,0,1," + (port >> 8) + "," + (port & 0xff) + ")");
+                    break;
+                case "STOR":
+                    if (!authorized || passive == null) {
+                        reply(out, "530 Not logged in");
+                        break;
+                    }
+                    reply(out, "150 Opening data connection");
+                    store(passive, argument);
+                    passive.close();
+                    passive = null;
+                    reply(out, "226 Transfer complete");
+                    if (dropAfterStore) {
+                        return;
+                    }
+                    break;
+                case "QUIT":
+                    reply(out, "221 Bye");
+                    return;
+                default:
+                    reply(out, "502 Command not implemented");
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            // client disconnected
+        } finally {
+            if (passive != null) {
+                try {
+                    passive.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private void store(ServerSocket passive, String name) throws IOException {
+        int active = activeTransfers.incrementAndGet();
+        maxActiveTransfers.accumulateAndGet(active, Math::max);
+        try (Socket data = passive.accept(); InputStream in = data.getInputStream()) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                content.write(buffer, 0, read);
+            }
+            if (storeDelay > 0) {
+                Thread.sleep(storeDelay);
+            }
+            files.put(name, content.toByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            activeTransfers.decrementAndGet();
+        }
+    }
+
+    private static void reply(OutputStream out, String message) throws IOException {
+        out.write((message + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+}
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.ftp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class FtpUploaderTest {
+
+    private static final String USER = "carina";
+
+    private static final String PASSWORD = "secret";
+
+    private EmbeddedFtpServer server;
+
+    private FtpUploader uploader;
+
+    @BeforeMethod
+    public void start() throws IOException {
+        server = new EmbeddedFtpServer(USER, PASSWORD);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void stop() throws IOException {
+        if (uploader != null) {
+            uploader.close();
+        }
+        server.close();
+    }
+
+    @Test
+    public void testConnectionsAreReused() throws Exception {
+        uploader = new FtpUploader("127.0.0.1", server.getPort(), USER, PASSWORD, 2, 100);
+        List<Future<Boolean>> uploads = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            uploads.add(uploader.upload(("video " + i).getBytes(StandardCharsets.UTF_8), "video" + i + ".mp4"));
+        }
+        for (Future<Boolean> upload : uploads) {
+            Assert.assertTrue(upload.get(10, TimeUnit.SECONDS));
+        }
+
+        Assert.assertEquals(server.getFiles().size(), 20);
+        Assert.assertEquals(new String(server.getFiles().get("video7.mp4"), StandardCharsets.UTF_8), "video 7");
+        Assert.assertTrue(server.getLogins() <= 2, "Connections are not reused: " + server.getLogins());
+        Assert.assertTrue(server.getMaxActiveTransfers() <= 2);
+        Assert.assertEquals(uploader.getInFlight(), 0);
+    }
+
+    @Test
+    public void testDrainReportsPendingUploads() {
+        server.setStoreDelay(200);
+        uploader = new FtpUploader("127.0.0.1", server.getPort(), USER, PASSWORD, 1, 100);
+        for (int i = 0; i < 5; i++) {
+            uploader.upload(new byte[] { (byte) i }, "file" + i);
+        }
+        Assert.assertEquals(uploader.getInFlight(), 5);
+
+        List<String> notUploaded = uploader.drain(250, TimeUnit.MILLISECONDS);
+        Assert.assertFalse(notUploaded.isEmpty());
+        Assert.assertTrue(notUploaded.contains("file4"), notUploaded.toString());
+
+        Assert.assertEquals(uploader.drain(10, TimeUnit.SECONDS), new ArrayList<String>());
+        Assert.assertEquals(uploader.getInFlight(), 0);
+        Assert.assertEquals(server.getFiles().size(), 5);
+    }
+
+    @Test
+    public void testFailedUploadIsReported() throws Exception {
+        uploader = new FtpUploader("127.0.0.1", server.getPort(), USER, "wrong", 1, 10);
+        Assert.assertFalse(uploader.upload(new byte[] { 1 }, "failed.mp4").get(10, TimeUnit.SECONDS));
+
+        List<String> notUploaded = uploader.drain(1, TimeUnit.SECONDS);
+        Assert.assertEquals(notUploaded.size(), 1);
+        Assert.assertEquals(notUploaded.get(0), "failed.mp4");
+        // failures are reported once
+        Assert.assertTrue(uploader.drain(1, TimeUnit.SECONDS).isEmpty());
+    }
+
+    @Test
+    public void testReconnectAfterDroppedConnection() throws Exception {
+        server.setDropAfterStore(true);
+        uploader = new FtpUploader("127.0.0.1", server.getPort(), USER, PASSWORD, 1, 10);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(uploader.upload(new byte[] { (byte) i }, "file" + i).get(10, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(server.getFiles().size(), 3);
+    }
+
+    @Test
+    public void testFtpUtils() throws Exception {
+        File file = File.createTempFile("carina", ".mp4");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "recorded video".getBytes(StandardCharsets.UTF_8));
+
+        FtpUtils.uploadFile("127.0.0.1", server.getPort(), USER, PASSWORD, file.getAbsolutePath(), "sync.mp4");
+        Assert.assertEquals(new String(server.getFiles().get("sync.mp4"), StandardCharsets.UTF_8), "recorded video");
+
+        String data = Base64.getEncoder().encodeToString("screenshot".getBytes(StandardCharsets.UTF_8));
+        FtpUtils.uploadDataAsync("127.0.0.1", server.getPort(), USER, PASSWORD, data, "async.png");
+        Assert.assertTrue(FtpUtils.waitUntilUploaded(10).isEmpty());
+        Assert.assertFalse(FtpUtils.isUploading());
+        Assert.assertEquals(new String(server.getFiles().get("async.png"), StandardCharsets.UTF_8), "screenshot");
+        Assert.assertEquals(server.getLogins(), 1);
+    }
+}
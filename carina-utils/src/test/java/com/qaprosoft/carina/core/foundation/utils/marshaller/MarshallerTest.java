@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.marshaller;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link Marshaller} and {@link MarshallerHelper}
+ */
+public class MarshallerTest {
+
+    private static final int THREADS = 16;
+
+    private static final int OPERATIONS = 300;
+
+    @XmlRootElement(name = "item")
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class Item {
+        @XmlAttribute
+        private int id;
+        private String name;
+        @XmlElement(name = "tag")
+        private List<String> tags = new ArrayList<>();
+
+        public Item() {
+        }
+
+        public Item(int id) {
+            this.id = id;
+            this.name = "item <" + id + "> & co";
+            this.tags.add("tag" + id % 7);
+            this.tags.add("tag" + id % 11);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Item)) {
+                return false;
+            }
+            Item item = (Item) obj;
+            return id == item.id && Objects.equals(name, item.name) && tags.equals(item.tags);
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+    }
+
+    @XmlRootElement(name = "catalog")
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class Catalog {
+        @XmlElement(name = "item")
+        private List<Item> items = new ArrayList<>();
+
+        public List<Item> getItems() {
+            return items;
+        }
+    }
+
+    // not annotated with XmlRootElement
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class Note {
+        private String text;
+    }
+
+    @Test
+    public void testSingleton() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Marshaller>> instances = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                instances.add(executor.submit(Marshaller::getInstance));
+            }
+            for (Future<Marshaller> instance : instances) {
+                Assert.assertSame(instance.get(), Marshaller.getInstance());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Item item = new Item(42);
+        String xml = MarshallerHelper.marshall(item);
+        Assert.assertEquals(MarshallerHelper.unmarshall(xml, Item.class), item);
+        Assert.assertEquals(MarshallerHelper.unmarshall(new StringReader(xml), Item.class), item);
+
+        File file = File.createTempFile("marshaller", ".xml");
+        try {
+            MarshallerHelper.marshall(item, file);
+            Assert.assertEquals(MarshallerHelper.unmarshall(file, Item.class), item);
+            try (InputStream is = new FileInputStream(file)) {
+                Assert.assertEquals(MarshallerHelper.unmarshall(is, Item.class), item);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testUnmarshallNotRootClass() {
+        Note note = MarshallerHelper.unmarshall("<note><text>Hello</text></note>", Note.class);
+        Assert.assertEquals(note.text, "Hello");
+    }
+
+    @Test
+    public void testInvalidXml() {
+        try {
+            MarshallerHelper.unmarshall("<item id='1'><name>broken</item>", Item.class);
+            Assert.fail("Invalid XML is unmarshalled!");
+        } catch (RuntimeException e) {
+            // expected
+        }
+        Assert.assertEquals(MarshallerHelper.unmarshall(MarshallerHelper.marshall(new Item(1)), Item.class), new Item(1));
+    }
+
+    @Test
+    public void testStreamElements() throws IOException {
+        int count = 20000;
+        File file = File.createTempFile("marshaller", ".xml");
+        try {
+            try (Writer writer = new BufferedWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+                writeCatalog(writer, count);
+            }
+            AtomicLong sum = new AtomicLong();
+            List<Item> sample = new ArrayList<>();
+            try (InputStream is = new FileInputStream(file)) {
+                int unmarshalled = MarshallerHelper.unmarshall(is, "item", Item.class, item -> {
+                    sum.addAndGet(item.id);
+                    if (item.id % 5000 == 0) {
+                        sample.add(item);
+                    }
+                });
+                Assert.assertEquals(unmarshalled, count);
+            }
+            Assert.assertEquals(sum.get(), (long) count * (count - 1) / 2);
+            Assert.assertEquals(sample.get(1), new Item(5000));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testConcurrentUse() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                final int thread = t;
+                workers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < OPERATIONS; i++) {
+                        int id = thread * OPERATIONS + i;
+                        if (i % 10 == 0) {
+                            Catalog catalog = new Catalog();
+                            for (int j = 0; j < 5; j++) {
+                                catalog.getItems().add(new Item(id + j));
+                            }
+                            Catalog copy = MarshallerHelper.unmarshall(MarshallerHelper.marshall(catalog), Catalog.class);
+                            Assert.assertEquals(copy.getItems(), catalog.getItems());
+                        } else {
+                            Item item = new Item(id);
+                            Assert.assertEquals(MarshallerHelper.unmarshall(MarshallerHelper.marshall(item), Item.class), item);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Write catalog document without building it in memory.
+     * 
+     * @param writer - Writer
+     * @param count - number of items
+     * @throws IOException
+     */
+    public static void writeCatalog(Writer writer, int count) throws IOException {
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<catalog>\n");
+        for (int i = 0; i < count; i++) {
+            String xml = MarshallerHelper.marshall(new Item(i));
+            writer.write(xml.substring(xml.indexOf("?>") + 2));
+            writer.write('\n');
+        }
+        writer.write("</catalog>\n");
+    }
+}
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.mobile.notifications.android;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class NotificationParserTest {
+
+    public static final File DUMPSYS = new File("src/test/resources/notifications/dumpsys_notification.txt");
+
+    private static final Pattern NOTIFICATION_PATTERN = Pattern.compile(".* NotificationRecord.*pkg=(.*) user");
+
+    private static final Pattern NOTIFICATION_TEXT_PATTERN = Pattern.compile(".*tickerText=(.*)");
+
+    public static List<String> readDumpsys() throws IOException {
+        return Files.readAllLines(DUMPSYS.toPath(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parsing algorithm of AndroidService.getNotifications before NotificationParser
+     */
+    public static List<Notification> parseLegacy(List<String> lines) {
+        List<Notification> resultList = new ArrayList<Notification>();
+        Notification notification = new Notification();
+        for (String output : lines) {
+            boolean found = false;
+            Matcher matcher = NOTIFICATION_PATTERN.matcher(output);
+            while (matcher.find()) {
+                notification.setNotificationPkg(matcher.group(1));
+            }
+            Matcher matcher2 = NOTIFICATION_TEXT_PATTERN.matcher(output);
+            while (matcher2.find()) {
+                notification.setNotificationText(matcher2.group(1));
+                found = true;
+            }
+            if (found) {
+                resultList.add(notification);
+                notification = new Notification();
+            }
+        }
+        return resultList;
+    }
+
+    @Test
+    public void testParse() throws IOException {
+        List<Notification> notifications = NotificationParser.parse(readDumpsys());
+        Assert.assertEquals(notifications.size(), 6);
+
+        Notification gmail = notifications.get(2);
+        Assert.assertEquals(gmail.getNotificationPkg(), "com.google.android.gm");
+        Assert.assertEquals(gmail.getNotificationText(), "John Smith: Weekly report");
+        Assert.assertEquals(gmail.getKey(), "0|com.google.android.gm|1|gmail|10089");
+
+        Assert.assertEquals(notifications.get(0).getNotificationText(), "null");
+    }
+
+    @Test
+    public void testParseIsCompatibleWithRegex() throws IOException {
+        List<String> lines = readDumpsys();
+        Assert.assertEquals(toString(NotificationParser.parse(lines)), toString(parseLegacy(lines)));
+    }
+
+    @Test
+    public void testParseFilteredOutput() throws IOException {
+        List<String> lines = readDumpsys();
+        List<String> filtered = lines.stream().filter(NotificationParser::isRelevant).collect(Collectors.toList());
+        Assert.assertEquals(filtered.size(), 12);
+        Assert.assertEquals(toString(NotificationParser.parse(filtered)), toString(NotificationParser.parse(lines)));
+    }
+
+    @Test
+    public void testParseWithoutKey() {
+        List<Notification> notifications = NotificationParser.parse(Arrays.asList(
+                "  NotificationRecord(0x0a1b2c3d: pkg=com.example user=UserHandle{0} id=1 tag=null score=0)",
+                "      tickerText=Hello"));
+        Assert.assertEquals(notifications.size(), 1);
+        Assert.assertEquals(notifications.get(0).getNotificationPkg(), "com.example");
+        Assert.assertNull(notifications.get(0).getKey());
+    }
+
+    private static String toString(List<Notification> notifications) {
+        return notifications.toString();
+    }
+}
@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.mobile.notifications.android;
+
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class NotificationWatcherTest {
+
+    private PipedOutputStream device;
+
+    private NotificationWatcher watcher;
+
+    @BeforeMethod
+    public void start() throws IOException {
+        device = new PipedOutputStream();
+        watcher = new NotificationWatcher("emulator-5554");
+        watcher.start(new PipedInputStream(device, 64 * 1024));
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void close() throws IOException {
+        watcher.close();
+        device.close();
+    }
+
+    @Test
+    public void testPostedAndRemoved() throws Exception {
+        List<Notification> posted = new CopyOnWriteArrayList<>();
+        List<Notification> removed = new CopyOnWriteArrayList<>();
+        watcher.addListener(new NotificationListener() {
+            @Override
+            public void onNotificationPosted(Notification notification) {
+                posted.add(notification);
+            }
+
+            @Override
+            public void onNotificationRemoved(Notification notification) {
+                removed.add(notification);
+            }
+        });
+
+        snapshot(record("com.example.first", 1, "First"));
+        Assert.assertEquals(watcher.getNotifications().size(), 1);
+
+        CompletableFuture<Notification> second = watcher.waitFor(n -> n.getNotificationText().contains("Second"));
+        snapshot(record("com.example.first", 1, "First") + record("com.example.second", 2, "Second"));
+        Assert.assertEquals(second.get(5, TimeUnit.SECONDS).getNotificationPkg(), "com.example.second");
+
+        snapshot(record("com.example.second", 2, "Second"));
+        waitForSnapshots(3);
+
+        // notifications of the first snapshot existed before monitoring start
+        Assert.assertEquals(posted.size(), 1);
+        Assert.assertEquals(posted.get(0).getNotificationPkg(), "com.example.second");
+        Assert.assertEquals(removed.size(), 1);
+        Assert.assertEquals(removed.get(0).getNotificationPkg(), "com.example.first");
+        Assert.assertEquals(watcher.getNotifications().size(), 1);
+    }
+
+    @Test
+    public void testExistingNotification() throws Exception {
+        snapshot(record("com.example", 1, "Existing"));
+        Assert.assertTrue(watcher.waitFor(n -> n.getNotificationText().equals("Existing"), 5));
+    }
+
+    @Test
+    public void testNewNotificationIgnoresExisting() throws Exception {
+        snapshot(record("com.example", 1, "Existing"));
+        Assert.assertEquals(watcher.getNotifications().size(), 1);
+        Assert.assertFalse(watcher.waitForNew(n -> n.getNotificationPkg().equals("com.example"), 1));
+
+        CompletableFuture<Notification> posted = watcher.waitForNew(n -> n.getNotificationPkg().equals("com.example"));
+        snapshot(record("com.example", 1, "Existing") + record("com.example", 2, "New"));
+        Assert.assertEquals(posted.get(5, TimeUnit.SECONDS).getNotificationText(), "New");
+    }
+
+    @Test
+    public void testWaitTimeout() throws Exception {
+        snapshot(record("com.example", 1, "Existing"));
+        long start = System.currentTimeMillis();
+        Assert.assertFalse(watcher.waitFor(n -> n.getNotificationText().equals("Missing"), 1));
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    @Test
+    public void testUnchangedSnapshotIsSkipped() throws Exception {
+        List<Notification> posted = new ArrayList<>();
+        watcher.addListener(posted::add);
+        String records = record("com.example", 1, "Same");
+        snapshot("");
+        snapshot(records);
+        snapshot(records);
+        snapshot(records);
+        waitForSnapshots(4);
+        Assert.assertEquals(posted.size(), 1);
+    }
+
+    @Test
+    public void testStoppedWatcher() throws Exception {
+        device.close();
+        waitForStop(watcher);
+        Assert.assertFalse(watcher.waitFor(n -> true, 1));
+    }
+
+    @Test
+    public void testStartedOnDemandAndStoppedWithoutListeners() throws Exception {
+        List<PipedOutputStream> shells = new CopyOnWriteArrayList<>();
+        NotificationWatcher onDemand = new NotificationWatcher("emulator-5556", () -> {
+            PipedOutputStream shell = new PipedOutputStream();
+            PipedInputStream in = new PipedInputStream(shell, 64 * 1024);
+            shells.add(shell);
+            return in;
+        });
+        try {
+            Assert.assertFalse(onDemand.isRunning());
+            Assert.assertTrue(shells.isEmpty(), "Monitor is started without listeners!");
+
+            CompletableFuture<Notification> posted = onDemand.waitForNew(n -> n.getNotificationText().equals("New"));
+            Assert.assertTrue(onDemand.isRunning());
+            Assert.assertEquals(shells.size(), 1);
+
+            write(shells.get(0), record("com.example", 1, "Existing"));
+            write(shells.get(0), record("com.example", 1, "Existing") + record("com.example", 2, "New"));
+            Assert.assertEquals(posted.get(5, TimeUnit.SECONDS).getNotificationPkg(), "com.example");
+            // the last listener is removed together with completed wait
+            waitForStop(onDemand);
+            assertClosed(shells.get(0));
+
+            Assert.assertFalse(onDemand.waitForNew(n -> true, 1));
+            Assert.assertEquals(shells.size(), 2);
+            waitForStop(onDemand);
+            assertClosed(shells.get(1));
+        } finally {
+            onDemand.close();
+        }
+        Assert.assertFalse(onDemand.waitFor(n -> true, 1));
+        Assert.assertEquals(shells.size(), 2, "Monitor is restarted after close!");
+    }
+
+    @Test
+    public void testMonitorCommand() {
+        Assert.assertEquals(NotificationWatcher.getMonitorCommand(1), "while true; do dumpsys notification | grep -e 'NotificationRecord(' "
+                + "-e 'tickerText='; echo '--carina-notifications--'; sleep 1; done");
+    }
+
+    private static String record(String pkg, int id, String text) {
+        String key = "0|" + pkg + "|" + id + "|null|10100";
+        return "    NotificationRecord(0x0a1b2c3d: pkg=" + pkg + " user=UserHandle{0} id=" + id + " tag=null importance=3 key=" + key
+                + ": Notification(channel=default pri=0))\n      key=" + key + "\n      tickerText=" + text + "\n";
+    }
+
+    private void snapshot(String records) throws IOException {
+        write(device, records);
+    }
+
+    private static void write(PipedOutputStream shell, String records) throws IOException {
+        shell.write((records + NotificationWatcher.SNAPSHOT_END + "\n").getBytes(StandardCharsets.UTF_8));
+        shell.flush();
+    }
+
+    private static void assertClosed(PipedOutputStream shell) {
+        try {
+            write(shell, "");
+            Assert.fail("Monitor stream is not closed!");
+        } catch (IOException e) {
+            // expected: reader side of the pipe is closed
+        }
+    }
+
+    private static void waitForStop(NotificationWatcher watcher) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (watcher.isRunning() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertFalse(watcher.isRunning());
+    }
+
+    private void waitForSnapshots(long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (watcher.getSnapshotCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(watcher.getSnapshotCount(), count);
+    }
+}
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.mobile.snapshot;
+
+import org.openqa.selenium.By;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.qaprosoft.carina.core.foundation.utils.mobile.swipe.FakeListDriver;
+import com.qaprosoft.carina.core.foundation.utils.mobile.swipe.SwipeEngine;
+import com.qaprosoft.carina.core.foundation.utils.mobile.swipe.SwipeEngine.Axis;
+
+public class UiSnapshotCacheTest {
+
+    @Test
+    public void testReadOnlyChecksUseSinglePageSource() {
+        FakeListDriver driver = new FakeListDriver(100, 0);
+        for (int i = 0; i < 20; i++) {
+            UiSnapshot snapshot = UiSnapshotCache.get(driver);
+            Assert.assertTrue(snapshot.isVisible(By.name("Item " + (i % 9))));
+            Assert.assertTrue(snapshot.isTextPresent(By.id("com.example:id/title"), "Item"));
+            Assert.assertFalse(snapshot.isPresent(By.name("Item 50")));
+        }
+        Assert.assertEquals(driver.getPageSources(), 1);
+    }
+
+    @Test
+    public void testInvalidate() {
+        FakeListDriver driver = new FakeListDriver(100, 0);
+        Assert.assertFalse(UiSnapshotCache.get(driver).isPresent(By.name("Item 30")));
+        driver.setOffset(30 * FakeListDriver.ITEM_HEIGHT);
+        // screen is changed without notification so cached snapshot is still used
+        Assert.assertFalse(UiSnapshotCache.get(driver).isPresent(By.name("Item 30")));
+
+        UiSnapshotCache.invalidate(driver);
+        Assert.assertTrue(UiSnapshotCache.get(driver).isVisible(By.name("Item 30")));
+        Assert.assertEquals(driver.getPageSources(), 2);
+    }
+
+    @Test
+    public void testExpiredSnapshotIsRefreshed() throws InterruptedException {
+        FakeListDriver driver = new FakeListDriver(100, 0);
+        Assert.assertTrue(UiSnapshotCache.get(driver, 1000).isVisible(By.name("Item 0")));
+        driver.setOffset(30 * FakeListDriver.ITEM_HEIGHT);
+        // screen is changed by application itself, snapshot is reused until it expires
+        Assert.assertTrue(UiSnapshotCache.get(driver, 1000).isVisible(By.name("Item 0")));
+        Thread.sleep(50);
+        Assert.assertFalse(UiSnapshotCache.get(driver, 10).isPresent(By.name("Item 0")));
+        Assert.assertEquals(driver.getPageSources(), 2);
+    }
+
+    @Test
+    public void testSwipeInvalidatesSnapshot() {
+        FakeListDriver driver = new FakeListDriver(100, 0);
+        Assert.assertFalse(UiSnapshotCache.get(driver).isPresent(By.name("Item 57")));
+        Assert.assertTrue(new SwipeEngine(driver).swipeTo(By.name("Item 57"), null, Axis.VERTICAL, true, false, 50, 500));
+        // the last snapshot taken by swipe engine describes current screen
+        int pageSources = driver.getPageSources();
+        Assert.assertTrue(UiSnapshotCache.get(driver).isVisible(By.name("Item 57")));
+        Assert.assertEquals(driver.getPageSources(), pageSources);
+    }
+
+    @Test
+    public void testInvisibleNodes() {
+        UiSnapshot snapshot = UiSnapshot.parse("<hierarchy>"
+                + "<XCUIElementTypeButton name=\"Login\" label=\"Login\" visible=\"false\" x=\"10\" y=\"10\" width=\"100\" height=\"40\"/>"
+                + "<XCUIElementTypeStaticText name=\"Empty\" value=\"Empty\" visible=\"true\" x=\"10\" y=\"60\" width=\"0\" height=\"0\"/>"
+                + "<XCUIElementTypeStaticText name=\"Welcome\" value=\"Welcome back\" visible=\"true\" x=\"10\" y=\"60\" width=\"200\" height=\"40\"/>"
+                + "</hierarchy>");
+        Assert.assertTrue(snapshot.isPresent(By.name("Login")));
+        Assert.assertFalse(snapshot.isVisible(By.name("Login")));
+        Assert.assertFalse(snapshot.isVisible(By.name("Empty")));
+        Assert.assertTrue(snapshot.isTextPresent(By.name("Welcome"), "back"));
+        Assert.assertFalse(snapshot.isTextPresent(By.name("Login"), "Login"));
+    }
+}
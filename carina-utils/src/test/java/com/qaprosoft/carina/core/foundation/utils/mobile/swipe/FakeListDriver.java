@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.mobile.swipe;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.interactions.Interactive;
+import org.openqa.selenium.interactions.Sequence;
+
+/**
+ * Fake Android driver with vertical list of fixed height items inside RecyclerView. Page source contains only items
+ * intersecting the list viewport, W3C swipes move the list by the gesture distance minus touch slop.
+ */
+public class FakeListDriver implements WebDriver, Interactive {
+
+    static final int TOP = 231;
+
+    static final int BOTTOM = 2028;
+
+    static final int WIDTH = 1080;
+
+    public static final int ITEM_HEIGHT = 189;
+
+    private final int itemCount;
+
+    private final int touchSlop;
+
+    private boolean renderAll;
+
+    private int offset;
+
+    private int swipes;
+
+    private int pageSources;
+
+    public FakeListDriver(int itemCount, int touchSlop) {
+        this.itemCount = itemCount;
+        this.touchSlop = touchSlop;
+    }
+
+    public void setOffset(int offset) {
+        this.offset = Math.max(0, Math.min(getMaxOffset(), offset));
+    }
+
+    /**
+     * Renders all items with real (not clipped) bounds like XCUITest page source does.
+     */
+    public void setRenderAll(boolean renderAll) {
+        this.renderAll = renderAll;
+    }
+
+    public int getSwipes() {
+        return swipes;
+    }
+
+    public int getPageSources() {
+        return pageSources;
+    }
+
+    @Override
+    public String getPageSource() {
+        pageSources++;
+        StringBuilder source = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        source.append("<hierarchy index=\"0\" class=\"hierarchy\" rotation=\"0\" width=\"1080\" height=\"2028\">\n");
+        source.append("<android.widget.FrameLayout class=\"android.widget.FrameLayout\" bounds=\"[0,0][1080,2028]\">\n");
+        source.append("<androidx.recyclerview.widget.RecyclerView class=\"androidx.recyclerview.widget.RecyclerView\" "
+                + "resource-id=\"com.example:id/list\" scrollable=\"true\" bounds=\"[0," + TOP + "][" + WIDTH + "," + BOTTOM + "]\">\n");
+        for (int i = 0; i < itemCount; i++) {
+            int top = TOP + i * ITEM_HEIGHT - offset;
+            int bottom = top + ITEM_HEIGHT;
+            if (renderAll) {
+                source.append(String.format("<android.widget.TextView class=\"android.widget.TextView\" text=\"Item %d\" "
+                        + "resource-id=\"com.example:id/title\" bounds=\"[0,%d][%d,%d]\" />\n", i, top, WIDTH, bottom));
+                continue;
+            }
+            if (bottom <= TOP || top >= BOTTOM) {
+                continue;
+            }
+            source.append(String.format("<android.widget.TextView class=\"android.widget.TextView\" text=\"Item %d\" "
+                    + "resource-id=\"com.example:id/title\" bounds=\"[0,%d][%d,%d]\" />\n", i, Math.max(top, TOP), WIDTH, Math.min(bottom, BOTTOM)));
+        }
+        source.append("</androidx.recyclerview.widget.RecyclerView>\n</android.widget.FrameLayout>\n</hierarchy>");
+        return source.toString();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void perform(Collection<Sequence> actions) {
+        for (Sequence sequence : actions) {
+            List<Map<String, Object>> steps = (List<Map<String, Object>>) sequence.encode().get("actions");
+            Integer startY = null;
+            Integer endY = null;
+            for (Map<String, Object> step : steps) {
+                if ("pointerMove".equals(step.get("type"))) {
+                    int y = ((Number) step.get("y")).intValue();
+                    if (startY == null) {
+                        startY = y;
+                    }
+                    endY = y;
+                }
+            }
+            int distance = startY - endY;
+            int moved = Math.max(0, Math.abs(distance) - touchSlop);
+            setOffset(offset + (distance > 0 ? moved : -moved));
+            swipes++;
+        }
+    }
+
+    @Override
+    public void resetInputState() {
+    }
+
+    private int getMaxOffset() {
+        return Math.max(0, itemCount * ITEM_HEIGHT - (BOTTOM - TOP));
+    }
+
+    @Override
+    public void get(String url) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getCurrentUrl() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getTitle() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<WebElement> findElements(By by) {
+        throw new UnsupportedOperationException("Swipe engine should use page source only");
+    }
+
+    @Override
+    public WebElement findElement(By by) {
+        throw new UnsupportedOperationException("Swipe engine should use page source only");
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void quit() {
+    }
+
+    @Override
+    public Set<String> getWindowHandles() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getWindowHandle() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public TargetLocator switchTo() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Navigation navigate() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Options manage() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.mobile.swipe;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.Rectangle;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.qaprosoft.carina.core.foundation.utils.mobile.snapshot.UiSnapshot;
+import com.qaprosoft.carina.core.foundation.utils.mobile.swipe.SwipeEngine.Axis;
+
+public class SwipeEngineTest {
+
+    private static final File PAGE_SOURCE = new File("src/test/resources/swipe/android_settings.xml");
+
+    private static final By LIST = By.id("com.example:id/list");
+
+    @Test
+    public void testSnapshotGeometry() throws IOException {
+        UiSnapshot snapshot = UiSnapshot.parse(new String(Files.readAllBytes(PAGE_SOURCE.toPath()), StandardCharsets.UTF_8));
+
+        Assert.assertEquals(snapshot.getScreen(), new Rectangle(0, 0, 2028, 1080));
+        Assert.assertEquals(snapshot.find(By.id("dashboard_container")), new Rectangle(0, 231, 1797, 1080));
+        Assert.assertEquals(snapshot.find(By.id("title")), new Rectangle(189, 271, 57, 516));
+        Assert.assertEquals(snapshot.find(By.xpath("//*[@text='Battery']")), new Rectangle(189, 838, 57, 516));
+        Assert.assertEquals(snapshot.find(By.name("Display")), new Rectangle(189, 1027, 57, 516));
+        Assert.assertNull(snapshot.find(By.xpath("//*[@text='System']")));
+
+        Rectangle viewport = snapshot.find(By.id("dashboard_container"));
+        Assert.assertTrue(snapshot.getSignature(viewport).contains("Security"));
+        Assert.assertTrue(UiSnapshot.isSupported(By.xpath("//*")));
+        Assert.assertFalse(UiSnapshot.isSupported(By.cssSelector("div")));
+    }
+
+    @Test
+    public void testVisibleTargetWithoutSwipe() {
+        FakeListDriver driver = new FakeListDriver(100, 0);
+        SwipeEngine engine = new SwipeEngine(driver);
+        Assert.assertTrue(engine.swipeTo(By.name("Item 3"), LIST, Axis.VERTICAL, true, false, 50, 500));
+        Assert.assertEquals(driver.getSwipes(), 0);
+        Assert.assertEquals(driver.getPageSources(), 1);
+    }
+
+    @Test
+    public void testSwipeToFarTarget() {
+        FakeListDriver driver = new FakeListDriver(100, 0);
+        SwipeEngine engine = new SwipeEngine(driver);
+        Assert.assertTrue(engine.swipeTo(By.name("Item 57"), LIST, Axis.VERTICAL, true, false, 50, 500));
+        // 57 items * 189px with 1258px per gesture
+        Assert.assertTrue(driver.getSwipes() <= 9, "Too many swipes: " + driver.getSwipes());
+        Assert.assertEquals(driver.getPageSources(), driver.getSwipes() + 1);
+    }
+
+    @Test
+    public void testExactSwipeToTargetInPageSource() {
+        FakeListDriver driver = new FakeListDriver(100, 0);
+        driver.setRenderAll(true);
+        SwipeEngine engine = new SwipeEngine(driver);
+        // Item 40 center is 5684px below the list bottom: 5 gestures limited by 1258px each
+        Assert.assertTrue(engine.swipeTo(By.name("Item 40"), LIST, Axis.VERTICAL, true, false, 50, 500));
+        Assert.assertEquals(driver.getSwipes(), 5);
+    }
+
+    @Test
+    public void testTouchSlopIsCompensated() {
+        FakeListDriver driver = new FakeListDriver(100, 40);
+        SwipeEngine engine = new SwipeEngine(driver);
+        Assert.assertTrue(engine.swipeTo(By.name("Item 80"), LIST, Axis.VERTICAL, true, false, 50, 500));
+        Assert.assertTrue(driver.getSwipes() <= 14, "Too many swipes: " + driver.getSwipes());
+    }
+
+    @Test
+    public void testEndOfListDetection() {
+        FakeListDriver driver = new FakeListDriver(30, 0);
+        SwipeEngine engine = new SwipeEngine(driver);
+        Assert.assertFalse(engine.swipeTo(By.name("Missing"), LIST, Axis.VERTICAL, true, true, 50, 500));
+        // 30 items fit into 4 swipes in each direction plus one swipe to detect the end
+        Assert.assertTrue(driver.getSwipes() <= 10, "End of the list is not detected: " + driver.getSwipes());
+    }
+
+    @Test
+    public void testOppositeDirection() {
+        FakeListDriver driver = new FakeListDriver(60, 0);
+        driver.setOffset(Integer.MAX_VALUE);
+        SwipeEngine engine = new SwipeEngine(driver);
+        Assert.assertTrue(engine.swipeTo(By.name("Item 2"), null, Axis.VERTICAL, true, true, 50, 500));
+        Assert.assertTrue(driver.getSwipes() <= 10, "Too many swipes: " + driver.getSwipes());
+    }
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.resources;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.qaprosoft.carina.core.foundation.utils.mobile.snapshot.UiSnapshot;
+
+public class ElementTextReaderTest {
+
+    @Test
+    public void testSingleScriptCall() {
+        List<Object> calls = new ArrayList<>();
+        JavascriptExecutor executor = new JavascriptExecutor() {
+            @Override
+            public Object executeScript(String script, Object... args) {
+                calls.add(args[0]);
+                return Arrays.asList("Sign in", null, "Forgot password?");
+            }
+
+            @Override
+            public Object executeAsyncScript(String script, Object... args) {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        By signIn = By.xpath("//h1");
+        By hidden = By.id("hidden");
+        By forgot = By.cssSelector("a.forgot");
+        Map<By, String> texts = ElementTextReader.readTexts(executor, Arrays.asList(signIn, hidden, forgot));
+
+        Assert.assertEquals(calls.size(), 1);
+        Assert.assertEquals(calls.get(0), Arrays.asList(Arrays.asList("xpath", "//h1"), Arrays.asList("id", "hidden"),
+                Arrays.asList("cssSelector", "a.forgot")));
+        Assert.assertEquals(texts.get(signIn), "Sign in");
+        Assert.assertFalse(texts.containsKey(hidden));
+        Assert.assertEquals(texts.get(forgot), "Forgot password?");
+
+        Assert.assertTrue(ElementTextReader.readTexts(executor, new ArrayList<>()).isEmpty());
+        Assert.assertEquals(calls.size(), 1);
+    }
+
+    @Test
+    public void testScriptLocators() {
+        Assert.assertTrue(ElementTextReader.isScriptSupported(By.name("q")));
+        Assert.assertTrue(ElementTextReader.isScriptSupported(By.className("title")));
+        Assert.assertFalse(ElementTextReader.isScriptSupported(By.linkText("Home")));
+        Assert.assertFalse(ElementTextReader.isScriptSupported(By.partialLinkText("Ho")));
+    }
+
+    @Test
+    public void testSnapshotTexts() throws Exception {
+        File pageSource = new File("src/test/resources/swipe/android_settings.xml");
+        UiSnapshot snapshot = UiSnapshot.parse(new String(Files.readAllBytes(pageSource.toPath()), StandardCharsets.UTF_8));
+
+        By title = By.id("search_action_bar_title");
+        By battery = By.xpath("//*[@text='Battery']");
+        By missed = By.xpath("//*[@text='System']");
+        Map<By, String> texts = ElementTextReader.readTexts(snapshot, Arrays.asList(title, battery, missed));
+        Assert.assertEquals(texts.get(title), "Settings");
+        Assert.assertEquals(texts.get(battery), "Battery");
+        Assert.assertFalse(texts.containsKey(missed));
+    }
+}
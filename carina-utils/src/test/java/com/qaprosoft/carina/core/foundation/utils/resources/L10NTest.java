@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright 2013-2019 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.resources;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.qaprosoft.carina.core.foundation.commons.SpecialKeywords;
+import com.qaprosoft.carina.core.foundation.utils.R;
+
+/**
+ * Tests for {@link L10N} and {@link ResourceBundleIndex}
+ */
+public class L10NTest {
+
+    private static final Locale GERMAN = new Locale("de", "DE");
+
+    @BeforeClass
+    public void init() {
+        R.CONFIG.put("enable_l10n", "true");
+        R.CONFIG.put("locale", "en_US,de_DE,fr");
+        R.CONFIG.put("l10n_encoding", "UTF-8");
+        L10N.init();
+    }
+
+    @Test
+    public void testGetText() {
+        Assert.assertEquals(L10N.getDefaultLocale(), Locale.US);
+        Assert.assertEquals(L10N.getText("title"), "Sign in");
+        Assert.assertEquals(L10N.getText("title", new Locale("fr")), "Connexion");
+        Assert.assertEquals(L10N.getText("button", GERMAN), "Knopf");
+        // inherited from base bundle
+        Assert.assertEquals(L10N.getText("common", GERMAN), "Common text");
+    }
+
+    @Test
+    public void testEncoding() {
+        Assert.assertEquals(L10N.getText("title", GERMAN), "Größe");
+    }
+
+    @Test
+    public void testMissingText() {
+        Assert.assertEquals(L10N.getText("unknown"), "unknown");
+        Assert.assertEquals(L10N.getText("title", Locale.JAPAN), "title");
+    }
+
+    @Test
+    public void testScan() {
+        Assert.assertEquals(ResourceBundleIndex.getBundleNames(SpecialKeywords.L10N), Arrays.asList("L10N.messages", "L10N.nested.labels"));
+    }
+
+    @Test
+    public void testIndex() throws IOException {
+        File root = Files.createTempDirectory("bundle-index").toFile();
+        try {
+            File dir = new File(root, SpecialKeywords.L10N);
+            FileUtils.copyDirectory(new File(getClass().getClassLoader().getResource(SpecialKeywords.L10N).getFile()), dir);
+            File index = ResourceBundleIndex.generate(root, SpecialKeywords.L10N);
+            Assert.assertEquals(Files.readAllLines(index.toPath(), StandardCharsets.UTF_8), Arrays.asList("L10N.messages", "L10N.nested.labels"));
+
+            // folder with index isn't scanned
+            Files.write(index.toPath(), Arrays.asList("# generated", "L10N.indexed"), StandardCharsets.UTF_8);
+            try (URLClassLoader classLoader = new URLClassLoader(new URL[] { root.toURI().toURL() }, null)) {
+                Assert.assertEquals(ResourceBundleIndex.getBundleNames(classLoader, SpecialKeywords.L10N), Arrays.asList("L10N.indexed"));
+            }
+            Assert.assertNull(ResourceBundleIndex.generate(root, SpecialKeywords.I18N));
+        } finally {
+            FileUtils.deleteDirectory(root);
+        }
+    }
+}
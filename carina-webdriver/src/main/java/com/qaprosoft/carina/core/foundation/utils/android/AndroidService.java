@@ -16,9 +16,11 @@
 package com.qaprosoft.carina.core.foundation.utils.android;
 
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -29,6 +31,8 @@ import com.qaprosoft.carina.core.foundation.utils.android.recorder.utils.CmdLine
 import com.qaprosoft.carina.core.foundation.utils.common.CommonUtils;
 import com.qaprosoft.carina.core.foundation.utils.factory.DeviceType;
 import com.qaprosoft.carina.core.foundation.utils.mobile.notifications.android.Notification;
+import com.qaprosoft.carina.core.foundation.utils.mobile.notifications.android.NotificationParser;
+import com.qaprosoft.carina.core.foundation.utils.mobile.notifications.android.NotificationWatcher;
 import com.qaprosoft.carina.core.foundation.webdriver.IDriverPool;
 import com.qaprosoft.carina.core.foundation.webdriver.Screenshot;
 import com.qaprosoft.carina.core.gui.mobile.devices.android.phone.pages.fakegps.FakeGpsPage;
@@ -44,9 +48,11 @@ public class AndroidService implements IDriverPool, IAndroidUtils {
 
     protected static final int INIT_TIMEOUT = 20;
 
-    private final Pattern NOTIFICATION_PATTERN = Pattern.compile(".* NotificationRecord.*pkg=(.*) user");
+    private static final Map<String, NotificationWatcher> notificationWatchers = new ConcurrentHashMap<>();
 
-    private final Pattern NOTIFICATION_TEXT_PATTERN = Pattern.compile(".*tickerText=(.*)");
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> notificationWatchers.values().forEach(NotificationWatcher::close)));
+    }
 
     private final String TZ_CHANGE_APP_PATH = "app/TimeZone_Changer.apk";
     private final String TZ_CHANGE_APP_ACTIVITY = "com.futurek.android.tzc/com.futurek.android.tzc.MainActivity";
@@ -282,37 +288,46 @@ public class AndroidService implements IDriverPool, IAndroidUtils {
         LOGGER.info("getNotifications cmd was built: " + CmdLine.arrayToString(getNotificationsCmd));
 
         // TODO: migrate to executeAbdCommand later
-        List<Notification> resultList = new ArrayList<Notification>();
         List<String> notificationsOutput = executor.execute(getNotificationsCmd);
-        Notification notification = new Notification();
-        for (String output : notificationsOutput) {
-            boolean found = false;
-
-            Matcher matcher = NOTIFICATION_PATTERN.matcher(output);
-            while (matcher.find()) {
-                notification.setNotificationPkg(matcher.group(1));
-                if (withLogger)
-                    LOGGER.info(matcher.group(1));
-            }
-            Matcher matcher2 = NOTIFICATION_TEXT_PATTERN.matcher(output);
-            while (matcher2.find()) {
-                notification.setNotificationText(matcher2.group(1));
-                if (withLogger)
-                    LOGGER.info(matcher2.group(1));
-                found = true;
+        List<Notification> resultList = NotificationParser.parse(notificationsOutput);
+        if (withLogger) {
+            for (Notification notification : resultList) {
+                LOGGER.info(notification.getNotificationPkg());
+                LOGGER.info(notification.getNotificationText());
             }
-            if (found) {
-                resultList.add(notification);
-                if (withLogger)
-                    LOGGER.info(notification.getNotificationText());
-                notification = new Notification();
-                found = false;
+            LOGGER.info("Found: " + resultList.size() + " notifications.");
+        }
+        return resultList;
+    }
+
+    /**
+     * Get notification watcher of default device. Watcher keeps single adb shell per device which prints filtered
+     * notification snapshots, so waits are completed on notification change without polling by new adb process.
+     * Adb shell is started by the first wait and stopped when there are no waits anymore.
+     *
+     * @return NotificationWatcher
+     */
+    public NotificationWatcher getNotificationWatcher() {
+        String deviceName = IDriverPool.getDefaultDevice().getAdbName();
+        return notificationWatchers.computeIfAbsent(deviceName, k -> {
+            String monitorCmd = NotificationWatcher.getMonitorCommand(1);
+            if (!k.isEmpty()) {
+                return new NotificationWatcher(k, CmdLine.insertCommandsAfter(baseInitCmd, "-s", k, "shell", monitorCmd));
             }
+            return new NotificationWatcher(k, CmdLine.insertCommandsAfter(baseInitCmd, "shell", monitorCmd));
+        });
+    }
 
+    /**
+     * Stop notification watcher of device, i.e. on device disconnect.
+     *
+     * @param deviceName adb name of device
+     */
+    public static void stopNotificationWatcher(String deviceName) {
+        NotificationWatcher watcher = notificationWatchers.remove(deviceName);
+        if (watcher != null) {
+            watcher.close();
         }
-        if (withLogger)
-            LOGGER.info("Found: " + resultList.size() + " notifications.");
-        return resultList;
     }
 
     /**
@@ -336,7 +351,7 @@ public class AndroidService implements IDriverPool, IAndroidUtils {
         List<Notification> resultList = getNotifications(false);
 
         for (Notification notify : resultList) {
-            if (notify.getNotificationText().contains(text)) {
+            if (notify.getNotificationText() != null && notify.getNotificationText().contains(text)) {
                 LOGGER.info("Found '" + text + "' in notification '" + notify.getNotificationText() + "'.");
                 return true;
             }
@@ -353,6 +368,14 @@ public class AndroidService implements IDriverPool, IAndroidUtils {
      * @return boolean
      */
     public boolean waitUntilNewNotificationAppear(String text, long timeout) {
+        NotificationWatcher watcher = getNotificationWatcher();
+        CompletableFuture<Notification> posted = watcher.waitForNew(n -> n.getNotificationText() != null && n.getNotificationText().contains(text));
+        if (!posted.isCompletedExceptionally()) {
+            LOGGER.info("Wait for new notification with text '" + text + "' during " + timeout + " seconds.");
+            return watcher.await(posted, timeout);
+        }
+        LOGGER.warn("Unable to start notification watcher. Notifications will be polled.");
+
         // boolean found = false;
         int base = notificationsCount();
         int time = 0;
@@ -379,7 +402,7 @@ public class AndroidService implements IDriverPool, IAndroidUtils {
         List<Notification> resultList = getNotifications(false);
 
         for (Notification notify : resultList) {
-            if (notify.getNotificationPkg().contains(text)) {
+            if (notify.getNotificationPkg() != null && notify.getNotificationPkg().contains(text)) {
                 LOGGER.info("Found '" + text + "' in notification packages '" + notify.getNotificationPkg() + "' with text '"
                         + notify.getNotificationText() + "'.");
                 return true;
@@ -397,6 +420,14 @@ public class AndroidService implements IDriverPool, IAndroidUtils {
      * @return boolean
      */
     public boolean waitUntilNewNotificationPackageAppear(String pkg, long timeout) {
+        NotificationWatcher watcher = getNotificationWatcher();
+        CompletableFuture<Notification> posted = watcher.waitForNew(n -> n.getNotificationPkg() != null && n.getNotificationPkg().contains(pkg));
+        if (!posted.isCompletedExceptionally()) {
+            LOGGER.info("Wait for new notification of package '" + pkg + "' during " + timeout + " seconds.");
+            return watcher.await(posted, timeout);
+        }
+        LOGGER.warn("Unable to start notification watcher. Notifications will be polled.");
+
         // boolean found = false;
         int base = notificationsCount();
         int time = 0;
@@ -21,6 +21,7 @@ import org.apache.log4j.Logger;
 import org.openqa.selenium.Dimension;
 import org.openqa.selenium.Point;
 import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.interactions.Interactive;
 import org.openqa.selenium.support.events.EventFiringWebDriver;
 import org.testng.Assert;
 
@@ -30,6 +31,10 @@ import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
 import com.qaprosoft.carina.core.foundation.utils.Messager;
 import com.qaprosoft.carina.core.foundation.utils.android.AndroidService;
 import com.qaprosoft.carina.core.foundation.utils.android.DeviceTimeZone;
+import com.qaprosoft.carina.core.foundation.utils.mobile.snapshot.UiSnapshot;
+import com.qaprosoft.carina.core.foundation.utils.mobile.snapshot.UiSnapshotCache;
+import com.qaprosoft.carina.core.foundation.utils.mobile.swipe.SwipeEngine;
+import com.qaprosoft.carina.core.foundation.utils.mobile.swipe.SwipeEngine.Axis;
 import com.qaprosoft.carina.core.foundation.webdriver.DriverHelper;
 import com.qaprosoft.carina.core.foundation.webdriver.IDriverPool;
 import com.qaprosoft.carina.core.foundation.webdriver.decorator.ExtendedWebElement;
@@ -132,6 +137,7 @@ public interface IMobileUtils extends IDriverPool {
             TouchAction<?> action = new TouchAction((MobileDriver<?>) driver);
             LongPressOptions options = LongPressOptions.longPressOptions().withElement(ElementOption.element(element.getElement()));
             action.longPress(options).release().perform();
+            UiSnapshotCache.invalidate(driver);
             return true;
         } catch (Exception e) {
             UTILS_LOGGER.info("Error occurs during longPress: " + e, e);
@@ -160,6 +166,7 @@ public interface IMobileUtils extends IDriverPool {
             } else {
                 touchAction.press(startPoint).waitAction(waitOptions).release().perform();
             }
+            UiSnapshotCache.invalidate(castDriver());
             Messager.TAP_EXECUTED.info(String.valueOf(startx), String.valueOf(starty));
         } catch (Exception e) {
             Messager.TAP_NOT_EXECUTED.error(String.valueOf(startx), String.valueOf(starty));
@@ -363,6 +370,25 @@ public interface IMobileUtils extends IDriverPool {
             throw new RuntimeException("Unsupported direction for swipeInContainerTillElement: " + direction);
         }
 
+        WebDriver drv = castDriver();
+        if (drv instanceof Interactive && UiSnapshot.isSupported(element.getBy())
+                && (container == null || UiSnapshot.isSupported(container.getBy()))) {
+            // geometry based swipes: exact distance to the element when it is in page source, end of list detection
+            try {
+                Axis axis = direction == Direction.LEFT || direction == Direction.RIGHT ? Axis.HORIZONTAL : Axis.VERTICAL;
+                boolean forward = direction == Direction.UP || direction == Direction.LEFT;
+                SwipeEngine engine = new SwipeEngine(drv);
+                engine.swipeTo(element.getBy(), container != null ? container.getBy() : null, axis, forward, bothDirections, count, duration);
+                UTILS_LOGGER.debug("Swipes executed: " + engine.getSwipeCount() + "; page sources analyzed: " + engine.getSnapshotCount());
+                isVisible = element.isVisible(1);
+                UTILS_LOGGER.info("Result: " + isVisible);
+                return isVisible;
+            } catch (Exception e) {
+                UTILS_LOGGER.warn("Unable to swipe using page source geometry, legacy swipes will be used: " + e.getMessage());
+                UTILS_LOGGER.debug(e.getMessage(), e);
+            }
+        }
+
         int currentCount = count;
 
         while (!isVisible && currentCount-- > 0) {
@@ -427,6 +453,7 @@ public interface IMobileUtils extends IDriverPool {
 
         new TouchAction((MobileDriver<?>) drv).press(startPoint).waitAction(waitOptions).moveTo(endPoint).release()
                 .perform();
+        UiSnapshotCache.invalidate(drv);
 
         UTILS_LOGGER.debug("Finished swipe...");
     }
@@ -706,6 +733,7 @@ public interface IMobileUtils extends IDriverPool {
     default public void hideKeyboard() {
         try {
             ((MobileDriver<?>) castDriver()).hideKeyboard();
+            UiSnapshotCache.invalidate(castDriver());
         } catch (Exception e) {
             if (!e.getMessage().contains("Soft keyboard not present, cannot hide keyboard")) {
                 UTILS_LOGGER.error("Exception appears during hideKeyboard: " + e);
@@ -776,6 +804,7 @@ public interface IMobileUtils extends IDriverPool {
             tAction1.press(startPoint2).waitAction(waitOptions).moveTo(endPoint2).release();
             multiTouch.add(tAction0).add(tAction1);
             multiTouch.perform();
+            UiSnapshotCache.invalidate(driver);
             UTILS_LOGGER.info("Zoom has been performed");
         } catch (Exception e) {
             UTILS_LOGGER.error("Error during zooming", e);
@@ -835,6 +864,7 @@ public interface IMobileUtils extends IDriverPool {
      */
     default public void terminateApp(String bundleId) {
         ((MobileDriver<?>) castDriver()).terminateApp(bundleId);
+        UiSnapshotCache.invalidate(castDriver());
     }
 
     /**
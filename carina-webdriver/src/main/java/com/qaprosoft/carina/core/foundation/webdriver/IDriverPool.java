@@ -388,26 +388,24 @@ public interface IDriverPool {
             if (VideoAnalyzer.isVideoUploadEnabled() && videoFile.exists()) {
                 POOL_LOGGER.debug("Upload video is enabled.");
                 //TODO: replace by Zafira call which can upload to ftp or s3 based on configuration
-                CompletableFuture.runAsync(() -> {
-                    POOL_LOGGER.debug("Uploading in async mode started in thread ID: " + Thread.currentThread().getId());
-                    POOL_LOGGER.debug("Screen record ftp: " + R.CONFIG.get("screen_record_ftp"));
-                    POOL_LOGGER.debug("Screen record host: " + R.CONFIG.get("screen_record_host"));
-                    String ftpUrl = R.CONFIG.get("screen_record_ftp").replace("%", "");
-                    URI ftpUri = null;
-                    try {
-                        ftpUri = new URI(ftpUrl);
-                    } catch (URISyntaxException e1) {
-                        POOL_LOGGER.error("Incorrect URL format for screen record ftp parameter");
-                    }
-                    if (null != ftpUri) {
-                        String ftpHost = ftpUri.getHost();
-                        FtpUtils.uploadFile(ftpHost, R.CONFIG.get("screen_record_user"), R.CONFIG.get("screen_record_pass"), filePath,
-                                fileName);
-                    } else {
-                        POOL_LOGGER.error("The video won't be uploaded due to incorrect ftp or video recording parameters");
-                    }
-
-                });
+                POOL_LOGGER.debug("Screen record ftp: " + R.CONFIG.get("screen_record_ftp"));
+                POOL_LOGGER.debug("Screen record host: " + R.CONFIG.get("screen_record_host"));
+                String ftpUrl = R.CONFIG.get("screen_record_ftp").replace("%", "");
+                URI ftpUri = null;
+                try {
+                    ftpUri = new URI(ftpUrl);
+                } catch (URISyntaxException e1) {
+                    POOL_LOGGER.error("Incorrect URL format for screen record ftp parameter");
+                }
+                if (null != ftpUri) {
+                    // queued upload using pooled ftp connections, suite finish waits for it
+                    String ftpHost = ftpUri.getHost();
+                    int ftpPort = ftpUri.getPort() > 0 ? ftpUri.getPort() : 21;
+                    FtpUtils.uploadFileAsync(ftpHost, ftpPort, R.CONFIG.get("screen_record_user"), R.CONFIG.get("screen_record_pass"),
+                            filePath, fileName);
+                } else {
+                    POOL_LOGGER.error("The video won't be uploaded due to incorrect ftp or video recording parameters");
+                }
             }
 
         } catch (WebDriverException e) {
@@ -25,6 +25,8 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
@@ -67,6 +69,8 @@ import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
 import com.qaprosoft.carina.core.foundation.utils.Messager;
 import com.qaprosoft.carina.core.foundation.utils.R;
 import com.qaprosoft.carina.core.foundation.utils.common.CommonUtils;
+import com.qaprosoft.carina.core.foundation.utils.mobile.snapshot.UiSnapshot;
+import com.qaprosoft.carina.core.foundation.utils.mobile.snapshot.UiSnapshotCache;
 import com.qaprosoft.carina.core.foundation.webdriver.IDriverPool;
 import com.qaprosoft.carina.core.foundation.webdriver.listener.DriverListener;
 import com.qaprosoft.carina.core.foundation.webdriver.locator.ExtendedElementLocator;
@@ -83,6 +87,8 @@ public class ExtendedWebElement {
 
     private static final long RETRY_TIME = Configuration.getLong(Parameter.RETRY_INTERVAL);
 
+    private static final boolean PAGE_SOURCE_SNAPSHOT = Configuration.getBoolean(Parameter.PAGE_SOURCE_SNAPSHOT);
+
     
     
     // we should keep both properties: driver and searchContext obligatory
@@ -290,8 +296,65 @@ public class ExtendedWebElement {
 	 * @return element existence status.
 	 */
 	public boolean isPresent(By by, long timeout) {
+		long start = System.currentTimeMillis();
+		Boolean snapshotResult = checkSnapshot(by, snapshot -> snapshot.isPresent(by), timeout);
+		if (snapshotResult != null) {
+			return snapshotResult;
+		}
+		// snapshot check might fail after a while, regular wait gets only the rest of timeout
+		timeout = getRemainingTimeout(start, timeout);
 		return waitUntil(getDefaultCondition(by), timeout);
 	}
+
+    /**
+     * Evaluate read-only check against page source snapshot instead of remote element lookups. Cached snapshot is
+     * used only if it is not older than retry interval as application may change the screen itself, then page source
+     * is re-read every retry interval until timeout.
+     *
+     * @param by - By.
+     * @param check - condition to verify on snapshot.
+     * @param timeout - timeout.
+     * @return check result or null if snapshot can't be used for this element.
+     */
+	private Boolean checkSnapshot(By by, Predicate<UiSnapshot> check, long timeout) {
+		// nested elements are searched inside parent element so can't be resolved against whole page source
+		if (!PAGE_SOURCE_SNAPSHOT || by == null || searchContext instanceof WebElement || !UiSnapshot.isSupported(by) || !isMobile()) {
+			return null;
+		}
+
+		final WebDriver drv = getDriver();
+		Timer.start(ACTION_NAME.WAIT);
+		try {
+			if (check.test(UiSnapshotCache.get(drv, RETRY_TIME))) {
+				return true;
+			}
+			long end = System.currentTimeMillis() + timeout * 1000;
+			while (System.currentTimeMillis() < end) {
+				CommonUtils.pause(RETRY_TIME / 1000.0);
+				if (check.test(UiSnapshotCache.refresh(drv))) {
+					return true;
+				}
+			}
+			return false;
+		} catch (Exception e) {
+			LOGGER.debug("Unable to verify element using page source snapshot: " + getNameWithLocator(), e);
+			return null;
+		} finally {
+			Timer.stop(ACTION_NAME.WAIT);
+		}
+	}
+
+    /**
+     * Get timeout which is left after operation started at specified time.
+     *
+     * @param start - start time in milliseconds.
+     * @param timeout - timeout in seconds.
+     * @return remaining timeout in seconds.
+     */
+	private static long getRemainingTimeout(long start, long timeout) {
+		long elapsed = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - start);
+		return Math.max(0, timeout - elapsed);
+	}
 	
 	
     /**
@@ -418,6 +481,10 @@ public class ExtendedWebElement {
         this.by = by;
     }
 
+	public SearchContext getSearchContext() {
+		return searchContext;
+	}
+
 	public void setSearchContext(SearchContext searchContext) {
 		this.searchContext = searchContext;
 	}
@@ -817,6 +884,13 @@ public class ExtendedWebElement {
      * @return element existence status.
      */
     public boolean isElementPresent(long timeout) {
+		long start = System.currentTimeMillis();
+		Boolean snapshotResult = checkSnapshot(getBy(), snapshot -> snapshot.isVisible(getBy()), timeout);
+		if (snapshotResult != null) {
+			return snapshotResult;
+		}
+		timeout = getRemainingTimeout(start, timeout);
+
 		// perform at once super-fast single selenium call and only if nothing found move to waitAction
 		if (!isMobile() && element != null) {
 			try {
@@ -909,6 +983,13 @@ public class ExtendedWebElement {
      * @return element visibility status.
      */
 	public boolean isVisible(long timeout) {
+		long start = System.currentTimeMillis();
+		Boolean snapshotResult = checkSnapshot(getBy(), snapshot -> snapshot.isVisible(getBy()), timeout);
+		if (snapshotResult != null) {
+			return snapshotResult;
+		}
+		timeout = getRemainingTimeout(start, timeout);
+
 		ExpectedCondition<?> waitCondition;
 
 		if (element != null) {
@@ -941,6 +1022,13 @@ public class ExtendedWebElement {
      */
     public boolean isElementWithTextPresent(final String text, long timeout) {
     	final String decryptedText = cryptoTool.decryptByPattern(text, CRYPTO_PATTERN);
+		long start = System.currentTimeMillis();
+		Boolean snapshotResult = checkSnapshot(getBy(), snapshot -> snapshot.isTextPresent(getBy(), decryptedText), timeout);
+		if (snapshotResult != null) {
+			return snapshotResult;
+		}
+		timeout = getRemainingTimeout(start, timeout);
+
 		ExpectedCondition<Boolean> textCondition;
 		if (element != null) {
 			ExpectedCondition<Boolean>  tmpCondition = ExpectedConditions.and(ExpectedConditions.visibilityOf(element));
@@ -1404,11 +1492,29 @@ public class ExtendedWebElement {
 			throw e;
 		} finally {
 			Timer.stop(actionName);
+			if (PAGE_SOURCE_SNAPSHOT && !isReadAction(actionName)) {
+				UiSnapshotCache.invalidate(getDriver());
+			}
 		}
 
 		return output;
 	}
 
+	private boolean isReadAction(ACTION_NAME actionName) {
+		switch (actionName) {
+		case GET_TEXT:
+		case GET_LOCATION:
+		case GET_SIZE:
+		case GET_ATTRIBUTE:
+		case IS_CHECKED:
+		case GET_SELECTED_VALUE:
+		case GET_SELECTED_VALUES:
+			return true;
+		default:
+			return false;
+		}
+	}
+
 	// single place for all supported UI actions in carina core
 	private Object overrideAction(ACTION_NAME actionName, Object...inputArgs) {
 		Object output = executeAction(actionName, new ActionSteps() {
@@ -16,18 +16,24 @@
 package com.qaprosoft.carina.core.foundation.webdriver.device;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 import org.apache.commons.io.FileUtils;
@@ -43,8 +49,14 @@ import com.qaprosoft.carina.core.foundation.report.ReportContext;
 import com.qaprosoft.carina.core.foundation.utils.Configuration;
 import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
 import com.qaprosoft.carina.core.foundation.utils.R;
+import com.qaprosoft.carina.core.foundation.utils.android.AndroidService;
+import com.qaprosoft.carina.core.foundation.utils.android.ApkManifest;
+import com.qaprosoft.carina.core.foundation.utils.android.ApkManifestParser;
+import com.qaprosoft.carina.core.foundation.utils.android.LogcatCollector;
+import com.qaprosoft.carina.core.foundation.utils.android.LogcatCollector.LogcatFilter;
 import com.qaprosoft.carina.core.foundation.utils.android.recorder.utils.AdbExecutor;
 import com.qaprosoft.carina.core.foundation.utils.android.recorder.utils.CmdLine;
+import com.qaprosoft.carina.core.foundation.utils.async.AsyncPipeline;
 import com.qaprosoft.carina.core.foundation.utils.common.CommonUtils;
 import com.qaprosoft.carina.core.foundation.utils.factory.DeviceType;
 import com.qaprosoft.carina.core.foundation.utils.factory.DeviceType.Type;
@@ -57,9 +69,26 @@ public class Device extends RemoteDevice implements IDriverPool {
      * ENABLED only in case of availability of parameter - 'uninstall_related_apps'.
      * Store udids of devices where related apps were uninstalled
      */
-    private static List<String> clearedDeviceUdids = new ArrayList<>();
+    private static List<String> clearedDeviceUdids = new CopyOnWriteArrayList<>();
+
+    private static final Map<String, Object> installLocks = new ConcurrentHashMap<>();
+
+    // seconds
+    private static final long PREPARATION_TIMEOUT = 600;
     private boolean isStfEnabled;
 
+    /**
+     * Long-running logcat readers per adb name. Enabled by 'logcat_stream' parameter
+     */
+    private static final Map<String, LogcatCollector> logcatCollectors = new ConcurrentHashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> logcatCollectors.values().forEach(LogcatCollector::close)));
+    }
+
+    // logcat offset recorded at test start
+    private volatile long sysLogOffset = -1;
+
     AdbExecutor executor = new AdbExecutor();
 
     public Device() {
@@ -211,12 +240,15 @@ public class Device extends RemoteDevice implements IDriverPool {
     }
 
     public void disconnectRemote() {
-        if (!isStfEnabled)
-            return;
-        
         if (isNull())
             return;
 
+        // notifications monitor keeps adb shell on device
+        AndroidService.stopNotificationWatcher(getAdbName());
+
+        if (!isStfEnabled)
+            return;
+
         // [VD] No need to do adb command as stopping STF session do it correctly
         // in new STF we have huge problems with sessions disconnect
         LOGGER.debug("adb disconnect " + getRemoteURL());
@@ -308,26 +340,8 @@ public class Device extends RemoteDevice implements IDriverPool {
     }
 
     public String getApkPackageName(String apkFile) {
-        // aapt dump badging <apk_file> | grep versionCode
-        // aapt dump badging <apk_file> | grep versionName
-        // output:
-        // package: name='com.myfitnesspal.android' versionCode='9025' versionName='develop-QA' platformBuildVersionName='6.0-2704002'
-
-        String packageName = "";
-
-        String[] cmd = CmdLine.insertCommandsAfter("aapt dump badging".split(" "), apkFile);
-        List<String> output = executor.execute(cmd);
-        // parse output command and get appropriate data
-
-        for (String line : output) {
-            if (line.contains("versionCode") && line.contains("versionName")) {
-                LOGGER.debug(line);
-                String[] outputs = line.split("'");
-                packageName = outputs[1]; // package
-            }
-        }
-
-        return packageName;
+        ApkManifest manifest = getApkManifest(apkFile);
+        return manifest != null ? manifest.getPackageName() : "";
     }
 
     public void uninstallApp(String packageName) {
@@ -348,13 +362,129 @@ public class Device extends RemoteDevice implements IDriverPool {
         executor.execute(cmd);
     }
 
-    public synchronized void installAppSync(String apkPath) {
+    public void installAppSync(String apkPath) {
         if (isNull())
             return;
 
-        // adb -s UDID install com.myfitnesspal.android
-        String[] cmd = CmdLine.insertCommandsAfter(executor.getDefaultCmd(), "-s", getAdbName(), "install", "-r", apkPath);
-        executor.execute(cmd);
+        // installations are serialized per physical device and not per Device instance
+        synchronized (getInstallLock()) {
+            // adb -s UDID install com.myfitnesspal.android
+            String[] cmd = CmdLine.insertCommandsAfter(executor.getDefaultCmd(), "-s", getAdbName(), "install", "-r", apkPath);
+            executor.execute(cmd);
+        }
+    }
+
+    private Object getInstallLock() {
+        return installLocks.computeIfAbsent(getAdbName(), k -> new Object());
+    }
+
+    /**
+     * Prepare Android device for the test using dependency graph of steps: connect and apk metadata extraction run
+     * concurrently, installed version check and related apps cleanup start when both are finished, push and install are
+     * skipped when the same version is already installed, permissions are granted concurrently. Per-step timings are
+     * logged and saved into device-preparation.log of test folder. It is not a part of session startup: call it
+     * explicitly when device is known before driver creation, i.e. for locally attached device.
+     * 
+     * @param apkPath path to apk file
+     * @param clearData clear application data after installation
+     * @param permissions runtime permissions to grant, i.e. android.permission.CAMERA
+     * @return AsyncPipeline.Result
+     */
+    public AsyncPipeline.Result prepareApp(String apkPath, boolean clearData, String... permissions) {
+        if (isNull() || !getOs().equalsIgnoreCase(Type.ANDROID_PHONE.getFamily())) {
+            throw new RuntimeException("Device preparation is available for Android ONLY: " + toString());
+        }
+        AtomicReference<ApkManifest> manifest = new AtomicReference<>();
+        AtomicReference<String[]> installedVersion = new AtomicReference<>();
+        String remoteApk = "/data/local/tmp/carina-" + new File(apkPath).getName().replaceAll("[^\\w.-]", "_");
+
+        AsyncPipeline pipeline = new AsyncPipeline("prepare " + getName())
+                .step("connect", () -> {
+                    boolean stfEnabled = R.CONFIG.getBoolean(SpecialKeywords.CAPABILITIES + "." + SpecialKeywords.STF_ENABLED);
+                    if (!stfEnabled || isStfEnabled) {
+                        return false;
+                    }
+                    connectRemote();
+                    return true;
+                })
+                .step("apkMetadata", () -> {
+                    manifest.set(ApkManifestParser.parse(new File(apkPath)));
+                    return true;
+                })
+                .step("installedVersion", () -> {
+                    installedVersion.set(getInstalledApkVersion(manifest.get().getPackageName()));
+                    return true;
+                }, "connect", "apkMetadata")
+                .step("uninstallRelatedApps", () -> {
+                    if (clearedDeviceUdids.contains(getUdid()) || !Configuration.getBoolean(Parameter.UNINSTALL_RELATED_APPS)) {
+                        return false;
+                    }
+                    uninstallRelatedApps(manifest.get().getPackageName());
+                    return true;
+                }, "connect", "apkMetadata")
+                .step("push", () -> {
+                    if (isInstalled(manifest.get(), installedVersion.get())) {
+                        LOGGER.info("Skip installation as the same version is already installed: " + manifest.get());
+                        return false;
+                    }
+                    // adb -s UDID push app.apk /data/local/tmp/
+                    executor.execute(CmdLine.insertCommandsAfter(executor.getDefaultCmd(), "-s", getAdbName(), "push", apkPath, remoteApk));
+                    return true;
+                }, "installedVersion", "uninstallRelatedApps")
+                .step("install", () -> {
+                    if (isInstalled(manifest.get(), installedVersion.get())) {
+                        return false;
+                    }
+                    synchronized (getInstallLock()) {
+                        // adb -s UDID shell pm install -r /data/local/tmp/app.apk
+                        List<String> output = executor.execute(CmdLine.insertCommandsAfter(executor.getDefaultCmd(), "-s", getAdbName(), "shell",
+                                "pm", "install", "-r", remoteApk));
+                        executor.execute(CmdLine.insertCommandsAfter(executor.getDefaultCmd(), "-s", getAdbName(), "shell", "rm", "-f", remoteApk));
+                        if (output.stream().noneMatch(line -> line.contains("Success"))) {
+                            throw new RuntimeException("Unable to install " + apkPath + ": " + output);
+                        }
+                    }
+                    return true;
+                }, "push");
+
+        if (clearData) {
+            pipeline.step("clearAppData", () -> {
+                // adb -s UDID shell pm clear com.myfitnesspal.android
+                executor.execute(CmdLine.insertCommandsAfter(executor.getDefaultCmd(), "-s", getAdbName(), "shell", "pm", "clear",
+                        manifest.get().getPackageName()));
+                return true;
+            }, "install");
+        }
+
+        for (String permission : permissions) {
+            pipeline.step("grant " + permission, () -> {
+                // adb -s UDID shell pm grant com.myfitnesspal.android android.permission.CAMERA
+                executor.execute(CmdLine.insertCommandsAfter(executor.getDefaultCmd(), "-s", getAdbName(), "shell", "pm", "grant",
+                        manifest.get().getPackageName(), permission));
+                return true;
+            }, clearData ? "clearAppData" : "install");
+        }
+
+        AsyncPipeline.Result result = pipeline.run(PREPARATION_TIMEOUT);
+        LOGGER.info(result);
+        try {
+            FileUtils.writeStringToFile(new File(ReportContext.getTestDir(), "device-preparation.log"), result.toString() + "\n",
+                    StandardCharsets.UTF_8, true);
+        } catch (IOException e) {
+            LOGGER.debug("Unable to save device preparation timings.", e);
+        }
+        if (!result.isSuccessful()) {
+            throw new RuntimeException("Device preparation failed: " + result);
+        }
+        return result;
+    }
+
+    private static boolean isInstalled(ApkManifest manifest, String[] installedVersion) {
+        // installed version: package, versionCode, versionName
+        return installedVersion != null && manifest.getVersionCode() != null
+                && manifest.getVersionCode().equals(installedVersion[1])
+                && (manifest.getVersionName() == null || manifest.getVersionName().startsWith("@")
+                        || manifest.getVersionName().equals(installedVersion[2]));
     }
 
     /*
@@ -449,33 +579,39 @@ public class Device extends RemoteDevice implements IDriverPool {
     }
 
     public String[] getApkVersion(String apkFile) {
-        // aapt dump badging <apk_file> | grep versionCode
-        // aapt dump badging <apk_file> | grep versionName
-        // output:
-        // package: name='com.myfitnesspal.android' versionCode='9025' versionName='develop-QA' platformBuildVersionName='6.0-2704002'
-
         String[] res = new String[3];
         res[0] = "";
         res[1] = "";
         res[2] = "";
 
-        String[] cmd = CmdLine.insertCommandsAfter("aapt dump badging".split(" "), apkFile);
-        List<String> output = executor.execute(cmd);
-        // parse output command and get appropriate data
-
-        for (String line : output) {
-            if (line.contains("versionCode") && line.contains("versionName")) {
-                LOGGER.debug(line);
-                String[] outputs = line.split("'");
-                res[0] = outputs[1]; // package
-                res[1] = outputs[3]; // versionCode
-                res[2] = outputs[5]; // versionName
-            }
+        ApkManifest manifest = getApkManifest(apkFile);
+        if (manifest != null) {
+            res[0] = manifest.getPackageName(); // package
+            res[1] = StringUtils.defaultString(manifest.getVersionCode()); // versionCode
+            res[2] = StringUtils.defaultString(manifest.getVersionName()); // versionName
         }
 
         return res;
     }
 
+    /**
+     * Read metadata from AndroidManifest.xml of apk file without aapt. Parsed manifest is cached by path, size and
+     * modification time so repeated calls for the same build are free.
+     * 
+     * @param apkFile path to apk file
+     * @return ApkManifest or null if apk can't be parsed
+     */
+    public ApkManifest getApkManifest(String apkFile) {
+        try {
+            ApkManifest manifest = ApkManifestParser.parse(new File(apkFile));
+            LOGGER.debug(manifest);
+            return manifest;
+        } catch (Exception e) {
+            LOGGER.error("Unable to parse manifest of apk: " + apkFile, e);
+            return null;
+        }
+    }
+
     public List<String> execute(String[] cmd) {
         return executor.execute(cmd);
     }
@@ -528,34 +664,99 @@ public class Device extends RemoteDevice implements IDriverPool {
             LOGGER.debug("Current mobile app: ".concat(mobileApp));
             String tempPackage;
             try {
-                tempPackage = getApkPackageName(mobileApp);
+                tempPackage = ApkManifestParser.parse(new File(mobileApp)).getPackageName();
             } catch (Exception e) {
-                LOGGER.info("Error during extraction of package using aapt. It will be extracted from config");
+                LOGGER.info("Error during extraction of package from apk manifest. It will be extracted from config");
                 tempPackage = R.CONFIG.get(SpecialKeywords.MOBILE_APP_PACKAGE);
             }
-            final String mobilePackage = tempPackage;
-            LOGGER.debug("Current mobile package: ".concat(mobilePackage));
-            // in general it has following naming convention:
-            // com.projectname.app
-            // so we need to remove all apps realted to 1 project
-            String projectName = mobilePackage.split("\\.")[1];
-            LOGGER.debug("Apps related to current project will be uninstalled. Extracted project: ".concat(projectName));
-            List<String> installedPackages = getInstalledPackages();
-            // extracted package syntax: package:com.project.app
-            installedPackages.parallelStream()
-                    .filter(packageName -> (packageName.matches(String.format(".*\\.%s\\..*", projectName))
-                            && !packageName.equalsIgnoreCase(String.format("package:%s", mobilePackage))))
-                    .collect(Collectors.toList()).forEach((k) -> uninstallApp(k.split(":")[1]));
-            clearedDeviceUdids.add(getUdid());
-            LOGGER.debug("Udids of devices where applciation was already reinstalled: ".concat(clearedDeviceUdids.toString()));
+            uninstallRelatedApps(tempPackage);
         } else {
             LOGGER.debug("Related apps had been already uninstalled or flag uninstall_related_apps is disabled.");
         }
 
     }
-    
+
+    private void uninstallRelatedApps(String mobilePackage) {
+        LOGGER.debug("Current mobile package: ".concat(mobilePackage));
+        // in general it has following naming convention:
+        // com.projectname.app
+        // so we need to remove all apps realted to 1 project
+        String projectName = mobilePackage.split("\\.")[1];
+        LOGGER.debug("Apps related to current project will be uninstalled. Extracted project: ".concat(projectName));
+        List<String> installedPackages = getInstalledPackages();
+        // extracted package syntax: package:com.project.app
+        installedPackages.parallelStream()
+                .filter(packageName -> (packageName.matches(String.format(".*\\.%s\\..*", projectName))
+                        && !packageName.equalsIgnoreCase(String.format("package:%s", mobilePackage))))
+                .collect(Collectors.toList()).forEach((k) -> uninstallApp(k.split(":")[1]));
+        clearedDeviceUdids.add(getUdid());
+        LOGGER.debug("Udids of devices where applciation was already reinstalled: ".concat(clearedDeviceUdids.toString()));
+    }
+
     /**
-     * Extract sys log using adb
+     * Start long-running logcat reader for Android device if needed and record test start offset, it is called on test
+     * start. Logcat lines written after this call are returned by {@link #getSysLog()} and {@link #saveSysLog(File)}.
+     */
+    public void startSysLog() {
+        LogcatCollector collector = getLogcatCollector();
+        if (collector != null) {
+            sysLogOffset = collector.mark();
+        }
+    }
+
+    /**
+     * Save logcat lines written since {@link #startSysLog()} into file.
+     * 
+     * @param file target file
+     * @return saved file or null if there are no logs or streaming logcat is not started
+     */
+    public File saveSysLog(File file) {
+        LogcatCollector collector = logcatCollectors.get(getAdbName());
+        if (isNull() || collector == null || sysLogOffset < 0) {
+            return null;
+        }
+        long end = collector.mark();
+        long written = 0;
+        try (OutputStream out = new FileOutputStream(file)) {
+            written = collector.writeLog(sysLogOffset, end, LogcatFilter.parse(getLogcatFilter()), out);
+        } catch (Exception e) {
+            LOGGER.warn("Unable to save logcat of " + getAdbName(), e);
+        }
+        // next slice starts where this one ended even if test start is not registered
+        sysLogOffset = end;
+        if (written == 0) {
+            FileUtils.deleteQuietly(file);
+            return null;
+        }
+        return file;
+    }
+
+    private LogcatCollector getLogcatCollector() {
+        if (isNull() || !DeviceType.Type.ANDROID_PHONE.getFamily().equalsIgnoreCase(getOs())
+                || !Configuration.getBoolean(Parameter.LOGCAT_STREAM)) {
+            return null;
+        }
+        String adbName = getAdbName();
+        try {
+            LogcatCollector collector = logcatCollectors.computeIfAbsent(adbName,
+                    k -> new LogcatCollector(new File(ReportContext.getTempDir(), "logcat"), k));
+            // reader is restarted after device reconnect, offsets stay valid
+            // adb -s UDID logcat -v threadtime -T 1
+            collector.start(CmdLine.insertCommandsAfter(executor.getDefaultCmd(), "-s", adbName, "logcat", "-v", "threadtime", "-T", "1"));
+            return collector;
+        } catch (Exception e) {
+            LOGGER.warn("Unable to start logcat reader for " + adbName + ". Full logcat dump will be used.", e);
+            return null;
+        }
+    }
+
+    private String getLogcatFilter() {
+        return Configuration.isNull(Parameter.LOGCAT_FILTER) ? null : Configuration.get(Parameter.LOGCAT_FILTER);
+    }
+
+    /**
+     * Extract sys log using adb. If streaming logcat is started, only lines written since {@link #startSysLog()} are
+     * returned.
      * 
      * @return sys log
      */
@@ -572,6 +773,11 @@ public class Device extends RemoteDevice implements IDriverPool {
         }
         LOGGER.debug("Extraction of sys log: " + getAdbName());
 
+        LogcatCollector collector = logcatCollectors.get(getAdbName());
+        if (collector != null && sysLogOffset >= 0) {
+            return collector.getLog(sysLogOffset, collector.mark(), LogcatFilter.parse(getLogcatFilter()));
+        }
+
         // launch extractor in separate thread to avoid possible hang out
         ExecutorService executorService = Executors.newSingleThreadExecutor();
         Future<String> future = executorService.submit(new Callable<String>() {
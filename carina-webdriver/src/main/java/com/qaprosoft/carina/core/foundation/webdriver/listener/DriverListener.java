@@ -26,6 +26,7 @@ import org.openqa.selenium.support.events.WebDriverEventListener;
 import org.testng.ITestResult;
 import org.testng.Reporter;
 
+import com.qaprosoft.carina.core.foundation.utils.mobile.snapshot.UiSnapshotCache;
 import com.qaprosoft.carina.core.foundation.webdriver.Screenshot;
 import com.qaprosoft.zafira.client.ZafiraSingleton;
 import com.qaprosoft.zafira.models.dto.TestArtifactType;
@@ -64,12 +65,14 @@ public class DriverListener implements WebDriverEventListener {
 
     @Override
     public void afterChangeValueOf(WebElement element, WebDriver driver, CharSequence[] value) {
+        UiSnapshotCache.invalidate(driver);
         String comment = String.format("Text '%s' typed", charArrayToString(value));
         captureScreenshot(comment, driver, element, false);
     }
 
     @Override
     public void afterClickOn(WebElement element, WebDriver driver) {
+        UiSnapshotCache.invalidate(driver);
         String comment = "Element clicked";
         captureScreenshot(comment, driver, element, false);
     }
@@ -102,7 +105,8 @@ public class DriverListener implements WebDriverEventListener {
 
     @Override
     public void afterScript(String script, WebDriver driver) {
-        // Do nothing
+        // "mobile: *" scripts may change the screen
+        UiSnapshotCache.invalidate(driver);
     }
 
     @Override
@@ -299,6 +303,7 @@ public class DriverListener implements WebDriverEventListener {
     }
 
     private void onAfterAction(String comment, WebDriver driver) {
+        UiSnapshotCache.invalidate(driver);
         captureScreenshot(comment, driver, null, false);
     }
     